@@ -1,17 +1,64 @@
 package com.example.sonar.ai;
 
+import com.example.sonar.ai.client.AiClient;
+import com.example.sonar.ai.client.AimdLimiter;
+import com.example.sonar.ai.client.Backoff;
+import com.example.sonar.ai.evaluator.LocalEvaluators;
+import com.example.sonar.ai.io.AsyncSnippetSink;
+import com.example.sonar.ai.io.FlushPolicy;
+import com.example.sonar.ai.io.FlushingSnippetSink;
+import com.example.sonar.ai.io.JsonLinesSnippetWriter;
+import com.example.sonar.ai.io.NormalizedSnippetWriter;
 import com.example.sonar.ai.io.RuleReader;
+import com.example.sonar.ai.io.SnippetFileReader;
+import com.example.sonar.ai.io.SnippetJsonWriter;
+import com.example.sonar.ai.io.SnippetSink;
+import com.example.sonar.ai.io.TeeWriter;
 import com.example.sonar.ai.model.Rule;
-import com.example.sonar.ai.model.Snippet;
 import com.example.sonar.ai.service.CodeExtractorService;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import com.example.sonar.ai.stage.AiDispatchSnippetSink;
+import com.example.sonar.ai.stage.BaselineSnippetSink;
+import com.example.sonar.ai.stage.BatchPlanningSnippetSink;
+import com.example.sonar.ai.stage.BudgetSnippetSink;
+import com.example.sonar.ai.stage.CostEstimateSnippetSink;
+import com.example.sonar.ai.stage.DedupSnippetSink;
+import com.example.sonar.ai.stage.LocalVerdictSnippetSink;
+import com.example.sonar.ai.stage.MethodGroupingSnippetSink;
+import com.example.sonar.ai.stage.NearDuplicateSnippetSink;
+import com.example.sonar.ai.stage.QuotaSnippetSink;
+import com.example.sonar.ai.stage.ReductionSnippetSink;
+import com.example.sonar.ai.stage.RiskRankingSnippetSink;
+import com.example.sonar.ai.stage.VerdictCacheSnippetSink;
+import com.example.sonar.ai.store.ScanCheckpoint;
+import com.example.sonar.ai.store.SnippetStore;
+import com.example.sonar.ai.store.SnippetStoreWriter;
+import com.example.sonar.ai.store.VerdictStore;
+import com.example.sonar.ai.store.WorkQueue;
+import com.example.sonar.ai.store.WorkQueueWriter;
 
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * 主程序入口
@@ -19,12 +66,27 @@ import java.util.List;
 public class CodeAnalysisEngine {
 
     public static void main(String[] args) {
-        if (args.length != 2) {
-            System.err.println("Usage: java -jar ai-code-extractor.jar <sourceDir> <rulesFile>");
+        EngineOptions options;
+        try {
+            options = EngineOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println("ERROR: " + e.getMessage());
+            System.err.println(EngineOptions.USAGE);
             System.exit(1);
+            return;
+        }
+        if (options.isConsume()) {
+            try {
+                consume(options);
+            } catch (Exception e) {
+                System.err.println("FATAL ERROR during consume: " + e.getMessage());
+                e.printStackTrace();
+                System.exit(1);
+            }
+            return;
         }
-        String sourceDir = args[0];
-        String rulesFile = args[1];
+        String sourceDir = options.getSourceDir();
+        String rulesFile = options.getRulesFile();
 
         System.err.println("INFO: Starting Code Analysis Engine...");
         System.err.println("INFO: Source Dir: " + sourceDir);
@@ -40,19 +102,321 @@ public class CodeAnalysisEngine {
             }
 
             CodeExtractorService service = new CodeExtractorService(sourceDir, rules);
-            List<Snippet> allCandidates = service.extractAllCandidates();
-            Gson gson = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
-            String json = gson.toJson(allCandidates);
-            System.out.println(json);
-            System.err.println("INFO: Extraction complete. JSON output finished.");
-
-            // 输出字符串到json文件，与jar包同级
-            service.writeJsonToFile(json);
-            System.err.println("INFO: write json to json file completed");
+            service.setReferenceOnly(options.isReferenceOnly());
+            if (options.getDryRun() > 0) {
+                dryRun(options, rules, service);
+            } else {
+                ScanCheckpoint checkpoint = null;
+                if (options.getCheckpointDir() != null) {
+                    checkpoint = ScanCheckpoint.open(Paths.get(options.getCheckpointDir()), rules,
+                            ScanCheckpoint.fingerprint(rules, sourceDir, options.isReferenceOnly()),
+                            TimeUnit.SECONDS.toMillis(options.getCheckpointIntervalSeconds()), options.isResume());
+                }
+                try {
+                    extractAndWrite(options, rules, service, checkpoint);
+                } finally {
+                    if (checkpoint != null) {
+                        checkpoint.close();
+                    }
+                }
+                if (checkpoint != null) {
+                    // 输出已完整写出，不再需要续跑
+                    checkpoint.discard();
+                }
+            }
+            System.err.println(options.isAnalyze() ? "INFO: Analysis complete. JSON output finished."
+                    : "INFO: Extraction complete. JSON output finished.");
         } catch (Exception e) {
             System.err.println("FATAL ERROR during extraction: " + e.getMessage());
             e.printStackTrace();
             System.exit(1);
         }
     }
+
+    private static void extractAndWrite(EngineOptions options, List<Rule> rules, CodeExtractorService service,
+                                        ScanCheckpoint checkpoint) throws IOException {
+        if (options.getSpillDir() != null) {
+            // 抽取时片段落盘，堆占用与仓库规模无关；结束后按规则顺序从片段库流式输出
+            Path dir = Paths.get(options.getSpillDir());
+            try (SnippetStoreWriter store = new SnippetStoreWriter(dir, rules)) {
+                extract(service, store, checkpoint);
+            }
+            try (SnippetStore store = SnippetStore.open(dir);
+                 SnippetSink sink = openSink(options, rules)) {
+                System.err.println("INFO: Streaming " + store.size() + " snippets from " + dir.toAbsolutePath());
+                store.forEachByRule(sink);
+            }
+        } else {
+            try (SnippetSink sink = openSink(options, rules)) {
+                extract(service, sink, checkpoint);
+            }
+        }
+    }
+
+    private static void extract(CodeExtractorService service, SnippetSink sink) {
+        service.extractAllCandidates(snippet -> {
+            try {
+                sink.accept(snippet);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * 带断点的抽取：先重放断点中的片段，再解析其余文件；片段在进入处理阶段之前记入断点
+     */
+    private static void extract(CodeExtractorService service, SnippetSink sink, ScanCheckpoint checkpoint)
+            throws IOException {
+        if (checkpoint == null) {
+            extract(service, sink);
+            return;
+        }
+        long replayed = checkpoint.replay(sink);
+        if (replayed > 0) {
+            System.err.println("INFO: Replayed " + replayed + " snippets from the checkpoint.");
+        }
+        service.setSkipFile(checkpoint::isCompleted);
+        service.setFileDone(file -> {
+            try {
+                checkpoint.fileDone(file);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        service.extractAllCandidates(snippet -> {
+            try {
+                checkpoint.record(snippet);
+                sink.accept(snippet);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * 试运行：只解析抽样的文件，输出按规则外推的 AI 调用数和 token 数估算，不输出片段。
+     * 本地判定和缩减参与估算，其余阶段不参与
+     */
+    private static void dryRun(EngineOptions options, List<Rule> rules, CodeExtractorService service)
+            throws IOException {
+        service.setFileSample(options.getDryRun(), options.getSampleSeed());
+        String output = options.getOutput();
+        Writer out = output == null || "-".equals(output)
+                ? new BufferedWriter(new OutputStreamWriter(System.out, Charset.defaultCharset()))
+                : Files.newBufferedWriter(Paths.get(output), StandardCharsets.UTF_8);
+        CostEstimateSnippetSink estimator = new CostEstimateSnippetSink(out, rules);
+        SnippetSink sink = estimator;
+        if (options.getMaxSnippetChars() > 0 || rules.stream().anyMatch(rule -> rule.getMaxChars() > 0)) {
+            sink = new ReductionSnippetSink(sink, options.getMaxSnippetChars());
+        }
+        if (options.isLocalVerdicts()) {
+            sink = new LocalVerdictSnippetSink(sink, LocalEvaluators.forRules(rules), false);
+        }
+        try (SnippetSink pipeline = sink) {
+            extract(service, pipeline);
+            estimator.setScale(service.getFilesFound(), service.getFilesParsed());
+        }
+    }
+
+    /**
+     * 按命令行参数组装输出端
+     * 默认流式序列化一次，同时写到标准输出和 json 文件（与jar包同级）
+     */
+    private static SnippetSink openSink(EngineOptions options, List<Rule> rules) throws IOException {
+        SnippetSink sink;
+        if (options.getQueueDir() != null) {
+            // 工作队列按分段发布，由 consume 进程并行消费，不经过异步写出和定时刷新
+            sink = new WorkQueueWriter(Paths.get(options.getQueueDir()), options.getQueueChunk());
+        } else {
+            sink = openWriter(options, rules);
+        }
+        // 处理阶段由内向外包在输出端外层，片段按 本地判定 -> 判定缓存 -> 按方法合并 -> 去重 -> 聚类 -> 规则限额
+        // -> 基线比较 -> 风险排序 -> 缩减 -> token 预算 -> 批次规划 -> AI 判定 的顺序经过各阶段再写出；
+        // 基线是上次运行输出的片段，在产生输出的同一位置比较
+        VerdictStore store = null;
+        if (options.getVerdictDir() != null) {
+            // 抽取时只读打开，允许多个抽取进程与导入/压缩同时使用同一个判定库；analyze 需要写入新判定
+            store = VerdictStore.open(Paths.get(options.getVerdictDir()), options.isAnalyze());
+        }
+        if (options.isAnalyze()) {
+            sink = new AiDispatchSnippetSink(sink, openClient(options), store,
+                    options.getConcurrency() * 4);
+        }
+        if (options.getBatchDir() != null) {
+            sink = new BatchPlanningSnippetSink(sink, Paths.get(options.getBatchDir()),
+                    options.getBatchTokens(), options.getBatchSize());
+        }
+        if (options.getTokenBudget() > 0) {
+            sink = new BudgetSnippetSink(sink, options.getTokenBudget());
+        }
+        if (options.getMaxSnippetChars() > 0 || rules.stream().anyMatch(rule -> rule.getMaxChars() > 0)) {
+            sink = new ReductionSnippetSink(sink, options.getMaxSnippetChars());
+        }
+        if (options.isRankByRisk()) {
+            sink = new RiskRankingSnippetSink(sink, options.getRiskWeights());
+        }
+        if (options.getBaseline() != null) {
+            sink = new BaselineSnippetSink(sink, Paths.get(options.getBaseline()), rules,
+                    Paths.get(options.getSourceDir()));
+        }
+        if (rules.stream().anyMatch(rule -> rule.getMaxPerFile() > 0 || rule.getMaxTotal() > 0)) {
+            sink = new QuotaSnippetSink(sink, options.getSampleSeed());
+        }
+        if (options.getClusterThreshold() > 0) {
+            sink = new NearDuplicateSnippetSink(sink, options.getClusterThreshold(),
+                    NearDuplicateSnippetSink.DEFAULT_SCOPES);
+        }
+        if (options.isDedup()) {
+            sink = new DedupSnippetSink(sink);
+        }
+        if (options.isGroupByMethod()) {
+            // 从片段库按规则顺序输出时各文件的片段交错到达
+            sink = new MethodGroupingSnippetSink(sink, options.getSpillDir() == null);
+        }
+        if (store != null) {
+            sink = new VerdictCacheSnippetSink(sink, store, options.getVerdictTtlMillis(), options.isSkipJudged());
+        }
+        if (options.isLocalVerdicts()) {
+            sink = new LocalVerdictSnippetSink(sink, LocalEvaluators.forRules(rules), options.isSkipJudged());
+        }
+        return sink;
+    }
+
+    /**
+     * 写出端：按输出格式序列化，并按刷新策略同步或异步写出
+     */
+    private static SnippetSink openWriter(EngineOptions options, List<Rule> rules) throws IOException {
+        List<Writer> targets = new ArrayList<>();
+        String output = options.getOutput();
+        if (output == null || "-".equals(output)) {
+            targets.add(new BufferedWriter(new OutputStreamWriter(System.out, Charset.defaultCharset())));
+        }
+        if (!"-".equals(output)) {
+            Path path = output != null ? Paths.get(output) : defaultOutputPath(options);
+            System.err.println("INFO: json文件路径::" + path.toAbsolutePath());
+            OutputStream file = Files.newOutputStream(path);
+            if (options.isGzip()) {
+                // syncFlush 使每次 flush 都能输出完整的压缩块，tail 时可以即时解压
+                file = new GZIPOutputStream(file, 1 << 16, true);
+            }
+            targets.add(new BufferedWriter(new OutputStreamWriter(file, StandardCharsets.UTF_8), 1 << 16));
+        }
+        Writer out = targets.size() == 1 ? targets.get(0) : new TeeWriter(targets.toArray(new Writer[0]));
+
+        SnippetSink sink;
+        if (options.isNdjson()) {
+            sink = new JsonLinesSnippetWriter(out);
+        } else if (options.isNormalized()) {
+            sink = new NormalizedSnippetWriter(out, rules, options.isPretty());
+        } else {
+            sink = new SnippetJsonWriter(out, options.isPretty());
+        }
+        FlushPolicy flushPolicy = new FlushPolicy(options.getFlushEvery(), options.getFlushIntervalMillis());
+        return options.isAsync()
+                ? new AsyncSnippetSink(sink, options.getBufferSize(), flushPolicy)
+                : new FlushingSnippetSink(sink, flushPolicy);
+    }
+
+    /**
+     * 消费工作队列：逐个认领分段，交给 AI 判定后写到 results/ 下的同名文件，完成后标记分段。
+     * 处理期间每 1/3 租约时长续约一次；没有可认领的分段时等待，抽取已结束且全部分段完成后退出。
+     * 租约被接管时结果仍会写出，结果文件按分段整体替换，重复处理不会产生重复片段
+     */
+    private static void consume(EngineOptions options) throws IOException, InterruptedException {
+        Path dir = Paths.get(options.getQueueDir());
+        if (!Files.exists(dir.resolve("index.jsonl"))) {
+            throw new IOException("Not a work queue: " + dir.toAbsolutePath());
+        }
+        // RuntimeMXBean 名称为 pid@hostname，各消费者唯一
+        String owner = ManagementFactory.getRuntimeMXBean().getName().replaceAll("[^A-Za-z0-9._-]", "_");
+        long leaseMillis = TimeUnit.SECONDS.toMillis(options.getLeaseSeconds());
+        WorkQueue queue = new WorkQueue(dir, owner, leaseMillis);
+        Path results = Files.createDirectories(dir.resolve("results"));
+        AiClient client = openClient(options);
+        ScheduledExecutorService renewer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "lease-renewer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        System.err.println("INFO: Consuming " + dir.toAbsolutePath() + " as " + owner);
+        int chunks = 0;
+        try {
+            while (true) {
+                WorkQueue.Lease lease = queue.claim();
+                if (lease == null) {
+                    if (queue.status().drained()) {
+                        break;
+                    }
+                    Thread.sleep(1000);
+                    continue;
+                }
+                AtomicBoolean lost = new AtomicBoolean();
+                long period = Math.max(1, leaseMillis / 3);
+                ScheduledFuture<?> renewal = renewer.scheduleAtFixedRate(() -> {
+                    try {
+                        if (!queue.renew(lease)) {
+                            lost.set(true);
+                        }
+                    } catch (IOException e) {
+                        System.err.println("WARN: Failed to renew lease of chunk " + lease.chunk() + ": " + e);
+                    }
+                }, period, period, TimeUnit.MILLISECONDS);
+                String name = lease.segment().getFileName().toString();
+                Path tmp = results.resolve(name + "." + owner + ".tmp");
+                try {
+                    try (SnippetSink sink = new AiDispatchSnippetSink(new JsonLinesSnippetWriter(
+                            Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)), client, null,
+                            options.getConcurrency() * 4)) {
+                        SnippetFileReader.read(lease.segment(), sink);
+                    }
+                    Files.move(tmp, results.resolve(name), StandardCopyOption.REPLACE_EXISTING,
+                            StandardCopyOption.ATOMIC_MOVE);
+                } finally {
+                    renewal.cancel(false);
+                    Files.deleteIfExists(tmp);
+                }
+                if (lost.get()) {
+                    System.err.println("WARN: Lease of chunk " + lease.chunk()
+                            + " was taken over while processing, result may be written twice.");
+                }
+                queue.complete(lease);
+                chunks++;
+            }
+        } finally {
+            renewer.shutdownNow();
+        }
+        System.err.println("INFO: Queue drained, " + chunks + " chunks consumed by " + owner + ".");
+    }
+
+    /**
+     * analyze 使用的 AI 客户端，接口地址、模型和 token 默认取 AIEngine 使用的环境变量
+     */
+    private static AiClient openClient(EngineOptions options) throws IOException {
+        String url = options.getApiUrl() != null ? options.getApiUrl() : System.getenv("AI_API_URL");
+        if (url == null || url.isEmpty()) {
+            throw new IOException("analyze requires --api-url or AI_API_URL");
+        }
+        String model = options.getModel() != null ? options.getModel()
+                : System.getenv().getOrDefault("AI_MODEL", "default");
+        System.err.println("INFO: Analyzing with " + model + " at " + url + ", up to "
+                + options.getConcurrency() + " concurrent requests");
+        // 从较低的并发开始按 AIMD 增长，平滑延迟升到基线 2 倍视为拥塞
+        AimdLimiter limiter = new AimdLimiter(Math.min(4, options.getConcurrency()), 1, options.getConcurrency(), 2.0);
+        return new AiClient(URI.create(url), System.getenv("AI_API_TOKEN"), model,
+                Duration.ofMillis(options.getRequestTimeoutMillis()), options.getRetries(), limiter,
+                new Backoff(500, 30000));
+    }
+
+    private static Path defaultOutputPath(EngineOptions options) {
+        Path path = CodeExtractorService.defaultOutputPath();
+        String name = path.getFileName().toString();
+        if (options.isNdjson()) {
+            name = name.replaceFirst("\\.json$", ".jsonl");
+        }
+        if (options.isGzip()) {
+            name = name + ".gz";
+        }
+        return path.resolveSibling(name);
+    }
 }
@@ -0,0 +1,519 @@
+package com.example.sonar.ai;
+
+import com.example.sonar.ai.model.SnippetMetrics;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 命令行参数
+ * 前两个位置参数为源码目录和规则文件，其余为 --xxx 形式的可选项
+ */
+public class EngineOptions {
+
+    static final String USAGE = "Usage: java -jar ai-code-extractor.jar [analyze] <sourceDir> <rulesFile> [options]\n"
+            + "       java -jar ai-code-extractor.jar consume <queueDir> [analyze options]\n"
+            + "  analyze                   send snippets to the AI endpoint while extracting and emit them with verdicts\n"
+            + "  consume                   claim chunks of a work queue (see --queue), judge them with the AI endpoint\n"
+            + "                            and write <queueDir>/results/; run several consumers in parallel\n"
+            + "Options:\n"
+            + "  --reference-only          emit file/range/hash instead of code text for source snippets\n"
+            + "  --compact                 disable JSON pretty-printing\n"
+            + "  --format json|ndjson|normalized\n"
+            + "                            JSON array (default), one JSON object per line, or a single object\n"
+            + "                            with a rule table and file-path dictionary referenced by snippets\n"
+            + "  --output <path|->         write only to the given file, '-' for stdout only\n"
+            + "                            (default: stdout and output.json/output.jsonl next to the jar)\n"
+            + "  --gzip                    gzip the output file (appends .gz to the default file name)\n"
+            + "  --async                   serialize on a dedicated writer thread\n"
+            + "  --buffer-size <n>         async ring buffer capacity in snippets (default 1024)\n"
+            + "  --flush-every <n>         flush after every n snippets, 0 = only on close (default 1 for ndjson)\n"
+            + "  --flush-interval-ms <ms>  flush at least this often while snippets arrive, 0 = disabled\n"
+            + "  --queue <dir>             write snippets as a work queue of fixed-size chunks (JSON Lines segments,\n"
+            + "                            index, lease files) on a shared filesystem instead of --output\n"
+            + "  --queue-chunk <n>         snippets per queue chunk (default 500)\n"
+            + "  --checkpoint <dir>        record extracted snippets and completed files in <dir> so that an\n"
+            + "                            interrupted scan can be resumed; removed after a successful run\n"
+            + "  --checkpoint-interval-seconds <n>\n"
+            + "                            sync the checkpoint at most this often (default 30)\n"
+            + "  --resume                  continue from the checkpoint: replay its snippets and skip completed files\n"
+            + "  --spill <dir>             spill snippets to a memory-mapped store in <dir> during extraction,\n"
+            + "                            then stream the output from it grouped by rule\n"
+            + "  --group-by-method         merge hits of all rules inside the same method into one composite snippet\n"
+            + "  --dedup                   emit one snippet per (rule, structural hash) with its occurrences\n"
+            + "  --cluster <similarity>    merge near-duplicate snippets of the same rule (MinHash/LSH),\n"
+            + "                            e.g. 0.8; emits one representative per cluster\n"
+            + "  --verdicts <dir>          look up snippets in a local verdict store and attach cached verdicts\n"
+            + "  --local-verdicts          decide statically decidable rules locally (built-in or rule 'evaluator')\n"
+            + "                            and attach the verdict instead of leaving the snippet for the AI\n"
+            + "  --skip-judged             with --verdicts or --local-verdicts, drop snippets that already have a verdict\n"
+            + "  --verdict-ttl-days <n>    ignore cached verdicts older than n days, 0 = never expire (default)\n"
+            + "  --baseline <file>         compare with a previous output (json, ndjson or normalized, optionally\n"
+            + "                            gzipped) and emit only new and removed snippets\n"
+            + "  --sample-seed <n>         seed for sampling snippets of rules over their maxPerFile/maxTotal quota\n"
+            + "                            (default 42)\n"
+            + "  --rank-by-risk            order snippets by a risk score from static metrics (loop depth, statements,\n"
+            + "                            lock scope, calls in loops, fan-out); rules may set their own riskWeights\n"
+            + "  --risk-weights <list>     global metric weights, e.g. loopDepth=4,callsInLoops=2 (implies --rank-by-risk)\n"
+            + "  --max-snippet-chars <n>   shorten longer snippets (comments, collapsed blocks, focus window);\n"
+            + "                            rules may set their own maxChars in the rules file\n"
+            + "  --token-budget <n>        stop emitting snippets for the AI once their estimated prompt tokens\n"
+            + "                            reach n and report the rules that were cut off\n"
+            + "  --dry-run <fraction>      parse only a random fraction of the files (see --sample-seed), write\n"
+            + "                            estimated AI calls and tokens per rule instead of snippets, then exit\n"
+            + "  --batch-dir <dir>         also plan multi-snippet prompts per rule and write batch files to <dir>\n"
+            + "  --batch-tokens <n>        estimated prompt token limit per batch (default 8000)\n"
+            + "  --batch-size <n>          maximum snippets per batch (default 20)\n"
+            + "Analyze options (token from AI_API_TOKEN):\n"
+            + "  --api-url <url>           chat completions endpoint (default: AI_API_URL)\n"
+            + "  --model <name>            model name (default: AI_MODEL or 'default')\n"
+            + "  --concurrency <n>         maximum concurrent requests; the limit adapts (AIMD) to latency,\n"
+            + "                            429 and 5xx responses (default 16)\n"
+            + "  --request-timeout-ms <ms> timeout per request (default 30000)\n"
+            + "  --retries <n>             retries per snippet with jittered exponential backoff (default 3)\n"
+            + "  --verdicts <dir>          also store new verdicts in the verdict store (analyze only)\n"
+            + "  --lease-seconds <n>       consume: lease duration per chunk, renewed while working (default 300)";
+
+    private String sourceDir;
+    private String rulesFile;
+    private boolean referenceOnly;
+    private boolean pretty = true;
+    private String format = "json";
+    private String output;
+    private boolean gzip;
+    private boolean async;
+    private int bufferSize = 1024;
+    private Integer flushEvery;
+    private long flushIntervalMillis;
+    private String spillDir;
+    private boolean groupByMethod;
+    private boolean dedup;
+    private double clusterThreshold;
+    private String verdictDir;
+    private boolean skipJudged;
+    private boolean localVerdicts;
+    private int verdictTtlDays;
+    private String baseline;
+    private long sampleSeed = 42;
+    private boolean rankByRisk;
+    private Map<String, Double> riskWeights;
+    private int maxSnippetChars;
+    private long tokenBudget;
+    private double dryRun;
+    private String batchDir;
+    private int batchTokens = 8000;
+    private int batchSize = 20;
+    private boolean analyze;
+    private boolean consume;
+    private String queueDir;
+    private int queueChunk = 500;
+    private int leaseSeconds = 300;
+    private String checkpointDir;
+    private int checkpointIntervalSeconds = 30;
+    private boolean resume;
+    private String apiUrl;
+    private String model;
+    private int concurrency = 16;
+    private int requestTimeoutMillis = 30000;
+    private int retries = 3;
+
+    /**
+     * 解析命令行参数
+     *
+     * @throws IllegalArgumentException 参数缺失或无法识别
+     */
+    public static EngineOptions parse(String[] args) {
+        EngineOptions options = new EngineOptions();
+        List<String> positional = new ArrayList<>();
+        int first = 0;
+        if (args.length > 0 && "analyze".equals(args[0])) {
+            options.analyze = true;
+            first = 1;
+        } else if (args.length > 0 && "consume".equals(args[0])) {
+            options.consume = true;
+            first = 1;
+        }
+        for (int i = first; i < args.length; i++) {
+            String arg = args[i];
+            if (!arg.startsWith("--")) {
+                positional.add(arg);
+                continue;
+            }
+            switch (arg) {
+                case "--reference-only" -> options.referenceOnly = true;
+                case "--compact" -> options.pretty = false;
+                case "--format" -> options.format = format(value(args, ++i, arg));
+                case "--output" -> options.output = value(args, ++i, arg);
+                case "--gzip" -> options.gzip = true;
+                case "--async" -> options.async = true;
+                case "--buffer-size" -> options.bufferSize = positiveInt(value(args, ++i, arg), arg);
+                case "--flush-every" -> options.flushEvery = nonNegativeInt(value(args, ++i, arg), arg);
+                case "--flush-interval-ms" -> options.flushIntervalMillis = nonNegativeInt(value(args, ++i, arg), arg);
+                case "--queue" -> options.queueDir = value(args, ++i, arg);
+                case "--queue-chunk" -> options.queueChunk = positiveInt(value(args, ++i, arg), arg);
+                case "--lease-seconds" -> options.leaseSeconds = positiveInt(value(args, ++i, arg), arg);
+                case "--checkpoint" -> options.checkpointDir = value(args, ++i, arg);
+                case "--checkpoint-interval-seconds" ->
+                        options.checkpointIntervalSeconds = nonNegativeInt(value(args, ++i, arg), arg);
+                case "--resume" -> options.resume = true;
+                case "--spill" -> options.spillDir = value(args, ++i, arg);
+                case "--group-by-method" -> options.groupByMethod = true;
+                case "--dedup" -> options.dedup = true;
+                case "--cluster" -> options.clusterThreshold = fraction(value(args, ++i, arg), arg);
+                case "--verdicts" -> options.verdictDir = value(args, ++i, arg);
+                case "--skip-judged" -> options.skipJudged = true;
+                case "--local-verdicts" -> options.localVerdicts = true;
+                case "--verdict-ttl-days" -> options.verdictTtlDays = nonNegativeInt(value(args, ++i, arg), arg);
+                case "--baseline" -> options.baseline = value(args, ++i, arg);
+                case "--sample-seed" -> options.sampleSeed = longValue(value(args, ++i, arg), arg);
+                case "--rank-by-risk" -> options.rankByRisk = true;
+                case "--risk-weights" -> {
+                    options.riskWeights = weights(value(args, ++i, arg), arg);
+                    options.rankByRisk = true;
+                }
+                case "--max-snippet-chars" -> options.maxSnippetChars = positiveInt(value(args, ++i, arg), arg);
+                case "--token-budget" -> options.tokenBudget = positiveLong(value(args, ++i, arg), arg);
+                case "--dry-run" -> options.dryRun = fraction(value(args, ++i, arg), arg);
+                case "--batch-dir" -> options.batchDir = value(args, ++i, arg);
+                case "--batch-tokens" -> options.batchTokens = positiveInt(value(args, ++i, arg), arg);
+                case "--batch-size" -> options.batchSize = positiveInt(value(args, ++i, arg), arg);
+                case "--api-url" -> options.apiUrl = value(args, ++i, arg);
+                case "--model" -> options.model = value(args, ++i, arg);
+                case "--concurrency" -> options.concurrency = positiveInt(value(args, ++i, arg), arg);
+                case "--request-timeout-ms" -> options.requestTimeoutMillis = positiveInt(value(args, ++i, arg), arg);
+                case "--retries" -> options.retries = nonNegativeInt(value(args, ++i, arg), arg);
+                default -> throw new IllegalArgumentException("Unknown option: " + arg);
+            }
+        }
+        if (options.consume) {
+            if (positional.size() != 1) {
+                throw new IllegalArgumentException("Expected consume <queueDir>");
+            }
+            if (options.verdictDir != null) {
+                throw new IllegalArgumentException("--verdicts is not supported by consume");
+            }
+            options.queueDir = positional.get(0);
+            return options;
+        }
+        if (positional.size() != 2) {
+            throw new IllegalArgumentException("Expected <sourceDir> <rulesFile>");
+        }
+        options.sourceDir = positional.get(0);
+        options.rulesFile = positional.get(1);
+        if (options.gzip && "-".equals(options.output)) {
+            throw new IllegalArgumentException("--gzip requires a file output");
+        }
+        if (options.skipJudged && options.verdictDir == null && !options.localVerdicts) {
+            throw new IllegalArgumentException("--skip-judged requires --verdicts or --local-verdicts");
+        }
+        if (options.queueDir != null && (options.output != null || options.gzip || options.dryRun > 0)) {
+            throw new IllegalArgumentException("--queue cannot be combined with --output, --gzip or --dry-run");
+        }
+        if (options.resume && options.checkpointDir == null) {
+            throw new IllegalArgumentException("--resume requires --checkpoint");
+        }
+        if (options.checkpointDir != null && (options.queueDir != null || options.dryRun > 0)) {
+            throw new IllegalArgumentException("--checkpoint cannot be combined with --queue or --dry-run");
+        }
+        if (options.analyze && options.dryRun > 0) {
+            throw new IllegalArgumentException("--dry-run cannot be combined with analyze");
+        }
+        return options;
+    }
+
+    private static String value(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + option);
+        }
+        return args[index];
+    }
+
+    private static String format(String value) {
+        if (!"json".equals(value) && !"ndjson".equals(value) && !"normalized".equals(value)) {
+            throw new IllegalArgumentException("Unknown format: " + value);
+        }
+        return value;
+    }
+
+    private static long longValue(String value, String option) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid value for " + option + ": " + value);
+        }
+    }
+
+    private static long positiveLong(String value, String option) {
+        long n = longValue(value, option);
+        if (n <= 0) {
+            throw new IllegalArgumentException(option + " must be positive");
+        }
+        return n;
+    }
+
+    private static Map<String, Double> weights(String value, String option) {
+        Map<String, Double> weights = new LinkedHashMap<>();
+        for (String entry : value.split(",")) {
+            int eq = entry.indexOf('=');
+            String name = eq < 0 ? entry.trim() : entry.substring(0, eq).trim();
+            if (eq < 0 || !SnippetMetrics.NAMES.contains(name)) {
+                throw new IllegalArgumentException("Invalid value for " + option + ": " + entry);
+            }
+            try {
+                weights.put(name, Double.parseDouble(entry.substring(eq + 1).trim()));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid value for " + option + ": " + entry);
+            }
+        }
+        return weights;
+    }
+
+    private static double fraction(String value, String option) {
+        try {
+            double d = Double.parseDouble(value);
+            if (d > 0 && d <= 1) {
+                return d;
+            }
+        } catch (NumberFormatException ignored) {
+            // 统一在下面报错
+        }
+        throw new IllegalArgumentException("Invalid value for " + option + ": " + value);
+    }
+
+    private static int positiveInt(String value, String option) {
+        int n = nonNegativeInt(value, option);
+        if (n == 0) {
+            throw new IllegalArgumentException(option + " must be positive");
+        }
+        return n;
+    }
+
+    private static int nonNegativeInt(String value, String option) {
+        try {
+            int n = Integer.parseInt(value);
+            if (n >= 0) {
+                return n;
+            }
+        } catch (NumberFormatException ignored) {
+            // 统一在下面报错
+        }
+        throw new IllegalArgumentException("Invalid value for " + option + ": " + value);
+    }
+
+    public String getSourceDir() {
+        return sourceDir;
+    }
+
+    public String getRulesFile() {
+        return rulesFile;
+    }
+
+    public boolean isReferenceOnly() {
+        return referenceOnly;
+    }
+
+    public boolean isPretty() {
+        return pretty;
+    }
+
+    public boolean isNormalized() {
+        return "normalized".equals(format);
+    }
+
+    public boolean isNdjson() {
+        return "ndjson".equals(format);
+    }
+
+    /**
+     * 显式指定的输出，null 表示同时写标准输出和默认文件
+     */
+    public String getOutput() {
+        return output;
+    }
+
+    public boolean isGzip() {
+        return gzip;
+    }
+
+    public boolean isAsync() {
+        return async;
+    }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * 每多少条刷新一次；JSON Lines 默认逐条刷新以便下游 tail，JSON 数组默认只在关闭时刷新
+     */
+    public int getFlushEvery() {
+        if (flushEvery != null) {
+            return flushEvery;
+        }
+        return isNdjson() ? 1 : 0;
+    }
+
+    public long getFlushIntervalMillis() {
+        return flushIntervalMillis;
+    }
+
+    /**
+     * 片段库目录，null 表示不落盘
+     */
+    public String getSpillDir() {
+        return spillDir;
+    }
+
+    public boolean isGroupByMethod() {
+        return groupByMethod;
+    }
+
+    /**
+     * 超出规则限额时抽样使用的随机种子
+     */
+    public long getSampleSeed() {
+        return sampleSeed;
+    }
+
+    public boolean isRankByRisk() {
+        return rankByRisk;
+    }
+
+    /**
+     * 命令行给出的全局风险权重，null 表示使用默认权重
+     */
+    public Map<String, Double> getRiskWeights() {
+        return riskWeights;
+    }
+
+    public boolean isDedup() {
+        return dedup;
+    }
+
+    /**
+     * 近似重复聚类的相似度阈值，0 表示不聚类
+     */
+    public double getClusterThreshold() {
+        return clusterThreshold;
+    }
+
+    /**
+     * 判定结果库目录，null 表示不查缓存
+     */
+    public String getVerdictDir() {
+        return verdictDir;
+    }
+
+    public boolean isSkipJudged() {
+        return skipJudged;
+    }
+
+    public boolean isLocalVerdicts() {
+        return localVerdicts;
+    }
+
+    /**
+     * 判定有效期（毫秒），0 表示不过期
+     */
+    public long getVerdictTtlMillis() {
+        return TimeUnit.DAYS.toMillis(verdictTtlDays);
+    }
+
+    /**
+     * 基线输出文件，null 表示不比较
+     */
+    public String getBaseline() {
+        return baseline;
+    }
+
+    /**
+     * 片段代码长度的全局上限，0 表示只按规则的 maxChars 缩减
+     */
+    public int getMaxSnippetChars() {
+        return maxSnippetChars;
+    }
+
+    /**
+     * 片段 token 预算，0 表示不限制
+     */
+    public long getTokenBudget() {
+        return tokenBudget;
+    }
+
+    /**
+     * 试运行抽样的文件比例，0 表示不是试运行
+     */
+    public double getDryRun() {
+        return dryRun;
+    }
+
+    /**
+     * 批次文件目录，null 表示不做批次规划
+     */
+    public String getBatchDir() {
+        return batchDir;
+    }
+
+    public int getBatchTokens() {
+        return batchTokens;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public boolean isAnalyze() {
+        return analyze;
+    }
+
+    public String getApiUrl() {
+        return apiUrl;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public int getRequestTimeoutMillis() {
+        return requestTimeoutMillis;
+    }
+
+    public int getRetries() {
+        return retries;
+    }
+
+    public boolean isConsume() {
+        return consume;
+    }
+
+    public String getQueueDir() {
+        return queueDir;
+    }
+
+    public int getQueueChunk() {
+        return queueChunk;
+    }
+
+    public int getLeaseSeconds() {
+        return leaseSeconds;
+    }
+
+    public String getCheckpointDir() {
+        return checkpointDir;
+    }
+
+    public int getCheckpointIntervalSeconds() {
+        return checkpointIntervalSeconds;
+    }
+
+    public boolean isResume() {
+        return resume;
+    }
+}
@@ -0,0 +1,232 @@
+package com.example.sonar.ai.bench;
+
+import com.example.sonar.ai.client.AiClient;
+import com.example.sonar.ai.client.AimdLimiter;
+import com.example.sonar.ai.client.Backoff;
+import com.example.sonar.ai.io.RuleReader;
+import com.example.sonar.ai.io.SnippetSink;
+import com.example.sonar.ai.model.Rule;
+import com.example.sonar.ai.model.Snippet;
+import com.example.sonar.ai.service.CodeExtractorService;
+import com.example.sonar.ai.stage.AiDispatchSnippetSink;
+import com.example.sonar.ai.util.LatencyHistogram;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * 抽取 + AI 判定的端到端压测
+ * 在临时目录生成合成语料，启动进程内的 {@link StubLlmServer}，按 analyze 的方式边抽取边分发全部片段（输出丢弃），
+ * 以 JSON 报告完成时间、判定吞吐、单片段判定耗时（含排队和重试）和单次请求耗时的 p50/p99，
+ * 以及请求、重试、限流和错误次数
+ */
+public class PipelineBenchmark {
+
+    static final String USAGE = "Usage: PipelineBenchmark <rulesFile> [options]\n"
+            + "  --files <n>               generated source files (default 200)\n"
+            + "  --methods <n>             methods per generated file (default 5)\n"
+            + "  --concurrency <n>         maximum concurrent requests (default 16)\n"
+            + "  --retries <n>             retries per snippet (default 3)\n"
+            + "  --no-stream               request non-streaming responses\n"
+            + StubLlmServer.Profile.USAGE;
+
+    public static void main(String[] args) throws IOException {
+        String rulesFile = null;
+        int files = 200;
+        int methods = 5;
+        int concurrency = 16;
+        int retries = 3;
+        boolean stream = true;
+        StubLlmServer.Profile profile = new StubLlmServer.Profile();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (!arg.startsWith("--")) {
+                    rulesFile = arg;
+                    continue;
+                }
+                switch (arg) {
+                    case "--files" -> files = intValue(args, ++i, arg, 1);
+                    case "--methods" -> methods = intValue(args, ++i, arg, 1);
+                    case "--concurrency" -> concurrency = intValue(args, ++i, arg, 1);
+                    case "--retries" -> retries = intValue(args, ++i, arg, 0);
+                    case "--no-stream" -> stream = false;
+                    default -> {
+                        if (i + 1 >= args.length || !profile.apply(arg, args[i + 1])) {
+                            throw new IllegalArgumentException("Unknown option: " + arg);
+                        }
+                        i++;
+                    }
+                }
+            }
+            if (rulesFile == null) {
+                throw new IllegalArgumentException("Expected <rulesFile>");
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("ERROR: " + e.getMessage());
+            System.err.println(USAGE);
+            System.exit(1);
+            return;
+        }
+
+        List<Rule> rules = new RuleReader().readRules(rulesFile);
+        Path corpus = Files.createTempDirectory("bench-corpus");
+        try (StubLlmServer server = new StubLlmServer(0, profile)) {
+            generateCorpus(corpus, files, methods);
+            System.err.println("INFO: Benchmark: " + files + " files x " + methods + " methods, " + rules.size()
+                    + " rules, stub " + profile);
+            AimdLimiter limiter = new AimdLimiter(Math.min(4, concurrency), 1, concurrency, 2.0);
+            AiClient client = new AiClient(server.getEndpoint(), null, "stub", Duration.ofSeconds(30), retries,
+                    limiter, new Backoff(50, 5000));
+            client.setStream(stream);
+
+            long start = System.nanoTime();
+            CodeExtractorService service = new CodeExtractorService(corpus.toString(), rules);
+            AiDispatchSnippetSink sink = new AiDispatchSnippetSink(new DiscardingSink(), client, null, concurrency * 4);
+            long snippets;
+            long extracted;
+            try (sink) {
+                snippets = service.extractAllCandidates(snippet -> {
+                    try {
+                        sink.accept(snippet);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+                extracted = System.nanoTime() - start;
+            }
+            long elapsed = System.nanoTime() - start;
+            report(snippets, extracted, elapsed, sink, client, server);
+        } finally {
+            deleteRecursively(corpus);
+        }
+    }
+
+    private static void report(long snippets, long extracted, long elapsed, AiDispatchSnippetSink sink,
+                               AiClient client, StubLlmServer server) throws IOException {
+        LatencyHistogram latencies = sink.getLatencies();
+        JsonWriter json = new JsonWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        json.setIndent("  ");
+        json.beginObject();
+        json.name("snippets").value(snippets);
+        json.name("judged").value(sink.getJudged());
+        json.name("failed").value(sink.getFailed());
+        json.name("extractionMillis").value(TimeUnit.NANOSECONDS.toMillis(extracted));
+        json.name("completionMillis").value(TimeUnit.NANOSECONDS.toMillis(elapsed));
+        json.name("verdictsPerSecond").value(Math.round(sink.getJudged() * 1e10 / Math.max(1, elapsed)) / 10.0);
+        json.name("latencyP50Millis").value(TimeUnit.NANOSECONDS.toMillis(latencies.percentile(0.5)));
+        json.name("latencyP99Millis").value(TimeUnit.NANOSECONDS.toMillis(latencies.percentile(0.99)));
+        json.name("latencyMaxMillis").value(TimeUnit.NANOSECONDS.toMillis(latencies.getMax()));
+        json.name("requestP50Millis").value(TimeUnit.NANOSECONDS.toMillis(client.getLatencies().percentile(0.5)));
+        json.name("requestP99Millis").value(TimeUnit.NANOSECONDS.toMillis(client.getLatencies().percentile(0.99)));
+        json.name("requests").value(client.getRequests());
+        json.name("retries").value(client.getRetries());
+        json.name("throttled").value(server.getThrottled());
+        json.name("serverErrors").value(server.getErrors());
+        json.name("finalConcurrency").value(client.getLimiter().getLimit());
+        json.endObject();
+        json.flush();
+        System.out.println();
+    }
+
+    /**
+     * 生成合成语料：每个文件一个类，包含字段、常量和若干方法，方法中有循环、日志、锁、线程和异常，
+     * 标识符按文件和方法编号变化，使各片段的代码和提示词互不相同
+     */
+    static void generateCorpus(Path dir, int files, int methods) throws IOException {
+        for (int f = 0; f < files; f++) {
+            String pkg = "bench.p" + (f % 10);
+            Path pkgDir = dir.resolve(pkg.replace('.', '/'));
+            Files.createDirectories(pkgDir);
+            String name = "Generated" + f;
+            StringBuilder code = new StringBuilder()
+                    .append("package ").append(pkg).append(";\n\n")
+                    .append("import java.util.List;\n")
+                    .append("import org.slf4j.Logger;\n")
+                    .append("import org.slf4j.LoggerFactory;\n\n")
+                    .append("/**\n * 生成的压测类 ").append(f).append("\n */\n")
+                    .append("public class ").append(name).append(" {\n")
+                    .append("    private static final Logger log = LoggerFactory.getLogger(").append(name)
+                    .append(".class);\n")
+                    .append("    public static final int LIMIT_").append(f).append(" = ").append(f + 10).append(";\n")
+                    .append("    private final Object lock = new Object();\n")
+                    .append("    private int count").append(f).append(";\n\n");
+            for (int m = 0; m < methods; m++) {
+                String suffix = f + "_" + m;
+                code.append("    /**\n     * 处理第 ").append(m).append(" 批数据\n     */\n")
+                        .append("    public int process").append(suffix).append("(List<String> items) {\n")
+                        .append("        int total").append(suffix).append(" = 0;\n")
+                        .append("        for (String item : items) {\n")
+                        .append("            total").append(suffix).append(" += lookup").append(suffix)
+                        .append("(item).length();\n")
+                        .append("            log.info(\"item \" + item + \" in batch ").append(suffix).append("\");\n")
+                        .append("        }\n")
+                        .append("        synchronized (lock) {\n")
+                        .append("            count").append(f).append(" += total").append(suffix).append(";\n")
+                        .append("        }\n")
+                        .append("        if (total").append(suffix).append(" > LIMIT_").append(f).append(") {\n")
+                        .append("            throw new IllegalStateException(\"limit exceeded in ").append(suffix)
+                        .append("\");\n")
+                        .append("        }\n")
+                        .append("        new Thread(() -> log.debug(\"done ").append(suffix).append("\")).start();\n")
+                        .append("        return total").append(suffix).append(";\n")
+                        .append("    }\n\n")
+                        .append("    private String lookup").append(suffix).append("(String key) {\n")
+                        .append("        return key + \"").append(suffix).append("\";\n")
+                        .append("    }\n\n");
+            }
+            code.append("}\n");
+            Files.writeString(pkgDir.resolve(name + ".java"), code, StandardCharsets.UTF_8);
+        }
+    }
+
+    private static int intValue(String[] args, int index, String option, int min) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + option);
+        }
+        try {
+            int n = Integer.parseInt(args[index]);
+            if (n >= min) {
+                return n;
+            }
+        } catch (NumberFormatException ignored) {
+            // 统一在下面报错
+        }
+        throw new IllegalArgumentException("Invalid value for " + option + ": " + args[index]);
+    }
+
+    private static void deleteRecursively(Path dir) throws IOException {
+        try (Stream<Path> walk = Files.walk(dir)) {
+            for (Path path : walk.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+
+    /**
+     * 丢弃输出，只测分发和判定本身
+     */
+    private static final class DiscardingSink implements SnippetSink {
+        @Override
+        public void accept(Snippet snippet) {
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,340 @@
+package com.example.sonar.ai.bench;
+
+import com.example.sonar.ai.service.PromptBuilder;
+import com.example.sonar.ai.util.Hash64;
+import com.example.sonar.ai.util.TokenEstimator;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 本地模拟的大模型接口，用于压测抽取 + AI 判定流程而不消耗真实额度
+ * 实现 chat/completions 的请求与响应格式：请求 stream=true 时按 SSE 分块返回 delta 并以 [DONE] 结束，
+ * 否则返回完整的 message 和 usage。延迟服从对数正态分布，按比例返回 500，
+ * 超过速率（令牌桶）或并发上限时立即返回 429。模型输出为 AIEngine 要求的判定 JSON，
+ * 是否违规由提示词哈希决定，同一提示词的结果稳定；多规则提示词按规则逐条返回 JSON 数组
+ */
+public class StubLlmServer implements Closeable {
+
+    static final String USAGE = "Usage: StubLlmServer [--port n] [profile options]\n"
+            + Profile.USAGE;
+
+    private static final int CHUNKS = 8;
+    private static final Pattern RULE_HEADING =
+            Pattern.compile("(?m)^" + Pattern.quote(PromptBuilder.RULE_HEADING) + "([^\\]]+)]$");
+
+    private final Profile profile;
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "stub-llm");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong throttled = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+    private double tokens;
+    private long refilledAt = System.nanoTime();
+
+    /**
+     * 在 127.0.0.1 上启动，port 为 0 时使用随机端口
+     */
+    public StubLlmServer(int port, Profile profile) throws IOException {
+        this.profile = profile;
+        this.tokens = Math.max(1, profile.rateLimit);
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 256);
+        server.createContext("/v1/chat/completions", this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public URI getEndpoint() {
+        return URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/v1/chat/completions");
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * 返回 429 的请求数
+     */
+    public long getThrottled() {
+        return throttled.get();
+    }
+
+    /**
+     * 返回 500 的请求数
+     */
+    public long getErrors() {
+        return errors.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            requests.incrementAndGet();
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                send(exchange, 405, "text/plain", "POST only");
+                return;
+            }
+            JsonObject request = JsonParser.parseString(
+                    new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8)).getAsJsonObject();
+            if (!admit()) {
+                throttled.incrementAndGet();
+                send(exchange, 429, "application/json", "{\"error\":{\"message\":\"rate limited\"}}");
+                return;
+            }
+            try {
+                Thread.sleep(profile.sampleLatencyMillis());
+                if (ThreadLocalRandom.current().nextDouble() < profile.errorRate) {
+                    errors.incrementAndGet();
+                    send(exchange, 500, "application/json", "{\"error\":{\"message\":\"internal error\"}}");
+                    return;
+                }
+                String prompt = lastMessage(request);
+                String content = verdict(prompt);
+                JsonElement stream = request.get("stream");
+                if (stream != null && stream.getAsBoolean()) {
+                    stream(exchange, content);
+                } else {
+                    send(exchange, 200, "application/json", completion(prompt, content));
+                }
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            send(exchange, 400, "text/plain", "Bad request: " + e.getMessage());
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * 令牌桶限速和并发上限，通过时占用一个并发名额
+     */
+    private boolean admit() {
+        if (profile.rateLimit > 0) {
+            synchronized (this) {
+                long now = System.nanoTime();
+                tokens = Math.min(Math.max(1, profile.rateLimit),
+                        tokens + (now - refilledAt) / 1e9 * profile.rateLimit);
+                refilledAt = now;
+                if (tokens < 1) {
+                    return false;
+                }
+                tokens--;
+            }
+        }
+        if (inFlight.incrementAndGet() > profile.maxConcurrent && profile.maxConcurrent > 0) {
+            inFlight.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    private String verdict(String prompt) {
+        Matcher heading = RULE_HEADING.matcher(prompt);
+        if (!heading.find()) {
+            return verdict(prompt, null).toString();
+        }
+        JsonArray verdicts = new JsonArray();
+        do {
+            verdicts.add(verdict(prompt, heading.group(1)));
+        } while (heading.find());
+        return verdicts.toString();
+    }
+
+    private JsonObject verdict(String prompt, String ruleId) {
+        long hash = ruleId == null ? Hash64.of(prompt) : Hash64.combine(Hash64.of(prompt), Hash64.of(ruleId));
+        boolean violation = Long.remainderUnsigned(hash, 1000) < profile.violationRate * 1000;
+        JsonObject verdict = new JsonObject();
+        if (ruleId != null) {
+            verdict.addProperty("ruleId", ruleId);
+        }
+        verdict.addProperty("violation", violation);
+        verdict.addProperty("reasoning", violation ? "模拟判定：代码违反规则" : "模拟判定：代码符合规则");
+        verdict.addProperty("message", violation ? "模拟违规" : "OK");
+        return verdict;
+    }
+
+    private static String lastMessage(JsonObject request) {
+        JsonArray messages = request.getAsJsonArray("messages");
+        if (messages == null || messages.isEmpty()) {
+            throw new IllegalArgumentException("messages is required");
+        }
+        return messages.get(messages.size() - 1).getAsJsonObject().get("content").getAsString();
+    }
+
+    private static String completion(String prompt, String content) {
+        JsonObject message = new JsonObject();
+        message.addProperty("role", "assistant");
+        message.addProperty("content", content);
+        JsonObject choice = new JsonObject();
+        choice.addProperty("index", 0);
+        choice.add("message", message);
+        choice.addProperty("finish_reason", "stop");
+        JsonArray choices = new JsonArray();
+        choices.add(choice);
+        JsonObject usage = new JsonObject();
+        usage.addProperty("prompt_tokens", TokenEstimator.estimate(prompt));
+        usage.addProperty("completion_tokens", TokenEstimator.estimate(content));
+        JsonObject response = new JsonObject();
+        response.addProperty("object", "chat.completion");
+        response.add("choices", choices);
+        response.add("usage", usage);
+        return response.toString();
+    }
+
+    private static void stream(HttpExchange exchange, String content) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream; charset=UTF-8");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        int step = Math.max(1, (content.length() + CHUNKS - 1) / CHUNKS);
+        for (int i = 0; i < content.length(); i += step) {
+            JsonObject delta = new JsonObject();
+            delta.addProperty("content", content.substring(i, Math.min(content.length(), i + step)));
+            JsonObject choice = new JsonObject();
+            choice.addProperty("index", 0);
+            choice.add("delta", delta);
+            JsonArray choices = new JsonArray();
+            choices.add(choice);
+            JsonObject chunk = new JsonObject();
+            chunk.addProperty("object", "chat.completion.chunk");
+            chunk.add("choices", choices);
+            out.write(("data: " + chunk + "\n\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        }
+        out.write("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+        out.close();
+    }
+
+    private static void send(HttpExchange exchange, int status, String contentType, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType + "; charset=UTF-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+    }
+
+    /**
+     * 独立运行，直到进程被终止
+     */
+    public static void main(String[] args) throws IOException {
+        Profile profile = new Profile();
+        int port = 8080;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                if ("--port".equals(args[i]) && i + 1 < args.length) {
+                    port = Integer.parseInt(args[++i]);
+                } else if (i + 1 < args.length && profile.apply(args[i], args[i + 1])) {
+                    i++;
+                } else {
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println("ERROR: " + e.getMessage());
+            System.err.println(USAGE);
+            System.exit(1);
+            return;
+        }
+        StubLlmServer server = new StubLlmServer(port, profile);
+        System.err.println("INFO: Stub LLM listening on " + server.getEndpoint() + " (" + profile + ")");
+    }
+
+    /**
+     * 模拟接口的行为参数
+     */
+    public static class Profile {
+
+        static final String USAGE = "  --latency-ms <ms>         median response latency (default 200)\n"
+                + "  --latency-sigma <s>       log-normal sigma of the latency, 0 = constant (default 0.5)\n"
+                + "  --error-rate <r>          fraction of admitted requests answered with HTTP 500 (default 0)\n"
+                + "  --rate-limit <rps>        token bucket rate, 429 beyond it, 0 = unlimited (default 0)\n"
+                + "  --max-concurrent <n>      429 beyond n requests in flight, 0 = unlimited (default 0)\n"
+                + "  --violation-rate <r>      fraction of prompts judged as violations (default 0.2)";
+
+        private double latencyMillis = 200;
+        private double latencySigma = 0.5;
+        private double errorRate;
+        private double rateLimit;
+        private int maxConcurrent;
+        private double violationRate = 0.2;
+
+        /**
+         * 按命令行选项设置参数
+         *
+         * @return 选项不属于模拟接口时返回 false
+         * @throws IllegalArgumentException 值无效
+         */
+        public boolean apply(String option, String value) {
+            try {
+                switch (option) {
+                    case "--latency-ms" -> latencyMillis = nonNegative(Double.parseDouble(value), option);
+                    case "--latency-sigma" -> latencySigma = nonNegative(Double.parseDouble(value), option);
+                    case "--error-rate" -> errorRate = rate(Double.parseDouble(value), option);
+                    case "--rate-limit" -> rateLimit = nonNegative(Double.parseDouble(value), option);
+                    case "--max-concurrent" -> maxConcurrent = (int) nonNegative(Integer.parseInt(value), option);
+                    case "--violation-rate" -> violationRate = rate(Double.parseDouble(value), option);
+                    default -> {
+                        return false;
+                    }
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid value for " + option + ": " + value);
+            }
+            return true;
+        }
+
+        long sampleLatencyMillis() {
+            double factor = latencySigma > 0 ? Math.exp(latencySigma * ThreadLocalRandom.current().nextGaussian()) : 1;
+            return Math.round(latencyMillis * factor);
+        }
+
+        private static double nonNegative(double value, String option) {
+            if (value < 0) {
+                throw new IllegalArgumentException(option + " must not be negative");
+            }
+            return value;
+        }
+
+        private static double rate(double value, String option) {
+            if (value < 0 || value > 1) {
+                throw new IllegalArgumentException("Invalid value for " + option + ": " + value);
+            }
+            return value;
+        }
+
+        @Override
+        public String toString() {
+            return "latency " + latencyMillis + " ms (sigma " + latencySigma + "), error rate " + errorRate
+                    + ", rate limit " + (rateLimit > 0 ? rateLimit + "/s" : "none")
+                    + ", max concurrent " + (maxConcurrent > 0 ? maxConcurrent : "none");
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.example.sonar.ai.client;
+
+import com.example.sonar.ai.util.LatencyHistogram;
+import com.google.gson.Gson;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.net.http.HttpRequest;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * AI 接口客户端
+ * 用 java.net.http.HttpClient 异步发送 OpenAI 兼容的 chat/completions 请求（默认 stream=true），请求头与 AIEngine.callAI 一致；
+ * 200 响应按行交给 {@link SseParser} 增量解析，不缓存完整响应。
+ * 429、5xx、超时和连接失败按带抖动的指数退避重试，等待重试期间归还并发许可；
+ * 并发数由 {@link AimdLimiter} 按延迟和限流信号调整
+ */
+public class AiClient {
+
+    private final HttpClient http;
+    private final URI endpoint;
+    private final String token;
+    private final String model;
+    private final Duration timeout;
+    private final int maxRetries;
+    private final AimdLimiter limiter;
+    private final Backoff backoff;
+    private final Gson gson = new Gson();
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private volatile boolean stream = true;
+
+    /**
+     * @param token      为 null 时不发送 Authorization 头
+     * @param maxRetries 首次请求之后的最大重试次数
+     */
+    public AiClient(URI endpoint, String token, String model, Duration timeout, int maxRetries,
+                    AimdLimiter limiter, Backoff backoff) {
+        this.http = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(10))
+                .build();
+        this.endpoint = endpoint;
+        this.token = token;
+        this.model = model;
+        this.timeout = timeout;
+        this.maxRetries = maxRetries;
+        this.limiter = limiter;
+        this.backoff = backoff;
+    }
+
+    /**
+     * 发送一次对话请求
+     *
+     * @return 模型输出的文本；重试耗尽或不可重试的失败以 IOException 异常完成
+     */
+    public CompletableFuture<String> complete(String systemPrompt, String userPrompt) {
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("model", model);
+        payload.put("messages", List.of(
+                Map.of("role", "system", "content", systemPrompt),
+                Map.of("role", "user", "content", userPrompt)));
+        payload.put("stream", stream);
+        byte[] body = gson.toJson(payload).getBytes(StandardCharsets.UTF_8);
+        return attempt(body, 0);
+    }
+
+    /**
+     * 是否请求流式（SSE）响应，默认 true；两种响应都按行增量解析
+     */
+    public void setStream(boolean stream) {
+        this.stream = stream;
+    }
+
+    /**
+     * 实际发出的 HTTP 请求数（含重试）
+     */
+    public long getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * 重试次数
+     */
+    public long getRetries() {
+        return retries.get();
+    }
+
+    /**
+     * 单次 HTTP 请求的耗时（纳秒，不含等待许可和重试间隔）
+     */
+    public LatencyHistogram getLatencies() {
+        return latencies;
+    }
+
+    public AimdLimiter getLimiter() {
+        return limiter;
+    }
+
+    private CompletableFuture<String> attempt(byte[] body, int attempt) {
+        return limiter.acquire()
+                .thenCompose(ignored -> send(body))
+                .thenCompose(outcome -> {
+                    if (outcome.content() != null) {
+                        return CompletableFuture.completedFuture(outcome.content());
+                    }
+                    if (!outcome.retryable() || attempt >= maxRetries) {
+                        return CompletableFuture.failedFuture(outcome.error());
+                    }
+                    retries.incrementAndGet();
+                    long delay = backoff.delayMillis(attempt, outcome.retryAfterMillis());
+                    return CompletableFuture.runAsync(() -> { },
+                                    CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS))
+                            .thenCompose(ignored -> attempt(body, attempt + 1));
+                });
+    }
+
+    /**
+     * 发送一次请求，并按结果归还许可；网络异常也转换为 Outcome，不以异常完成
+     */
+    private CompletableFuture<Outcome> send(byte[] body) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(endpoint)
+                .timeout(timeout)
+                .header("Content-Type", "application/json; charset=UTF-8")
+                .header("Accept", "text/event-stream, application/json")
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body));
+        if (token != null) {
+            request.header("Authorization", "Bearer " + token);
+        }
+        requests.incrementAndGet();
+        long start = System.nanoTime();
+        CompletableFuture<HttpResponse<String>> response;
+        try {
+            response = http.sendAsync(request.build(), AiClient::bodyHandler);
+        } catch (RuntimeException e) {
+            limiter.onIgnored();
+            return CompletableFuture.failedFuture(e);
+        }
+        return response.handle((result, error) -> {
+            latencies.record(System.nanoTime() - start);
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error;
+                if (cause instanceof HttpTimeoutException) {
+                    limiter.onDropped(start);
+                } else {
+                    limiter.onIgnored();
+                }
+                return new Outcome(null, cause instanceof IOException, 0,
+                        new IOException("AI request failed: " + cause, cause));
+            }
+            int status = result.statusCode();
+            if (status == 200) {
+                limiter.onSuccess(start);
+                return new Outcome(result.body(), false, 0, null);
+            }
+            boolean congested = status == 429 || status >= 500;
+            if (congested) {
+                limiter.onDropped(start);
+            } else {
+                limiter.onIgnored();
+            }
+            return new Outcome(null, congested, retryAfterMillis(result),
+                    new IOException("AI request failed with HTTP " + status + ": " + abbreviate(result.body())));
+        });
+    }
+
+    /**
+     * 200 响应逐行交给 SSE 解析器，其他状态码读取完整的错误信息
+     */
+    private static HttpResponse.BodySubscriber<String> bodyHandler(HttpResponse.ResponseInfo info) {
+        if (info.statusCode() != 200) {
+            return HttpResponse.BodySubscribers.ofString(StandardCharsets.UTF_8);
+        }
+        return HttpResponse.BodySubscribers.fromLineSubscriber(new SseSubscriber(), SseSubscriber::content,
+                StandardCharsets.UTF_8, null);
+    }
+
+    private static long retryAfterMillis(HttpResponse<?> response) {
+        return response.headers().firstValue("Retry-After").map(value -> {
+            try {
+                return TimeUnit.SECONDS.toMillis(Long.parseLong(value.trim()));
+            } catch (NumberFormatException e) {
+                // HTTP 日期格式不处理，按退避时间等待
+                return 0L;
+            }
+        }).orElse(0L);
+    }
+
+    private static String abbreviate(String text) {
+        return text == null || text.length() <= 200 ? text : text.substring(0, 200) + "...";
+    }
+
+    /**
+     * 一次请求的结果，content 与 error 二者之一非空
+     */
+    private record Outcome(String content, boolean retryable, long retryAfterMillis, IOException error) {
+    }
+
+    private static final class SseSubscriber implements Flow.Subscriber<String> {
+        private final SseParser parser = new SseParser();
+
+        @Override
+        public void onSubscribe(Flow.Subscription subscription) {
+            subscription.request(Long.MAX_VALUE);
+        }
+
+        @Override
+        public void onNext(String line) {
+            parser.line(line);
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            // 由 sendAsync 返回的 future 报告
+        }
+
+        @Override
+        public void onComplete() {
+        }
+
+        private String content() {
+            return parser.content();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.sonar.ai.client;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * AIMD 并发限制器
+ * 并发上限 limit 在 [min, max] 之间自适应：请求成功且平滑延迟不超过基线的 tolerance 倍时加性增长（每个窗口约 +1），
+ * 超过该倍数（排队导致延迟上升）时按 0.9 轻度收缩，429/5xx/超时按 0.5 乘性收缩。
+ * 平滑延迟为延迟的指数移动平均，基线为预热后平滑延迟的最低值；模型输出长短不一，单次延迟波动大，不直接比较。
+ * 收缩之前发出的请求再失败时不重复收缩，避免一批在途请求同时失败把上限压到底。
+ * 许可以 CompletableFuture 发放，等待许可不占用线程
+ */
+public class AimdLimiter {
+
+    private static final double DROP_RATIO = 0.5;
+    private static final double SLOW_RATIO = 0.9;
+    private static final double SMOOTHING = 0.1;
+    private static final int WARMUP = 10;
+
+    private final int min;
+    private final int max;
+    private final double tolerance;
+    private final Deque<CompletableFuture<Void>> waiters = new ArrayDeque<>();
+    private double limit;
+    private int inFlight;
+    private double smoothedNanos;
+    private double baselineNanos = Double.MAX_VALUE;
+    private long samples;
+    private boolean decreased;
+    private long lastDecrease;
+
+    /**
+     * @param tolerance 平滑延迟超过基线的这个倍数时视为拥塞
+     */
+    public AimdLimiter(int initial, int min, int max, double tolerance) {
+        if (min < 1 || max < min) {
+            throw new IllegalArgumentException("Invalid concurrency range: " + min + ".." + max);
+        }
+        this.min = min;
+        this.max = max;
+        this.tolerance = tolerance;
+        this.limit = Math.max(min, Math.min(max, initial));
+    }
+
+    /**
+     * 申请一个许可，在途请求数低于上限时立即完成，否则排队
+     */
+    public CompletableFuture<Void> acquire() {
+        CompletableFuture<Void> permit = new CompletableFuture<>();
+        synchronized (this) {
+            if (!waiters.isEmpty() || inFlight >= (int) limit) {
+                waiters.add(permit);
+                return permit;
+            }
+            inFlight++;
+        }
+        permit.complete(null);
+        return permit;
+    }
+
+    /**
+     * 请求成功，按延迟调整上限并归还许可
+     *
+     * @param startNanos 请求发出时的 System.nanoTime()
+     */
+    public void onSuccess(long startNanos) {
+        long now = System.nanoTime();
+        long latency = now - startNanos;
+        List<CompletableFuture<Void>> granted;
+        synchronized (this) {
+            smoothedNanos = samples++ == 0 ? latency : smoothedNanos + SMOOTHING * (latency - smoothedNanos);
+            if (samples >= WARMUP) {
+                baselineNanos = Math.min(baselineNanos, smoothedNanos);
+            }
+            if (smoothedNanos > baselineNanos * tolerance) {
+                decrease(startNanos, now, SLOW_RATIO);
+            } else {
+                limit = Math.min(max, limit + 1 / limit);
+            }
+            granted = release();
+        }
+        grant(granted);
+    }
+
+    /**
+     * 请求被限流、服务端出错或超时，乘性收缩上限并归还许可
+     */
+    public void onDropped(long startNanos) {
+        List<CompletableFuture<Void>> granted;
+        synchronized (this) {
+            decrease(startNanos, System.nanoTime(), DROP_RATIO);
+            granted = release();
+        }
+        grant(granted);
+    }
+
+    /**
+     * 与拥塞无关的失败（如 4xx、连接被拒绝），只归还许可
+     */
+    public void onIgnored() {
+        List<CompletableFuture<Void>> granted;
+        synchronized (this) {
+            granted = release();
+        }
+        grant(granted);
+    }
+
+    /**
+     * 当前并发上限
+     */
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * 在途请求数
+     */
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    private void decrease(long startNanos, long now, double ratio) {
+        if (decreased && startNanos - lastDecrease <= 0) {
+            return;
+        }
+        limit = Math.max(min, limit * ratio);
+        decreased = true;
+        lastDecrease = now;
+    }
+
+    private List<CompletableFuture<Void>> release() {
+        inFlight--;
+        List<CompletableFuture<Void>> granted = new ArrayList<>();
+        while (!waiters.isEmpty() && inFlight < (int) limit) {
+            inFlight++;
+            granted.add(waiters.poll());
+        }
+        return granted;
+    }
+
+    /**
+     * 在锁外完成许可，后续回调不在持锁时执行
+     */
+    private static void grant(List<CompletableFuture<Void>> granted) {
+        for (CompletableFuture<Void> permit : granted) {
+            permit.complete(null);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.sonar.ai.client;
+
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 带抖动的指数退避（full jitter）
+ * 第 n 次重试（从 0 开始）等待 [0, min(cap, base * 2^n)) 内的随机时长，避免大量请求在同一时刻重试；
+ * 服务端给出 Retry-After 时取两者较大值
+ */
+public class Backoff {
+
+    private final long baseMillis;
+    private final long capMillis;
+    private final Random random;
+
+    public Backoff(long baseMillis, long capMillis) {
+        this(baseMillis, capMillis, null);
+    }
+
+    /**
+     * @param random 为 null 时使用 ThreadLocalRandom
+     */
+    public Backoff(long baseMillis, long capMillis, Random random) {
+        this.baseMillis = baseMillis;
+        this.capMillis = capMillis;
+        this.random = random;
+    }
+
+    /**
+     * @param retryAfterMillis 服务端要求的最短等待时间，没有时为 0
+     */
+    public long delayMillis(int attempt, long retryAfterMillis) {
+        long ceiling = Math.min(capMillis, baseMillis << Math.min(attempt, 30));
+        long jitter = ceiling <= 0 ? 0 : (random != null ? random : ThreadLocalRandom.current()).nextLong(ceiling);
+        return Math.max(jitter, retryAfterMillis);
+    }
+}
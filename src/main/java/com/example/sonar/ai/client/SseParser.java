@@ -0,0 +1,87 @@
+package com.example.sonar.ai.client;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * 模型响应的增量解析器
+ * 按行接收响应体：data: 行的 JSON 取 choices[0].delta.content（或 message.content）依次拼接，[DONE] 表示结束；
+ * 整个响应没有 data: 行时视为普通 JSON 响应，取 choices[0].message.content，无法解析时返回原文，
+ * 与 AIEngine.parseSseResponse 的结果一致。只保留拼接后的内容，不缓存完整响应
+ */
+public class SseParser {
+
+    private final StringBuilder content = new StringBuilder();
+    // 尚未出现 data: 行时的原始内容，出现后丢弃
+    private StringBuilder raw = new StringBuilder();
+    private boolean done;
+
+    /**
+     * 接收一行（不含行分隔符）
+     */
+    public void line(String line) {
+        String trimmed = line.trim();
+        if (!trimmed.startsWith("data:")) {
+            if (raw != null) {
+                raw.append(line).append('\n');
+            }
+            return;
+        }
+        raw = null;
+        String data = trimmed.substring(5).trim();
+        if (data.isEmpty() || done) {
+            return;
+        }
+        if ("[DONE]".equals(data)) {
+            done = true;
+            return;
+        }
+        String part = choiceContent(data, "delta");
+        if (part == null) {
+            part = choiceContent(data, "message");
+        }
+        if (part != null) {
+            content.append(part);
+        }
+    }
+
+    /**
+     * 是否已收到 [DONE]
+     */
+    public boolean isDone() {
+        return done;
+    }
+
+    /**
+     * 拼接后的模型输出，去掉首尾空白
+     */
+    public String content() {
+        if (raw == null) {
+            return content.toString().trim();
+        }
+        String text = raw.toString().trim();
+        String message = choiceContent(text, "message");
+        return message != null ? message.trim() : text;
+    }
+
+    private static String choiceContent(String json, String field) {
+        try {
+            JsonElement root = JsonParser.parseString(json);
+            if (!root.isJsonObject() || !root.getAsJsonObject().has("choices")) {
+                return null;
+            }
+            JsonElement choices = root.getAsJsonObject().get("choices");
+            if (!choices.isJsonArray() || choices.getAsJsonArray().isEmpty()) {
+                return null;
+            }
+            JsonElement choice = choices.getAsJsonArray().get(0);
+            JsonElement part = choice.isJsonObject() ? choice.getAsJsonObject().get(field) : null;
+            JsonElement text = part != null && part.isJsonObject() ? ((JsonObject) part).get("content") : null;
+            return text == null || text.isJsonNull() ? null : text.getAsString();
+        } catch (RuntimeException e) {
+            // 不完整或非 JSON 的数据行忽略
+            return null;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.sonar.ai.client;
+
+import com.example.sonar.ai.model.Verdict;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 把模型输出解析为判定结果
+ * 与 AIEngine.cleanAndParseJson 一致：截取第一个 '{' 到最后一个 '}'，把单引号包裹的 reasoning 改为双引号后按 JSON 解析；
+ * 解析失败时用正则提取 violation 和 reasoning，message 取规则的违规报错信息。
+ * 多规则判定的输出为按 ruleId 排列的 JSON 数组，逐项按同样的方式解析
+ */
+public final class VerdictParser {
+
+    private static final Pattern QUOTED_REASONING =
+            Pattern.compile("(?s)\"reasoning\"\\s*:\\s*[‘'](.*?)[’']\\s*,\\s*\"message\"");
+    private static final Pattern VIOLATION = Pattern.compile("\"violation\"\\s*:\\s*(true|false)");
+    private static final Pattern REASONING =
+            Pattern.compile("(?s)\"reasoning\"\\s*:\\s*[\"'‘]?\\s*(.*?)\\s*[\"'’]?\\s*,\\s*\"message\"");
+
+    private VerdictParser() {
+    }
+
+    /**
+     * @param defaultMessage 正则兜底时使用的 message
+     * @return 判定结果，无法识别 violation 时返回 null
+     */
+    public static Verdict parse(String text, String defaultMessage, long judgedAt) {
+        if (text == null) {
+            return null;
+        }
+        int start = text.indexOf('{');
+        int end = text.lastIndexOf('}');
+        if (start < 0 || end < start) {
+            return null;
+        }
+        String fixed = fixQuotes(text.substring(start, end + 1));
+        try {
+            Verdict verdict = verdict(JsonParser.parseString(fixed).getAsJsonObject(), judgedAt);
+            if (verdict != null) {
+                return verdict;
+            }
+        } catch (RuntimeException e) {
+            // 按正则兜底
+        }
+        return fallback(fixed, defaultMessage, judgedAt);
+    }
+
+    /**
+     * 解析多规则判定的输出
+     *
+     * @param defaultMessages ruleId 到违规报错信息，模型未填 message 时使用
+     * @return ruleId 到判定结果，只含能识别 violation 的项；整体无法解析时为空
+     */
+    public static Map<String, Verdict> parseByRule(String text, Map<String, String> defaultMessages, long judgedAt) {
+        Map<String, Verdict> verdicts = new LinkedHashMap<>();
+        if (text == null) {
+            return verdicts;
+        }
+        int start = text.indexOf('[');
+        int end = text.lastIndexOf(']');
+        if (start < 0 || end < start) {
+            return verdicts;
+        }
+        JsonArray items;
+        try {
+            items = JsonParser.parseString(fixQuotes(text.substring(start, end + 1))).getAsJsonArray();
+        } catch (RuntimeException e) {
+            return verdicts;
+        }
+        for (JsonElement item : items) {
+            if (!item.isJsonObject()) {
+                continue;
+            }
+            JsonObject object = item.getAsJsonObject();
+            String ruleId = string(object, "ruleId");
+            Verdict verdict = ruleId == null ? null : verdict(object, judgedAt);
+            if (verdict != null) {
+                if (verdict.getMessage() == null) {
+                    verdict = new Verdict(verdict.getViolation(), verdict.getReasoning(),
+                            defaultMessages.get(ruleId), judgedAt);
+                }
+                verdicts.putIfAbsent(ruleId, verdict);
+            }
+        }
+        return verdicts;
+    }
+
+    /**
+     * 把单引号包裹的 reasoning 改为双引号
+     */
+    private static String fixQuotes(String json) {
+        Matcher quoted = QUOTED_REASONING.matcher(json);
+        StringBuilder fixed = new StringBuilder();
+        while (quoted.find()) {
+            String reasoning = quoted.group(1).replace("\"", "'");
+            quoted.appendReplacement(fixed,
+                    Matcher.quoteReplacement("\"reasoning\": \"" + reasoning + "\", \"message\""));
+        }
+        quoted.appendTail(fixed);
+        return fixed.toString();
+    }
+
+    private static Verdict verdict(JsonObject object, long judgedAt) {
+        JsonElement violation = object.get("violation");
+        if (violation == null || !violation.isJsonPrimitive()) {
+            return null;
+        }
+        return new Verdict(violation.getAsBoolean(), string(object, "reasoning"), string(object, "message"),
+                judgedAt);
+    }
+
+    private static Verdict fallback(String json, String defaultMessage, long judgedAt) {
+        Matcher violation = VIOLATION.matcher(json);
+        if (!violation.find()) {
+            return null;
+        }
+        Matcher reasoning = REASONING.matcher(json);
+        String reason = reasoning.find() ? reasoning.group(1).replace("\"", "'") : "AI 结果格式异常";
+        return new Verdict(Boolean.parseBoolean(violation.group(1)), reason, defaultMessage, judgedAt);
+    }
+
+    private static String string(JsonObject object, String field) {
+        JsonElement element = object.get(field);
+        return element == null || element.isJsonNull() ? null : element.getAsString();
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.sonar.ai.evaluator;
+
+import com.example.sonar.ai.model.Snippet;
+import com.example.sonar.ai.model.Verdict;
+
+/**
+ * 构造方法和重载方法的连续性判定，对应 ExtractClassContructionOverrideHandler 抽取的片段：
+ * handler 遍历类成员时已确认不连续，只为违规位置生成片段，名称即为结论
+ */
+public class DeclarationOrderEvaluator implements LocalEvaluator {
+
+    @Override
+    public Verdict evaluate(Snippet snippet, String code) {
+        String name = snippet.getName();
+        if (name == null || !name.endsWith("未连续出现")) {
+            return null;
+        }
+        return new Verdict(true, name + "，多个构造方法或同名方法之间放置了其它成员", snippet.getRuleCriteria(), 0);
+    }
+}
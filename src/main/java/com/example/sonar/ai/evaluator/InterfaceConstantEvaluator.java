@@ -0,0 +1,46 @@
+package com.example.sonar.ai.evaluator;
+
+import com.example.sonar.ai.model.Snippet;
+import com.example.sonar.ai.model.Verdict;
+import com.github.javaparser.ParseProblemException;
+import com.github.javaparser.StaticJavaParser;
+import com.github.javaparser.ast.body.BodyDeclaration;
+import com.github.javaparser.ast.body.FieldDeclaration;
+import com.github.javaparser.ast.body.VariableDeclarator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 接口字段判定，对应 ExtractInterfaceFieldHandler 抽取的片段：
+ * 非字面量初始化的字段不是基础常量，字段名不是全大写下划线形式不符合常量命名，两者都不满足时判为违规
+ */
+public class InterfaceConstantEvaluator implements LocalEvaluator {
+
+    @Override
+    public Verdict evaluate(Snippet snippet, String code) {
+        BodyDeclaration<?> declaration;
+        try {
+            declaration = StaticJavaParser.parseBodyDeclaration(code);
+        } catch (ParseProblemException e) {
+            return null;
+        }
+        if (!(declaration instanceof FieldDeclaration field)) {
+            return null;
+        }
+        List<String> problems = new ArrayList<>();
+        for (VariableDeclarator variable : field.getVariables()) {
+            String name = variable.getNameAsString();
+            if (variable.getInitializer().isEmpty() || !variable.getInitializer().get().isLiteralExpr()) {
+                problems.add("接口字段 " + name + " 不是基础常量（非字面量初始化）");
+            } else if (!name.matches("[A-Z0-9_]+")) {
+                problems.add("接口字段 " + name + " 命名不符合基础常量规范（应为全大写下划线）");
+            }
+        }
+        if (problems.isEmpty()) {
+            return new Verdict(false, "接口字段均为字面量初始化且命名为全大写下划线的基础常量", "OK", 0);
+        }
+        return new Verdict(true, "接口中只应定义整个应用的基础常量：" + String.join("；", problems),
+                snippet.getRuleCriteria(), 0);
+    }
+}
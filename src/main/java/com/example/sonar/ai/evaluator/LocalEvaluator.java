@@ -0,0 +1,19 @@
+package com.example.sonar.ai.evaluator;
+
+import com.example.sonar.ai.model.Snippet;
+import com.example.sonar.ai.model.Verdict;
+
+/**
+ * 本地判定器
+ * 能够静态确定结论的规则不再交给 AI，由判定器直接给出与 AI 输出格式相同的判定结果
+ */
+public interface LocalEvaluator {
+
+    /**
+     * 判定片段
+     *
+     * @param code 片段代码，引用模式下已按范围从源文件读出
+     * @return 判定结果（judgedAt 由调用方填写），无法确定时返回 null，片段仍交给 AI
+     */
+    Verdict evaluate(Snippet snippet, String code);
+}
@@ -0,0 +1,62 @@
+package com.example.sonar.ai.evaluator;
+
+import com.example.sonar.ai.model.Rule;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 本地判定器注册表
+ * 内置判定器按 ruleId 注册；规则文件中可以用 evaluator 指定判定器类名（实现 LocalEvaluator，带无参构造方法），
+ * 或写 none 关闭内置判定器
+ */
+public final class LocalEvaluators {
+
+    static final String NONE = "none";
+
+    private static final Map<String, LocalEvaluator> BUILTIN = new HashMap<>();
+
+    static {
+        BUILTIN.put("RULE-010", new DeclarationOrderEvaluator());
+        BUILTIN.put("RULE-011", new NamingEvaluator());
+        BUILTIN.put("RULE-014", new InterfaceConstantEvaluator());
+        BUILTIN.put("RULE-024", new ThrowMessageEvaluator());
+    }
+
+    private LocalEvaluators() {
+    }
+
+    /**
+     * 规则 id 到判定器，没有判定器的规则不出现在结果中
+     *
+     * @throws IllegalArgumentException 规则指定的判定器类无法加载或不是 LocalEvaluator
+     */
+    public static Map<String, LocalEvaluator> forRules(List<Rule> rules) {
+        Map<String, LocalEvaluator> evaluators = new HashMap<>();
+        for (Rule rule : rules) {
+            String name = rule.getEvaluator();
+            if (name == null) {
+                LocalEvaluator builtin = BUILTIN.get(rule.getId());
+                if (builtin != null) {
+                    evaluators.put(rule.getId(), builtin);
+                }
+            } else if (!NONE.equals(name)) {
+                evaluators.put(rule.getId(), load(name, rule.getId()));
+            }
+        }
+        return evaluators;
+    }
+
+    private static LocalEvaluator load(String className, String ruleId) {
+        try {
+            Object evaluator = Class.forName(className).getDeclaredConstructor().newInstance();
+            if (evaluator instanceof LocalEvaluator local) {
+                return local;
+            }
+            throw new IllegalArgumentException(className + " is not a LocalEvaluator (" + ruleId + ")");
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalArgumentException("Cannot load evaluator " + className + " for " + ruleId, e);
+        }
+    }
+}
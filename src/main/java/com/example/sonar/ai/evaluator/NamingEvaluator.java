@@ -0,0 +1,30 @@
+package com.example.sonar.ai.evaluator;
+
+import com.example.sonar.ai.model.Snippet;
+import com.example.sonar.ai.model.Verdict;
+import com.example.sonar.ai.util.NameTokenizer;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 命名的词法判定：拆分后每个 token 都只有一个字符的名称（如 a、x_y）不具有描述性，判为违规；
+ * 循环下标、异常变量等约定俗成的单字母名称和其它名称无法仅凭词法确定，仍交给 AI
+ */
+public class NamingEvaluator implements LocalEvaluator {
+
+    private static final Set<String> CONVENTIONAL = Set.of("i", "j", "k", "e", "t", "x", "y", "_");
+
+    @Override
+    public Verdict evaluate(Snippet snippet, String code) {
+        String name = snippet.getName();
+        if (name == null || CONVENTIONAL.contains(name)) {
+            return null;
+        }
+        List<String> tokens = NameTokenizer.tokenize(name);
+        if (tokens.isEmpty() || tokens.stream().anyMatch(token -> token.length() > 1)) {
+            return null;
+        }
+        return new Verdict(true, "名称 " + name + " 只由单个字符组成，无法表达其代表的含义", snippet.getRuleCriteria(), 0);
+    }
+}
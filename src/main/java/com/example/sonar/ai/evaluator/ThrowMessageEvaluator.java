@@ -0,0 +1,20 @@
+package com.example.sonar.ai.evaluator;
+
+import com.example.sonar.ai.model.Snippet;
+import com.example.sonar.ai.model.Verdict;
+
+/**
+ * 异常描述信息判定，对应 ExtractThrowHandler 抽取的片段（名称为异常的 message 参数）：
+ * 描述为空时判为违规，有描述时是否足够详细仍交给 AI
+ */
+public class ThrowMessageEvaluator implements LocalEvaluator {
+
+    @Override
+    public Verdict evaluate(Snippet snippet, String code) {
+        String message = snippet.getName();
+        if (message == null || !message.isBlank()) {
+            return null;
+        }
+        return new Verdict(true, "主动抛出的异常描述信息为空", snippet.getRuleCriteria(), 0);
+    }
+}
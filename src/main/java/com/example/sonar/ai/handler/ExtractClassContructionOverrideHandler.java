@@ -2,9 +2,9 @@ package com.example.sonar.ai.handler;
 
 import com.example.sonar.ai.model.Rule;
 import com.example.sonar.ai.model.Snippet;
+import com.example.sonar.ai.parser.ExtractionContext;
 import com.github.javaparser.ast.body.*;
 
-import java.io.File;
 import java.util.*;
 
 /**
@@ -14,18 +14,18 @@ import java.util.*;
 public class ExtractClassContructionOverrideHandler extends Handler {
 
     @Override
-    public void extract(TypeDeclaration<?> node, Rule rule, File file, List<Snippet> snippets) {
+    public void extract(TypeDeclaration<?> node, Rule rule, ExtractionContext context, List<Snippet> snippets) {
         if (node instanceof ClassOrInterfaceDeclaration cid) {
             List<BodyDeclaration<?>> members = cid.getMembers();
-            checkConstructors(cid, members, rule, file, snippets);
-            checkOverloadedMethods(cid, members, rule, file, snippets);
+            checkConstructors(cid, members, rule, context, snippets);
+            checkOverloadedMethods(cid, members, rule, context, snippets);
         }
     }
 
     private static void checkConstructors(
             ClassOrInterfaceDeclaration clazz,
             List<BodyDeclaration<?>> members,
-            Rule rule, File file, List<Snippet> snippets) {
+            Rule rule, ExtractionContext context, List<Snippet> snippets) {
         String className = clazz.getNameAsString();
         boolean inCtorBlock = false;
         boolean ctorBlockClosed = false;
@@ -35,7 +35,7 @@ public class ExtractClassContructionOverrideHandler extends Handler {
                     int line = member.getRange()
                             .map(r -> r.begin.line)
                             .orElse(-1);
-                    snippets.add(new Snippet(rule, file, line, member.toString().trim(), "类" + className + "中构造函数未连续出现", "CLASS_DECLARATION"));
+                    snippets.add(new Snippet(rule, context.getFile(), line, context.slice(member), "类" + className + "中构造函数未连续出现", "CLASS_DECLARATION"));
                     return;
                 }
                 inCtorBlock = true;
@@ -49,7 +49,7 @@ public class ExtractClassContructionOverrideHandler extends Handler {
     private static void checkOverloadedMethods(
             ClassOrInterfaceDeclaration clazz,
             List<BodyDeclaration<?>> members,
-            Rule rule, File file, List<Snippet> snippets) {
+            Rule rule, ExtractionContext context, List<Snippet> snippets) {
         String className = clazz.getNameAsString();
         String currentName = null;
         Set<String> finishedNames = new HashSet<>();
@@ -68,7 +68,7 @@ public class ExtractClassContructionOverrideHandler extends Handler {
                 int line = member.getRange()
                         .map(r -> r.begin.line)
                         .orElse(-1);
-                snippets.add(new Snippet(rule, file, line, method.toString().trim(), "类" + className + "中重载方法未连续出现", "CLASS_DECLARATION"));
+                snippets.add(new Snippet(rule, context.getFile(), line, context.slice(method), "类" + className + "中重载方法未连续出现", "CLASS_DECLARATION"));
             }
             // 新的连续块开始
             if (currentName == null) {
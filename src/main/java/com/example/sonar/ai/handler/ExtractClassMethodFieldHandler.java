@@ -2,9 +2,9 @@ package com.example.sonar.ai.handler;
 
 import com.example.sonar.ai.model.Rule;
 import com.example.sonar.ai.model.Snippet;
+import com.example.sonar.ai.parser.ExtractionContext;
 import com.github.javaparser.ast.body.*;
 
-import java.io.File;
 import java.util.List;
 
 /**
@@ -14,7 +14,7 @@ import java.util.List;
 public class ExtractClassMethodFieldHandler extends Handler {
 
     @Override
-    public void extract(TypeDeclaration<?> node, Rule rule, File file, List<Snippet> snippets) {
+    public void extract(TypeDeclaration<?> node, Rule rule, ExtractionContext context, List<Snippet> snippets) {
         if (node instanceof ClassOrInterfaceDeclaration) {
             StringBuilder cleanCode = new StringBuilder();
             int line = node.getRange()
@@ -25,7 +25,7 @@ public class ExtractClassMethodFieldHandler extends Handler {
             node.getMembers().forEach(member -> {
                 if (member instanceof FieldDeclaration field) {
                     cleanCode.append("    ")
-                            .append(field.toString().trim())
+                            .append(context.slice(field))
                             .append("\n");
                 }
 
@@ -41,7 +41,7 @@ public class ExtractClassMethodFieldHandler extends Handler {
                             .append("\n");
                 }
             });
-            snippets.add(new Snippet(rule, file, line, cleanCode.toString(), classDeclaration, "CLASS_DECLARATION"));
+            snippets.add(new Snippet(rule, context.getFile(), line, cleanCode.toString(), classDeclaration, "CLASS_DECLARATION"));
         }
     }
 
@@ -2,11 +2,11 @@ package com.example.sonar.ai.handler;
 
 import com.example.sonar.ai.model.Rule;
 import com.example.sonar.ai.model.Snippet;
+import com.example.sonar.ai.parser.ExtractionContext;
 import com.example.sonar.ai.util.NameTokenizer;
 import com.github.javaparser.ast.body.*;
 import com.github.javaparser.ast.expr.Expression;
 
-import java.io.File;
 import java.util.List;
 
 /**
@@ -16,7 +16,13 @@ import java.util.List;
 public class ExtractClassMethodVariableHandler extends Handler {
 
     @Override
-    public void extract(TypeDeclaration<?> node, Rule rule, File file, List<Snippet> snippets) {
+    public boolean isRuleIndependent() {
+        // 声明字符串和命名拆分只取决于节点，多条命名规则共享同一份结果
+        return true;
+    }
+
+    @Override
+    public void extract(TypeDeclaration<?> node, Rule rule, ExtractionContext context, List<Snippet> snippets) {
         int line = node.getName().getBegin().map(p -> p.line).orElse(
                 node.getBegin().map(p -> p.line).orElse(1));
         StringBuilder sb = new StringBuilder();
@@ -43,11 +49,11 @@ public class ExtractClassMethodVariableHandler extends Handler {
         String codeWithTokens = sb.toString() + "\n"
                 + NameTokenizer.formatTokens(NameTokenizer.tokenize(node.getNameAsString()));
 
-        snippets.add(new Snippet(rule, file, line, codeWithTokens, node.getNameAsString(), "CLASS_DECLARATION"));
+        snippets.add(new Snippet(rule, context.getFile(), line, codeWithTokens, node.getNameAsString(), "CLASS_DECLARATION"));
     }
 
     @Override
-    public void extract(MethodDeclaration node, Rule rule, File file, List<Snippet> snippets) {
+    public void extract(MethodDeclaration node, Rule rule, ExtractionContext context, List<Snippet> snippets) {
         int line = node.getName().getBegin().map(p -> p.line).orElse(
                 node.getBegin().map(p -> p.line).orElse(1));
         String cleanCode = node.getDeclarationAsString(true, true, true);
@@ -56,11 +62,11 @@ public class ExtractClassMethodVariableHandler extends Handler {
         String codeWithTokens = cleanCode + "\n"
                 + NameTokenizer.formatTokens(NameTokenizer.tokenize(node.getNameAsString()));
 
-        snippets.add(new Snippet(rule, file, line, codeWithTokens, node.getNameAsString(), "METHOD_DECLARATION"));
+        snippets.add(new Snippet(rule, context.getFile(), line, codeWithTokens, node.getNameAsString(), "METHOD_DECLARATION"));
     }
 
     @Override
-    public void extract(VariableDeclarator node, Rule rule, File file, List<Snippet> snippets) {
+    public void extract(VariableDeclarator node, Rule rule, ExtractionContext context, List<Snippet> snippets) {
         int line = node.getName().getBegin().map(p -> p.line).orElse(
                 node.getBegin().map(p -> p.line).orElse(1));
         String type = node.getType().toString();
@@ -76,6 +82,6 @@ public class ExtractClassMethodVariableHandler extends Handler {
         String codeWithTokens = result + "\n"
                 + NameTokenizer.formatTokens(NameTokenizer.tokenize(node.getNameAsString()));
 
-        snippets.add(new Snippet(rule, file, line, codeWithTokens, node.getNameAsString(), "VARIABLE_DECLARATION"));
+        snippets.add(new Snippet(rule, context.getFile(), line, codeWithTokens, node.getNameAsString(), "VARIABLE_DECLARATION"));
     }
 }
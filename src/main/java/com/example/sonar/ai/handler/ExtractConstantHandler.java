@@ -2,11 +2,11 @@ package com.example.sonar.ai.handler;
 
 import com.example.sonar.ai.model.Rule;
 import com.example.sonar.ai.model.Snippet;
+import com.example.sonar.ai.parser.ExtractionContext;
 import com.github.javaparser.ast.Modifier;
 import com.github.javaparser.ast.body.FieldDeclaration;
 import com.github.javaparser.ast.body.VariableDeclarator;
 
-import java.io.File;
 import java.util.List;
 
 /**
@@ -15,7 +15,7 @@ import java.util.List;
  */
 public class ExtractConstantHandler extends Handler {
 
-    public void extract(FieldDeclaration field, Rule rule, File file, List<Snippet> snippets) {
+    public void extract(FieldDeclaration field, Rule rule, ExtractionContext context, List<Snippet> snippets) {
         // 只抽取static final
         if (field.hasModifier(Modifier.Keyword.STATIC)
                 && field.hasModifier(Modifier.Keyword.FINAL)) {
@@ -36,7 +36,7 @@ public class ExtractConstantHandler extends Handler {
                         name,
                         value
                 );
-                snippets.add(new Snippet(rule, file, line, result, name, "FIELD_DECLARATION"));
+                snippets.add(new Snippet(rule, context.getFile(), line, result, name, "FIELD_DECLARATION"));
             }
         }
     }
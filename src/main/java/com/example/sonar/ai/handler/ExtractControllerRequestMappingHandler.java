@@ -2,11 +2,11 @@ package com.example.sonar.ai.handler;
 
 import com.example.sonar.ai.model.Rule;
 import com.example.sonar.ai.model.Snippet;
+import com.example.sonar.ai.parser.ExtractionContext;
 import com.github.javaparser.ast.body.MethodDeclaration;
 import com.github.javaparser.ast.body.TypeDeclaration;
 import com.github.javaparser.ast.expr.*;
 
-import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -17,7 +17,7 @@ import java.util.List;
 public class ExtractControllerRequestMappingHandler extends Handler {
 
     @Override
-    public void extract(TypeDeclaration<?> node, Rule rule, File file, List<Snippet> snippets) {
+    public void extract(TypeDeclaration<?> node, Rule rule, ExtractionContext context, List<Snippet> snippets) {
         List<String> classPaths = List.of("");
 
         for (AnnotationExpr ann : node.getAnnotations()) {
@@ -40,7 +40,7 @@ public class ExtractControllerRequestMappingHandler extends Handler {
                 for (String cp : classPaths) {
                     for (String mp : methodPaths) {
                         String fullPath = normalize(cp, mp);
-                        snippets.add(new Snippet(rule, file, line, fullPath, methodName, "CLASS_DECLARATION"));
+                        snippets.add(new Snippet(rule, context.getFile(), line, fullPath, methodName, "CLASS_DECLARATION"));
                     }
                 }
             }
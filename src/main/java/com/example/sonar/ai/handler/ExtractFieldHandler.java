@@ -2,6 +2,7 @@ package com.example.sonar.ai.handler;
 
 import com.example.sonar.ai.model.Rule;
 import com.example.sonar.ai.model.Snippet;
+import com.example.sonar.ai.parser.ExtractionContext;
 import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
 import com.github.javaparser.ast.body.FieldDeclaration;
 import com.github.javaparser.ast.body.MethodDeclaration;
@@ -12,7 +13,6 @@ import com.github.javaparser.ast.expr.NameExpr;
 import com.github.javaparser.ast.stmt.BlockStmt;
 import com.github.javaparser.ast.stmt.ReturnStmt;
 
-import java.io.File;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -24,7 +24,7 @@ import java.util.Map;
  */
 public class ExtractFieldHandler extends Handler {
 
-    public void extract(FieldDeclaration node, Rule rule, File file, List<Snippet> snippets) {
+    public void extract(FieldDeclaration node, Rule rule, ExtractionContext context, List<Snippet> snippets) {
         Map<String, FieldAccessInfo> fieldMap = new LinkedHashMap<>();
         // 1. 收集成员变量
         node.getVariables().forEach(var -> {
@@ -47,7 +47,7 @@ public class ExtractFieldHandler extends Handler {
                     String message = "成员变量" + info.fieldName +
                             "，set方法 " + methodName(info.setter) +
                             "，get方法 " + methodName(info.getter);
-                    snippets.add(new Snippet(rule, file, line, info.fd.toString(), message, "FIELD_DECLARATION"));
+                    snippets.add(new Snippet(rule, context.getFile(), line, context.slice(info.fd), message, "FIELD_DECLARATION"));
                 }
         );
     }
@@ -2,9 +2,9 @@ package com.example.sonar.ai.handler;
 
 import com.example.sonar.ai.model.Rule;
 import com.example.sonar.ai.model.Snippet;
+import com.example.sonar.ai.parser.ExtractionContext;
 import com.github.javaparser.ast.body.*;
 
-import java.io.File;
 import java.util.List;
 
 /**
@@ -14,7 +14,7 @@ import java.util.List;
 public class ExtractInterfaceFieldHandler extends Handler {
 
     @Override
-    public void extract(TypeDeclaration<?> node, Rule rule, File file, List<Snippet> snippets) {
+    public void extract(TypeDeclaration<?> node, Rule rule, ExtractionContext context, List<Snippet> snippets) {
         if (node instanceof ClassOrInterfaceDeclaration iface) {
             StringBuffer sb = new StringBuffer();
             if (iface.isInterface()) {
@@ -46,13 +46,13 @@ public class ExtractInterfaceFieldHandler extends Handler {
                             if (var.getInitializer().isEmpty()
                                     || !var.getInitializer().get().isLiteralExpr()) {
                                 //"不是基础常量（非常量初始化）"
-                                snippets.add(new Snippet(rule, file, line, field.toString().trim(), sb.toString(), "CLASS_DECLARATION"));
+                                snippets.add(new Snippet(rule, context.getFile(), line, context.slice(field), sb.toString(), "CLASS_DECLARATION"));
                                 return;
                             }
                             // 2️⃣ 命名不规范（WARN）
                             if (!isUpperSnakeCase(fieldName)) {
                                 //"命名不符合基础常量规范"
-                                snippets.add(new Snippet(rule, file, line, field.toString().trim(), sb.toString(), "CLASS_DECLARATION"));
+                                snippets.add(new Snippet(rule, context.getFile(), line, context.slice(field), sb.toString(), "CLASS_DECLARATION"));
                             }
                         }));
             }
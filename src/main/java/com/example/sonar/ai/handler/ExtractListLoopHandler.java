@@ -2,6 +2,7 @@ package com.example.sonar.ai.handler;
 
 import com.example.sonar.ai.model.Rule;
 import com.example.sonar.ai.model.Snippet;
+import com.example.sonar.ai.parser.ExtractionContext;
 import com.github.javaparser.ast.Node;
 import com.github.javaparser.ast.body.MethodDeclaration;
 import com.github.javaparser.ast.body.VariableDeclarator;
@@ -11,7 +12,6 @@ import com.github.javaparser.ast.expr.NameExpr;
 import com.github.javaparser.ast.stmt.*;
 import com.github.javaparser.ast.type.Type;
 
-import java.io.File;
 import java.util.List;
 import java.util.Optional;
 
@@ -22,7 +22,7 @@ import java.util.Optional;
 public class ExtractListLoopHandler extends Handler {
 
     @Override
-    public void extract(MethodDeclaration node, Rule rule, File file, List<Snippet> snippets) {
+    public void extract(MethodDeclaration node, Rule rule, ExtractionContext context, List<Snippet> snippets) {
         if (node.getBody().isEmpty()) {
             return;
         }
@@ -30,7 +30,7 @@ public class ExtractListLoopHandler extends Handler {
         // 1️⃣ 找出所有循环
         body.findAll(Statement.class).forEach(stmt -> {
             if (isLoop(stmt)) {
-                checkLoop(stmt, rule, file, snippets);
+                checkLoop(stmt, rule, context, snippets);
             }
         });
     }
@@ -42,7 +42,7 @@ public class ExtractListLoopHandler extends Handler {
                 || stmt instanceof DoStmt;
     }
 
-    private static void checkLoop(Statement loopStmt, Rule rule, File file, List<Snippet> snippets) {
+    private static void checkLoop(Statement loopStmt, Rule rule, ExtractionContext context, List<Snippet> snippets) {
         loopStmt.findAll(MethodCallExpr.class).forEach(call -> {
             if (!"contains".equals(call.getNameAsString())) {
                 return;
@@ -54,7 +54,9 @@ public class ExtractListLoopHandler extends Handler {
                 int line = call.getRange()
                         .map(r -> r.begin.line)
                         .orElse(-1);
-                snippets.add(new Snippet(rule, file, line, loopStmt.toString(), call.toString(), "METHOD_DECLARATION"));
+                Snippet snippet = new Snippet(rule, context.getFile(), line, context.slice(loopStmt), call.toString(), "METHOD_DECLARATION");
+                snippet.getPayload().setMetrics(context.metricsOf(loopStmt));
+                snippets.add(snippet);
             }
         });
     }
@@ -2,10 +2,10 @@ package com.example.sonar.ai.handler;
 
 import com.example.sonar.ai.model.Rule;
 import com.example.sonar.ai.model.Snippet;
+import com.example.sonar.ai.parser.ExtractionContext;
 import com.github.javaparser.ast.expr.Expression;
 import com.github.javaparser.ast.expr.MethodCallExpr;
 
-import java.io.File;
 import java.util.List;
 
 /**
@@ -15,13 +15,15 @@ import java.util.List;
 public class ExtractLogMessageHandler extends Handler {
 
     @Override
-    public void extract(MethodCallExpr node, Rule rule, File file, List<Snippet> snippets) {
+    public void extract(MethodCallExpr node, Rule rule, ExtractionContext context, List<Snippet> snippets) {
         String methodName = node.getNameAsString();
         if ("warn".equals(methodName) || "error".equals(methodName)) {
             int line = node.getRange()
                     .map(r -> r.begin.line)
                     .orElse(-1);
-            snippets.add(new Snippet(rule, file, line, node.toString(), node.toString(), "LOG_DECLARATION"));
+            // 名称只取调用对象和方法名（如 log.warn），代码保持切片，不提前生成字符串
+            String name = node.getScope().map(scope -> scope + "." + methodName).orElse(methodName);
+            snippets.add(new Snippet(rule, context.getFile(), line, context.slice(node), name, "LOG_DECLARATION"));
         }
     }
 }
@@ -2,15 +2,14 @@ package com.example.sonar.ai.handler;
 
 import com.example.sonar.ai.model.Rule;
 import com.example.sonar.ai.model.Snippet;
+import com.example.sonar.ai.parser.ExtractionContext;
 import com.github.javaparser.Range;
 import com.github.javaparser.ast.Node;
-import com.github.javaparser.ast.body.MethodDeclaration;
 import com.github.javaparser.ast.body.VariableDeclarator;
 import com.github.javaparser.ast.expr.BinaryExpr;
 import com.github.javaparser.ast.expr.Expression;
 import com.github.javaparser.ast.expr.MethodCallExpr;
 
-import java.io.File;
 import java.util.List;
 import java.util.Optional;
 
@@ -22,36 +21,36 @@ import java.util.Optional;
 public class ExtractLongStatementHandler extends Handler {
 
     @Override
-    public void extract(Node node, Rule rule, File file, List<Snippet> snippets) {
+    public void extract(Node node, Rule rule, ExtractionContext context, List<Snippet> snippets) {
         if (node instanceof VariableDeclarator || node instanceof MethodCallExpr) {
             // eg. 变量声明int z=0;
             // boolean a1=a==0&&b==0&&c==0&&d==0&&e==0&&f==0&&g==0&&h==0&&i==0&&j==0&&k==0&&l==0&&m==0&&n==0&o==0&&p==0&q==0&&r==0;
-            checkVariableDeclaration(node, rule, file, snippets);
+            checkVariableDeclaration(node, rule, context, snippets);
             //检测每一行的操作符是否有操作符
-            checkMethodDeclaration(node, rule, file, snippets);
+            checkMethodDeclaration(node, rule, context, snippets);
         }
     }
 
-    private void checkVariableDeclaration(Node node, Rule rule, File file, List<Snippet> snippets) {
+    private void checkVariableDeclaration(Node node, Rule rule, ExtractionContext context, List<Snippet> snippets) {
         if (node.getRange().isEmpty()) {
             return;
         }
-        int length = node.toString().length();
-        int beginLine = node.getRange().get().begin.line;
-        int endLine = node.getRange().get().end.line;
-
-        if (length > 80 && beginLine == endLine) {
-            Optional<MethodDeclaration> methodOpt =
-                    node.findAncestor(MethodDeclaration.class);
+        Range range = node.getRange().get();
+        int beginLine = range.begin.line;
+        int endLine = range.end.line;
+        // 长度按 pretty-print 后的文本计算（操作符两侧统一加空格），与原文的书写方式无关；
+        // 先判断单行，多行语句不做 pretty-print
+        if (beginLine == endLine && node.toString().length() > 80) {
+            Optional<ExtractionContext.Frame> methodOpt = context.enclosingMethod();
             if (methodOpt.isPresent()) {
-                String methodName = methodOpt.get().getDeclarationAsString(true, true, true);
-                snippets.add(new Snippet(rule, file, beginLine, node.toString(),
+                String methodName = methodOpt.get().getDeclaration();
+                snippets.add(new Snippet(rule, context.getFile(), beginLine, context.slice(node),
                         methodName, "LONGSTATEMENT_DECLARATION"));
             }
         }
     }
 
-    private void checkMethodDeclaration(Node node, Rule rule, File file, List<Snippet> snippets) {
+    private void checkMethodDeclaration(Node node, Rule rule, ExtractionContext context, List<Snippet> snippets) {
         if (node instanceof MethodCallExpr mce) {
             for (Expression arg : mce.getArguments()) {
                 // 只关心二元表达式
@@ -74,11 +73,10 @@ public class ExtractLongStatementHandler extends Handler {
                 int leftEndLine = left.getRange().get().end.line;
                 int exprEndLine = exprRange.end.line;
                 if (leftEndLine < exprEndLine) {
-                    Optional<MethodDeclaration> methodOpt =
-                            node.findAncestor(MethodDeclaration.class);
+                    Optional<ExtractionContext.Frame> methodOpt = context.enclosingMethod();
                     if (methodOpt.isPresent()) {
-                        String methodName = methodOpt.get().getDeclarationAsString(true, true, true);
-                        snippets.add(new Snippet(rule, file, leftEndLine, node.toString(),
+                        String methodName = methodOpt.get().getDeclaration();
+                        snippets.add(new Snippet(rule, context.getFile(), leftEndLine, context.slice(node),
                                 methodName, "LONGSTATEMENT_DECLARATION"));
                     }
                 }
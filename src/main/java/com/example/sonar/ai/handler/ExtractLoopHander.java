@@ -2,10 +2,10 @@ package com.example.sonar.ai.handler;
 
 import com.example.sonar.ai.model.Rule;
 import com.example.sonar.ai.model.Snippet;
+import com.example.sonar.ai.parser.ExtractionContext;
 import com.github.javaparser.ast.body.MethodDeclaration;
 import com.github.javaparser.ast.stmt.*;
 
-import java.io.File;
 import java.util.List;
 
 /**
@@ -15,18 +15,23 @@ import java.util.List;
 public class ExtractLoopHander extends Handler {
 
     @Override
-    public void extract(MethodDeclaration node, Rule rule, File file, List<Snippet> snippets) {
+    public void extract(MethodDeclaration node, Rule rule, ExtractionContext context, List<Snippet> snippets) {
         if (node.getBody().isEmpty()) {
             return;
         }
         BlockStmt body = node.getBody().get();
+        String methodName = context.enclosingMethod()
+                .map(ExtractionContext.Frame::getDeclaration)
+                .orElseGet(() -> node.getDeclarationAsString(true, true, true));
         body.findAll(Statement.class).forEach(stmt -> {
             if (isLoop(stmt)) {
                 int loopLine = stmt.getRange()
                         .map(r -> r.begin.line)
                         .orElse(-1);
-                String methodName = node.getDeclarationAsString(true, true, true);
-                snippets.add(new Snippet(rule, file, loopLine, stmt.toString(), methodName, "METHOD_DECLARATION"));
+                Snippet snippet = new Snippet(rule, context.getFile(), loopLine, context.slice(stmt), methodName, "METHOD_DECLARATION");
+                // 片段只含循环语句，指标取循环本身而不是整个方法
+                snippet.getPayload().setMetrics(context.metricsOf(stmt));
+                snippets.add(snippet);
             }
         });
     }
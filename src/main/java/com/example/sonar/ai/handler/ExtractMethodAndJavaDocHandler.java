@@ -2,10 +2,10 @@ package com.example.sonar.ai.handler;
 
 import com.example.sonar.ai.model.Rule;
 import com.example.sonar.ai.model.Snippet;
+import com.example.sonar.ai.parser.ExtractionContext;
 import com.github.javaparser.ast.body.MethodDeclaration;
 import com.github.javaparser.ast.comments.Comment;
 
-import java.io.File;
 import java.util.List;
 
 /**
@@ -15,7 +15,7 @@ import java.util.List;
 public class ExtractMethodAndJavaDocHandler extends Handler {
 
     @Override
-    public void extract(MethodDeclaration node, Rule rule, File file, List<Snippet> snippets) {
+    public void extract(MethodDeclaration node, Rule rule, ExtractionContext context, List<Snippet> snippets) {
         int line = node.getName().getBegin().map(p -> p.line).orElse(node.getBegin().map(p -> p.line).orElse(1));
         // 方法名
         String methodName = node.getNameAsString();
@@ -27,6 +27,6 @@ public class ExtractMethodAndJavaDocHandler extends Handler {
             javaDoc = node.getComment()
                     .map(Comment::getContent).orElse("无JavaDoc");
         }
-        snippets.add(new Snippet(rule, file, line, javaDoc, methodName, "METHOD_DECLARATION"));
+        snippets.add(new Snippet(rule, context.getFile(), line, javaDoc, methodName, "METHOD_DECLARATION"));
     }
 }
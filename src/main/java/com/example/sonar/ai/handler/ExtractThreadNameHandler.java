@@ -2,6 +2,7 @@ package com.example.sonar.ai.handler;
 
 import com.example.sonar.ai.model.Rule;
 import com.example.sonar.ai.model.Snippet;
+import com.example.sonar.ai.parser.ExtractionContext;
 import com.github.javaparser.ast.Node;
 import com.github.javaparser.ast.body.VariableDeclarator;
 import com.github.javaparser.ast.expr.*;
@@ -9,7 +10,6 @@ import com.github.javaparser.ast.stmt.ExpressionStmt;
 import com.github.javaparser.ast.stmt.ReturnStmt;
 import com.github.javaparser.ast.stmt.Statement;
 
-import java.io.File;
 import java.util.List;
 import java.util.Optional;
 
@@ -20,18 +20,22 @@ import java.util.Optional;
 public class ExtractThreadNameHandler extends Handler {
 
     @Override
-    public void extract(Node node, Rule rule, File file, List<Snippet> snippets) {
+    public void extract(Node node, Rule rule, ExtractionContext context, List<Snippet> snippets) {
         //创建线程或线程池时
         if (node instanceof ObjectCreationExpr) {
             ObjectCreationExpr oce = (ObjectCreationExpr) node;
             String type = oce.getType().asString();
             if ("Thread".equals(type)) {
-                // 构造器线程名
-                oce.getArguments().forEach(a -> {
+                // 构造器线程名，所属语句对所有参数相同，只查找一次
+                CharSequence owner = null;
+                for (Expression a : oce.getArguments()) {
                     if (a.isStringLiteralExpr() || a.isBinaryExpr() || a.isMethodCallExpr()) {
-                        snippets.add(new Snippet(rule, file, line(node), findOwnerNode(node).get().toString(), resolveThreadName(a), "THREAD_DECLARATION"));
+                        if (owner == null) {
+                            owner = context.slice(findOwnerNode(node).get());
+                        }
+                        snippets.add(new Snippet(rule, context.getFile(), line(node), owner, resolveThreadName(a), "THREAD_DECLARATION"));
                     }
-                });
+                }
             }
         }
         if (node instanceof MethodCallExpr) {
@@ -39,7 +43,7 @@ public class ExtractThreadNameHandler extends Handler {
             //thread.setName时
             if ("setName".equals(mce.getNameAsString())
                     && mce.getArguments().size() == 1) {
-                snippets.add(new Snippet(rule, file, line(node), findOwnerNode(node).get().toString(), mce.getArguments().get(0).asStringLiteralExpr().asString(), "THREAD_DECLARATION"));
+                snippets.add(new Snippet(rule, context.getFile(), line(node), context.slice(findOwnerNode(node).get()), mce.getArguments().get(0).asStringLiteralExpr().asString(), "THREAD_DECLARATION"));
             }
             //暂时不考虑Executors.newXXXPool，没有定义线程工程的方法
         }
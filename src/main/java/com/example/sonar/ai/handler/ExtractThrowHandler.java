@@ -2,6 +2,7 @@ package com.example.sonar.ai.handler;
 
 import com.example.sonar.ai.model.Rule;
 import com.example.sonar.ai.model.Snippet;
+import com.example.sonar.ai.parser.ExtractionContext;
 import com.github.javaparser.ast.body.VariableDeclarator;
 import com.github.javaparser.ast.expr.Expression;
 import com.github.javaparser.ast.expr.NameExpr;
@@ -10,7 +11,6 @@ import com.github.javaparser.ast.expr.StringLiteralExpr;
 import com.github.javaparser.ast.stmt.BlockStmt;
 import com.github.javaparser.ast.stmt.ThrowStmt;
 
-import java.io.File;
 import java.util.List;
 import java.util.Optional;
 
@@ -21,7 +21,7 @@ import java.util.Optional;
 public class ExtractThrowHandler extends Handler {
 
     @Override
-    public void extract(ThrowStmt node, Rule rule, File file, List<Snippet> snippets) {
+    public void extract(ThrowStmt node, Rule rule, ExtractionContext context, List<Snippet> snippets) {
         int line = node.getBegin().map(pos -> pos.line).orElse(-1);
         Expression expr = node.getExpression();
         // 判断是否是 new 异常
@@ -35,7 +35,7 @@ public class ExtractThrowHandler extends Handler {
                 } else {
                     exceptionMessage = arg.toString();
                 }
-                snippets.add(new Snippet(rule, file, line, node.toString(), exceptionMessage, "THROW_DECLARATION"));
+                snippets.add(new Snippet(rule, context.getFile(), line, context.slice(node), exceptionMessage, "THROW_DECLARATION"));
             });
         } else if (expr instanceof NameExpr nameExpr) {
             //eg. Exception e = new Exception("test");
@@ -59,7 +59,7 @@ public class ExtractThrowHandler extends Handler {
                                     ? type + " " + name
                                     : type + " " + name + " = " + initializer;
                             String message = oce2.getArguments().get(0).asStringLiteralExpr().asString();
-                            snippets.add(new Snippet(rule, file, line, result, message, "THROW_DECLARATION"));
+                            snippets.add(new Snippet(rule, context.getFile(), line, result, message, "THROW_DECLARATION"));
                         }
                     }
                 });
@@ -2,27 +2,37 @@ package com.example.sonar.ai.handler;
 
 import com.example.sonar.ai.model.Rule;
 import com.example.sonar.ai.model.Snippet;
+import com.example.sonar.ai.parser.ExtractionContext;
 import com.github.javaparser.ast.Node;
 import com.github.javaparser.ast.body.*;
 import com.github.javaparser.ast.expr.MethodCallExpr;
 import com.github.javaparser.ast.expr.ObjectCreationExpr;
 import com.github.javaparser.ast.stmt.ThrowStmt;
 
-import java.io.File;
 import java.util.List;
 
 
 public abstract class Handler {
 
+    /**
+     * 输出是否与规则无关（只取决于节点）
+     * 返回 true 时，同一节点只实际抽取一次，其余订阅该 handler 的规则共享同一份 SnippetPayload
+     *
+     * @return 默认 false，每条规则各自抽取
+     */
+    public boolean isRuleIndependent() {
+        return false;
+    }
+
     /**
      * 对所有类型操作
      *
      * @param node
      * @param rule
-     * @param file
+     * @param context
      * @param snippets
      */
-    public void extract(Node node, Rule rule, File file, List<Snippet> snippets) {
+    public void extract(Node node, Rule rule, ExtractionContext context, List<Snippet> snippets) {
         throw new UnsupportedOperationException("Node extraction not implemented yet");
     }
 
@@ -31,10 +41,10 @@ public abstract class Handler {
      *
      * @param node
      * @param rule
-     * @param file
+     * @param context
      * @param snippets
      */
-    public void extract(ClassOrInterfaceDeclaration node, Rule rule, File file, List<Snippet> snippets) {
+    public void extract(ClassOrInterfaceDeclaration node, Rule rule, ExtractionContext context, List<Snippet> snippets) {
         throw new UnsupportedOperationException("ClassOrInterfaceDeclaration extraction not implemented yet");
     }
 
@@ -43,10 +53,10 @@ public abstract class Handler {
      *
      * @param node
      * @param rule
-     * @param file
+     * @param context
      * @param snippets
      */
-    public void extract(TypeDeclaration<?> node, Rule rule, File file, List<Snippet> snippets) {
+    public void extract(TypeDeclaration<?> node, Rule rule, ExtractionContext context, List<Snippet> snippets) {
         throw new UnsupportedOperationException("TypeDeclaration extraction not implemented yet");
     }
 
@@ -56,10 +66,10 @@ public abstract class Handler {
      *
      * @param node
      * @param rule
-     * @param file
+     * @param context
      * @param snippets
      */
-    public void extract(MethodDeclaration node, Rule rule, File file, List<Snippet> snippets) {
+    public void extract(MethodDeclaration node, Rule rule, ExtractionContext context, List<Snippet> snippets) {
         throw new UnsupportedOperationException("Method extraction not implemented yet");
     }
 
@@ -68,10 +78,10 @@ public abstract class Handler {
      *
      * @param node
      * @param rule
-     * @param file
+     * @param context
      * @param snippets
      */
-    public void extract(VariableDeclarator node, Rule rule, File file, List<Snippet> snippets) {
+    public void extract(VariableDeclarator node, Rule rule, ExtractionContext context, List<Snippet> snippets) {
         throw new UnsupportedOperationException("Variable extraction not implemented yet");
     }
 
@@ -80,10 +90,10 @@ public abstract class Handler {
      *
      * @param node
      * @param rule
-     * @param file
+     * @param context
      * @param snippets
      */
-    public void extract(ObjectCreationExpr node, Rule rule, File file, List<Snippet> snippets) {
+    public void extract(ObjectCreationExpr node, Rule rule, ExtractionContext context, List<Snippet> snippets) {
         throw new UnsupportedOperationException("ObjectCreation extraction not implemented yet");
     }
 
@@ -92,10 +102,10 @@ public abstract class Handler {
      *
      * @param node
      * @param rule
-     * @param file
+     * @param context
      * @param snippets
      */
-    public void extract(MethodCallExpr node, Rule rule, File file, List<Snippet> snippets) {
+    public void extract(MethodCallExpr node, Rule rule, ExtractionContext context, List<Snippet> snippets) {
         throw new UnsupportedOperationException("MethodCallExpr extraction not implemented yet");
     }
 
@@ -104,10 +114,10 @@ public abstract class Handler {
      *
      * @param node
      * @param rule
-     * @param file
+     * @param context
      * @param snippets
      */
-    public void extract(ThrowStmt node, Rule rule, File file, List<Snippet> snippets) {
+    public void extract(ThrowStmt node, Rule rule, ExtractionContext context, List<Snippet> snippets) {
         throw new UnsupportedOperationException("ThrowStmt extraction not implemented yet");
     }
 
@@ -116,10 +126,10 @@ public abstract class Handler {
      *
      * @param node
      * @param rule
-     * @param file
+     * @param context
      * @param snippets
      */
-    public void extract(FieldDeclaration node, Rule rule, File file, List<Snippet> snippets) {
+    public void extract(FieldDeclaration node, Rule rule, ExtractionContext context, List<Snippet> snippets) {
         throw new UnsupportedOperationException("FieldDeclaration extraction not implemented yet");
     }
 }
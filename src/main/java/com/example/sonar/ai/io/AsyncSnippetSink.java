@@ -0,0 +1,155 @@
+package com.example.sonar.ai.io;
+
+import com.example.sonar.ai.model.Snippet;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 异步输出端
+ * 抽取线程把片段放入有界环形缓冲区（ArrayBlockingQueue 基于循环数组），由独立的写线程批量写出。
+ * 缓冲区满时抽取线程阻塞，形成背压；写线程按刷新策略刷出数据，下游可以实时 tail
+ */
+public class AsyncSnippetSink implements SnippetSink {
+
+    private static final Object END = new Object();
+    private static final int DRAIN_BATCH = 256;
+
+    private final SnippetSink delegate;
+    private final BlockingQueue<Object> buffer;
+    private final FlushPolicy flushPolicy;
+    private final Thread writer;
+    private volatile IOException failure;
+
+    public AsyncSnippetSink(SnippetSink delegate, int bufferSize, FlushPolicy flushPolicy) {
+        this.delegate = delegate;
+        this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        this.flushPolicy = flushPolicy;
+        this.writer = new Thread(this::drain, "snippet-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    @Override
+    public void accept(Snippet snippet) throws IOException {
+        checkFailure();
+        try {
+            buffer.put(snippet);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while queueing snippet");
+        }
+    }
+
+    /**
+     * 异步模式下的 flush 由写线程按策略执行，这里不阻塞调用方
+     */
+    @Override
+    public void flush() throws IOException {
+        checkFailure();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            buffer.put(END);
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while closing snippet writer");
+        } finally {
+            closeDelegate();
+        }
+    }
+
+    private void closeDelegate() throws IOException {
+        if (failure == null) {
+            delegate.close();
+            return;
+        }
+        try {
+            delegate.close();
+        } catch (IOException e) {
+            failure.addSuppressed(e);
+        }
+        checkFailure();
+    }
+
+    /**
+     * 写出失败后继续消费缓冲区直到关闭，避免抽取线程永久阻塞在 put 上
+     */
+    private void discardUntilEnd() {
+        try {
+            while (buffer.take() != END) {
+                // 丢弃
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        if (failure != null) {
+            throw new IOException("Snippet writer failed", failure);
+        }
+    }
+
+    private void drain() {
+        List<Object> batch = new ArrayList<>(DRAIN_BATCH);
+        long unflushed = 0;
+        long lastFlush = System.currentTimeMillis();
+        boolean ended = false;
+        try {
+            while (true) {
+                Object first = flushPolicy.getIntervalMillis() > 0
+                        ? buffer.poll(flushPolicy.getIntervalMillis(), TimeUnit.MILLISECONDS)
+                        : buffer.take();
+                if (first != null) {
+                    batch.add(first);
+                    buffer.drainTo(batch, DRAIN_BATCH - 1);
+                }
+                for (Object item : batch) {
+                    if (item == END) {
+                        ended = true;
+                        break;
+                    }
+                    delegate.accept((Snippet) item);
+                    unflushed++;
+                }
+                if (ended) {
+                    delegate.flush();
+                    return;
+                }
+                batch.clear();
+                long now = System.currentTimeMillis();
+                if (unflushed > 0 && flushPolicy.shouldFlush(unflushed, now - lastFlush)) {
+                    delegate.flush();
+                    unflushed = 0;
+                    lastFlush = now;
+                }
+            }
+        } catch (IOException e) {
+            fail(e, ended || batch.contains(END));
+        } catch (RuntimeException | Error e) {
+            // 下游阶段的缺陷同样要报告给调用方，否则写线程退出后抽取线程和 close 永久阻塞
+            fail(new IOException("Snippet writer failed: " + e, e), ended || batch.contains(END));
+        } catch (InterruptedException e) {
+            failure = new InterruptedIOException("Snippet writer interrupted");
+        }
+    }
+
+    /**
+     * 记录失败；结束标记尚未取出时继续消费缓冲区
+     */
+    private void fail(IOException e, boolean ended) {
+        failure = e;
+        if (!ended) {
+            discardUntilEnd();
+        }
+    }
+}
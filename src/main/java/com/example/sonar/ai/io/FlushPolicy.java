@@ -0,0 +1,36 @@
+package com.example.sonar.ai.io;
+
+/**
+ * 输出刷新策略
+ * 累计写出 everyRecords 条或距上次刷新超过 intervalMillis 毫秒时刷新，任一为 0 表示不按该条件刷新
+ */
+public class FlushPolicy {
+
+    private final int everyRecords;
+    private final long intervalMillis;
+
+    public FlushPolicy(int everyRecords, long intervalMillis) {
+        this.everyRecords = everyRecords;
+        this.intervalMillis = intervalMillis;
+    }
+
+    /**
+     * 只在关闭时刷新
+     */
+    public static FlushPolicy onClose() {
+        return new FlushPolicy(0, 0);
+    }
+
+    public int getEveryRecords() {
+        return everyRecords;
+    }
+
+    public long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    boolean shouldFlush(long unflushedRecords, long millisSinceFlush) {
+        return (everyRecords > 0 && unflushedRecords >= everyRecords)
+                || (intervalMillis > 0 && millisSinceFlush >= intervalMillis);
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.sonar.ai.io;
+
+import com.example.sonar.ai.model.Snippet;
+
+import java.io.IOException;
+
+/**
+ * 同步输出端的刷新装饰器，按刷新策略在抽取线程中直接刷新
+ */
+public class FlushingSnippetSink implements SnippetSink {
+
+    private final SnippetSink delegate;
+    private final FlushPolicy flushPolicy;
+    private long unflushed;
+    private long lastFlush = System.currentTimeMillis();
+
+    public FlushingSnippetSink(SnippetSink delegate, FlushPolicy flushPolicy) {
+        this.delegate = delegate;
+        this.flushPolicy = flushPolicy;
+    }
+
+    @Override
+    public void accept(Snippet snippet) throws IOException {
+        delegate.accept(snippet);
+        unflushed++;
+        long now = System.currentTimeMillis();
+        if (flushPolicy.shouldFlush(unflushed, now - lastFlush)) {
+            flush();
+            lastFlush = now;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        delegate.flush();
+        unflushed = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        delegate.close();
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.sonar.ai.io;
+
+import com.example.sonar.ai.model.Snippet;
+import com.example.sonar.ai.model.SnippetJsonAdapter;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * JSON Lines（NDJSON）写出器
+ * 每个片段占一行紧凑 JSON，下游可以边抽取边逐行读取，无需等待整个数组结束
+ */
+public class JsonLinesSnippetWriter implements SnippetSink {
+
+    private final Writer out;
+    private final JsonWriter json;
+    private final SnippetJsonAdapter adapter = new SnippetJsonAdapter();
+
+    public JsonLinesSnippetWriter(Writer out) {
+        this.out = out;
+        this.json = new JsonWriter(out);
+        // 宽松模式允许连续写出多个顶层值，行分隔由本类负责
+        json.setLenient(true);
+        json.setSerializeNulls(false);
+    }
+
+    @Override
+    public void accept(Snippet snippet) throws IOException {
+        adapter.write(json, snippet);
+        out.write('\n');
+    }
+
+    @Override
+    public void flush() throws IOException {
+        json.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        // 没有片段时 JsonWriter 认为文档不完整，直接关闭底层输出
+        json.flush();
+        out.close();
+    }
+}
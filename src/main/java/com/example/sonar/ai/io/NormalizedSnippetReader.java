@@ -0,0 +1,319 @@
+package com.example.sonar.ai.io;
+
+import com.example.sonar.ai.model.BaselineStatus;
+import com.example.sonar.ai.model.Occurrences;
+import com.example.sonar.ai.model.Reduction;
+import com.example.sonar.ai.model.Rule;
+import com.example.sonar.ai.model.Snippet;
+import com.example.sonar.ai.model.SnippetJsonAdapter;
+import com.example.sonar.ai.model.SnippetPayload;
+import com.example.sonar.ai.model.Verdict;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 规范化输出的读取器
+ * 单遍流式读取，按 rules 表和文件 id 把每个片段还原成与历史输出一致的 Snippet，
+ * 既可以逐个交给 SnippetSink（例如重新写成旧版 JSON 数组），也可以一次读成列表
+ */
+public class NormalizedSnippetReader {
+
+    /**
+     * 读取并还原所有片段
+     */
+    public List<Snippet> readAll(Reader in) throws IOException {
+        List<Snippet> snippets = new ArrayList<>();
+        expand(in, new SnippetSink() {
+            @Override
+            public void accept(Snippet snippet) {
+                snippets.add(snippet);
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+        return snippets;
+    }
+
+    /**
+     * 读取并逐个还原片段
+     *
+     * @return 还原的片段数
+     */
+    public long expand(Reader in, SnippetSink sink) throws IOException {
+        JsonReader json = new JsonReader(in);
+        List<Rule> rules = null;
+        List<String> files = new ArrayList<>();
+        long count = 0;
+        json.beginObject();
+        while (json.hasNext()) {
+            String field = json.nextName();
+            switch (field) {
+                case "format" -> {
+                    String format = json.nextString();
+                    if (!NormalizedSnippetWriter.FORMAT.equals(format)) {
+                        throw new IOException("Unsupported format: " + format);
+                    }
+                }
+                case "version" -> {
+                    int version = json.nextInt();
+                    if (version > NormalizedSnippetWriter.VERSION) {
+                        throw new IOException("Unsupported version: " + version);
+                    }
+                }
+                case "rules" -> rules = readRules(json);
+                case "snippets" -> {
+                    if (rules == null) {
+                        throw new IOException("Snippets appear before the rules table");
+                    }
+                    json.beginArray();
+                    while (json.hasNext()) {
+                        sink.accept(readSnippet(json, rules, files));
+                        count++;
+                    }
+                    json.endArray();
+                }
+                default -> json.skipValue();
+            }
+        }
+        json.endObject();
+        return count;
+    }
+
+    private List<Rule> readRules(JsonReader json) throws IOException {
+        List<Rule> rules = new ArrayList<>();
+        json.beginArray();
+        while (json.hasNext()) {
+            Rule rule = new Rule();
+            json.beginObject();
+            while (json.hasNext()) {
+                String field = json.nextName();
+                if (json.peek() == JsonToken.NULL) {
+                    json.nextNull();
+                    continue;
+                }
+                switch (field) {
+                    case "ruleId" -> rule.setId(json.nextString());
+                    case "ruleDesc" -> rule.setDescription(json.nextString());
+                    case "ruleCriteria" -> rule.setCriteria(json.nextString());
+                    case "ruleContext" -> rule.setContext(json.nextString());
+                    default -> json.skipValue();
+                }
+            }
+            json.endObject();
+            rules.add(rule);
+        }
+        json.endArray();
+        return rules;
+    }
+
+    private Snippet readSnippet(JsonReader json, List<Rule> rules, List<String> files) throws IOException {
+        int rule = -1;
+        int file = -1;
+        String path = null;
+        String scope = null;
+        String code = null;
+        String name = null;
+        String hash = null;
+        int line = 0;
+        int beginLine = 0;
+        int beginColumn = 0;
+        int endLine = 0;
+        int endColumn = 0;
+        Occurrences occurrences = null;
+        List<Snippet> members = null;
+        String resolved = null;
+        Double similarity = null;
+        Double risk = null;
+        long codeHash = 0;
+        Verdict verdict = null;
+        BaselineStatus baselineStatus = null;
+        Reduction reduction = null;
+        json.beginObject();
+        while (json.hasNext()) {
+            String field = json.nextName();
+            if (json.peek() == JsonToken.NULL) {
+                json.nextNull();
+                continue;
+            }
+            switch (field) {
+                case "rule" -> rule = json.nextInt();
+                case "rules" -> members = readMembers(json, rules);
+                case "file" -> file = json.nextInt();
+                case "path" -> path = json.nextString();
+                case "ruleScope" -> scope = json.nextString();
+                case "line" -> line = json.nextInt();
+                case "code" -> code = json.nextString();
+                case "name" -> name = json.nextString();
+                case "beginLine" -> beginLine = json.nextInt();
+                case "beginColumn" -> beginColumn = json.nextInt();
+                case "endLine" -> endLine = json.nextInt();
+                case "endColumn" -> endColumn = json.nextInt();
+                case "hash" -> hash = json.nextString();
+                case "occurrences" -> {
+                    // 片段自身的文件先于 occurrences 登记，保证 file id 顺序
+                    resolved = resolveFile(file, path, files);
+                    occurrences = readOccurrences(json, files);
+                }
+                case "similarity" -> similarity = json.nextDouble();
+                case "risk" -> risk = json.nextDouble();
+                case "codeHash" -> codeHash = SnippetJsonAdapter.parseCodeHash(json.nextString());
+                case "verdict" -> verdict = SnippetJsonAdapter.readVerdict(json);
+                case "baseline" -> baselineStatus = BaselineStatus.of(json.nextString());
+                case "reduction" -> reduction = SnippetJsonAdapter.readReduction(json);
+                default -> json.skipValue();
+            }
+        }
+        json.endObject();
+        if (resolved == null) {
+            resolved = resolveFile(file, path, files);
+        }
+        Rule snippetRule;
+        if (members != null) {
+            List<Rule> memberRules = new ArrayList<>(members.size());
+            List<Snippet> resolvedMembers = new ArrayList<>(members.size());
+            for (Snippet member : members) {
+                memberRules.add(member.getRule());
+                Snippet resolvedMember = new Snippet(member.getRule(), new SnippetPayload(resolved,
+                        member.getLine(), null, member.getName(), member.getScope(), 0, 0, 0, 0, null, 0));
+                resolvedMember.setVerdict(member.getVerdict());
+                resolvedMembers.add(resolvedMember);
+            }
+            members = resolvedMembers;
+            snippetRule = Rule.composite(memberRules);
+        } else {
+            snippetRule = rule(rules, rule);
+        }
+        Snippet snippet = new Snippet(snippetRule, new SnippetPayload(
+                resolved, line, code, name, scope,
+                beginLine, beginColumn, endLine, endColumn, hash, codeHash));
+        snippet.setOccurrences(occurrences);
+        snippet.setSimilarity(similarity);
+        snippet.setRisk(risk);
+        snippet.setVerdict(verdict);
+        snippet.setBaselineStatus(baselineStatus);
+        snippet.setReduction(reduction);
+        snippet.setMembers(members);
+        return snippet;
+    }
+
+    private static Rule rule(List<Rule> rules, int index) throws IOException {
+        if (index < 0 || index >= rules.size()) {
+            throw new IOException("Unknown rule index: " + index);
+        }
+        return rules.get(index);
+    }
+
+    /**
+     * 组合片段的成员，文件在组合片段读完后补上
+     */
+    private List<Snippet> readMembers(JsonReader json, List<Rule> rules) throws IOException {
+        List<Snippet> members = new ArrayList<>();
+        json.beginArray();
+        while (json.hasNext()) {
+            int rule = -1;
+            String scope = null;
+            String name = null;
+            int line = 0;
+            Verdict verdict = null;
+            json.beginObject();
+            while (json.hasNext()) {
+                String field = json.nextName();
+                if (json.peek() == JsonToken.NULL) {
+                    json.nextNull();
+                    continue;
+                }
+                switch (field) {
+                    case "rule" -> rule = json.nextInt();
+                    case "ruleScope" -> scope = json.nextString();
+                    case "line" -> line = json.nextInt();
+                    case "name" -> name = json.nextString();
+                    case "verdict" -> verdict = SnippetJsonAdapter.readVerdict(json);
+                    default -> json.skipValue();
+                }
+            }
+            json.endObject();
+            Snippet member = new Snippet(rule(rules, rule), new SnippetPayload((String) null, line, null, name,
+                    scope, 0, 0, 0, 0, null, 0));
+            member.setVerdict(verdict);
+            members.add(member);
+        }
+        json.endArray();
+        return members;
+    }
+
+    private Occurrences readOccurrences(JsonReader json, List<String> files) throws IOException {
+        Occurrences occurrences = new Occurrences();
+        json.beginArray();
+        while (json.hasNext()) {
+            int file = -1;
+            String path = null;
+            int line = 0;
+            json.beginObject();
+            while (json.hasNext()) {
+                switch (json.nextName()) {
+                    case "file" -> file = json.nextInt();
+                    case "path" -> path = json.nextString();
+                    case "line" -> line = json.nextInt();
+                    default -> json.skipValue();
+                }
+            }
+            json.endObject();
+            occurrences.add(resolveFile(file, path, files), line);
+        }
+        json.endArray();
+        return occurrences;
+    }
+
+    /**
+     * 带 path 时登记新的 file id，否则按 id 查表
+     */
+    private String resolveFile(int file, String path, List<String> files) throws IOException {
+        if (path != null) {
+            if (file != files.size()) {
+                throw new IOException("File id out of order: " + file);
+            }
+            files.add(path);
+            return path;
+        }
+        if (file < 0 || file >= files.size()) {
+            throw new IOException("Unknown file id: " + file);
+        }
+        return files.get(file);
+    }
+
+    /**
+     * 把规范化输出还原成旧版 JSON 数组，供尚未迁移的下游使用
+     * 用法：NormalizedSnippetReader <normalized.json> [legacy.json]，省略输出文件时写到标准输出
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            System.err.println("Usage: NormalizedSnippetReader <normalized.json> [legacy.json]");
+            System.exit(1);
+        }
+        Writer out = args.length == 2
+                ? Files.newBufferedWriter(Paths.get(args[1]), StandardCharsets.UTF_8)
+                : new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        try (Reader in = Files.newBufferedReader(Paths.get(args[0]), StandardCharsets.UTF_8);
+             SnippetJsonWriter writer = new SnippetJsonWriter(out, true)) {
+            long count = new NormalizedSnippetReader().expand(in, writer);
+            System.err.println("INFO: Expanded " + count + " snippets.");
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.example.sonar.ai.io;
+
+import com.example.sonar.ai.model.Occurrences;
+import com.example.sonar.ai.model.Rule;
+import com.example.sonar.ai.model.Snippet;
+import com.example.sonar.ai.model.SnippetJsonAdapter;
+import com.example.sonar.ai.util.Hash64;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 规范化输出写出器
+ * 规则描述/标准/上下文只在头部 rules 表中出现一次，文件路径用短 id 引用，
+ * 片段中只保留 rule 下标、file id 和自身字段。结构如下：
+ * <pre>
+ * {
+ *   "format": "normalized", "version": 1,
+ *   "rules": [{"ruleId", "ruleDesc", "ruleCriteria", "ruleContext"}, ...],
+ *   "snippets": [{"rule": 0 或 "rules": [{"rule", "ruleScope", "line", "name", "verdict"}, ...], "file": 0, "path": "...", "ruleScope", "line", "code", "name", ...,
+ *                 "codeHash", "occurrences": [{"file": 1, "path": "...", "line": 3}, ...], "baseline", "reduction", "verdict"}, ...],
+ *   "files": ["...", ...]
+ * }
+ * </pre>
+ * path 只在某个 file id 第一次出现时写出（包括 occurrences 中的位置），读取方可以单遍流式还原；末尾的 files 表供随机访问使用
+ */
+public class NormalizedSnippetWriter implements SnippetSink {
+
+    static final String FORMAT = "normalized";
+    static final int VERSION = 1;
+
+    private final Writer out;
+    private final JsonWriter json;
+    private final Map<RuleKey, Integer> ruleIndex = new HashMap<>();
+    private final Map<String, Integer> fileIds = new HashMap<>();
+    private final List<String> files = new ArrayList<>();
+
+    public NormalizedSnippetWriter(Writer out, List<Rule> rules, boolean pretty) throws IOException {
+        this.out = out;
+        this.json = new JsonWriter(out);
+        if (pretty) {
+            json.setIndent("  ");
+        }
+        json.setSerializeNulls(false);
+        json.beginObject();
+        json.name("format").value(FORMAT);
+        json.name("version").value(VERSION);
+        json.name("rules").beginArray();
+        for (Rule rule : rules) {
+            RuleKey key = new RuleKey(rule.getId(), rule.getDescription(), rule.getCriteria(), rule.getContext());
+            if (ruleIndex.putIfAbsent(key, ruleIndex.size()) == null) {
+                json.beginObject();
+                json.name("ruleId").value(key.id());
+                json.name("ruleDesc").value(key.desc());
+                json.name("ruleCriteria").value(key.criteria());
+                json.name("ruleContext").value(key.context());
+                json.endObject();
+            }
+        }
+        json.endArray();
+        json.name("snippets").beginArray();
+    }
+
+    @Override
+    public void accept(Snippet snippet) throws IOException {
+        json.beginObject();
+        if (snippet.getMembers() == null) {
+            json.name("rule").value(ruleIndex(snippet));
+        } else {
+            // 组合片段的规则由成员规则合成，只写成员的规则下标
+            json.name("rules").beginArray();
+            for (Snippet member : snippet.getMembers()) {
+                json.beginObject();
+                json.name("rule").value(ruleIndex(member));
+                json.name("ruleScope").value(member.getScope());
+                json.name("line").value(member.getLine());
+                json.name("name").value(member.getName());
+                if (member.getVerdict() != null) {
+                    json.name("verdict");
+                    SnippetJsonAdapter.writeVerdict(json, member.getVerdict());
+                }
+                json.endObject();
+            }
+            json.endArray();
+        }
+        writeFile(snippet.getFile());
+        json.name("ruleScope").value(snippet.getScope());
+        json.name("line").value(snippet.getLine());
+        CharSequence code = snippet.getPayload().getCode();
+        if (code != null) {
+            json.name("code").value(code.toString());
+        }
+        json.name("name").value(snippet.getName());
+        if (snippet.getHash() != null) {
+            json.name("beginLine").value(snippet.getBeginLine());
+            json.name("beginColumn").value(snippet.getBeginColumn());
+            json.name("endLine").value(snippet.getEndLine());
+            json.name("endColumn").value(snippet.getEndColumn());
+            json.name("hash").value(snippet.getHash());
+        }
+        json.name("codeHash").value(Hash64.toHex(snippet.getStructuralHash()));
+        Occurrences occurrences = snippet.getOccurrences();
+        if (occurrences != null) {
+            json.name("occurrences").beginArray();
+            for (int i = 0; i < occurrences.size(); i++) {
+                json.beginObject();
+                writeFile(occurrences.getFile(i));
+                json.name("line").value(occurrences.getLine(i));
+                json.endObject();
+            }
+            json.endArray();
+        }
+        if (snippet.getSimilarity() != null) {
+            json.name("similarity").value(snippet.getSimilarity());
+        }
+        if (snippet.getRisk() != null) {
+            json.name("risk").value(snippet.getRisk());
+        }
+        if (snippet.getBaselineStatus() != null) {
+            json.name("baseline").value(snippet.getBaselineStatus().value());
+        }
+        if (snippet.getReduction() != null) {
+            json.name("reduction");
+            SnippetJsonAdapter.writeReduction(json, snippet.getReduction());
+        }
+        if (snippet.getVerdict() != null) {
+            json.name("verdict");
+            SnippetJsonAdapter.writeVerdict(json, snippet.getVerdict());
+        }
+        json.endObject();
+    }
+
+    private int ruleIndex(Snippet snippet) throws IOException {
+        RuleKey key = new RuleKey(snippet.getRuleId(), snippet.getRuleDesc(),
+                snippet.getRuleCriteria(), snippet.getRuleContext());
+        Integer rule = ruleIndex.get(key);
+        if (rule == null) {
+            throw new IOException("Snippet references a rule missing from the header: " + snippet.getRuleId());
+        }
+        return rule;
+    }
+
+    /**
+     * 写出 file id，路径第一次出现时同时写出 path
+     */
+    private void writeFile(String path) throws IOException {
+        Integer file = fileIds.get(path);
+        if (file == null) {
+            file = files.size();
+            fileIds.put(path, file);
+            files.add(path);
+            json.name("file").value(file);
+            json.name("path").value(path);
+        } else {
+            json.name("file").value(file);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        json.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        json.endArray();
+        json.name("files").beginArray();
+        for (String file : files) {
+            json.value(file);
+        }
+        json.endArray();
+        json.endObject();
+        json.flush();
+        out.write(System.lineSeparator());
+        json.close();
+    }
+
+    private record RuleKey(String id, String desc, String criteria, String context) {
+    }
+}
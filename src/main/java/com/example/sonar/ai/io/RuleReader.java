@@ -1,12 +1,14 @@
 package com.example.sonar.ai.io;
 
 import com.example.sonar.ai.model.Rule;
+import com.example.sonar.ai.model.SnippetMetrics;
 import org.yaml.snakeyaml.Yaml;
 
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -32,15 +34,9 @@ public class RuleReader {
             if (loaded instanceof List) {
                 // Top-level list (New Schema)
                 @SuppressWarnings("unchecked")
-                List<Map<String, String>> rulesList = (List<Map<String, String>>) loaded;
-                for (Map<String, String> ruleMap : rulesList) {
-                    Rule rule = new Rule();
-                    rule.setId(ruleMap.getOrDefault("ruleId", ruleMap.get("id")));
-                    rule.setScope(ruleMap.get("scope"));
-                    rule.setDescription(ruleMap.getOrDefault("ruleDesc", ruleMap.get("description")));
-                    rule.setCriteria(ruleMap.getOrDefault("ruleCriteria", ruleMap.get("criteria")));
-                    rule.setContext(ruleMap.getOrDefault("ruleContext", ruleMap.get("context")));
-                    rules.add(rule);
+                List<Map<String, Object>> rulesList = (List<Map<String, Object>>) loaded;
+                for (Map<String, Object> ruleMap : rulesList) {
+                    rules.add(toRule(ruleMap));
                 }
             } else if (loaded instanceof Map) {
                 // Nested 'rules' key (Legacy/Previous Schema)
@@ -48,15 +44,9 @@ public class RuleReader {
                 Map<String, Object> data = (Map<String, Object>) loaded;
                 if (data != null && data.containsKey("rules")) {
                     @SuppressWarnings("unchecked")
-                    List<Map<String, String>> rulesList = (List<Map<String, String>>) data.get("rules");
-                    for (Map<String, String> ruleMap : rulesList) {
-                        Rule rule = new Rule();
-                        rule.setId(ruleMap.getOrDefault("ruleId", ruleMap.get("id")));
-                        rule.setScope(ruleMap.get("scope"));
-                        rule.setDescription(ruleMap.getOrDefault("ruleDesc", ruleMap.get("description")));
-                        rule.setCriteria(ruleMap.getOrDefault("ruleCriteria", ruleMap.get("criteria")));
-                        rule.setContext(ruleMap.getOrDefault("ruleContext", ruleMap.get("context")));
-                        rules.add(rule);
+                    List<Map<String, Object>> rulesList = (List<Map<String, Object>>) data.get("rules");
+                    for (Map<String, Object> ruleMap : rulesList) {
+                        rules.add(toRule(ruleMap));
                     }
                 }
             }
@@ -70,4 +60,60 @@ public class RuleReader {
         }
         return rules;
     }
+
+    private static Rule toRule(Map<String, Object> ruleMap) {
+        Rule rule = new Rule();
+        rule.setId(string(ruleMap, "ruleId", "id"));
+        rule.setScope(string(ruleMap, "scope", "scope"));
+        rule.setDescription(string(ruleMap, "ruleDesc", "description"));
+        rule.setCriteria(string(ruleMap, "ruleCriteria", "criteria"));
+        rule.setContext(string(ruleMap, "ruleContext", "context"));
+        rule.setMaxChars(integer(ruleMap, "maxChars"));
+        rule.setMaxPerFile(integer(ruleMap, "maxPerFile"));
+        rule.setMaxTotal(integer(ruleMap, "maxTotal"));
+        rule.setEvaluator(string(ruleMap, "evaluator", "evaluator"));
+        Object riskWeights = ruleMap.get("riskWeights");
+        if (riskWeights instanceof Map<?, ?> weights) {
+            rule.setRiskWeights(weights(weights));
+        }
+        return rule;
+    }
+
+    /**
+     * 非负整数配置，缺失时为 0
+     */
+    private static int integer(Map<String, Object> ruleMap, String key) {
+        String value = string(ruleMap, key, key);
+        if (value == null) {
+            return 0;
+        }
+        int n = Integer.parseInt(value.trim());
+        if (n < 0) {
+            throw new IllegalArgumentException(key + " must not be negative: " + n);
+        }
+        return n;
+    }
+
+    /**
+     * 指标名到权重，指标名必须是 SnippetMetrics.NAMES 之一
+     */
+    private static Map<String, Double> weights(Map<?, ?> map) {
+        Map<String, Double> weights = new LinkedHashMap<>();
+        for (Map.Entry<?, ?> entry : map.entrySet()) {
+            String name = String.valueOf(entry.getKey());
+            if (!SnippetMetrics.NAMES.contains(name)) {
+                throw new IllegalArgumentException("Unknown risk metric: " + name);
+            }
+            weights.put(name, Double.parseDouble(String.valueOf(entry.getValue()).trim()));
+        }
+        return weights;
+    }
+
+    /**
+     * YAML 中的数字等标量按字符串读取，优先使用 key，缺失时使用旧字段名
+     */
+    private static String string(Map<String, Object> ruleMap, String key, String legacyKey) {
+        Object value = ruleMap.containsKey(key) ? ruleMap.get(key) : ruleMap.get(legacyKey);
+        return value == null ? null : value.toString();
+    }
 }
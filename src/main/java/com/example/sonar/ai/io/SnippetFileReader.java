@@ -0,0 +1,99 @@
+package com.example.sonar.ai.io;
+
+import com.example.sonar.ai.model.SnippetJsonAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * 读取本工具以前写出的片段文件
+ * 自动识别 JSON 数组、JSON Lines 和规范化格式，gzip 压缩的文件按文件头识别；
+ * 片段逐个交给 SnippetSink，不把整个文件读入内存
+ */
+public class SnippetFileReader {
+
+    private SnippetFileReader() {
+    }
+
+    /**
+     * 流式读取片段文件
+     *
+     * @return 读取的片段数
+     */
+    public static long read(Path path, SnippetSink sink) throws IOException {
+        String format = detect(path);
+        if (format == null) {
+            return 0;
+        }
+        try (Reader in = open(path)) {
+            if ("normalized".equals(format)) {
+                return new NormalizedSnippetReader().expand(in, sink);
+            }
+            JsonReader json = new JsonReader(in);
+            SnippetJsonAdapter adapter = new SnippetJsonAdapter();
+            long count = 0;
+            if ("json".equals(format)) {
+                json.beginArray();
+                while (json.hasNext()) {
+                    sink.accept(adapter.read(json));
+                    count++;
+                }
+                json.endArray();
+            } else {
+                // JSON Lines 是连续的多个顶层对象，宽松模式下逐个读取
+                json.setLenient(true);
+                while (json.peek() != JsonToken.END_DOCUMENT) {
+                    sink.accept(adapter.read(json));
+                    count++;
+                }
+            }
+            return count;
+        }
+    }
+
+    /**
+     * 按第一个 JSON 值判断格式：数组为 json，首个字段为 format 的对象为 normalized，其他对象为 ndjson；
+     * 空文件（没有片段的 JSON Lines）返回 null
+     */
+    static String detect(Path path) throws IOException {
+        try (Reader in = open(path)) {
+            JsonReader json = new JsonReader(in);
+            json.setLenient(true);
+            JsonToken token;
+            try {
+                token = json.peek();
+            } catch (EOFException e) {
+                return null;
+            }
+            if (token == JsonToken.BEGIN_ARRAY) {
+                return "json";
+            }
+            if (token == JsonToken.BEGIN_OBJECT) {
+                json.beginObject();
+                return json.hasNext() && "format".equals(json.nextName()) ? "normalized" : "ndjson";
+            }
+            throw new IOException("Not a snippet file: " + path);
+        }
+    }
+
+    private static Reader open(Path path) throws IOException {
+        InputStream in = new BufferedInputStream(Files.newInputStream(path), 1 << 16);
+        in.mark(2);
+        boolean gzip = in.read() == 0x1f && in.read() == 0x8b;
+        in.reset();
+        if (gzip) {
+            in = new GZIPInputStream(in, 1 << 16);
+        }
+        return new InputStreamReader(in, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.sonar.ai.io;
+
+import com.example.sonar.ai.model.Snippet;
+import com.example.sonar.ai.model.SnippetJsonAdapter;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * 流式 JSON 数组写出器
+ * 片段产生后立即写出，不在内存中拼接整个 JSON 字符串，内存占用与片段数量无关
+ */
+public class SnippetJsonWriter implements SnippetSink {
+
+    private final Writer out;
+    private final JsonWriter json;
+    private final SnippetJsonAdapter adapter = new SnippetJsonAdapter();
+    private long count;
+
+    public SnippetJsonWriter(Writer out, boolean pretty) throws IOException {
+        this.out = out;
+        this.json = new JsonWriter(out);
+        if (pretty) {
+            json.setIndent("  ");
+        }
+        json.setSerializeNulls(false);
+        json.beginArray();
+    }
+
+    @Override
+    public void accept(Snippet snippet) throws IOException {
+        adapter.write(json, snippet);
+        count++;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        json.flush();
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    @Override
+    public void close() throws IOException {
+        json.endArray();
+        json.flush();
+        out.write(System.lineSeparator());
+        json.close();
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.sonar.ai.io;
+
+import com.example.sonar.ai.model.Snippet;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * 片段输出端
+ * 抽取过程中逐个接收片段，具体实现决定格式（JSON 数组 / JSON Lines）和写出方式（同步 / 异步）
+ */
+public interface SnippetSink extends Closeable {
+
+    /**
+     * 接收一个片段
+     */
+    void accept(Snippet snippet) throws IOException;
+
+    /**
+     * 将已接收的片段刷到底层输出，供下游 tail
+     */
+    void flush() throws IOException;
+}
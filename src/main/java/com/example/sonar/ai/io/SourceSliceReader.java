@@ -0,0 +1,147 @@
+package com.example.sonar.ai.io;
+
+import com.example.sonar.ai.model.Snippet;
+import com.example.sonar.ai.util.ContentHash;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 引用模式输出的配套读取器
+ * 按片段记录的文件和行列范围，从内存映射的源文件中按需截取代码，
+ * 只解码涉及的几行，不把整个文件读入堆
+ */
+public class SourceSliceReader implements Closeable {
+
+    private static final int DEFAULT_MAX_OPEN_FILES = 64;
+
+    private final Map<String, MappedSource> sources;
+
+    public SourceSliceReader() {
+        this(DEFAULT_MAX_OPEN_FILES);
+    }
+
+    public SourceSliceReader(int maxOpenFiles) {
+        // 按访问顺序淘汰，限制同时映射的文件数
+        this.sources = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, MappedSource> eldest) {
+                return size() > maxOpenFiles;
+            }
+        };
+    }
+
+    /**
+     * 读取片段代码：片段自带代码时直接返回，引用模式下按范围截取并校验摘要
+     *
+     * @throws IOException 文件无法读取，或源文件内容与抽取时不一致
+     */
+    public String read(Snippet snippet) throws IOException {
+        if (snippet.getCode() != null) {
+            return snippet.getCode();
+        }
+        String code = read(snippet.getFile(), snippet.getBeginLine(), snippet.getBeginColumn(),
+                snippet.getEndLine(), snippet.getEndColumn());
+        if (snippet.getHash() != null && !snippet.getHash().equals(ContentHash.of(code))) {
+            throw new IOException("Source changed since extraction: " + snippet.getFile()
+                    + ":" + snippet.getBeginLine());
+        }
+        return code;
+    }
+
+    /**
+     * 按行列范围截取代码（行列号从 1 开始，结束位置为闭区间）
+     */
+    public synchronized String read(String file, int beginLine, int beginColumn, int endLine, int endColumn)
+            throws IOException {
+        MappedSource source = sources.get(file);
+        if (source == null) {
+            source = new MappedSource(Paths.get(file));
+            sources.put(file, source);
+        }
+        return source.slice(beginLine, beginColumn, endLine, endColumn);
+    }
+
+    @Override
+    public synchronized void close() {
+        // MappedByteBuffer 没有显式 unmap，释放引用后由 GC 回收
+        sources.clear();
+    }
+
+    private static final class MappedSource {
+        private final MappedByteBuffer buffer;
+        private final int[] lineStarts;
+
+        MappedSource(Path path) throws IOException {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            this.lineStarts = indexLines(buffer);
+        }
+
+        String slice(int beginLine, int beginColumn, int endLine, int endColumn) throws IOException {
+            if (beginLine < 1 || endLine < beginLine || endLine > lineStarts.length) {
+                throw new IOException("Range out of file: " + beginLine + "-" + endLine);
+            }
+            // 换行符都是单字节，不会出现在 UTF-8 多字节序列中，可以直接在字节上定位行
+            int from = lineStarts[beginLine - 1];
+            int to = endLine < lineStarts.length ? lineStarts[endLine] : buffer.limit();
+            byte[] bytes = new byte[to - from];
+            buffer.get(from, bytes);
+            String lines = new String(bytes, StandardCharsets.UTF_8);
+
+            int endLineStart = 0;
+            for (int line = beginLine; line < endLine; line++) {
+                endLineStart = nextLineStart(lines, endLineStart);
+            }
+            int begin = beginColumn - 1;
+            int end = Math.min(endLineStart + endColumn, lines.length());
+            if (begin < 0 || begin > end) {
+                throw new IOException("Invalid column range: " + beginColumn + "-" + endColumn);
+            }
+            return lines.substring(begin, end);
+        }
+
+        private static int nextLineStart(String text, int from) {
+            for (int i = from; i < text.length(); i++) {
+                char c = text.charAt(i);
+                if (c == '\n') {
+                    return i + 1;
+                }
+                if (c == '\r') {
+                    return i + 1 < text.length() && text.charAt(i + 1) == '\n' ? i + 2 : i + 1;
+                }
+            }
+            return text.length();
+        }
+
+        private static int[] indexLines(MappedByteBuffer buffer) {
+            int limit = buffer.limit();
+            int[] starts = new int[64];
+            int count = 1;
+            for (int i = 0; i < limit; i++) {
+                byte b = buffer.get(i);
+                boolean lineEnd = b == '\n' || (b == '\r' && (i + 1 >= limit || buffer.get(i + 1) != '\n'));
+                if (lineEnd) {
+                    if (count == starts.length) {
+                        int[] grown = new int[starts.length * 2];
+                        System.arraycopy(starts, 0, grown, 0, count);
+                        starts = grown;
+                    }
+                    starts[count++] = i + 1;
+                }
+            }
+            int[] result = new int[count];
+            System.arraycopy(starts, 0, result, 0, count);
+            return result;
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.sonar.ai.io;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * 将同一份字符同时写入多个 Writer，序列化只做一次
+ */
+public class TeeWriter extends Writer {
+
+    private final List<Writer> targets;
+
+    public TeeWriter(Writer... targets) {
+        this.targets = List.of(targets);
+    }
+
+    @Override
+    public void write(char[] buffer, int offset, int length) throws IOException {
+        for (Writer target : targets) {
+            target.write(buffer, offset, length);
+        }
+    }
+
+    @Override
+    public void write(String str, int offset, int length) throws IOException {
+        for (Writer target : targets) {
+            target.write(str, offset, length);
+        }
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        for (Writer target : targets) {
+            target.write(c);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        for (Writer target : targets) {
+            target.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        IOException failure = null;
+        for (Writer target : targets) {
+            try {
+                target.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
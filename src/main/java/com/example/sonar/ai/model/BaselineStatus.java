@@ -0,0 +1,26 @@
+package com.example.sonar.ai.model;
+
+/**
+ * 与基线输出比较后的片段状态
+ */
+public enum BaselineStatus {
+    /**
+     * 基线中没有的新片段
+     */
+    NEW,
+    /**
+     * 基线中有、本次已不存在的片段
+     */
+    REMOVED;
+
+    /**
+     * JSON 中的取值
+     */
+    public String value() {
+        return name().toLowerCase();
+    }
+
+    public static BaselineStatus of(String value) {
+        return valueOf(value.toUpperCase());
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.sonar.ai.model;
+
+import java.util.Arrays;
+
+/**
+ * 去重后代表片段的出现位置列表
+ * 每个位置压缩为一个 long：高 32 位是 {@link PathTable} 中的文件 id，低 32 位是行号
+ */
+public class Occurrences {
+
+    private long[] entries = new long[4];
+    private int size;
+
+    public synchronized void add(int fileId, int line) {
+        if (size == entries.length) {
+            entries = Arrays.copyOf(entries, size * 2);
+        }
+        entries[size++] = ((long) fileId << 32) | (line & 0xFFFFFFFFL);
+    }
+
+    public void add(String file, int line) {
+        add(PathTable.intern(file), line);
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public synchronized int getFileId(int index) {
+        return (int) (entries[checkIndex(index)] >>> 32);
+    }
+
+    public String getFile(int index) {
+        return PathTable.path(getFileId(index));
+    }
+
+    public synchronized int getLine(int index) {
+        return (int) entries[checkIndex(index)];
+    }
+
+    private int checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        return index;
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.sonar.ai.model;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 文件路径字典
+ * 每个绝对路径只保存一份，片段中只记录 int id
+ */
+public final class PathTable {
+
+    private static final ConcurrentHashMap<String, Integer> IDS = new ConcurrentHashMap<>();
+    private static volatile String[] paths = new String[256];
+    private static int size;
+    // 同一文件的片段连续产生，缓存上一次的 File 可以省掉 getAbsolutePath 和查表
+    private static volatile Entry last;
+
+    private PathTable() {
+    }
+
+    public static int intern(File file) {
+        Entry entry = last;
+        if (entry != null && entry.file == file) {
+            return entry.id;
+        }
+        int id = intern(file.getAbsolutePath());
+        last = new Entry(file, id);
+        return id;
+    }
+
+    /**
+     * @return 路径 id，path 为 null 时返回 -1
+     */
+    public static int intern(String path) {
+        if (path == null) {
+            return -1;
+        }
+        Integer id = IDS.get(path);
+        if (id != null) {
+            return id;
+        }
+        synchronized (PathTable.class) {
+            id = IDS.get(path);
+            if (id == null) {
+                if (size == paths.length) {
+                    paths = Arrays.copyOf(paths, size * 2);
+                }
+                id = size;
+                String[] current = paths;
+                current[size++] = path;
+                // 先写数组再发布 id，读取方拿到 id 时一定能看到路径
+                paths = current;
+                IDS.put(path, id);
+            }
+            return id;
+        }
+    }
+
+    public static String path(int id) {
+        return id < 0 ? null : paths[id];
+    }
+
+    private record Entry(File file, int id) {
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.sonar.ai.model;
+
+import java.util.List;
+
+/**
+ * 片段代码缩减记录
+ * 删除的注释行/空行只记数量，折叠的代码块和聚焦窗口外省略的代码记录行范围；
+ * 片段有原文范围时行号为源文件行号，否则为从片段行号起算的行号
+ *
+ * @param originalChars 缩减前的代码长度
+ * @param strippedLines 删除的注释行和空行数
+ * @param elided        省略的行范围
+ */
+public record Reduction(int originalChars, int strippedLines, List<Elision> elided) {
+
+    /**
+     * 省略的一段代码
+     *
+     * @param reason block（折叠的代码块）、window（聚焦窗口之外）或 truncated（单行过长被截断）
+     */
+    public record Elision(int fromLine, int toLine, String reason) {
+    }
+}
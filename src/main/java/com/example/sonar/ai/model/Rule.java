@@ -1,5 +1,10 @@
 package com.example.sonar.ai.model;
 
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+
 /**
  * 规则实体类
  * 对应 CSV 文件中的一行规则配置
@@ -10,6 +15,11 @@ public class Rule {
     private String description;
     private String criteria;
     private String context;
+    private int maxChars; // 片段代码长度上限，0 表示使用全局设置
+    private Map<String, Double> riskWeights; // 风险评分的指标权重，未配置的指标使用全局权重
+    private String evaluator; // 本地判定器类名，none 表示不使用，未配置时使用内置判定器
+    private int maxPerFile; // 每个文件最多输出的片段数，超出时抽样，0 表示不限制
+    private int maxTotal; // 全部文件最多输出的片段数，超出时抽样，0 表示不限制
 
     // Getters and Setters
     public String getId() { return id; }
@@ -26,4 +36,76 @@ public class Rule {
 
     public String getContext() { return context; }
     public void setContext(String context) { this.context = context; }
+
+    public int getMaxChars() { return maxChars; }
+    public void setMaxChars(int maxChars) { this.maxChars = maxChars; }
+
+    public Map<String, Double> getRiskWeights() { return riskWeights; }
+    public void setRiskWeights(Map<String, Double> riskWeights) { this.riskWeights = riskWeights; }
+
+    public String getEvaluator() { return evaluator; }
+    public void setEvaluator(String evaluator) { this.evaluator = evaluator; }
+
+    public int getMaxPerFile() { return maxPerFile; }
+    public void setMaxPerFile(int maxPerFile) { this.maxPerFile = maxPerFile; }
+
+    public int getMaxTotal() { return maxTotal; }
+    public void setMaxTotal(int maxTotal) { this.maxTotal = maxTotal; }
+
+    /**
+     * 多条规则合并后的规则，用于同一方法内多规则命中的组合片段
+     * id 为各规则 id 以 + 连接，描述、标准和上下文按 "ruleId: 内容" 逐行列出（空内容省略）。
+     * 组合片段是一次请求：成员全部受限时按成员中最大的 maxPerFile / maxTotal 限额，
+     * 有不限额的成员时这次请求本来就要发出，不限额；成员都设置了 maxChars 时上限为其和，
+     * 风险权重按指标取成员中的最大值
+     */
+    public static Rule composite(List<Rule> rules) {
+        Rule rule = new Rule();
+        StringJoiner id = new StringJoiner("+");
+        StringJoiner description = new StringJoiner("\n");
+        StringJoiner criteria = new StringJoiner("\n");
+        StringJoiner context = new StringJoiner("\n");
+        boolean perFileLimited = true;
+        boolean totalLimited = true;
+        boolean charsLimited = true;
+        int maxPerFile = 0;
+        int maxTotal = 0;
+        long maxChars = 0;
+        Map<String, Double> riskWeights = null;
+        for (Rule member : rules) {
+            id.add(member.getId());
+            perFileLimited &= member.getMaxPerFile() > 0;
+            totalLimited &= member.getMaxTotal() > 0;
+            charsLimited &= member.getMaxChars() > 0;
+            maxPerFile = Math.max(maxPerFile, member.getMaxPerFile());
+            maxTotal = Math.max(maxTotal, member.getMaxTotal());
+            maxChars += member.getMaxChars();
+            if (member.getRiskWeights() != null) {
+                if (riskWeights == null) {
+                    riskWeights = new HashMap<>();
+                }
+                for (Map.Entry<String, Double> weight : member.getRiskWeights().entrySet()) {
+                    riskWeights.merge(weight.getKey(), weight.getValue(), Math::max);
+                }
+            }
+            addLine(description, member.getId(), member.getDescription());
+            addLine(criteria, member.getId(), member.getCriteria());
+            addLine(context, member.getId(), member.getContext());
+        }
+        rule.setId(id.toString());
+        rule.setDescription(description.toString());
+        rule.setCriteria(criteria.toString());
+        rule.setContext(context.toString());
+        rule.setMaxPerFile(perFileLimited ? maxPerFile : 0);
+        rule.setMaxTotal(totalLimited ? maxTotal : 0);
+        rule.setMaxChars(charsLimited ? (int) Math.min(maxChars, Integer.MAX_VALUE) : 0);
+        rule.setRiskWeights(riskWeights);
+        return rule;
+    }
+
+    private static void addLine(StringJoiner joiner, String id, String text) {
+        if (text != null && !text.isEmpty()) {
+            joiner.add(id + ": " + text);
+        }
+    }
 }
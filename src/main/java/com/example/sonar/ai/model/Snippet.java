@@ -1,48 +1,195 @@
 package com.example.sonar.ai.model;
 
+import com.google.gson.annotations.JsonAdapter;
+
 import java.io.File;
+import java.util.List;
 
 /**
  * 代码片段实体类
  * 用于存储从源码中提取出的、待 AI 分析的代码块信息
+ * 规则字段直接引用共享的 Rule，位置和代码放在可共享的 SnippetPayload 中
  */
+@JsonAdapter(SnippetJsonAdapter.class)
 public class Snippet {
-    private String ruleId;
-    private String ruleScope;
-    private String ruleDesc;
-    private String ruleCriteria;
-    private String ruleContext;
-    private String file;
-    private int line;
-    private String code;
-    private String name;
-
-    public Snippet(Rule rule, File file, int line, String code, String name, String scope) {
-        this.ruleId = rule.getId();
-        this.ruleScope = scope;
-        this.ruleDesc = rule.getDescription();
-        this.ruleCriteria = rule.getCriteria();
-        this.ruleContext = rule.getContext();
-        this.file = file.getAbsolutePath();
-        this.line = line;
-        this.code = code;
-        this.name = name;
+    private final Rule rule;
+    private final SnippetPayload payload;
+    // 去重后作为代表片段时的所有出现位置（含自身），未去重时为 null
+    private Occurrences occurrences;
+    // 近似重复聚类后簇内成员与代表的最低相似度，未聚类时为 null
+    private Double similarity;
+    // 本地判定缓存命中时的历史判定，未命中时为 null
+    private Verdict verdict;
+    // 基线比较模式下的状态，未比较时为 null
+    private BaselineStatus baselineStatus;
+    // 代码被缩减时的记录，未缩减时为 null
+    private Reduction reduction;
+    // 同一方法内多规则合并后的组合片段的成员（各自的规则、行号和名称），普通片段为 null
+    private List<Snippet> members;
+    // 风险排序时按指标和权重计算的得分，未排序时为 null
+    private Double risk;
+
+    public Snippet(Rule rule, File file, int line, CharSequence code, String name, String scope) {
+        this(rule, new SnippetPayload(file, line, code, name, scope));
+    }
+
+    public Snippet(Rule rule, SnippetPayload payload) {
+        this.rule = rule;
+        this.payload = payload;
+    }
+
+    /**
+     * 替换代码部分，保留去重、聚类等阶段附加的信息；共享的 payload 不能原地修改
+     */
+    public Snippet withPayload(SnippetPayload payload) {
+        Snippet snippet = new Snippet(rule, payload);
+        snippet.occurrences = occurrences;
+        snippet.similarity = similarity;
+        snippet.verdict = verdict;
+        snippet.baselineStatus = baselineStatus;
+        snippet.reduction = reduction;
+        snippet.members = members;
+        snippet.risk = risk;
+        return snippet;
+    }
+
+    /**
+     * 转为引用模式，见 {@link SnippetPayload#toReference()}
+     */
+    public void toReference() {
+        payload.toReference();
+    }
+
+    public SnippetPayload getPayload() {
+        return payload;
+    }
+
+    public Occurrences getOccurrences() {
+        return occurrences;
+    }
+
+    public void setOccurrences(Occurrences occurrences) {
+        this.occurrences = occurrences;
+    }
+
+    public Double getSimilarity() {
+        return similarity;
+    }
+
+    public void setSimilarity(Double similarity) {
+        this.similarity = similarity;
+    }
+
+    public Verdict getVerdict() {
+        return verdict;
+    }
+
+    public void setVerdict(Verdict verdict) {
+        this.verdict = verdict;
+    }
+
+    public BaselineStatus getBaselineStatus() {
+        return baselineStatus;
+    }
+
+    public void setBaselineStatus(BaselineStatus baselineStatus) {
+        this.baselineStatus = baselineStatus;
+    }
+
+    public Reduction getReduction() {
+        return reduction;
+    }
+
+    public void setReduction(Reduction reduction) {
+        this.reduction = reduction;
+    }
+
+    public List<Snippet> getMembers() {
+        return members;
+    }
+
+    public void setMembers(List<Snippet> members) {
+        this.members = members;
+    }
+
+    public Double getRisk() {
+        return risk;
+    }
+
+    public void setRisk(Double risk) {
+        this.risk = risk;
     }
 
     // 仅为测试添加 Getter
     public String getName() {
-        return name;
+        return payload.getName();
     }
 
     public int getLine() {
-        return line;
+        return payload.getLine();
     }
 
     public String getCode() {
-        return code;
+        CharSequence code = payload.getCode();
+        return code == null ? null : code.toString();
     }
 
     public String getScope() {
-        return ruleScope;
+        return payload.getScope();
+    }
+
+    public Rule getRule() {
+        return rule;
+    }
+
+    public String getRuleId() {
+        return rule.getId();
+    }
+
+    public String getRuleDesc() {
+        return rule.getDescription();
+    }
+
+    public String getRuleCriteria() {
+        return rule.getCriteria();
+    }
+
+    public String getRuleContext() {
+        return rule.getContext();
+    }
+
+    public String getFile() {
+        return payload.getFile();
+    }
+
+    public boolean hasRange() {
+        return payload.hasRange();
+    }
+
+    public int getBeginLine() {
+        return payload.getBeginLine();
+    }
+
+    public int getBeginColumn() {
+        return payload.getBeginColumn();
+    }
+
+    public int getEndLine() {
+        return payload.getEndLine();
+    }
+
+    public int getEndColumn() {
+        return payload.getEndColumn();
+    }
+
+    public String getHash() {
+        return payload.getHash();
+    }
+
+    /**
+     * 代码的结构哈希，见 {@link SnippetPayload#getStructuralHash()}
+     */
+    public long getStructuralHash() {
+        return payload.getStructuralHash();
     }
 }
@@ -0,0 +1,341 @@
+package com.example.sonar.ai.model;
+
+import com.example.sonar.ai.util.Hash64;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Snippet 的 JSON 适配器
+ * 完整模式下字段与历史输出保持一致；code 在写出时才从原文切片生成字符串。
+ * 引用模式（hash 非空）下不输出 code，改为输出范围和摘要；
+ * 去重后的代表片段额外输出 occurrences 位置列表，近似聚类后再输出 similarity；
+ * codeHash 为代码结构哈希，作为判定缓存的键，命中缓存的片段附带 verdict；基线比较模式下附带 baseline 状态，
+ * 代码被缩减时附带 reduction 记录；同一方法内多规则的组合片段附带 rules 成员列表（AI 判定后成员附带各自的 verdict），
+ * 风险排序后附带 risk 得分
+ */
+public class SnippetJsonAdapter extends TypeAdapter<Snippet> {
+
+    @Override
+    public void write(JsonWriter out, Snippet snippet) throws IOException {
+        if (snippet == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("ruleId").value(snippet.getRuleId());
+        out.name("ruleScope").value(snippet.getScope());
+        out.name("ruleDesc").value(snippet.getRuleDesc());
+        out.name("ruleCriteria").value(snippet.getRuleCriteria());
+        out.name("ruleContext").value(snippet.getRuleContext());
+        out.name("file").value(snippet.getFile());
+        out.name("line").value(snippet.getLine());
+        CharSequence code = snippet.getPayload().getCode();
+        if (code != null) {
+            out.name("code").value(code.toString());
+        }
+        out.name("name").value(snippet.getName());
+        if (snippet.getHash() != null) {
+            out.name("beginLine").value(snippet.getBeginLine());
+            out.name("beginColumn").value(snippet.getBeginColumn());
+            out.name("endLine").value(snippet.getEndLine());
+            out.name("endColumn").value(snippet.getEndColumn());
+            out.name("hash").value(snippet.getHash());
+        }
+        out.name("codeHash").value(Hash64.toHex(snippet.getStructuralHash()));
+        Occurrences occurrences = snippet.getOccurrences();
+        if (occurrences != null) {
+            out.name("occurrences").beginArray();
+            for (int i = 0; i < occurrences.size(); i++) {
+                out.beginObject();
+                out.name("file").value(occurrences.getFile(i));
+                out.name("line").value(occurrences.getLine(i));
+                out.endObject();
+            }
+            out.endArray();
+        }
+        if (snippet.getSimilarity() != null) {
+            out.name("similarity").value(snippet.getSimilarity());
+        }
+        if (snippet.getRisk() != null) {
+            out.name("risk").value(snippet.getRisk());
+        }
+        if (snippet.getMembers() != null) {
+            out.name("rules").beginArray();
+            for (Snippet member : snippet.getMembers()) {
+                out.beginObject();
+                out.name("ruleId").value(member.getRuleId());
+                out.name("ruleScope").value(member.getScope());
+                out.name("line").value(member.getLine());
+                out.name("name").value(member.getName());
+                if (member.getVerdict() != null) {
+                    out.name("verdict");
+                    writeVerdict(out, member.getVerdict());
+                }
+                out.endObject();
+            }
+            out.endArray();
+        }
+        if (snippet.getBaselineStatus() != null) {
+            out.name("baseline").value(snippet.getBaselineStatus().value());
+        }
+        if (snippet.getReduction() != null) {
+            out.name("reduction");
+            writeReduction(out, snippet.getReduction());
+        }
+        if (snippet.getVerdict() != null) {
+            out.name("verdict");
+            writeVerdict(out, snippet.getVerdict());
+        }
+        out.endObject();
+    }
+
+    /**
+     * 判定对象，字段与 AIEngine 的输出格式一致
+     */
+    public static void writeVerdict(JsonWriter out, Verdict verdict) throws IOException {
+        out.beginObject();
+        out.name("violation").value(verdict.getViolation());
+        out.name("reasoning").value(verdict.getReasoning());
+        out.name("message").value(verdict.getMessage());
+        out.name("judgedAt").value(verdict.getJudgedAt());
+        out.endObject();
+    }
+
+    public static void writeReduction(JsonWriter out, Reduction reduction) throws IOException {
+        out.beginObject();
+        out.name("originalChars").value(reduction.originalChars());
+        out.name("strippedLines").value(reduction.strippedLines());
+        out.name("elided").beginArray();
+        for (Reduction.Elision elision : reduction.elided()) {
+            out.beginObject();
+            out.name("fromLine").value(elision.fromLine());
+            out.name("toLine").value(elision.toLine());
+            out.name("reason").value(elision.reason());
+            out.endObject();
+        }
+        out.endArray();
+        out.endObject();
+    }
+
+    public static Reduction readReduction(JsonReader in) throws IOException {
+        int originalChars = 0;
+        int strippedLines = 0;
+        List<Reduction.Elision> elided = new ArrayList<>();
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "originalChars" -> originalChars = in.nextInt();
+                case "strippedLines" -> strippedLines = in.nextInt();
+                case "elided" -> {
+                    in.beginArray();
+                    while (in.hasNext()) {
+                        int fromLine = 0;
+                        int toLine = 0;
+                        String reason = null;
+                        in.beginObject();
+                        while (in.hasNext()) {
+                            switch (in.nextName()) {
+                                case "fromLine" -> fromLine = in.nextInt();
+                                case "toLine" -> toLine = in.nextInt();
+                                case "reason" -> reason = in.nextString();
+                                default -> in.skipValue();
+                            }
+                        }
+                        in.endObject();
+                        elided.add(new Reduction.Elision(fromLine, toLine, reason));
+                    }
+                    in.endArray();
+                }
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+        return new Reduction(originalChars, strippedLines, elided);
+    }
+
+    public static Verdict readVerdict(JsonReader in) throws IOException {
+        Boolean violation = null;
+        String reasoning = null;
+        String message = null;
+        long judgedAt = 0;
+        in.beginObject();
+        while (in.hasNext()) {
+            String field = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (field) {
+                case "violation" -> violation = in.nextBoolean();
+                case "reasoning" -> reasoning = in.nextString();
+                case "message" -> message = in.nextString();
+                case "judgedAt" -> judgedAt = in.nextLong();
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+        return new Verdict(violation, reasoning, message, judgedAt);
+    }
+
+    /**
+     * 解析 codeHash，缺失时返回 0，由 SnippetPayload 按代码重新计算
+     */
+    public static long parseCodeHash(String hex) throws IOException {
+        try {
+            return Long.parseUnsignedLong(hex, 16);
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid codeHash: " + hex, e);
+        }
+    }
+
+    @Override
+    public Snippet read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        String ruleId = null;
+        String ruleScope = null;
+        String ruleDesc = null;
+        String ruleCriteria = null;
+        String ruleContext = null;
+        String file = null;
+        String code = null;
+        String name = null;
+        String hash = null;
+        int line = 0;
+        int beginLine = 0;
+        int beginColumn = 0;
+        int endLine = 0;
+        int endColumn = 0;
+        Occurrences occurrences = null;
+        List<Snippet> members = null;
+        Double similarity = null;
+        Double risk = null;
+        long codeHash = 0;
+        Verdict verdict = null;
+        BaselineStatus baselineStatus = null;
+        Reduction reduction = null;
+        in.beginObject();
+        while (in.hasNext()) {
+            String field = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (field) {
+                case "ruleId" -> ruleId = in.nextString();
+                case "ruleScope" -> ruleScope = in.nextString();
+                case "ruleDesc" -> ruleDesc = in.nextString();
+                case "ruleCriteria" -> ruleCriteria = in.nextString();
+                case "ruleContext" -> ruleContext = in.nextString();
+                case "file" -> file = in.nextString();
+                case "line" -> line = in.nextInt();
+                case "code" -> code = in.nextString();
+                case "name" -> name = in.nextString();
+                case "beginLine" -> beginLine = in.nextInt();
+                case "beginColumn" -> beginColumn = in.nextInt();
+                case "endLine" -> endLine = in.nextInt();
+                case "endColumn" -> endColumn = in.nextInt();
+                case "hash" -> hash = in.nextString();
+                case "occurrences" -> occurrences = readOccurrences(in);
+                case "rules" -> members = readMembers(in);
+                case "similarity" -> similarity = in.nextDouble();
+                case "risk" -> risk = in.nextDouble();
+                case "codeHash" -> codeHash = parseCodeHash(in.nextString());
+                case "verdict" -> verdict = readVerdict(in);
+                case "baseline" -> baselineStatus = BaselineStatus.of(in.nextString());
+                case "reduction" -> reduction = readReduction(in);
+                default -> in.skipValue();
+            }
+        }
+        in.endObject();
+        Rule rule = new Rule();
+        rule.setId(ruleId);
+        rule.setDescription(ruleDesc);
+        rule.setCriteria(ruleCriteria);
+        rule.setContext(ruleContext);
+        Snippet snippet = new Snippet(rule, new SnippetPayload(
+                file, line, code, name, ruleScope, beginLine, beginColumn, endLine, endColumn, hash, codeHash));
+        snippet.setOccurrences(occurrences);
+        snippet.setSimilarity(similarity);
+        snippet.setRisk(risk);
+        snippet.setVerdict(verdict);
+        snippet.setBaselineStatus(baselineStatus);
+        snippet.setReduction(reduction);
+        if (members != null) {
+            // 成员只记录了规则 id、行号和名称，文件与组合片段相同
+            List<Snippet> resolved = new ArrayList<>(members.size());
+            for (Snippet member : members) {
+                Snippet resolvedMember = new Snippet(member.getRule(), new SnippetPayload(file, member.getLine(),
+                        null, member.getName(), member.getScope(), 0, 0, 0, 0, null, 0));
+                resolvedMember.setVerdict(member.getVerdict());
+                resolved.add(resolvedMember);
+            }
+            snippet.setMembers(resolved);
+        }
+        return snippet;
+    }
+
+    private static List<Snippet> readMembers(JsonReader in) throws IOException {
+        List<Snippet> members = new ArrayList<>();
+        in.beginArray();
+        while (in.hasNext()) {
+            Rule rule = new Rule();
+            String scope = null;
+            String name = null;
+            int line = 0;
+            Verdict verdict = null;
+            in.beginObject();
+            while (in.hasNext()) {
+                String field = in.nextName();
+                if (in.peek() == JsonToken.NULL) {
+                    in.nextNull();
+                    continue;
+                }
+                switch (field) {
+                    case "ruleId" -> rule.setId(in.nextString());
+                    case "ruleScope" -> scope = in.nextString();
+                    case "line" -> line = in.nextInt();
+                    case "name" -> name = in.nextString();
+                    case "verdict" -> verdict = readVerdict(in);
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            Snippet member = new Snippet(rule, new SnippetPayload((String) null, line, null, name, scope,
+                    0, 0, 0, 0, null, 0));
+            member.setVerdict(verdict);
+            members.add(member);
+        }
+        in.endArray();
+        return members;
+    }
+
+    private static Occurrences readOccurrences(JsonReader in) throws IOException {
+        Occurrences occurrences = new Occurrences();
+        in.beginArray();
+        while (in.hasNext()) {
+            String file = null;
+            int line = 0;
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "file" -> file = in.nextString();
+                    case "line" -> line = in.nextInt();
+                    default -> in.skipValue();
+                }
+            }
+            in.endObject();
+            occurrences.add(file, line);
+        }
+        in.endArray();
+        return occurrences;
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.sonar.ai.model;
+
+import java.util.List;
+
+/**
+ * 片段对应语法节点的静态指标，在抽取的同一次遍历中计算
+ * 节点为片段代码对应的节点（方法内的循环片段取循环语句，ReentrantLock 片段取所在方法体），只统计该节点的子树
+ * <ul>
+ *   <li>loopDepth：节点内（含外层）循环的最大嵌套深度</li>
+ *   <li>statements：节点内代码块中的语句数</li>
+ *   <li>lockStatements：位于 synchronized 块或 synchronized 方法内的语句数</li>
+ *   <li>callsInLoops：位于循环内的方法调用数</li>
+ *   <li>fanOut：调用的不同方法名数</li>
+ * </ul>
+ */
+public record SnippetMetrics(int loopDepth, int statements, int lockStatements, int callsInLoops, int fanOut) {
+
+    public static final List<String> NAMES =
+            List.of("loopDepth", "statements", "lockStatements", "callsInLoops", "fanOut");
+
+    /**
+     * 按名称取指标值，名称见 {@link #NAMES}
+     */
+    public int get(String name) {
+        return switch (name) {
+            case "loopDepth" -> loopDepth;
+            case "statements" -> statements;
+            case "lockStatements" -> lockStatements;
+            case "callsInLoops" -> callsInLoops;
+            case "fanOut" -> fanOut;
+            default -> throw new IllegalArgumentException("Unknown metric: " + name);
+        };
+    }
+}
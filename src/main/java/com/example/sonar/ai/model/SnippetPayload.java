@@ -0,0 +1,182 @@
+package com.example.sonar.ai.model;
+
+import com.example.sonar.ai.util.ContentHash;
+import com.example.sonar.ai.util.Hash64;
+
+import java.io.File;
+
+/**
+ * 片段中与规则无关的部分：位置、代码和名称
+ * 与规则无关的 handler 对同一节点只生成一次，订阅它的所有规则的 Snippet 共享同一个实例。
+ * 文件路径以 {@link PathTable} 中的 id 保存，代码是原文切片时范围按需从切片计算
+ */
+public class SnippetPayload {
+    private final int fileId;
+    private final int line;
+    // 可能是 SourceSlice，序列化时才生成字符串
+    private CharSequence code;
+    private final String name;
+    private final String scope;
+
+    // 代码在源文件中的范围（行列号从 1 开始，结束位置为闭区间）；
+    // 代码是原文切片时为 0，由切片按需计算，转为引用模式或反序列化时才写入
+    private int beginLine;
+    private int beginColumn;
+    private int endLine;
+    private int endColumn;
+    // 引用模式下代码的摘要，非空表示 code 已丢弃，只输出范围
+    private String hash;
+    // 结构哈希，0 表示尚未计算
+    private long structuralHash;
+    // 外层方法的标识（类型名#方法声明），不在方法内时为 null
+    private String enclosing;
+    // 节点的静态指标，用于风险排序；未计算时为 null
+    private SnippetMetrics metrics;
+
+    public SnippetPayload(File file, int line, CharSequence code, String name, String scope) {
+        this.fileId = PathTable.intern(file);
+        this.line = line;
+        this.code = code;
+        this.name = name;
+        this.scope = scope;
+    }
+
+    /**
+     * 反序列化时按已记录的范围和摘要直接构造，structuralHash 为 0 时按代码重新计算
+     */
+    public SnippetPayload(String file, int line, CharSequence code, String name, String scope,
+                          int beginLine, int beginColumn, int endLine, int endColumn, String hash,
+                          long structuralHash) {
+        this.fileId = PathTable.intern(file);
+        this.line = line;
+        this.code = code;
+        this.name = name;
+        this.scope = scope;
+        this.beginLine = beginLine;
+        this.beginColumn = beginColumn;
+        this.endLine = endLine;
+        this.endColumn = endColumn;
+        this.hash = hash;
+        this.structuralHash = structuralHash;
+    }
+
+    /**
+     * 转为引用模式：代码来自源文件原文时只保留文件、范围和摘要，丢弃代码文本。
+     * 合成的代码（签名、命名拆分等）在源文件中没有对应原文，仍保留文本
+     */
+    public void toReference() {
+        if (hasRange() && code != null) {
+            structuralHash = getStructuralHash();
+            beginLine = getBeginLine();
+            beginColumn = getBeginColumn();
+            endLine = getEndLine();
+            endColumn = getEndColumn();
+            hash = ContentHash.of(code);
+            code = null;
+        }
+    }
+
+    /**
+     * 原文切片转为独立的字符串：先记下范围和结构哈希，之后不再引用整个源文件的 SourceText，
+     * 供需要长时间持有片段的阶段使用
+     */
+    public void detach() {
+        if (slice() != null) {
+            structuralHash = getStructuralHash();
+            beginLine = getBeginLine();
+            beginColumn = getBeginColumn();
+            endLine = getEndLine();
+            endColumn = getEndColumn();
+            code = code.toString();
+        }
+    }
+
+    public boolean hasRange() {
+        return beginLine > 0 || slice() != null;
+    }
+
+    private SourceSlice slice() {
+        return code instanceof SourceSlice slice && slice.length() > 0 ? slice : null;
+    }
+
+    public int getFileId() {
+        return fileId;
+    }
+
+    public String getFile() {
+        return PathTable.path(fileId);
+    }
+
+    public int getLine() {
+        return line;
+    }
+
+    public CharSequence getCode() {
+        return code;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getScope() {
+        return scope;
+    }
+
+    public int getBeginLine() {
+        SourceSlice slice = slice();
+        return slice != null ? slice.getSource().lineOf(slice.getBegin()) : beginLine;
+    }
+
+    public int getBeginColumn() {
+        SourceSlice slice = slice();
+        return slice != null ? slice.getSource().columnOf(slice.getBegin()) : beginColumn;
+    }
+
+    public int getEndLine() {
+        SourceSlice slice = slice();
+        return slice != null ? slice.getSource().lineOf(slice.getEnd() - 1) : endLine;
+    }
+
+    public int getEndColumn() {
+        SourceSlice slice = slice();
+        return slice != null ? slice.getSource().columnOf(slice.getEnd() - 1) : endColumn;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    public String getEnclosing() {
+        return enclosing;
+    }
+
+    public void setEnclosing(String enclosing) {
+        this.enclosing = enclosing;
+    }
+
+    public SnippetMetrics getMetrics() {
+        return metrics;
+    }
+
+    public void setMetrics(SnippetMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * 代码的结构哈希：原文切片取语法树节点的结构哈希，
+     * 合成的代码（签名、命名拆分等）取忽略空白差异的文本哈希并入名称，
+     * 不同声明生成的相同文本（如"无JavaDoc"、请求路径）不会共用判定缓存的键
+     */
+    public long getStructuralHash() {
+        if (structuralHash == 0) {
+            if (code instanceof SourceSlice slice && slice.hasStructuralHash()) {
+                structuralHash = slice.getStructuralHash();
+            } else if (code != null) {
+                long text = Hash64.ofNormalized(code);
+                structuralHash = name == null ? text : Hash64.combine(text, Hash64.of(name));
+            }
+        }
+        return structuralHash;
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.sonar.ai.model;
+
+/**
+ * 源文件原文的一段切片
+ * 只记录偏移量，序列化时才通过 toString() 生成字符串。
+ * 由语法树节点截取的切片同时带有该节点的结构哈希
+ */
+public final class SourceSlice implements CharSequence {
+
+    private final SourceText source;
+    private final int begin;
+    private final int end;
+    // 0 表示不是由语法树节点截取的
+    private final long structuralHash;
+
+    SourceSlice(SourceText source, int begin, int end) {
+        this(source, begin, end, 0);
+    }
+
+    private SourceSlice(SourceText source, int begin, int end, long structuralHash) {
+        this.source = source;
+        this.begin = begin;
+        this.end = end;
+        this.structuralHash = structuralHash;
+    }
+
+    /**
+     * 附带对应节点结构哈希的同一切片
+     */
+    public SourceSlice withStructuralHash(long hash) {
+        return new SourceSlice(source, begin, end, hash);
+    }
+
+    public boolean hasStructuralHash() {
+        return structuralHash != 0;
+    }
+
+    public long getStructuralHash() {
+        return structuralHash;
+    }
+
+    public SourceText getSource() {
+        return source;
+    }
+
+    public int getBegin() {
+        return begin;
+    }
+
+    public int getEnd() {
+        return end;
+    }
+
+    @Override
+    public int length() {
+        return end - begin;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return source.getText().charAt(begin + index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return new SourceSlice(source, begin + start, begin + end);
+    }
+
+    @Override
+    public String toString() {
+        return source.getText().substring(begin, end);
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.sonar.ai.model;
+
+import com.github.javaparser.Range;
+
+/**
+ * 源文件原文
+ * 保存文件文本和每行起始偏移量索引，用于按 AST 节点的 Range 直接截取原始代码，
+ * 避免对子树重新 pretty-print
+ */
+public class SourceText {
+
+    private final String text;
+    private final int[] lineStarts;
+
+    public SourceText(String text) {
+        this.text = text;
+        this.lineStarts = indexLines(text);
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public int getLineCount() {
+        return lineStarts.length;
+    }
+
+    /**
+     * 行列号转换为文本偏移量（行列号均从 1 开始，与 JavaParser 的 Position 一致）
+     *
+     * @return 偏移量，行号越界时返回 -1
+     */
+    public int offsetOf(int line, int column) {
+        if (line < 1 || line > lineStarts.length) {
+            return -1;
+        }
+        return Math.min(lineStarts[line - 1] + Math.max(column, 1) - 1, text.length());
+    }
+
+    /**
+     * 偏移量所在的行号（从 1 开始），二分查找行首索引
+     */
+    public int lineOf(int offset) {
+        int low = 0;
+        int high = lineStarts.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (lineStarts[mid] <= offset) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low + 1;
+    }
+
+    /**
+     * 偏移量所在的列号（从 1 开始）
+     */
+    public int columnOf(int offset) {
+        return offset - lineStarts[lineOf(offset) - 1] + 1;
+    }
+
+    /**
+     * 截取节点范围内的原文，JavaParser 的 Range 结束位置是闭区间
+     *
+     * @return 切片，范围无效时返回 null
+     */
+    public SourceSlice slice(Range range) {
+        int begin = offsetOf(range.begin.line, range.begin.column);
+        int end = offsetOf(range.end.line, range.end.column);
+        if (begin < 0 || end < 0 || end < begin) {
+            return null;
+        }
+        return new SourceSlice(this, begin, Math.min(end + 1, text.length()));
+    }
+
+    /**
+     * 按 \n、\r\n、\r 三种换行符建立行首偏移索引
+     */
+    private static int[] indexLines(String text) {
+        int count = 1;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\n' || (c == '\r' && (i + 1 >= text.length() || text.charAt(i + 1) != '\n'))) {
+                count++;
+            }
+        }
+        int[] starts = new int[count];
+        int line = 1;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\n' || (c == '\r' && (i + 1 >= text.length() || text.charAt(i + 1) != '\n'))) {
+                starts[line++] = i + 1;
+            }
+        }
+        return starts;
+    }
+}
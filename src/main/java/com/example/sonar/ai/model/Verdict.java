@@ -0,0 +1,42 @@
+package com.example.sonar.ai.model;
+
+/**
+ * AI 判定结果
+ * 字段与 AIEngine 要求模型输出的 JSON 一致，judgedAt 为判定时间（毫秒时间戳）
+ */
+public class Verdict {
+    private Boolean violation;
+    private String reasoning;
+    private String message;
+    private long judgedAt;
+
+    public Verdict() {
+    }
+
+    public Verdict(Boolean violation, String reasoning, String message, long judgedAt) {
+        this.violation = violation;
+        this.reasoning = reasoning;
+        this.message = message;
+        this.judgedAt = judgedAt;
+    }
+
+    public Boolean getViolation() {
+        return violation;
+    }
+
+    public String getReasoning() {
+        return reasoning;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public long getJudgedAt() {
+        return judgedAt;
+    }
+
+    public void setJudgedAt(long judgedAt) {
+        this.judgedAt = judgedAt;
+    }
+}
@@ -0,0 +1,358 @@
+package com.example.sonar.ai.parser;
+
+import com.example.sonar.ai.handler.Handler;
+import com.example.sonar.ai.model.Rule;
+import com.example.sonar.ai.model.Snippet;
+import com.example.sonar.ai.model.SnippetMetrics;
+import com.example.sonar.ai.model.SnippetPayload;
+import com.example.sonar.ai.model.SourceSlice;
+import com.example.sonar.ai.model.SourceText;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.CallableDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import com.github.javaparser.ast.expr.MethodCallExpr;
+import com.github.javaparser.ast.stmt.BlockStmt;
+import com.github.javaparser.ast.stmt.DoStmt;
+import com.github.javaparser.ast.stmt.ForEachStmt;
+import com.github.javaparser.ast.stmt.ForStmt;
+import com.github.javaparser.ast.stmt.SynchronizedStmt;
+import com.github.javaparser.ast.stmt.WhileStmt;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * 单个文件的抽取上下文
+ * 由 JavaCodeVisitor 在遍历时维护外层类型/方法栈，handler 通过它以 O(1) 获取外层声明，
+ * 不再对每个片段调用 findAncestor 和 getDeclarationAsString；
+ * 同时持有文件原文，片段代码直接按节点范围截取；并在同一次遍历中累计各节点的静态指标
+ */
+public class ExtractionContext {
+
+    private final File file;
+    private final SourceText source;
+    private final Deque<Frame> types = new ArrayDeque<>();
+    private final Deque<Frame> callables = new ArrayDeque<>();
+    private final Deque<Frame> methods = new ArrayDeque<>();
+    // 当前节点上与规则无关的 handler 的抽取结果，按 handler 类型缓存
+    private final Map<Class<?>, List<SnippetPayload>> shared = new HashMap<>();
+    private final StructuralHasher hasher = new StructuralHasher();
+    // 静态指标的累计栈，参与抽取的节点各占一层，退出时并入外层；栈底为整个文件
+    private final Deque<MetricsFrame> metrics = new ArrayDeque<>();
+    private final Map<Node, SnippetMetrics> measured = new IdentityHashMap<>();
+    private int loopDepth;
+    private int lockDepth;
+
+    public ExtractionContext(File file, SourceText source) {
+        this.file = file;
+        this.source = source;
+        this.metrics.push(new MetricsFrame(0));
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public SourceText getSource() {
+        return source;
+    }
+
+    /**
+     * 节点对应的原始代码，延迟截取并附带节点的结构哈希；没有位置信息时退回 toString()
+     */
+    public CharSequence slice(Node node) {
+        if (source != null && node.getRange().isPresent()) {
+            SourceSlice slice = source.slice(node.getRange().get());
+            if (slice != null) {
+                return slice.withStructuralHash(hasher.hash(node));
+            }
+        }
+        return node.toString();
+    }
+
+    /**
+     * 节点的结构哈希，忽略注释、空白和位置；子树结果在本文件内缓存复用
+     */
+    public long structuralHash(Node node) {
+        return hasher.hash(node);
+    }
+
+    /**
+     * 调用 handler 抽取当前节点
+     * 与规则无关的 handler 在同一节点上只执行一次，后续规则直接复用已生成的 payload
+     *
+     * @param extraction 实际调用 handler.extract 的逻辑，参数为结果列表
+     */
+    public void dispatch(Handler handler, Rule rule, List<Snippet> snippets, Consumer<List<Snippet>> extraction) {
+        if (!handler.isRuleIndependent()) {
+            extraction.accept(snippets);
+            return;
+        }
+        List<SnippetPayload> payloads = shared.get(handler.getClass());
+        if (payloads == null) {
+            List<Snippet> extracted = new ArrayList<>();
+            extraction.accept(extracted);
+            payloads = new ArrayList<>(extracted.size());
+            for (Snippet snippet : extracted) {
+                payloads.add(snippet.getPayload());
+            }
+            shared.put(handler.getClass(), payloads);
+            snippets.addAll(extracted);
+            return;
+        }
+        for (SnippetPayload payload : payloads) {
+            snippets.add(new Snippet(rule, payload));
+        }
+    }
+
+    /**
+     * 当前节点的所有规则处理完后清空共享结果
+     */
+    void clearShared() {
+        if (!shared.isEmpty()) {
+            shared.clear();
+        }
+    }
+
+    void enterType(TypeDeclaration<?> type) {
+        types.push(new Frame(type));
+    }
+
+    void exitType() {
+        types.pop();
+    }
+
+    void enterCallable(CallableDeclaration<?> callable) {
+        Frame frame = new Frame(callable);
+        callables.push(frame);
+        if (callable instanceof MethodDeclaration) {
+            methods.push(frame);
+        }
+    }
+
+    void exitCallable() {
+        Frame frame = callables.pop();
+        if (frame.getNode() instanceof MethodDeclaration) {
+            methods.pop();
+        }
+    }
+
+    /**
+     * 开始累计一个节点的静态指标
+     */
+    void enterNode() {
+        metrics.push(new MetricsFrame(loopDepth));
+    }
+
+    /**
+     * 结束当前节点，返回其指标并并入外层节点
+     */
+    SnippetMetrics exitNode() {
+        MetricsFrame frame = metrics.pop();
+        metrics.peek().merge(frame);
+        return frame.toMetrics();
+    }
+
+    /**
+     * 任意节点的静态指标，供片段范围不是执行抽取的节点时使用（如方法内的循环语句、锁所在的方法体）；
+     * 口径与遍历时累计的相同，外层循环和锁按祖先节点计入；同一节点只计算一次
+     */
+    public SnippetMetrics metricsOf(Node node) {
+        SnippetMetrics cached = measured.get(node);
+        if (cached != null) {
+            return cached;
+        }
+        int loops = 0;
+        boolean locked = false;
+        for (Node parent = node.getParentNode().orElse(null); parent != null;
+             parent = parent.getParentNode().orElse(null)) {
+            if (isLoop(parent)) {
+                loops++;
+            }
+            locked |= parent instanceof SynchronizedStmt
+                    || parent instanceof MethodDeclaration method && method.isSynchronized();
+        }
+        MetricsFrame frame = new MetricsFrame(loops);
+        measure(node, loops, locked, frame);
+        SnippetMetrics metrics = frame.toMetrics();
+        measured.put(node, metrics);
+        return metrics;
+    }
+
+    private static void measure(Node node, int loops, boolean locked, MetricsFrame frame) {
+        if (isLoop(node)) {
+            loops++;
+            frame.loopDepth = Math.max(frame.loopDepth, loops);
+        }
+        if (node instanceof BlockStmt block) {
+            frame.statements += block.getStatements().size();
+            if (locked) {
+                frame.lockStatements += block.getStatements().size();
+            }
+        } else if (node instanceof MethodCallExpr call) {
+            if (loops > 0) {
+                frame.callsInLoops++;
+            }
+            if (frame.callees == null) {
+                frame.callees = new HashSet<>();
+            }
+            frame.callees.add(call.getNameAsString());
+        }
+        boolean childLocked = locked || node instanceof SynchronizedStmt
+                || node instanceof MethodDeclaration method && method.isSynchronized();
+        for (Node child : node.getChildNodes()) {
+            measure(child, loops, childLocked, frame);
+        }
+    }
+
+    private static boolean isLoop(Node node) {
+        return node instanceof ForStmt || node instanceof ForEachStmt
+                || node instanceof WhileStmt || node instanceof DoStmt;
+    }
+
+    void enterLoop() {
+        loopDepth++;
+        MetricsFrame frame = metrics.peek();
+        frame.loopDepth = Math.max(frame.loopDepth, loopDepth);
+    }
+
+    void exitLoop() {
+        loopDepth--;
+    }
+
+    void enterLock() {
+        lockDepth++;
+    }
+
+    void exitLock() {
+        lockDepth--;
+    }
+
+    /**
+     * 记录代码块中的语句
+     */
+    void statements(int count) {
+        MetricsFrame frame = metrics.peek();
+        frame.statements += count;
+        if (lockDepth > 0) {
+            frame.lockStatements += count;
+        }
+    }
+
+    /**
+     * 记录一次方法调用
+     */
+    void call(String name) {
+        MetricsFrame frame = metrics.peek();
+        if (loopDepth > 0) {
+            frame.callsInLoops++;
+        }
+        if (frame.callees == null) {
+            frame.callees = new HashSet<>();
+        }
+        frame.callees.add(name);
+    }
+
+    /**
+     * 最近的外层类型（类/接口/枚举）
+     */
+    public Optional<Frame> enclosingType() {
+        return Optional.ofNullable(types.peek());
+    }
+
+    /**
+     * 最近的外层方法或构造方法，等价于 findAncestor(CallableDeclaration.class)
+     */
+    public Optional<Frame> enclosingCallable() {
+        return Optional.ofNullable(callables.peek());
+    }
+
+    /**
+     * 最近的外层方法，等价于 findAncestor(MethodDeclaration.class)
+     */
+    public Optional<Frame> enclosingMethod() {
+        return Optional.ofNullable(methods.peek());
+    }
+
+    /**
+     * 最近的外层方法或构造方法的标识（外层类型名#方法声明），不在方法内时返回 null
+     */
+    public String enclosingKey() {
+        Frame callable = callables.peek();
+        if (callable == null) {
+            return null;
+        }
+        Frame type = types.peek();
+        return (type == null ? "" : type.getDeclaration()) + "#" + callable.getDeclaration();
+    }
+
+    private static final class MetricsFrame {
+        private int loopDepth;
+        private int statements;
+        private int lockStatements;
+        private int callsInLoops;
+        private Set<String> callees;
+
+        private MetricsFrame(int loopDepth) {
+            this.loopDepth = loopDepth;
+        }
+
+        private void merge(MetricsFrame inner) {
+            loopDepth = Math.max(loopDepth, inner.loopDepth);
+            statements += inner.statements;
+            lockStatements += inner.lockStatements;
+            callsInLoops += inner.callsInLoops;
+            if (inner.callees != null) {
+                if (callees == null) {
+                    callees = new HashSet<>();
+                }
+                callees.addAll(inner.callees);
+            }
+        }
+
+        private SnippetMetrics toMetrics() {
+            return new SnippetMetrics(loopDepth, statements, lockStatements, callsInLoops,
+                    callees == null ? 0 : callees.size());
+        }
+    }
+
+    /**
+     * 栈中的一层声明，声明字符串只渲染一次
+     */
+    public static final class Frame {
+        private final Node node;
+        private String declaration;
+
+        private Frame(Node node) {
+            this.node = node;
+        }
+
+        public Node getNode() {
+            return node;
+        }
+
+        public String getDeclaration() {
+            if (declaration == null) {
+                if (node instanceof CallableDeclaration<?> callable) {
+                    declaration = callable.getDeclarationAsString(true, true, true);
+                } else if (node instanceof TypeDeclaration<?> type) {
+                    declaration = type.getNameAsString();
+                } else {
+                    declaration = "<unknown>";
+                }
+            }
+            return declaration;
+        }
+    }
+}
@@ -2,31 +2,37 @@ package com.example.sonar.ai.parser;
 
 import com.example.sonar.ai.model.Rule;
 import com.example.sonar.ai.model.Snippet;
+import com.example.sonar.ai.model.SnippetMetrics;
+import com.example.sonar.ai.model.SourceText;
 import com.example.sonar.ai.strategy.*;
 import com.github.javaparser.ast.body.*;
 import com.github.javaparser.ast.expr.MethodCallExpr;
 import com.github.javaparser.ast.expr.ObjectCreationExpr;
+import com.github.javaparser.ast.stmt.BlockStmt;
+import com.github.javaparser.ast.stmt.DoStmt;
+import com.github.javaparser.ast.stmt.ForEachStmt;
+import com.github.javaparser.ast.stmt.ForStmt;
 import com.github.javaparser.ast.stmt.SynchronizedStmt;
 import com.github.javaparser.ast.stmt.ThrowStmt;
+import com.github.javaparser.ast.stmt.WhileStmt;
 import com.github.javaparser.ast.visitor.VoidVisitorAdapter;
 
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
 /**
  * AST 访问器
  * 遍历 Java 语法树并根据规则提取节点
  * 修复了 ClassOrInterfaceDeclaration 中错误的 isEnum() 调用。
  */
-public class JavaCodeVisitor extends VoidVisitorAdapter<Map<Rule, List<Snippet>>> {
+public class JavaCodeVisitor extends VoidVisitorAdapter<SnippetBuffer> {
 
-    private final File currentFile;
+    private final ExtractionContext context;
     private final List<ExtractionStrategy<?>> strategies;
 
-    public JavaCodeVisitor(File file) {
-        this.currentFile = file;
+    public JavaCodeVisitor(File file, SourceText source) {
+        this.context = new ExtractionContext(file, source);
         this.strategies = new ArrayList<>();
         // 注册策略
         // 每个策略中根据不同的抽取规则又做handler管理，以ruleId为唯一标识
@@ -43,77 +49,159 @@ public class JavaCodeVisitor extends VoidVisitorAdapter<Map<Rule, List<Snippet>>
     }
 
     @Override
-    public void visit(ClassOrInterfaceDeclaration n, Map<Rule, List<Snippet>> collector) {
+    public void visit(ClassOrInterfaceDeclaration n, SnippetBuffer collector) {
+        context.enterType(n);
+        context.enterNode();
         super.visit(n, collector);
-        applyStrategies(n, collector);
+        applyStrategies(n, collector, context.exitNode());
+        context.exitType();
     }
 
     @Override
-    public void visit(EnumDeclaration n, Map<Rule, List<Snippet>> collector) {
+    public void visit(EnumDeclaration n, SnippetBuffer collector) {
+        context.enterType(n);
+        context.enterNode();
         super.visit(n, collector);
-        applyStrategies(n, collector);
+        applyStrategies(n, collector, context.exitNode());
+        context.exitType();
     }
 
     @Override
-    public void visit(MethodDeclaration n, Map<Rule, List<Snippet>> collector) {
+    public void visit(MethodDeclaration n, SnippetBuffer collector) {
+        context.enterCallable(n);
+        context.enterNode();
+        if (n.isSynchronized()) {
+            context.enterLock();
+        }
+        super.visit(n, collector);
+        if (n.isSynchronized()) {
+            context.exitLock();
+        }
+        applyStrategies(n, collector, context.exitNode());
+        context.exitCallable();
+    }
+
+    @Override
+    public void visit(ConstructorDeclaration n, SnippetBuffer collector) {
+        // 构造方法本身不参与抽取，只维护外层声明栈
+        context.enterCallable(n);
         super.visit(n, collector);
-        applyStrategies(n, collector);
+        context.exitCallable();
     }
 
     @Override
-    public void visit(VariableDeclarator n, Map<Rule, List<Snippet>> collector) {
+    public void visit(VariableDeclarator n, SnippetBuffer collector) {
+        context.enterNode();
         super.visit(n, collector);
-        applyStrategies(n, collector);
+        applyStrategies(n, collector, context.exitNode());
     }
 
     @Override
-    public void visit(ObjectCreationExpr n, Map<Rule, List<Snippet>> collector) {
+    public void visit(ObjectCreationExpr n, SnippetBuffer collector) {
+        context.enterNode();
         super.visit(n, collector);
-        applyStrategies(n, collector);
+        applyStrategies(n, collector, context.exitNode());
     }
 
     @Override
-    public void visit(MethodCallExpr n, Map<Rule, List<Snippet>> collector) {
+    public void visit(MethodCallExpr n, SnippetBuffer collector) {
+        context.enterNode();
+        context.call(n.getNameAsString());
         super.visit(n, collector);
-        applyStrategies(n, collector);
+        applyStrategies(n, collector, context.exitNode());
     }
 
     @Override
-    public void visit(ThrowStmt n, Map<Rule, List<Snippet>> collector) {
+    public void visit(ThrowStmt n, SnippetBuffer collector) {
+        context.enterNode();
         super.visit(n, collector);
-        applyStrategies(n, collector);
+        applyStrategies(n, collector, context.exitNode());
     }
 
     @Override
-    public void visit(FieldDeclaration n, Map<Rule, List<Snippet>> collector) {
+    public void visit(FieldDeclaration n, SnippetBuffer collector) {
+        context.enterNode();
         super.visit(n, collector);
-        applyStrategies(n, collector);
+        applyStrategies(n, collector, context.exitNode());
     }
 
     @Override
-    public void visit(SynchronizedStmt n, Map<Rule, List<Snippet>> collector) {
+    public void visit(SynchronizedStmt n, SnippetBuffer collector) {
+        context.enterNode();
+        context.enterLock();
         super.visit(n, collector);
-        applyStrategies(n, collector);
+        context.exitLock();
+        applyStrategies(n, collector, context.exitNode());
+    }
+
+    @Override
+    public void visit(BlockStmt n, SnippetBuffer collector) {
+        context.statements(n.getStatements().size());
+        super.visit(n, collector);
+    }
+
+    @Override
+    public void visit(ForStmt n, SnippetBuffer collector) {
+        context.enterLoop();
+        super.visit(n, collector);
+        context.exitLoop();
+    }
+
+    @Override
+    public void visit(ForEachStmt n, SnippetBuffer collector) {
+        context.enterLoop();
+        super.visit(n, collector);
+        context.exitLoop();
+    }
+
+    @Override
+    public void visit(WhileStmt n, SnippetBuffer collector) {
+        context.enterLoop();
+        super.visit(n, collector);
+        context.exitLoop();
+    }
+
+    @Override
+    public void visit(DoStmt n, SnippetBuffer collector) {
+        context.enterLoop();
+        super.visit(n, collector);
+        context.exitLoop();
     }
 
     @SuppressWarnings("unchecked")
-    private void applyStrategies(com.github.javaparser.ast.Node node, Map<Rule, List<Snippet>> collector) {
-        collector.forEach((rule, snippets) -> {
+    private void applyStrategies(com.github.javaparser.ast.Node node, SnippetBuffer collector,
+                                 SnippetMetrics metrics) {
+        int mark = collector.size();
+        for (int ordinal = 0; ordinal < collector.ruleCount(); ordinal++) {
+            Rule rule = collector.rule(ordinal);
             for (ExtractionStrategy strategy : strategies) {
                 if (strategy.supports(rule, node)) {
                     // Start of safe logic to execute extract with captured wildcard
-                    executeStrategy(strategy, node, rule, currentFile, snippets);
+                    executeStrategy(strategy, node, rule, collector.forRule(ordinal));
                 }
             }
-        });
+        }
+        context.clearShared();
+        if (collector.size() > mark) {
+            // 记录本节点产生的片段所在的方法和节点的静态指标，供按方法合并多规则片段和风险排序；
+            // 片段范围不是本节点时由 handler 按 ExtractionContext.metricsOf 设置，
+            // 合成的代码（签名、命名拆分等）不包含节点内容，不附带指标
+            String enclosing = context.enclosingKey();
+            collector.forEachSince(mark, snippet -> {
+                snippet.getPayload().setEnclosing(enclosing);
+                if (snippet.hasRange() && snippet.getPayload().getMetrics() == null) {
+                    snippet.getPayload().setMetrics(metrics);
+                }
+            });
+        }
     }
 
     @SuppressWarnings("unchecked")
     private <T extends com.github.javaparser.ast.Node> void executeStrategy(ExtractionStrategy<T> strategy,
-            com.github.javaparser.ast.Node node, Rule rule, File file, List<Snippet> snippets) {
+            com.github.javaparser.ast.Node node, Rule rule, List<Snippet> snippets) {
         try {
             // Unchecked cast is necessary here as we essentially checked 'supports' before
-            strategy.extract((T) node, rule, file, snippets);
+            strategy.extract((T) node, rule, context, snippets);
         } catch (ClassCastException e) {
             // Should be prevented by supports(), but good safety net
         }
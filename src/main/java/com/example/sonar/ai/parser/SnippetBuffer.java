@@ -0,0 +1,136 @@
+package com.example.sonar.ai.parser;
+
+import com.example.sonar.ai.model.Rule;
+import com.example.sonar.ai.model.Snippet;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * 单个文件的片段缓冲区
+ * 所有规则的片段追加到同一个可增长数组，按规则序号（在规则列表中的下标）串成链表，
+ * 不再为每个文件的每条规则分配 HashMap 条目和 ArrayList。缓冲区在文件之间复用
+ */
+public class SnippetBuffer {
+
+    private final List<Rule> rules;
+    private final List<Snippet>[] views;
+    private final int[] head;
+    private final int[] tail;
+    private final int[] counts;
+    private Snippet[] items = new Snippet[64];
+    private int[] next = new int[64];
+    private int size;
+
+    @SuppressWarnings("unchecked")
+    public SnippetBuffer(List<Rule> rules) {
+        this.rules = rules;
+        this.views = new List[rules.size()];
+        this.head = new int[rules.size()];
+        this.tail = new int[rules.size()];
+        this.counts = new int[rules.size()];
+        for (int ordinal = 0; ordinal < views.length; ordinal++) {
+            views[ordinal] = new RuleView(ordinal);
+        }
+        Arrays.fill(head, -1);
+    }
+
+    public int ruleCount() {
+        return rules.size();
+    }
+
+    public Rule rule(int ordinal) {
+        return rules.get(ordinal);
+    }
+
+    /**
+     * 指定规则的片段列表，add 直接追加到缓冲区
+     */
+    public List<Snippet> forRule(int ordinal) {
+        return views[ordinal];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 按规则顺序遍历片段，同一规则内保持追加顺序
+     */
+    public void forEach(Consumer<Snippet> consumer) {
+        for (int ordinal = 0; ordinal < head.length; ordinal++) {
+            for (int i = head[ordinal]; i >= 0; i = next[i]) {
+                consumer.accept(items[i]);
+            }
+        }
+    }
+
+    /**
+     * 按追加顺序遍历下标 mark（之前某次 {@link #size()} 的返回值）之后追加的片段
+     */
+    public void forEachSince(int mark, Consumer<Snippet> consumer) {
+        for (int i = mark; i < size; i++) {
+            consumer.accept(items[i]);
+        }
+    }
+
+    /**
+     * 清空缓冲区以处理下一个文件，数组容量保留
+     */
+    public void clear() {
+        Arrays.fill(items, 0, size, null);
+        Arrays.fill(head, -1);
+        Arrays.fill(counts, 0);
+        size = 0;
+    }
+
+    private void append(int ordinal, Snippet snippet) {
+        if (size == items.length) {
+            items = Arrays.copyOf(items, size * 2);
+            next = Arrays.copyOf(next, size * 2);
+        }
+        items[size] = snippet;
+        next[size] = -1;
+        if (head[ordinal] < 0) {
+            head[ordinal] = size;
+        } else {
+            next[tail[ordinal]] = size;
+        }
+        tail[ordinal] = size;
+        counts[ordinal]++;
+        size++;
+    }
+
+    private final class RuleView extends AbstractList<Snippet> {
+        private final int ordinal;
+
+        private RuleView(int ordinal) {
+            this.ordinal = ordinal;
+        }
+
+        @Override
+        public boolean add(Snippet snippet) {
+            append(ordinal, snippet);
+            return true;
+        }
+
+        @Override
+        public Snippet get(int index) {
+            if (index < 0 || index >= counts[ordinal]) {
+                throw new IndexOutOfBoundsException(index);
+            }
+            int i = head[ordinal];
+            for (int k = 0; k < index; k++) {
+                i = next[i];
+            }
+            return items[i];
+        }
+
+        @Override
+        public int size() {
+            return counts[ordinal];
+        }
+    }
+}
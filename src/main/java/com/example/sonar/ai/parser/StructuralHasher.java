@@ -0,0 +1,57 @@
+package com.example.sonar.ai.parser;
+
+import com.example.sonar.ai.util.Hash64;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.comments.Comment;
+import com.github.javaparser.metamodel.PropertyMetaModel;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 结构哈希（Merkle 哈希）计算器
+ * 节点哈希 = 节点类型 + 自身属性（标识符、字面量、运算符、修饰符等）+ 按顺序的子节点哈希。
+ * 不含注释、位置和空白，结构相同的代码无论所在文件和行号都得到相同的哈希；
+ * 每个节点的哈希只计算一次并缓存，外层节点直接复用子节点结果，总成本与节点数成线性
+ */
+class StructuralHasher {
+
+    // 每种节点类型中非节点属性（String、枚举、boolean 等）的元模型，所有文件共用
+    private static final Map<Class<?>, List<PropertyMetaModel>> ATTRIBUTES = new ConcurrentHashMap<>();
+
+    private final Map<Node, Long> hashes = new IdentityHashMap<>();
+
+    long hash(Node node) {
+        Long cached = hashes.get(node);
+        if (cached != null) {
+            return cached;
+        }
+        long h = Hash64.of(node.getClass().getSimpleName());
+        for (PropertyMetaModel property : attributes(node)) {
+            Object value = property.getValue(node);
+            h = Hash64.combine(h, value == null ? 0 : Hash64.of(value.toString()));
+        }
+        for (Node child : node.getChildNodes()) {
+            if (!(child instanceof Comment)) {
+                h = Hash64.combine(h, hash(child));
+            }
+        }
+        hashes.put(node, h);
+        return h;
+    }
+
+    private static List<PropertyMetaModel> attributes(Node node) {
+        return ATTRIBUTES.computeIfAbsent(node.getClass(), type -> {
+            List<PropertyMetaModel> attributes = new ArrayList<>();
+            for (PropertyMetaModel property : node.getMetaModel().getAllPropertyMetaModels()) {
+                if (!property.isNode() && !property.isNodeList()) {
+                    attributes.add(property);
+                }
+            }
+            return attributes;
+        });
+    }
+}
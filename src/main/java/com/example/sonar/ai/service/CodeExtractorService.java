@@ -3,7 +3,9 @@ package com.example.sonar.ai.service;
 import com.example.sonar.ai.CodeAnalysisEngine;
 import com.example.sonar.ai.model.Rule;
 import com.example.sonar.ai.model.Snippet;
+import com.example.sonar.ai.model.SourceText;
 import com.example.sonar.ai.parser.JavaCodeVisitor;
+import com.example.sonar.ai.parser.SnippetBuffer;
 import com.github.javaparser.JavaParser;
 import com.github.javaparser.ast.CompilationUnit;
 
@@ -15,6 +17,8 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
 import java.util.stream.Stream;
 
 /**
@@ -25,12 +29,62 @@ public class CodeExtractorService {
 
     private final String sourceDir;
     private final List<Rule> rules;
+    // 引用模式：源码片段只输出文件、范围和摘要，不输出代码文本
+    private boolean referenceOnly;
+    // 试运行时只解析的文件比例，1 表示全部解析
+    private double sampleFraction = 1;
+    private long sampleSeed;
+    private int filesFound;
+    private int filesParsed;
+    // 断点续跑：跳过已完成的文件；每个文件的片段交出后回调
+    private Predicate<File> skipFile = file -> false;
+    private Consumer<File> fileDone = file -> { };
 
     public CodeExtractorService(String sourceDir, List<Rule> rules) {
         this.sourceDir = sourceDir;
         this.rules = rules;
     }
 
+    public void setReferenceOnly(boolean referenceOnly) {
+        this.referenceOnly = referenceOnly;
+    }
+
+    /**
+     * 只解析按种子随机选出的一部分文件（至少一个），用于试运行估算
+     */
+    public void setFileSample(double fraction, long seed) {
+        this.sampleFraction = fraction;
+        this.sampleSeed = seed;
+    }
+
+    /**
+     * 断点续跑时跳过的文件，不读取也不解析
+     */
+    public void setSkipFile(Predicate<File> skipFile) {
+        this.skipFile = skipFile;
+    }
+
+    /**
+     * 每个文件（包括解析失败的文件）的片段全部交给 consumer 之后调用
+     */
+    public void setFileDone(Consumer<File> fileDone) {
+        this.fileDone = fileDone;
+    }
+
+    /**
+     * 最近一次抽取找到的 Java 文件数
+     */
+    public int getFilesFound() {
+        return filesFound;
+    }
+
+    /**
+     * 最近一次抽取实际解析的文件数
+     */
+    public int getFilesParsed() {
+        return filesParsed;
+    }
+
     private List<File> findAllJavaFiles(String sourceDir) {
         List<File> files = new ArrayList<>();
         try (Stream<Path> walk = Files.walk(Paths.get(sourceDir))) {
@@ -43,51 +97,84 @@ public class CodeExtractorService {
         return files;
     }
 
-    private Map<Rule, List<Snippet>> parseFile(File file) {
-        Map<Rule, List<Snippet>> fileCandidates = new HashMap<>();
-        rules.forEach(rule -> fileCandidates.put(rule, new ArrayList<>()));
-
+    /**
+     * 解析单个文件，片段追加到 buffer 中
+     */
+    private void parseFile(File file, SnippetBuffer buffer) {
         try {
+            // 只读取一次原文，解析和片段截取共用
+            String content = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
             JavaParser parser = new JavaParser();
-            Optional<CompilationUnit> result = parser.parse(file).getResult();
+            Optional<CompilationUnit> result = parser.parse(content).getResult();
 
             if (result.isPresent()) {
                 CompilationUnit cu = result.get();
-                JavaCodeVisitor visitor = new JavaCodeVisitor(file);
-                cu.accept(visitor, fileCandidates);
+                JavaCodeVisitor visitor = new JavaCodeVisitor(file, new SourceText(content));
+                cu.accept(visitor, buffer);
+                if (referenceOnly) {
+                    // 逐文件丢弃代码文本，文件原文随之可被回收
+                    buffer.forEach(Snippet::toReference);
+                }
             }
         } catch (Exception e) {
             System.err.println("WARN: Failed to parse " + file.getName() + ": " + e.getMessage());
         }
-        return fileCandidates;
     }
 
     public List<Snippet> extractAllCandidates() {
         List<Snippet> allCandidates = new ArrayList<>();
+        extractAllCandidates(allCandidates::add);
+        return allCandidates;
+    }
+
+    /**
+     * 流式抽取：每个文件解析完成后立即把片段交给 consumer，不保留全量结果
+     *
+     * @return 抽取的片段总数
+     */
+    public long extractAllCandidates(Consumer<Snippet> consumer) {
         List<File> javaFiles = findAllJavaFiles(sourceDir);
+        filesFound = javaFiles.size();
 
         System.err.println("INFO: Found " + javaFiles.size() + " Java files.");
+        if (sampleFraction < 1 && !javaFiles.isEmpty()) {
+            // 先按路径排序，使同一种子在不同文件系统遍历顺序下选出相同的文件
+            javaFiles.sort(Comparator.comparing(File::getPath));
+            Collections.shuffle(javaFiles, new Random(sampleSeed));
+            int count = Math.max(1, (int) Math.ceil(javaFiles.size() * sampleFraction));
+            javaFiles = new ArrayList<>(javaFiles.subList(0, count));
+            System.err.println("INFO: Sampling " + count + " of " + filesFound + " Java files.");
+        }
+        filesParsed = javaFiles.size();
         System.err.println("INFO: Total rules to check: " + rules.size());
 
+        long total = 0;
+        int skipped = 0;
+        SnippetBuffer buffer = new SnippetBuffer(rules);
         for (File file : javaFiles) {
-            Map<Rule, List<Snippet>> fileCandidates = parseFile(file);
-            fileCandidates.values().forEach(allCandidates::addAll);
+            if (skipFile.test(file)) {
+                skipped++;
+                continue;
+            }
+            parseFile(file, buffer);
+            buffer.forEach(consumer);
+            total += buffer.size();
+            buffer.clear();
+            fileDone.accept(file);
+        }
+        if (skipped > 0) {
+            filesParsed -= skipped;
+            System.err.println("INFO: Skipped " + skipped + " files completed in the checkpoint.");
         }
 
-        System.err.println("INFO: Total candidates extracted: " + allCandidates.size());
-        return allCandidates;
+        System.err.println("INFO: Total candidates extracted: " + total);
+        return total;
     }
 
-    public void writeJsonToFile(String json) throws Exception {
-        //写入json文件
-        Path output = Paths.get(
-                System.getProperty("user.dir"),
-                "output.json"
-        );
-        System.out.println("json文件路径::" + output.toAbsolutePath());
-        Files.write(
-                output,
-                json.getBytes(StandardCharsets.UTF_8)
-        );
+    /**
+     * 输出 json 文件路径，与 jar 包同级
+     */
+    public static Path defaultOutputPath() {
+        return Paths.get(System.getProperty("user.dir"), "output.json");
     }
 }
@@ -0,0 +1,135 @@
+package com.example.sonar.ai.service;
+
+import com.example.sonar.ai.model.Rule;
+import com.example.sonar.ai.util.TokenEstimator;
+
+import java.util.List;
+
+/**
+ * AI 提示词模板
+ * 单片段提示词与 scripts/AIEngine.groovy 的 analyzeSingleSnippet 保持一致；
+ * 批量提示词在同一条规则下依次列出多个编号的代码片段，只重复一次规则说明，要求按编号返回 JSON 数组；
+ * 多规则提示词用于按方法合并的组合片段，对同一段代码依次列出各条规则，要求按 ruleId 逐条返回 JSON 数组
+ */
+public class PromptBuilder {
+
+    public static final String SYSTEM_PROMPT = """
+            你是资深代码审计专家。请严格按以下 JSON 格式输出审计结果：
+            {
+              "violation": true/false,
+              "reasoning": "中文判定理由，内部引用强制使用单引号(')，严禁使用双引号",
+              "message": "违规时填入提供的'固定错误描述'；合规时填 'OK'"
+            }
+            注意：不要输出任何 Markdown 标记，只返回 JSON 字符串。
+            """;
+
+    public static final String BATCH_SYSTEM_PROMPT = """
+            你是资深代码审计专家。用户会提供一条规则和多个编号的待分析代码，请逐个判定，
+            严格按以下 JSON 数组格式输出审计结果，每个代码对应一项，index 与代码编号一致：
+            [
+              {
+                "index": 1,
+                "violation": true/false,
+                "reasoning": "中文判定理由，内部引用强制使用单引号(')，严禁使用双引号",
+                "message": "违规时填入提供的'固定错误描述'；合规时填 'OK'"
+              }
+            ]
+            注意：不要输出任何 Markdown 标记，只返回 JSON 字符串。
+            """;
+
+    public static final String MULTI_RULE_SYSTEM_PROMPT = """
+            你是资深代码审计专家。用户会提供一段代码和多条规则，请针对每条规则分别判定，
+            严格按以下 JSON 数组格式输出审计结果，每条规则对应一项，ruleId 与规则标题中的编号一致：
+            [
+              {
+                "ruleId": "RULE-001",
+                "violation": true/false,
+                "reasoning": "中文判定理由，内部引用强制使用单引号(')，严禁使用双引号",
+                "message": "违规时填入该规则的'固定错误描述'；合规时填 'OK'"
+              }
+            ]
+            注意：不要输出任何 Markdown 标记，只返回 JSON 字符串。
+            """;
+
+    /**
+     * 多规则提示词中每条规则的标题前缀，其后为 ruleId 和 ]
+     */
+    public static final String RULE_HEADING = "[规则 ";
+
+    private static final int SYSTEM_TOKENS = TokenEstimator.estimate(SYSTEM_PROMPT);
+
+    private PromptBuilder() {
+    }
+
+    /**
+     * 规则说明部分，批量提示词中只出现一次
+     */
+    public static String ruleSection(Rule rule) {
+        String desc = rule.getDescription() == null || rule.getDescription().isEmpty()
+                ? "请参考详细判定逻辑" : rule.getDescription();
+        String context = rule.getContext() == null || rule.getContext().isEmpty()
+                ? "无额外逻辑" : rule.getContext();
+        return "[规则定义]\n"
+                + "核心规则: " + desc + "\n"
+                + "违规报错信息: " + rule.getCriteria() + "\n\n"
+                + "[详细判定逻辑]\n"
+                + context + "\n";
+    }
+
+    /**
+     * 单个片段的提示词
+     */
+    public static String singlePrompt(Rule rule, String code) {
+        return "[任务目标]\n"
+                + "分析提供的代码片段，判断其是否违反规则。\n\n"
+                + ruleSection(rule) + "\n"
+                + "[待分析代码]\n"
+                + code + "\n";
+    }
+
+    /**
+     * 同一段代码按多条规则分别判定的提示词，规则按给定顺序列出
+     */
+    public static String multiRulePrompt(List<Rule> rules, String code) {
+        StringBuilder prompt = new StringBuilder("[任务目标]\n")
+                .append("分析提供的代码片段，针对下面 ").append(rules.size()).append(" 条规则分别判断其是否违反。\n");
+        for (Rule rule : rules) {
+            prompt.append("\n").append(RULE_HEADING).append(rule.getId()).append("]\n").append(ruleSection(rule));
+        }
+        return prompt.append("\n[待分析代码]\n").append(code).append("\n").toString();
+    }
+
+    /**
+     * 逐个调用时单个片段的估算 token 数（system + prompt）
+     */
+    public static int singleTokens(Rule rule, String code) {
+        return SYSTEM_TOKENS + TokenEstimator.estimate(singlePrompt(rule, code));
+    }
+
+    /**
+     * 批量提示词的头部
+     */
+    public static String batchHeader(Rule rule, int count) {
+        return "[任务目标]\n"
+                + "逐个分析下面提供的 " + count + " 个代码片段，分别判断其是否违反规则。\n\n"
+                + ruleSection(rule);
+    }
+
+    /**
+     * 批量提示词中编号为 index（从 1 开始）的代码部分
+     */
+    public static String batchItem(int index, String code) {
+        return "\n[待分析代码 #" + index + "]\n" + code + "\n";
+    }
+
+    /**
+     * 同一规则下多个片段的批量提示词
+     */
+    public static String batchPrompt(Rule rule, List<String> codes) {
+        StringBuilder prompt = new StringBuilder(batchHeader(rule, codes.size()));
+        for (int i = 0; i < codes.size(); i++) {
+            prompt.append(batchItem(i + 1, codes.get(i)));
+        }
+        return prompt.toString();
+    }
+}
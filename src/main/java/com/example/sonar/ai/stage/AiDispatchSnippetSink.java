@@ -0,0 +1,281 @@
+package com.example.sonar.ai.stage;
+
+import com.example.sonar.ai.client.AiClient;
+import com.example.sonar.ai.client.VerdictParser;
+import com.example.sonar.ai.io.SnippetSink;
+import com.example.sonar.ai.io.SourceSliceReader;
+import com.example.sonar.ai.model.Rule;
+import com.example.sonar.ai.model.Snippet;
+import com.example.sonar.ai.model.Verdict;
+import com.example.sonar.ai.service.PromptBuilder;
+import com.example.sonar.ai.store.VerdictStore;
+import com.example.sonar.ai.util.LatencyHistogram;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * AI 判定阶段（analyze 子命令）
+ * 抽取过程中把尚未判定的片段逐个异步发给 AI 接口，收到判定后附带 verdict 交给下游，并写入判定库（可选，组合片段不写入）；
+ * 已有判定的片段直接透传。等待响应的片段数不超过 maxPending，超出时阻塞抽取线程形成背压，
+ * 实际并发由客户端的 AIMD 限制器决定。重试耗尽或输出无法解析的片段不带判定输出并计为失败。
+ * 按方法合并的组合片段用多规则提示词一次请求，每个成员得到自己规则的判定并按成员写入判定库，
+ * 组合片段的判定由成员判定汇总；有成员规则未得到判定时组合片段计为失败。
+ * 响应在 HTTP 客户端线程上回调，输出到下游时加锁，输出顺序为完成顺序
+ */
+public class AiDispatchSnippetSink implements SnippetSink {
+
+    private final SnippetSink delegate;
+    private final AiClient client;
+    private final VerdictStore store;
+    private final int maxPending;
+    private final Semaphore pending;
+    private final SourceSliceReader sources = new SourceSliceReader();
+    private final Map<Rule, Long> ruleTextHashes = new ConcurrentHashMap<>();
+    private final AtomicLong dispatched = new AtomicLong();
+    private final AtomicLong judged = new AtomicLong();
+    private final AtomicLong violations = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final LatencyHistogram latencies = new LatencyHistogram();
+    private final long startMillis = System.currentTimeMillis();
+    private volatile IOException failure;
+
+    /**
+     * @param store 判定写入的判定库，为 null 时不写入；由判定缓存阶段负责关闭
+     */
+    public AiDispatchSnippetSink(SnippetSink delegate, AiClient client, VerdictStore store, int maxPending) {
+        this.delegate = delegate;
+        this.client = client;
+        this.store = store;
+        this.maxPending = maxPending;
+        this.pending = new Semaphore(maxPending);
+    }
+
+    @Override
+    public void accept(Snippet snippet) throws IOException {
+        checkFailure();
+        if (snippet.getVerdict() != null) {
+            emit(snippet);
+            return;
+        }
+        String code = sources.read(snippet);
+        List<Rule> memberRules = snippet.getMembers() == null ? null : memberRules(snippet);
+        String system = memberRules == null ? PromptBuilder.SYSTEM_PROMPT : PromptBuilder.MULTI_RULE_SYSTEM_PROMPT;
+        String prompt = memberRules == null
+                ? PromptBuilder.singlePrompt(snippet.getRule(), code)
+                : PromptBuilder.multiRulePrompt(memberRules, code);
+        try {
+            pending.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for AI responses");
+        }
+        dispatched.incrementAndGet();
+        long start = System.nanoTime();
+        client.complete(system, prompt).whenComplete((content, error) -> {
+            latencies.record(System.nanoTime() - start);
+            try {
+                if (memberRules == null) {
+                    complete(snippet, content, error);
+                } else {
+                    completeMembers(snippet, memberRules, content, error);
+                }
+            } catch (IOException e) {
+                failed.incrementAndGet();
+                failure = e;
+            } catch (RuntimeException | Error e) {
+                // 判定库、解析或下游阶段的异常同样要让抽取线程看到，不能只丢掉片段
+                failed.incrementAndGet();
+                failure = new IOException("AI dispatch failed for " + snippet.getRuleId() + " " + snippet.getFile()
+                        + ":" + snippet.getLine() + ": " + e, e);
+            } finally {
+                pending.release();
+            }
+        });
+    }
+
+    /**
+     * 单个片段从发出到得到结果的耗时（纳秒，含排队和重试）
+     */
+    public LatencyHistogram getLatencies() {
+        return latencies;
+    }
+
+    /**
+     * 得到判定的片段数
+     */
+    public long getJudged() {
+        return judged.get();
+    }
+
+    /**
+     * 未得到判定的片段数
+     */
+    public long getFailed() {
+        return failed.get();
+    }
+
+    private void complete(Snippet snippet, String content, Throwable error) throws IOException {
+        Verdict verdict = error == null
+                ? VerdictParser.parse(content, snippet.getRuleCriteria(), System.currentTimeMillis())
+                : null;
+        if (verdict == null) {
+            warnUnavailable(snippet, error != null ? rootMessage(error) : "unparseable output");
+        } else {
+            snippet.setVerdict(verdict);
+            store(snippet, verdict);
+        }
+        emit(snippet);
+        count(verdict);
+    }
+
+    /**
+     * 组合片段：每个成员取自己规则的判定，全部成员都有判定时汇总为组合片段的判定
+     */
+    private void completeMembers(Snippet composite, List<Rule> rules, String content, Throwable error)
+            throws IOException {
+        Map<String, Verdict> verdicts = Map.of();
+        if (error == null) {
+            Map<String, String> messages = new HashMap<>();
+            for (Rule rule : rules) {
+                messages.put(rule.getId(), rule.getCriteria());
+            }
+            verdicts = VerdictParser.parseByRule(content, messages, System.currentTimeMillis());
+        }
+        boolean complete = true;
+        for (Snippet member : composite.getMembers()) {
+            Verdict verdict = verdicts.get(member.getRuleId());
+            if (verdict == null) {
+                complete = false;
+                continue;
+            }
+            member.setVerdict(verdict);
+            store(member, verdict);
+        }
+        Verdict verdict = null;
+        if (complete) {
+            verdict = summarize(composite.getMembers());
+            composite.setVerdict(verdict);
+        } else {
+            warnUnavailable(composite, error != null ? rootMessage(error) : "missing verdicts for some rules");
+        }
+        emit(composite);
+        count(verdict);
+    }
+
+    /**
+     * 成员判定的汇总：任一成员违规即违规，理由逐条列出，message 为违规成员的 message
+     */
+    private static Verdict summarize(List<Snippet> members) {
+        StringJoiner reasoning = new StringJoiner("\n");
+        StringJoiner message = new StringJoiner("\n");
+        boolean violation = false;
+        long judgedAt = 0;
+        for (Snippet member : members) {
+            Verdict verdict = member.getVerdict();
+            reasoning.add(member.getRuleId() + ": " + verdict.getReasoning());
+            if (Boolean.TRUE.equals(verdict.getViolation())) {
+                violation = true;
+                message.add(member.getRuleId() + ": " + verdict.getMessage());
+            }
+            judgedAt = Math.max(judgedAt, verdict.getJudgedAt());
+        }
+        return new Verdict(violation, reasoning.toString(), violation ? message.toString() : "OK", judgedAt);
+    }
+
+    private static List<Rule> memberRules(Snippet composite) {
+        Set<Rule> rules = new LinkedHashSet<>();
+        for (Snippet member : composite.getMembers()) {
+            rules.add(member.getRule());
+        }
+        return new ArrayList<>(rules);
+    }
+
+    /**
+     * 写入判定库；组合片段本身不写入，从输出文件读回的成员没有结构哈希，也不写入
+     */
+    private void store(Snippet snippet, Verdict verdict) throws IOException {
+        if (store != null && snippet.getMembers() == null && snippet.getStructuralHash() != 0) {
+            long ruleTextHash = ruleTextHashes.computeIfAbsent(snippet.getRule(), VerdictStore::ruleTextHash);
+            store.put(snippet.getRuleId(), ruleTextHash, snippet.getStructuralHash(), verdict);
+        }
+    }
+
+    private static void warnUnavailable(Snippet snippet, String reason) {
+        System.err.println("WARN: AI verdict unavailable for " + snippet.getRuleId() + " " + snippet.getFile()
+                + ":" + snippet.getLine() + ": " + reason);
+    }
+
+    private void count(Verdict verdict) {
+        // 输出到下游后才计数，中途出错的片段由调用方计为失败
+        if (verdict == null) {
+            failed.incrementAndGet();
+        } else {
+            judged.incrementAndGet();
+            if (Boolean.TRUE.equals(verdict.getViolation())) {
+                violations.incrementAndGet();
+            }
+        }
+    }
+
+    private void emit(Snippet snippet) throws IOException {
+        synchronized (delegate) {
+            delegate.accept(snippet);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        checkFailure();
+        synchronized (delegate) {
+            delegate.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            // 取回全部许可即等待所有在途请求完成
+            pending.acquireUninterruptibly(maxPending);
+            checkFailure();
+        } finally {
+            try {
+                delegate.close();
+            } finally {
+                sources.close();
+            }
+        }
+        long elapsed = Math.max(1, System.currentTimeMillis() - startMillis);
+        System.err.println("INFO: Analyze: " + dispatched + " snippets dispatched, " + judged + " judged ("
+                + violations + " violations), " + failed + " failed; " + client.getRequests() + " requests, "
+                + client.getRetries() + " retries, final concurrency " + client.getLimiter().getLimit()
+                + ", ~" + judged.get() * 1000 / elapsed + " verdicts/s, latency p50 "
+                + TimeUnit.NANOSECONDS.toMillis(latencies.percentile(0.5)) + " ms, p99 "
+                + TimeUnit.NANOSECONDS.toMillis(latencies.percentile(0.99)) + " ms.");
+    }
+
+    private void checkFailure() throws IOException {
+        if (failure != null) {
+            throw new IOException("Writing analyzed snippets failed", failure);
+        }
+    }
+
+    private static String rootMessage(Throwable error) {
+        Throwable cause = error;
+        while (cause.getCause() != null && !(cause instanceof IOException)) {
+            cause = cause.getCause();
+        }
+        return cause.getMessage();
+    }
+}
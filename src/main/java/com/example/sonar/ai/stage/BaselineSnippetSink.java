@@ -0,0 +1,247 @@
+package com.example.sonar.ai.stage;
+
+import com.example.sonar.ai.io.SnippetFileReader;
+import com.example.sonar.ai.io.SnippetSink;
+import com.example.sonar.ai.model.BaselineStatus;
+import com.example.sonar.ai.model.Occurrences;
+import com.example.sonar.ai.model.Rule;
+import com.example.sonar.ai.model.Snippet;
+import com.example.sonar.ai.util.Hash64;
+import com.example.sonar.ai.util.LongMultiset;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 基线比较阶段
+ * 位于按方法合并、去重、聚类和规则限额之后，与写出基线的那次运行在流水线的同一位置比较，
+ * 双方都是去重代表片段和组合片段，而不是原始片段。
+ * 片段指纹由 ruleId、相对源码目录的文件路径、所属声明（handler 写入的 name，多为外层方法或被检查的声明名）
+ * 和代码结构哈希组成，不含行号，上方插入代码不会让已有片段变成新片段；基线可能在另一个检出目录或 CI 工作区生成，
+ * 其根目录按文件在当前源码目录下是否存在推断。带出现位置的代表片段由哪个位置充当取决于遍历顺序，
+ * 指纹改用全部出现位置的文件集合，不含代表自己的文件和名称；聚类代表的代码同样不稳定，也不计入。
+ * 基线文件流式读取三遍：第一遍推断根目录，第二遍只把指纹计数放进 LongMultiset，本次的片段逐个抵消，
+ * 抵消不掉的作为 new 输出；关闭时第三遍读取基线，计数仍有剩余的片段作为 removed 输出
+ */
+public class BaselineSnippetSink implements SnippetSink {
+
+    // 推断基线根目录时最多检查的文件数
+    private static final int ROOT_SAMPLE = 256;
+
+    private final SnippetSink delegate;
+    private final Path baseline;
+    private final Map<String, Rule> rules = new HashMap<>();
+    private final LongMultiset fingerprints = new LongMultiset();
+    private final String sourceRoot;
+    private final String baselineRoot;
+    private long baselineCount;
+    private long unchanged;
+    private long added;
+    private long removed;
+    private long missingHash;
+
+    /**
+     * @param rules     当前规则，removed 片段改为引用同 id 的当前规则，规则已删除的片段不输出
+     * @param sourceDir 当前源码目录（或单个源文件），指纹中的文件路径相对于它
+     */
+    public BaselineSnippetSink(SnippetSink delegate, Path baseline, List<Rule> rules, Path sourceDir)
+            throws IOException {
+        this.delegate = delegate;
+        this.baseline = baseline;
+        for (Rule rule : rules) {
+            this.rules.putIfAbsent(rule.getId(), rule);
+        }
+        Path root = sourceDir.toAbsolutePath().normalize();
+        if (Files.isRegularFile(root)) {
+            root = root.getParent();
+        }
+        this.sourceRoot = directory(root.toString());
+        Set<String> files = new LinkedHashSet<>();
+        SnippetFileReader.read(baseline, new Collector() {
+            @Override
+            public void accept(Snippet snippet) {
+                if (files.size() < ROOT_SAMPLE) {
+                    files.add(snippet.getFile());
+                }
+            }
+        });
+        this.baselineRoot = inferRoot(files, root, sourceRoot);
+        if (!baselineRoot.equals(sourceRoot)) {
+            System.err.println("INFO: Baseline was made in " + baselineRoot + ", comparing paths relative to it.");
+        }
+        baselineCount = SnippetFileReader.read(baseline, new Collector() {
+            @Override
+            public void accept(Snippet snippet) {
+                if (snippet.getStructuralHash() == 0 && snippet.getOccurrences() == null) {
+                    missingHash++;
+                }
+                fingerprints.add(fingerprint(snippet, baselineRoot));
+            }
+        });
+        System.err.println("INFO: Baseline loaded: " + baselineCount + " snippets from " + baseline);
+    }
+
+    /**
+     * 片段指纹
+     *
+     * @param root 文件路径的根目录，以 / 结尾
+     */
+    static long fingerprint(Snippet snippet, String root) {
+        long h = Hash64.of(String.valueOf(snippet.getRuleId()));
+        Occurrences occurrences = snippet.getOccurrences();
+        if (occurrences == null) {
+            h = Hash64.combine(h, Hash64.of(relative(snippet.getFile(), root)));
+            h = Hash64.combine(h, Hash64.of(String.valueOf(snippet.getName())));
+            return Hash64.combine(h, snippet.getStructuralHash());
+        }
+        // 与顺序无关地合并全部出现位置的文件
+        long files = 0;
+        for (int i = 0; i < occurrences.size(); i++) {
+            files += Hash64.mix(Hash64.of(relative(occurrences.getFile(i), root)));
+        }
+        h = Hash64.combine(h, files);
+        h = Hash64.combine(h, occurrences.size());
+        return snippet.getSimilarity() != null ? h : Hash64.combine(h, snippet.getStructuralHash());
+    }
+
+    /**
+     * 推断基线的根目录：对抽样的文件，从最长的后缀开始找在当前源码目录下存在的相对路径，去掉的前缀即根目录，
+     * 取多数一致的结果；基线就在当前源码目录下生成或推断不出时使用当前源码目录
+     */
+    static String inferRoot(Collection<String> files, Path sourceDir, String sourceRoot) {
+        Map<String, Integer> votes = new HashMap<>();
+        for (String file : files) {
+            String path = separators(file);
+            if (path.startsWith(sourceRoot)) {
+                votes.merge(sourceRoot, 1, Integer::sum);
+                continue;
+            }
+            for (int i = path.indexOf('/'); i >= 0 && i < path.length() - 1; i = path.indexOf('/', i + 1)) {
+                if (Files.isRegularFile(sourceDir.resolve(path.substring(i + 1)))) {
+                    votes.merge(path.substring(0, i + 1), 1, Integer::sum);
+                    break;
+                }
+            }
+        }
+        return votes.entrySet().stream()
+                .max(Map.Entry.comparingByValue())
+                .map(Map.Entry::getKey)
+                .orElse(sourceRoot);
+    }
+
+    private static String relative(String file, String root) {
+        String path = separators(String.valueOf(file));
+        return path.startsWith(root) ? path.substring(root.length()) : path;
+    }
+
+    /**
+     * 统一为 / 分隔，Windows 上生成的基线也能在其他系统上比较
+     */
+    private static String separators(String path) {
+        return path.replace('\\', '/');
+    }
+
+    private static String directory(String path) {
+        String normalized = separators(path);
+        return normalized.endsWith("/") ? normalized : normalized + "/";
+    }
+
+    @Override
+    public void accept(Snippet snippet) throws IOException {
+        if (fingerprints.remove(fingerprint(snippet, sourceRoot))) {
+            unchanged++;
+            return;
+        }
+        added++;
+        snippet.setBaselineStatus(BaselineStatus.NEW);
+        delegate.accept(snippet);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        delegate.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (fingerprints.size() > 0) {
+                emitRemoved();
+            }
+        } finally {
+            delegate.close();
+        }
+        System.err.println("INFO: Baseline: " + added + " new, " + removed + " removed, "
+                + unchanged + " unchanged.");
+        if (missingHash > 0) {
+            System.err.println("WARN: " + missingHash + " baseline snippets have neither code nor codeHash "
+                    + "and cannot be matched.");
+        }
+    }
+
+    private void emitRemoved() throws IOException {
+        long[] droppedRules = new long[1];
+        SnippetFileReader.read(baseline, new Collector() {
+            @Override
+            public void accept(Snippet snippet) throws IOException {
+                if (!fingerprints.remove(fingerprint(snippet, baselineRoot))) {
+                    return;
+                }
+                Rule rule = currentRule(snippet.getRuleId());
+                if (rule == null) {
+                    droppedRules[0]++;
+                    return;
+                }
+                Snippet current = new Snippet(rule, snippet.getPayload());
+                current.setOccurrences(snippet.getOccurrences());
+                current.setSimilarity(snippet.getSimilarity());
+                current.setMembers(snippet.getMembers());
+                current.setBaselineStatus(BaselineStatus.REMOVED);
+                removed++;
+                delegate.accept(current);
+            }
+        });
+        if (droppedRules[0] > 0) {
+            System.err.println("INFO: Baseline: " + droppedRules[0] + " snippets of rules no longer configured omitted.");
+        }
+    }
+
+    /**
+     * 同 id 的当前规则；组合片段的规则由当前的成员规则重新合成，任一成员已删除时返回 null
+     */
+    private Rule currentRule(String id) {
+        Rule rule = rules.get(id);
+        if (rule != null || id == null || !id.contains("+")) {
+            return rule;
+        }
+        List<Rule> members = new ArrayList<>();
+        for (String member : id.split("\\+")) {
+            Rule current = rules.get(member);
+            if (current == null) {
+                return null;
+            }
+            members.add(current);
+        }
+        rule = Rule.composite(members);
+        rules.put(id, rule);
+        return rule;
+    }
+
+    private abstract static class Collector implements SnippetSink {
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.example.sonar.ai.stage;
+
+import com.example.sonar.ai.io.SnippetSink;
+import com.example.sonar.ai.io.SourceSliceReader;
+import com.example.sonar.ai.model.Rule;
+import com.example.sonar.ai.model.Snippet;
+import com.example.sonar.ai.service.PromptBuilder;
+import com.example.sonar.ai.util.Hash64;
+import com.example.sonar.ai.util.TokenEstimator;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 批次规划阶段
+ * 片段原样交给下游，同时按规则把尚未判定的片段装入批次：每条规则保持一个未满的批次，加入下一个片段会超过
+ * token 上限或片段数上限时写出该批次并新开一个。批次文件包含可直接发送的 system/prompt 和编号到片段的对应关系，
+ * 规则说明在一个批次中只出现一次；关闭时写出剩余批次和 plan.json 统计，对比逐个调用与批量调用的次数和 token 数
+ */
+public class BatchPlanningSnippetSink implements SnippetSink {
+
+    static final String PLAN = "plan.json";
+
+    private static final int BATCH_SYSTEM_TOKENS = TokenEstimator.estimate(PromptBuilder.BATCH_SYSTEM_PROMPT);
+
+    private final SnippetSink delegate;
+    private final Path dir;
+    private final int tokenLimit;
+    private final int maxSnippets;
+    private final SourceSliceReader sources = new SourceSliceReader();
+    private final Map<String, RulePlan> plans = new LinkedHashMap<>();
+    private int batchCount;
+
+    /**
+     * @param tokenLimit  单个批次的 token 上限（system + prompt），单个片段超过上限时独占一个批次
+     * @param maxSnippets 单个批次的片段数上限
+     */
+    public BatchPlanningSnippetSink(SnippetSink delegate, Path dir, int tokenLimit, int maxSnippets) throws IOException {
+        this.delegate = delegate;
+        this.dir = dir;
+        this.tokenLimit = tokenLimit;
+        this.maxSnippets = maxSnippets;
+        Files.createDirectories(dir);
+    }
+
+    @Override
+    public void accept(Snippet snippet) throws IOException {
+        if (snippet.getVerdict() == null) {
+            plan(snippet);
+        }
+        delegate.accept(snippet);
+    }
+
+    private synchronized void plan(Snippet snippet) throws IOException {
+        RulePlan plan = plans.computeIfAbsent(snippet.getRuleId(), id -> new RulePlan(snippet.getRule()));
+        String code = sources.read(snippet);
+        plan.snippets++;
+        plan.singleTokens += PromptBuilder.singleTokens(plan.rule, code);
+
+        Batch batch = plan.open;
+        int index = batch.items.size() + 1;
+        int itemTokens = TokenEstimator.estimate(PromptBuilder.batchItem(index, code));
+        if (!batch.items.isEmpty()
+                && (batch.tokens + itemTokens > tokenLimit || batch.items.size() >= maxSnippets)) {
+            writeBatch(plan);
+            batch = plan.open;
+            itemTokens = TokenEstimator.estimate(PromptBuilder.batchItem(1, code));
+        }
+        batch.items.add(new Item(snippet, code));
+        batch.tokens += itemTokens;
+    }
+
+    private void writeBatch(RulePlan plan) throws IOException {
+        Batch batch = plan.open;
+        plan.open = new Batch(plan.headerTokens);
+        List<String> codes = new ArrayList<>(batch.items.size());
+        for (Item item : batch.items) {
+            codes.add(item.code);
+        }
+        String prompt = PromptBuilder.batchPrompt(plan.rule, codes);
+        int tokens = BATCH_SYSTEM_TOKENS + TokenEstimator.estimate(prompt);
+        plan.batches++;
+        plan.batchedTokens += tokens;
+        batchCount++;
+
+        Path file = dir.resolve(String.format("batch-%06d.json", batchCount));
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+             JsonWriter json = new JsonWriter(out)) {
+            json.setIndent("  ");
+            json.beginObject();
+            json.name("batchId").value(batchCount);
+            json.name("ruleId").value(plan.rule.getId());
+            json.name("estimatedTokens").value(tokens);
+            json.name("system").value(PromptBuilder.BATCH_SYSTEM_PROMPT);
+            json.name("prompt").value(prompt);
+            json.name("snippets").beginArray();
+            for (int i = 0; i < batch.items.size(); i++) {
+                Snippet snippet = batch.items.get(i).snippet;
+                json.beginObject();
+                json.name("index").value(i + 1);
+                json.name("file").value(snippet.getFile());
+                json.name("line").value(snippet.getLine());
+                json.name("name").value(snippet.getName());
+                json.name("ruleScope").value(snippet.getScope());
+                json.name("codeHash").value(Hash64.toHex(snippet.getStructuralHash()));
+                json.endObject();
+            }
+            json.endArray();
+            json.endObject();
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        delegate.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            delegate.close();
+        } finally {
+            sources.close();
+        }
+        // 下游可能在关闭时才输出片段（去重、聚类），因此先关闭下游再收尾
+        synchronized (this) {
+            for (RulePlan plan : plans.values()) {
+                if (!plan.open.items.isEmpty()) {
+                    writeBatch(plan);
+                }
+            }
+            writePlan();
+        }
+    }
+
+    private void writePlan() throws IOException {
+        long snippets = 0;
+        long singleTokens = 0;
+        long batchedTokens = 0;
+        try (Writer out = Files.newBufferedWriter(dir.resolve(PLAN), StandardCharsets.UTF_8);
+             JsonWriter json = new JsonWriter(out)) {
+            json.setIndent("  ");
+            json.beginObject();
+            json.name("tokenLimit").value(tokenLimit);
+            json.name("maxSnippets").value(maxSnippets);
+            json.name("rules").beginArray();
+            for (RulePlan plan : plans.values()) {
+                json.beginObject();
+                json.name("ruleId").value(plan.rule.getId());
+                json.name("snippets").value(plan.snippets);
+                json.name("batches").value(plan.batches);
+                json.name("singleTokens").value(plan.singleTokens);
+                json.name("batchedTokens").value(plan.batchedTokens);
+                json.endObject();
+                snippets += plan.snippets;
+                singleTokens += plan.singleTokens;
+                batchedTokens += plan.batchedTokens;
+            }
+            json.endArray();
+            json.name("snippets").value(snippets);
+            json.name("batches").value(batchCount);
+            json.name("singleTokens").value(singleTokens);
+            json.name("batchedTokens").value(batchedTokens);
+            json.endObject();
+        }
+        System.err.println("INFO: Batch plan: " + snippets + " calls -> " + batchCount + " batches ("
+                + percent(snippets - batchCount, snippets) + " fewer calls), ~" + singleTokens + " -> ~"
+                + batchedTokens + " prompt tokens (" + percent(singleTokens - batchedTokens, singleTokens)
+                + " fewer). Batches written to " + dir.toAbsolutePath());
+    }
+
+    private static String percent(long part, long total) {
+        return total == 0 ? "0%" : Math.round(part * 100.0 / total) + "%";
+    }
+
+    /**
+     * 一条规则的规划状态和统计
+     */
+    private static final class RulePlan {
+        private final Rule rule;
+        // 批量 system 提示词和规则说明的 token 数，每个批次只计一次
+        private final int headerTokens;
+        private Batch open;
+        private long snippets;
+        private long batches;
+        private long singleTokens;
+        private long batchedTokens;
+
+        private RulePlan(Rule rule) {
+            this.rule = rule;
+            this.headerTokens = BATCH_SYSTEM_TOKENS + TokenEstimator.estimate(PromptBuilder.batchHeader(rule, 0));
+            this.open = new Batch(headerTokens);
+        }
+    }
+
+    private static final class Batch {
+        private final List<Item> items = new ArrayList<>();
+        private int tokens;
+
+        private Batch(int headerTokens) {
+            this.tokens = headerTokens;
+        }
+    }
+
+    private record Item(Snippet snippet, String code) {
+    }
+}
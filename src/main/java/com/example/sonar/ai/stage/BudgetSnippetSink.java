@@ -0,0 +1,101 @@
+package com.example.sonar.ai.stage;
+
+import com.example.sonar.ai.io.SnippetSink;
+import com.example.sonar.ai.io.SourceSliceReader;
+import com.example.sonar.ai.model.Snippet;
+import com.example.sonar.ai.service.PromptBuilder;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * token 预算阶段
+ * 按逐个调用的估算 token 数（system + prompt）累计需要 AI 判定的片段，第一个超出预算的片段起不再输出新片段，
+ * 已有判定的片段不占预算照常输出。按规则统计被截掉的片段数和 token 数，关闭时报告。
+ * 放在风险排序和缩减之后，预算优先留给排在前面的片段，并按缩减后的代码计算
+ */
+public class BudgetSnippetSink implements SnippetSink {
+
+    private final SnippetSink delegate;
+    private final long budget;
+    private final SourceSliceReader sources = new SourceSliceReader();
+    private final Map<String, long[]> cut = new LinkedHashMap<>();
+    private long used;
+    private long admitted;
+    private boolean exhausted;
+
+    /**
+     * @param budget token 预算
+     */
+    public BudgetSnippetSink(SnippetSink delegate, long budget) {
+        this.delegate = delegate;
+        this.budget = budget;
+    }
+
+    @Override
+    public void accept(Snippet snippet) throws IOException {
+        if (snippet.getVerdict() == null && !admit(snippet)) {
+            return;
+        }
+        delegate.accept(snippet);
+    }
+
+    private synchronized boolean admit(Snippet snippet) throws IOException {
+        int tokens = PromptBuilder.singleTokens(snippet.getRule(), sources.read(snippet));
+        if (!exhausted && used + tokens <= budget) {
+            used += tokens;
+            admitted++;
+            return true;
+        }
+        exhausted = true;
+        long[] counts = cut.computeIfAbsent(snippet.getRuleId(), id -> new long[2]);
+        counts[0]++;
+        counts[1] += tokens;
+        return false;
+    }
+
+    /**
+     * 已使用的 token 数
+     */
+    public synchronized long getUsed() {
+        return used;
+    }
+
+    /**
+     * 被截掉的规则及其片段数
+     */
+    public synchronized Map<String, Long> getCutSnippets() {
+        Map<String, Long> snippets = new LinkedHashMap<>();
+        cut.forEach((ruleId, counts) -> snippets.put(ruleId, counts[0]));
+        return snippets;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        delegate.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            delegate.close();
+        } finally {
+            sources.close();
+        }
+        if (!exhausted) {
+            System.err.println("INFO: Token budget: ~" + used + " of " + budget + " tokens used by "
+                    + admitted + " snippets.");
+            return;
+        }
+        StringBuilder rules = new StringBuilder();
+        long snippets = 0;
+        for (Map.Entry<String, long[]> entry : cut.entrySet()) {
+            rules.append(rules.length() == 0 ? "" : ", ").append(entry.getKey()).append(' ')
+                    .append(entry.getValue()[0]).append(" (~").append(entry.getValue()[1]).append(" tokens)");
+            snippets += entry.getValue()[0];
+        }
+        System.err.println("WARN: Token budget of " + budget + " reached after " + admitted + " snippets (~"
+                + used + " tokens); " + snippets + " snippets cut off: " + rules + ".");
+    }
+}
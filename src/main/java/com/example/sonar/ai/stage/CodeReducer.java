@@ -0,0 +1,334 @@
+package com.example.sonar.ai.stage;
+
+import com.example.sonar.ai.model.Reduction;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 超长代码的缩减
+ * 依次尝试，长度满足上限即停止：
+ * <ol>
+ *   <li>删除注释、空行和行尾空白</li>
+ *   <li>由内向外、由大到小折叠不包含触发行的 {...} 代码块，块内替换为一行省略说明</li>
+ *   <li>以触发行为中心保留一个窗口，首行（声明）始终保留，窗口外替换为省略说明</li>
+ * </ol>
+ * 只做文本层面的处理（识别字符串、字符和文本块字面量），不重新解析语法树
+ */
+class CodeReducer {
+
+    // 省略说明行的长度预留
+    private static final int MARKER_RESERVE = 32;
+
+    private final int limit;
+
+    /**
+     * @param limit 缩减后代码长度上限（字符数）
+     */
+    CodeReducer(int limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * 缩减结果
+     *
+     * @param code      缩减后的代码
+     * @param reduction 缩减记录，未超过上限时为 null
+     */
+    record Result(String code, Reduction reduction) {
+    }
+
+    /**
+     * @param focus     触发行在代码中的下标（从 0 开始），未知时为 0
+     * @param firstLine 代码第一行对应的行号，用于记录省略范围
+     */
+    Result reduce(String code, int focus, int firstLine) {
+        if (code.length() <= limit) {
+            return new Result(code, null);
+        }
+        String[] raw = stripComments(code).split("\n", -1);
+        List<Line> lines = new ArrayList<>(raw.length);
+        int stripped = 0;
+        for (int i = 0; i < raw.length; i++) {
+            String text = stripTrailing(raw[i]);
+            if (text.isBlank() && i != focus) {
+                stripped++;
+                continue;
+            }
+            lines.add(new Line(i, text));
+        }
+        int focusIndex = indexOf(lines, focus);
+        List<Reduction.Elision> elided = new ArrayList<>();
+        if (length(lines) > limit) {
+            lines = collapseBlocks(lines, focusIndex, firstLine, elided);
+        }
+        if (length(lines) > limit) {
+            lines = window(lines, focus, firstLine, elided);
+        }
+        int excess = length(lines) - limit;
+        if (excess > 0) {
+            // 保留的行中有单行过长，截断最长的一行
+            int longest = 0;
+            for (int i = 1; i < lines.size(); i++) {
+                if (lines.get(i).text.length() > lines.get(longest).text.length()) {
+                    longest = i;
+                }
+            }
+            Line line = lines.get(longest);
+            String text = line.text.substring(0, Math.max(0, line.text.length() - excess - 3)) + "...";
+            lines.set(longest, new Line(line.origin, text));
+            elided.add(new Reduction.Elision(firstLine + line.origin, firstLine + line.origin, "truncated"));
+        }
+        StringBuilder out = new StringBuilder();
+        for (Line line : lines) {
+            if (out.length() > 0) {
+                out.append('\n');
+            }
+            out.append(line.text);
+        }
+        if (out.length() > limit) {
+            out.setLength(limit);
+        }
+        elided.sort(Comparator.comparingInt(Reduction.Elision::fromLine));
+        return new Result(out.toString(), new Reduction(code.length(), stripped, elided));
+    }
+
+    /**
+     * 折叠代码块：候选块按嵌套深度从深到浅、行数从多到少排序，依次折叠直到满足上限
+     */
+    private List<Line> collapseBlocks(List<Line> lines, int focusIndex, int firstLine,
+                                      List<Reduction.Elision> elided) {
+        List<Block> blocks = findBlocks(lines);
+        blocks.removeIf(block -> block.begin <= focusIndex && focusIndex <= block.end);
+        blocks.sort(Comparator.comparingInt((Block block) -> -block.depth)
+                .thenComparingInt(block -> -(block.end - block.begin)));
+        BitSet hidden = new BitSet(lines.size());
+        List<Block> collapsed = new ArrayList<>();
+        int length = length(lines);
+        for (Block block : blocks) {
+            if (length <= limit) {
+                break;
+            }
+            int saved = 0;
+            for (int i = block.begin + 1; i < block.end; i++) {
+                if (!hidden.get(i)) {
+                    saved += lines.get(i).text.length() + 1;
+                }
+            }
+            // 内层已折叠的块被外层吸收
+            for (Block inner : collapsed) {
+                if (inner.begin > block.begin && inner.end < block.end) {
+                    saved += marker(lines, inner).length() + 1;
+                }
+            }
+            collapsed.removeIf(inner -> inner.begin > block.begin && inner.end < block.end);
+            hidden.set(block.begin + 1, block.end);
+            collapsed.add(block);
+            length -= saved - marker(lines, block).length() - 1;
+        }
+        if (collapsed.isEmpty()) {
+            return lines;
+        }
+        collapsed.sort(Comparator.comparingInt(block -> block.begin));
+        List<Line> result = new ArrayList<>(lines.size());
+        int next = 0;
+        for (int i = 0; i < lines.size(); i++) {
+            if (!hidden.get(i)) {
+                result.add(lines.get(i));
+                continue;
+            }
+            Block block = collapsed.get(next);
+            if (i == block.begin + 1) {
+                int from = lines.get(block.begin + 1).origin;
+                int to = lines.get(block.end - 1).origin;
+                result.add(new Line(from, marker(lines, block)));
+                elided.add(new Reduction.Elision(firstLine + from, firstLine + to, "block"));
+            }
+            if (i == block.end - 1) {
+                next++;
+            }
+        }
+        return result;
+    }
+
+    private static String marker(List<Line> lines, Block block) {
+        String first = lines.get(block.begin + 1).text;
+        int indent = 0;
+        while (indent < first.length() && Character.isWhitespace(first.charAt(indent))) {
+            indent++;
+        }
+        int count = lines.get(block.end - 1).origin - lines.get(block.begin + 1).origin + 1;
+        return first.substring(0, indent) + "// ... " + count + " lines elided";
+    }
+
+    /**
+     * 保留首行和以触发行为中心的窗口，交替向两侧扩展
+     */
+    private List<Line> window(List<Line> lines, int focus, int firstLine, List<Reduction.Elision> elided) {
+        int center = indexOf(lines, focus);
+        // 预留首行和省略说明的长度；触发行就是首行时窗口从第二行开始向后扩展
+        int budget = limit - lines.get(0).text.length() - 2 * MARKER_RESERVE;
+        int from = center;
+        int to = center;
+        if (center == 0) {
+            from = 1;
+        } else {
+            budget -= lines.get(center).text.length() + 1;
+        }
+        boolean grew = true;
+        while (grew) {
+            grew = false;
+            if (to + 1 < lines.size() && lines.get(to + 1).text.length() + 1 <= budget) {
+                budget -= lines.get(++to).text.length() + 1;
+                grew = true;
+            }
+            if (from - 1 >= 1 && lines.get(from - 1).text.length() + 1 <= budget) {
+                budget -= lines.get(--from).text.length() + 1;
+                grew = true;
+            }
+        }
+        List<Line> result = new ArrayList<>(to - from + 4);
+        result.add(lines.get(0));
+        if (from > 1) {
+            result.add(elide(lines, 1, from - 1, firstLine, elided));
+        }
+        result.addAll(lines.subList(from, to + 1));
+        if (to + 1 < lines.size()) {
+            result.add(elide(lines, to + 1, lines.size() - 1, firstLine, elided));
+        }
+        return result;
+    }
+
+    /**
+     * 原始行号不大于 origin 的最后一行
+     */
+    private static int indexOf(List<Line> lines, int origin) {
+        int index = 0;
+        for (int i = 0; i < lines.size(); i++) {
+            if (lines.get(i).origin <= origin) {
+                index = i;
+            }
+        }
+        return index;
+    }
+
+    /**
+     * 把 [from, to] 行替换为一行省略说明，已折叠的块一并计入
+     */
+    private static Line elide(List<Line> lines, int from, int to, int firstLine, List<Reduction.Elision> elided) {
+        int fromOrigin = lines.get(from).origin;
+        int toOrigin = to + 1 < lines.size() ? lines.get(to + 1).origin - 1 : lastOrigin(lines, to);
+        elided.removeIf(elision -> elision.fromLine() >= firstLine + fromOrigin
+                && elision.toLine() <= firstLine + toOrigin);
+        elided.add(new Reduction.Elision(firstLine + fromOrigin, firstLine + toOrigin, "window"));
+        return new Line(fromOrigin, "// ... " + (toOrigin - fromOrigin + 1) + " lines elided");
+    }
+
+    private static int lastOrigin(List<Line> lines, int index) {
+        return lines.get(index).origin;
+    }
+
+    private static int length(List<Line> lines) {
+        int length = -1;
+        for (Line line : lines) {
+            length += line.text.length() + 1;
+        }
+        return Math.max(length, 0);
+    }
+
+    /**
+     * 找出跨越多行的 {...} 块，begin/end 为左右括号所在行
+     */
+    private static List<Block> findBlocks(List<Line> lines) {
+        List<Block> blocks = new ArrayList<>();
+        int[] stack = new int[64];
+        int depth = 0;
+        for (int i = 0; i < lines.size(); i++) {
+            String text = lines.get(i).text;
+            char quote = 0;
+            for (int j = 0; j < text.length(); j++) {
+                char c = text.charAt(j);
+                if (quote != 0) {
+                    if (c == '\\') {
+                        j++;
+                    } else if (c == quote) {
+                        quote = 0;
+                    }
+                } else if (c == '"' || c == '\'') {
+                    quote = c;
+                } else if (c == '{') {
+                    if (depth == stack.length) {
+                        stack = Arrays.copyOf(stack, depth * 2);
+                    }
+                    stack[depth++] = i;
+                } else if (c == '}' && depth > 0) {
+                    int begin = stack[--depth];
+                    if (i > begin + 1) {
+                        blocks.add(new Block(begin, i, depth));
+                    }
+                }
+            }
+        }
+        return blocks;
+    }
+
+    /**
+     * 删除 // 和 /* *&#47; 注释，保留换行使行号不变
+     */
+    static String stripComments(String code) {
+        StringBuilder out = new StringBuilder(code.length());
+        int n = code.length();
+        int i = 0;
+        while (i < n) {
+            char c = code.charAt(i);
+            if (code.startsWith("\"\"\"", i)) {
+                int end = code.indexOf("\"\"\"", i + 3);
+                end = end < 0 ? n : end + 3;
+                out.append(code, i, end);
+                i = end;
+            } else if (c == '"' || c == '\'') {
+                int j = i + 1;
+                while (j < n && code.charAt(j) != c && code.charAt(j) != '\n') {
+                    j += code.charAt(j) == '\\' ? 2 : 1;
+                }
+                j = Math.min(j + 1, n);
+                out.append(code, i, j);
+                i = j;
+            } else if (code.startsWith("//", i)) {
+                while (i < n && code.charAt(i) != '\n') {
+                    i++;
+                }
+            } else if (code.startsWith("/*", i)) {
+                int end = code.indexOf("*/", i + 2);
+                end = end < 0 ? n : end + 2;
+                for (int j = i; j < end; j++) {
+                    if (code.charAt(j) == '\n') {
+                        out.append('\n');
+                    }
+                }
+                i = end;
+            } else {
+                out.append(c == '\r' ? "" : String.valueOf(c));
+                i++;
+            }
+        }
+        return out.toString();
+    }
+
+    private static String stripTrailing(String text) {
+        int end = text.length();
+        while (end > 0 && Character.isWhitespace(text.charAt(end - 1))) {
+            end--;
+        }
+        return text.substring(0, end);
+    }
+
+    private record Line(int origin, String text) {
+    }
+
+    private record Block(int begin, int end, int depth) {
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.sonar.ai.stage;
+
+import com.example.sonar.ai.io.SnippetSink;
+import com.example.sonar.ai.io.SourceSliceReader;
+import com.example.sonar.ai.model.Rule;
+import com.example.sonar.ai.model.Snippet;
+import com.example.sonar.ai.service.PromptBuilder;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 试运行的成本估算输出端
+ * 代替正常的片段输出，只统计抽样文件中每条规则需要 AI 判定的片段数和逐个调用的 token 数，
+ * 按 找到的文件数 / 抽样的文件数 线性外推，再按规则的 maxPerFile / maxTotal 限额截断；
+ * 已有判定的片段不计入。去重、聚类、按方法合并等与全量数据相关的阶段不参与估算，结果偏保守。
+ * 关闭时把估算报告以 JSON 写到 out
+ */
+public class CostEstimateSnippetSink implements SnippetSink {
+
+    private final Writer out;
+    private final SourceSliceReader sources = new SourceSliceReader();
+    private final Map<String, RuleEstimate> estimates = new LinkedHashMap<>();
+    private int filesFound;
+    private int filesSampled;
+    private long judged;
+
+    /**
+     * @param rules 规则列表，报告按此顺序列出，没有片段的规则也列出
+     */
+    public CostEstimateSnippetSink(Writer out, List<Rule> rules) {
+        this.out = out;
+        for (Rule rule : rules) {
+            estimates.put(rule.getId(), new RuleEstimate(rule));
+        }
+    }
+
+    /**
+     * 外推比例，抽取结束后由调用方设置
+     */
+    public synchronized void setScale(int filesFound, int filesSampled) {
+        this.filesFound = filesFound;
+        this.filesSampled = filesSampled;
+    }
+
+    @Override
+    public synchronized void accept(Snippet snippet) throws IOException {
+        if (snippet.getVerdict() != null) {
+            judged++;
+            return;
+        }
+        RuleEstimate estimate = estimates.computeIfAbsent(snippet.getRuleId(), id -> new RuleEstimate(snippet.getRule()));
+        int maxPerFile = estimate.rule.getMaxPerFile();
+        if (maxPerFile > 0 && estimate.perFile.merge(snippet.getPayload().getFileId(), 1, Integer::sum) > maxPerFile) {
+            return;
+        }
+        estimate.snippets++;
+        estimate.tokens += PromptBuilder.singleTokens(snippet.getRule(), sources.read(snippet));
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        sources.close();
+        double scale = filesSampled == 0 ? 1 : (double) filesFound / filesSampled;
+        long sampledSnippets = 0;
+        long estimatedSnippets = 0;
+        long estimatedTokens = 0;
+        try (JsonWriter json = new JsonWriter(out)) {
+            json.setIndent("  ");
+            json.beginObject();
+            json.name("filesFound").value(filesFound);
+            json.name("filesSampled").value(filesSampled);
+            json.name("judgedLocally").value(judged);
+            json.name("rules").beginArray();
+            for (RuleEstimate estimate : estimates.values()) {
+                long snippets = Math.round(estimate.snippets * scale);
+                long tokens = Math.round(estimate.tokens * scale);
+                boolean capped = estimate.rule.getMaxTotal() > 0 && snippets > estimate.rule.getMaxTotal();
+                if (capped) {
+                    tokens = Math.round((double) tokens * estimate.rule.getMaxTotal() / snippets);
+                    snippets = estimate.rule.getMaxTotal();
+                }
+                json.beginObject();
+                json.name("ruleId").value(estimate.rule.getId());
+                json.name("sampledSnippets").value(estimate.snippets);
+                json.name("estimatedSnippets").value(snippets);
+                json.name("estimatedTokens").value(tokens);
+                json.name("capped").value(capped);
+                json.endObject();
+                sampledSnippets += estimate.snippets;
+                estimatedSnippets += snippets;
+                estimatedTokens += tokens;
+            }
+            json.endArray();
+            json.name("sampledSnippets").value(sampledSnippets);
+            json.name("estimatedSnippets").value(estimatedSnippets);
+            json.name("estimatedTokens").value(estimatedTokens);
+            json.endObject();
+            json.flush();
+            out.write('\n');
+        }
+        System.err.println("INFO: Dry run: " + filesSampled + " of " + filesFound + " files, " + sampledSnippets
+                + " snippets sampled -> ~" + estimatedSnippets + " AI calls, ~" + estimatedTokens + " prompt tokens.");
+    }
+
+    private static final class RuleEstimate {
+        private final Rule rule;
+        private final Map<Integer, Integer> perFile = new HashMap<>();
+        private long snippets;
+        private long tokens;
+
+        private RuleEstimate(Rule rule) {
+            this.rule = rule;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.sonar.ai.stage;
+
+import com.example.sonar.ai.io.SnippetSink;
+import com.example.sonar.ai.model.Occurrences;
+import com.example.sonar.ai.model.Snippet;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 精确去重阶段
+ * 按 (ruleId, 结构哈希) 分组，每组只保留第一次出现的片段作为代表，其余片段只记录 (文件, 行号)。
+ * 合成的代码（如"无JavaDoc"、签名加命名拆分）没有原文范围，其 name 才是待判断的内容，分组时一并比较。
+ * 索引使用 ConcurrentHashMap，可以被并行抽取的多个线程同时写入；
+ * 分组结束前无法确定出现位置，因此在 close 时按首次出现顺序统一输出
+ */
+public class DedupSnippetSink implements SnippetSink {
+
+    private final SnippetSink delegate;
+    private final ConcurrentHashMap<Key, Group> groups = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong received = new AtomicLong();
+
+    public DedupSnippetSink(SnippetSink delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void accept(Snippet snippet) {
+        received.incrementAndGet();
+        Key key = new Key(snippet.getRuleId(), snippet.getStructuralHash(),
+                snippet.hasRange() ? null : snippet.getName());
+        Group group = groups.computeIfAbsent(key, k -> new Group(sequence.getAndIncrement(), snippet));
+        group.occurrences.add(snippet.getPayload().getFileId(), snippet.getLine());
+    }
+
+    /**
+     * 收到的片段数
+     */
+    public long getReceived() {
+        return received.get();
+    }
+
+    /**
+     * 去重后的片段数，即实际需要的 AI 调用次数
+     */
+    public long getUnique() {
+        return groups.size();
+    }
+
+    /**
+     * 节省的 AI 调用次数
+     */
+    public long getSaved() {
+        return getReceived() - getUnique();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        delegate.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            List<Group> ordered = new ArrayList<>(groups.values());
+            ordered.sort(Comparator.comparingLong(group -> group.sequence));
+            for (Group group : ordered) {
+                if (group.occurrences.size() > 1) {
+                    group.representative.setOccurrences(group.occurrences);
+                }
+                delegate.accept(group.representative);
+            }
+        } finally {
+            delegate.close();
+        }
+        System.err.println("INFO: Dedup: " + getReceived() + " snippets -> " + getUnique()
+                + " unique, " + getSaved() + " AI calls saved.");
+    }
+
+    private record Key(String ruleId, long structuralHash, String name) {
+    }
+
+    private static final class Group {
+        private final long sequence;
+        private final Snippet representative;
+        private final Occurrences occurrences = new Occurrences();
+
+        private Group(long sequence, Snippet representative) {
+            this.sequence = sequence;
+            this.representative = representative;
+        }
+    }
+}
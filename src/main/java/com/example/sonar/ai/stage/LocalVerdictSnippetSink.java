@@ -0,0 +1,104 @@
+package com.example.sonar.ai.stage;
+
+import com.example.sonar.ai.evaluator.LocalEvaluator;
+import com.example.sonar.ai.io.SnippetSink;
+import com.example.sonar.ai.io.SourceSliceReader;
+import com.example.sonar.ai.model.Snippet;
+import com.example.sonar.ai.model.Verdict;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 本地判定阶段
+ * 规则有本地判定器且判定器能给出结论的片段附带判定结果输出，skipJudged 时直接丢弃；
+ * 已有判定的片段不再进入方法合并和批次规划，即不再交给 AI。判定器异常视为无法确定
+ */
+public class LocalVerdictSnippetSink implements SnippetSink {
+
+    private final SnippetSink delegate;
+    private final Map<String, LocalEvaluator> evaluators;
+    private final boolean skipJudged;
+    private final SourceSliceReader sources = new SourceSliceReader();
+    private final AtomicLong decided = new AtomicLong();
+    private final AtomicLong violations = new AtomicLong();
+    private final AtomicLong undecided = new AtomicLong();
+
+    /**
+     * @param evaluators 规则 id 到判定器，见 {@link com.example.sonar.ai.evaluator.LocalEvaluators#forRules}
+     */
+    public LocalVerdictSnippetSink(SnippetSink delegate, Map<String, LocalEvaluator> evaluators, boolean skipJudged) {
+        this.delegate = delegate;
+        this.evaluators = evaluators;
+        this.skipJudged = skipJudged;
+    }
+
+    @Override
+    public void accept(Snippet snippet) throws IOException {
+        Verdict verdict = snippet.getVerdict() == null ? evaluate(snippet) : null;
+        if (verdict == null) {
+            undecided.incrementAndGet();
+            delegate.accept(snippet);
+            return;
+        }
+        decided.incrementAndGet();
+        if (Boolean.TRUE.equals(verdict.getViolation())) {
+            violations.incrementAndGet();
+        }
+        if (!skipJudged) {
+            verdict.setJudgedAt(System.currentTimeMillis());
+            snippet.setVerdict(verdict);
+            delegate.accept(snippet);
+        }
+    }
+
+    private Verdict evaluate(Snippet snippet) throws IOException {
+        LocalEvaluator evaluator = evaluators.get(snippet.getRuleId());
+        if (evaluator == null) {
+            return null;
+        }
+        try {
+            return evaluator.evaluate(snippet, sources.read(snippet));
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 本地判定的片段数
+     */
+    public long getDecided() {
+        return decided.get();
+    }
+
+    /**
+     * 本地判定为违规的片段数
+     */
+    public long getViolations() {
+        return violations.get();
+    }
+
+    /**
+     * 仍需 AI 判定的片段数
+     */
+    public long getUndecided() {
+        return undecided.get();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        delegate.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            delegate.close();
+        } finally {
+            sources.close();
+        }
+        System.err.println("INFO: Local verdicts: " + getDecided() + " decided (" + getViolations() + " violations)"
+                + (skipJudged ? " (skipped)" : "") + ", " + getUndecided() + " left for AI.");
+    }
+}
@@ -0,0 +1,211 @@
+package com.example.sonar.ai.stage;
+
+import com.example.sonar.ai.io.SnippetSink;
+import com.example.sonar.ai.io.SourceSliceReader;
+import com.example.sonar.ai.model.Rule;
+import com.example.sonar.ai.model.Snippet;
+import com.example.sonar.ai.model.SnippetPayload;
+import com.example.sonar.ai.util.Hash64;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringJoiner;
+
+/**
+ * 按外层方法合并片段的阶段
+ * 同一文件同一方法（或构造方法）内命中的多条规则合并为一个组合片段，规则为各成员规则的合成，
+ * 代码为成员代码去掉被其它成员范围包含的部分后按行号拼接，成员的规则、行号和名称记录在 members 中，
+ * 下游可以一次请求判断全部规则。
+ * 外层方法在抽取时由 ExtractionContext 记录，不在方法内的片段和已有判定的片段直接透传；
+ * 抽取按文件逐个交付片段，文件切换时输出上一文件的组合片段，缓存的片段不超过一个文件；
+ * 从片段库按规则顺序重放时各文件的片段交错到达，需要全局缓存到 close 时按首次出现顺序统一输出，
+ * 缓存时原文切片转为独立字符串，不因此持有各文件的全文
+ */
+public class MethodGroupingSnippetSink implements SnippetSink {
+
+    private final SnippetSink delegate;
+    private final boolean byFile;
+    private final Map<Key, List<Snippet>> groups = new LinkedHashMap<>();
+    // 相同成员规则组合复用同一个 Rule，下游按规则分组时保持一致
+    private final Map<String, Rule> composites = new HashMap<>();
+    private long received;
+    private long emitted;
+    private long merged;
+    private int fileId = -1;
+
+    public MethodGroupingSnippetSink(SnippetSink delegate) {
+        this(delegate, true);
+    }
+
+    /**
+     * @param byFile 片段是否按文件连续到达；为 false 时全部缓存到 close
+     */
+    public MethodGroupingSnippetSink(SnippetSink delegate, boolean byFile) {
+        this.delegate = delegate;
+        this.byFile = byFile;
+    }
+
+    @Override
+    public synchronized void accept(Snippet snippet) throws IOException {
+        received++;
+        SnippetPayload payload = snippet.getPayload();
+        if (byFile && payload.getFileId() != fileId) {
+            emitGroups();
+            fileId = payload.getFileId();
+        }
+        String enclosing = payload.getEnclosing();
+        if (enclosing == null || snippet.getVerdict() != null) {
+            emitted++;
+            delegate.accept(snippet);
+            return;
+        }
+        if (!byFile) {
+            payload.detach();
+        }
+        groups.computeIfAbsent(new Key(payload.getFileId(), enclosing), k -> new ArrayList<>()).add(snippet);
+    }
+
+    /**
+     * 收到的片段数
+     */
+    public synchronized long getReceived() {
+        return received;
+    }
+
+    /**
+     * 输出的片段数，即实际需要的 AI 调用次数
+     */
+    public synchronized long getEmitted() {
+        return emitted;
+    }
+
+    /**
+     * 组合片段数
+     */
+    public synchronized long getMerged() {
+        return merged;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        delegate.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            emitGroups();
+        } finally {
+            delegate.close();
+        }
+        System.err.println("INFO: Grouping: " + received + " snippets -> " + emitted + " requests ("
+                + merged + " composites), " + (received - emitted) + " AI calls saved.");
+    }
+
+    /**
+     * 按首次出现顺序输出缓存的分组
+     */
+    private void emitGroups() throws IOException {
+        if (groups.isEmpty()) {
+            return;
+        }
+        try (SourceSliceReader reader = new SourceSliceReader()) {
+            for (List<Snippet> group : groups.values()) {
+                emitted++;
+                if (group.size() == 1) {
+                    delegate.accept(group.get(0));
+                } else {
+                    merged++;
+                    delegate.accept(merge(group, reader));
+                }
+            }
+        }
+        groups.clear();
+    }
+
+    private Snippet merge(List<Snippet> group, SourceSliceReader reader) throws IOException {
+        Set<Rule> rules = new LinkedHashSet<>();
+        for (Snippet member : group) {
+            rules.add(member.getRule());
+        }
+        Rule rule;
+        if (rules.size() == 1) {
+            // 同一规则在方法内多次命中，合并后仍是这条规则
+            rule = first(rules);
+        } else {
+            StringJoiner ids = new StringJoiner("+");
+            rules.forEach(member -> ids.add(member.getId()));
+            rule = composites.computeIfAbsent(ids.toString(), id -> Rule.composite(new ArrayList<>(rules)));
+        }
+
+        Snippet first = group.get(0);
+        int line = first.getLine();
+        for (Snippet member : group) {
+            line = Math.min(line, member.getLine());
+        }
+        // 结构哈希由成员的规则和结构哈希合成，去重和基线比较据此区分不同的组合片段
+        long hash = 0;
+        for (Snippet member : group) {
+            hash = Hash64.combine(hash, Hash64.of(member.getRuleId()));
+            hash = Hash64.combine(hash, member.getStructuralHash());
+        }
+        String enclosing = first.getPayload().getEnclosing();
+        String name = enclosing.substring(enclosing.indexOf('#') + 1);
+        SnippetPayload payload = new SnippetPayload(first.getFile(), line, mergeCode(group, reader), name,
+                "METHOD_DECLARATION", 0, 0, 0, 0, null, hash);
+        payload.setEnclosing(enclosing);
+        Snippet composite = new Snippet(rule, payload);
+        composite.setMembers(new ArrayList<>(group));
+        return composite;
+    }
+
+    private static Rule first(Set<Rule> rules) {
+        return rules.iterator().next();
+    }
+
+    /**
+     * 拼接成员代码：相同代码只保留一份，范围被其它成员包含的原文代码省略，其余按起始行排序；
+     * 合成的代码没有原文范围，总是保留
+     */
+    static String mergeCode(List<Snippet> group, SourceSliceReader reader) throws IOException {
+        List<Piece> pieces = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (Snippet member : group) {
+            String code = reader.read(member);
+            if (code == null || !seen.add(code)) {
+                continue;
+            }
+            pieces.add(member.hasRange()
+                    ? new Piece(member.getBeginLine(), member.getEndLine(), true, code)
+                    : new Piece(member.getLine(), member.getLine(), false, code));
+        }
+        List<Piece> kept = new ArrayList<>(pieces.size());
+        for (Piece piece : pieces) {
+            if (!piece.ranged || pieces.stream().noneMatch(other -> other.contains(piece))) {
+                kept.add(piece);
+            }
+        }
+        kept.sort(Comparator.comparingInt(Piece::begin));
+        StringJoiner code = new StringJoiner("\n\n");
+        kept.forEach(piece -> code.add(piece.code));
+        return code.toString();
+    }
+
+    private record Key(int fileId, String enclosing) {
+    }
+
+    private record Piece(int begin, int end, boolean ranged, String code) {
+        boolean contains(Piece other) {
+            return other != this && ranged && begin <= other.begin && other.end <= end
+                    && end - begin > other.end - other.begin;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.sonar.ai.stage;
+
+import com.example.sonar.ai.util.Hash64;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 代码 MinHash 签名
+ * 代码先切成规范化的 token 流：变量名等普通标识符统一为 ID，字面量统一为 LIT，注释和空白丢弃，
+ * 关键字、类型名（大写开头）、方法名（后接左括号）和符号保留；再取连续 k 个 token 作为 shingle，
+ * 对每个哈希函数取所有 shingle 的最小值组成签名，两个签名相同位置相等的比例即 Jaccard 相似度的估计
+ */
+class MinHash {
+
+    static final int SHINGLE = 5;
+
+    private static final Set<String> KEYWORDS = Set.of(
+            "abstract", "assert", "boolean", "break", "byte", "case", "catch", "char", "class", "const",
+            "continue", "default", "do", "double", "else", "enum", "extends", "final", "finally", "float",
+            "for", "goto", "if", "implements", "import", "instanceof", "int", "interface", "long", "native",
+            "new", "package", "private", "protected", "public", "return", "short", "static", "strictfp",
+            "super", "switch", "synchronized", "this", "throw", "throws", "transient", "try", "void",
+            "volatile", "while", "var", "record", "yield", "true", "false", "null");
+
+    private final long[] seeds;
+
+    MinHash(int hashes) {
+        this.seeds = new long[hashes];
+        long seed = 0x5eed;
+        for (int i = 0; i < hashes; i++) {
+            seed = Hash64.mix(seed + i);
+            seeds[i] = seed;
+        }
+    }
+
+    int size() {
+        return seeds.length;
+    }
+
+    /**
+     * 计算签名，代码为空时返回 null
+     */
+    long[] signature(CharSequence code) {
+        List<String> tokens = tokens(code);
+        if (tokens.isEmpty()) {
+            return null;
+        }
+        long[] signature = new long[seeds.length];
+        Arrays.fill(signature, Long.MAX_VALUE);
+        int shingles = Math.max(1, tokens.size() - SHINGLE + 1);
+        for (int start = 0; start < shingles; start++) {
+            long shingle = 0;
+            for (int i = start; i < Math.min(start + SHINGLE, tokens.size()); i++) {
+                shingle = Hash64.combine(shingle, Hash64.of(tokens.get(i)));
+            }
+            for (int i = 0; i < seeds.length; i++) {
+                long h = Hash64.mix(shingle ^ seeds[i]);
+                if (h < signature[i]) {
+                    signature[i] = h;
+                }
+            }
+        }
+        return signature;
+    }
+
+    static double similarity(long[] a, long[] b) {
+        int equal = 0;
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] == b[i]) {
+                equal++;
+            }
+        }
+        return (double) equal / a.length;
+    }
+
+    /**
+     * 规范化 token 流
+     */
+    static List<String> tokens(CharSequence code) {
+        List<String> tokens = new ArrayList<>();
+        int n = code.length();
+        int i = 0;
+        while (i < n) {
+            char c = code.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '/' && i + 1 < n && code.charAt(i + 1) == '/') {
+                while (i < n && code.charAt(i) != '\n') {
+                    i++;
+                }
+            } else if (c == '/' && i + 1 < n && code.charAt(i + 1) == '*') {
+                i += 2;
+                while (i + 1 < n && !(code.charAt(i) == '*' && code.charAt(i + 1) == '/')) {
+                    i++;
+                }
+                i += 2;
+            } else if (c == '"' || c == '\'') {
+                i++;
+                while (i < n && code.charAt(i) != c) {
+                    i += code.charAt(i) == '\\' ? 2 : 1;
+                }
+                i++;
+                tokens.add("LIT");
+            } else if (Character.isDigit(c)) {
+                while (i < n && (Character.isLetterOrDigit(code.charAt(i)) || code.charAt(i) == '.' || code.charAt(i) == '_')) {
+                    i++;
+                }
+                tokens.add("LIT");
+            } else if (Character.isJavaIdentifierStart(c)) {
+                int start = i;
+                while (i < n && Character.isJavaIdentifierPart(code.charAt(i))) {
+                    i++;
+                }
+                String word = code.subSequence(start, i).toString();
+                int next = i;
+                while (next < n && Character.isWhitespace(code.charAt(next))) {
+                    next++;
+                }
+                boolean call = next < n && code.charAt(next) == '(';
+                if (KEYWORDS.contains(word) || call || Character.isUpperCase(word.charAt(0))) {
+                    tokens.add(word);
+                } else {
+                    tokens.add("ID");
+                }
+            } else {
+                tokens.add(String.valueOf(c));
+                i++;
+            }
+        }
+        return tokens;
+    }
+}
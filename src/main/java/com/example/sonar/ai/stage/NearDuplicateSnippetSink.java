@@ -0,0 +1,182 @@
+package com.example.sonar.ai.stage;
+
+import com.example.sonar.ai.io.SnippetSink;
+import com.example.sonar.ai.model.Occurrences;
+import com.example.sonar.ai.model.Snippet;
+import com.example.sonar.ai.util.Hash64;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 近似重复聚类阶段
+ * 同一规则下带原文范围的片段按 MinHash 签名分成 bands 段做 LSH 分桶，新片段只与同桶中的簇代表比较相似度，
+ * 达到阈值则并入最相似的簇，否则成为新簇的代表。每个片段只比较常数个候选，总成本与片段数近似线性。
+ * close 时每个簇输出一个代表片段，附带所有出现位置和簇内与代表的最低相似度。
+ * 只对指定 scope 聚类：循环、锁等语句块的判断与变量名无关；字段、类等片段的 name 中带有属性名等事实，
+ * 把标识符规范化后合并会丢失这些信息
+ */
+public class NearDuplicateSnippetSink implements SnippetSink {
+
+    static final int HASHES = 64;
+    /**
+     * 默认参与聚类的 scope：循环类（ExtractLoopHander、ExtractListLoopHandler）和锁（ExtractLockHandler）
+     */
+    public static final Set<String> DEFAULT_SCOPES = Set.of("METHOD_DECLARATION", "LOCK_DECLARATION");
+    // 每个片段最多比较的候选簇数量，避免热点桶退化成平方复杂度
+    private static final int MAX_CANDIDATES = 32;
+
+    private final SnippetSink delegate;
+    private final double threshold;
+    private final Set<String> scopes;
+    private final MinHash minHash = new MinHash(HASHES);
+    private final int bands;
+    private final int rows;
+    private final Map<Long, List<Cluster>> buckets = new HashMap<>();
+    private final List<Cluster> clusters = new ArrayList<>();
+    private long received;
+
+    public NearDuplicateSnippetSink(SnippetSink delegate, double threshold, Set<String> scopes) {
+        this.delegate = delegate;
+        this.threshold = threshold;
+        this.scopes = scopes;
+        // 选择 bands * rows = HASHES 中 (1/bands)^(1/rows) 最接近阈值的组合，即候选概率曲线的拐点
+        int bestRows = 1;
+        for (int r = 1; r <= HASHES; r++) {
+            if (HASHES % r == 0 && Math.abs(Math.pow(1.0 / (HASHES / r), 1.0 / r) - threshold)
+                    < Math.abs(Math.pow(1.0 / (HASHES / bestRows), 1.0 / bestRows) - threshold)) {
+                bestRows = r;
+            }
+        }
+        this.rows = bestRows;
+        this.bands = HASHES / bestRows;
+    }
+
+    @Override
+    public synchronized void accept(Snippet snippet) {
+        received++;
+        CharSequence code = snippet.getPayload().getCode();
+        // 只对源码原文聚类；合成的代码（签名加命名拆分等）要判断的正是名称本身，不能把名称规范化掉
+        long[] signature = code == null || !snippet.hasRange() || !scopes.contains(snippet.getScope())
+                ? null : minHash.signature(code);
+        if (signature == null) {
+            // 合成代码、不聚类的 scope、引用模式或空代码不参与比较，单独成簇
+            clusters.add(new Cluster(snippet, null));
+            return;
+        }
+        long rule = Hash64.of(snippet.getRuleId());
+        long[] keys = new long[bands];
+        Cluster best = null;
+        double bestSimilarity = 0;
+        int compared = 0;
+        for (int band = 0; band < bands; band++) {
+            long key = Hash64.combine(rule, band);
+            for (int i = band * rows; i < (band + 1) * rows; i++) {
+                key = Hash64.combine(key, signature[i]);
+            }
+            keys[band] = key;
+            List<Cluster> bucket = buckets.get(key);
+            if (bucket == null) {
+                continue;
+            }
+            for (Cluster candidate : bucket) {
+                if (compared >= MAX_CANDIDATES) {
+                    break;
+                }
+                // 同一个簇可能出现在多个桶中，每个片段只比较一次
+                if (candidate.visitedBy == received
+                        || !candidate.representative.getRuleId().equals(snippet.getRuleId())) {
+                    continue;
+                }
+                candidate.visitedBy = received;
+                compared++;
+                double similarity = MinHash.similarity(signature, candidate.signature);
+                if (similarity > bestSimilarity) {
+                    best = candidate;
+                    bestSimilarity = similarity;
+                }
+            }
+        }
+        if (best != null && bestSimilarity >= threshold) {
+            best.add(snippet, bestSimilarity);
+            return;
+        }
+        Cluster cluster = new Cluster(snippet, signature);
+        clusters.add(cluster);
+        for (long key : keys) {
+            buckets.computeIfAbsent(key, k -> new ArrayList<>(1)).add(cluster);
+        }
+    }
+
+    public synchronized long getReceived() {
+        return received;
+    }
+
+    public synchronized long getClusters() {
+        return clusters.size();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        delegate.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            for (Cluster cluster : clusters) {
+                Snippet representative = cluster.representative;
+                if (cluster.occurrences != null) {
+                    representative.setOccurrences(cluster.occurrences);
+                    representative.setSimilarity(Math.floor(cluster.minSimilarity * 100) / 100);
+                }
+                delegate.accept(representative);
+            }
+        } finally {
+            delegate.close();
+        }
+        System.err.println("INFO: Near-duplicate clustering (threshold " + threshold + ", " + bands + "x" + rows
+                + " LSH): " + received + " snippets -> " + clusters.size() + " clusters, "
+                + (received - clusters.size()) + " AI calls saved.");
+    }
+
+    private static final class Cluster {
+        private final Snippet representative;
+        private final long[] signature;
+        private Occurrences occurrences;
+        private double minSimilarity = 1;
+        private long visitedBy;
+
+        private Cluster(Snippet representative, long[] signature) {
+            this.representative = representative;
+            this.signature = signature;
+        }
+
+        private void add(Snippet member, double similarity) {
+            if (occurrences == null) {
+                occurrences = new Occurrences();
+                addOccurrences(representative);
+            }
+            addOccurrences(member);
+            minSimilarity = Math.min(minSimilarity, similarity);
+        }
+
+        /**
+         * 已经精确去重过的片段带有自己的出现位置，全部并入
+         */
+        private void addOccurrences(Snippet snippet) {
+            Occurrences own = snippet.getOccurrences();
+            if (own == null) {
+                occurrences.add(snippet.getPayload().getFileId(), snippet.getLine());
+                return;
+            }
+            for (int i = 0; i < own.size(); i++) {
+                occurrences.add(own.getFileId(i), own.getLine(i));
+            }
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.sonar.ai.stage;
+
+import com.example.sonar.ai.io.SnippetSink;
+import com.example.sonar.ai.model.Rule;
+import com.example.sonar.ai.model.Snippet;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * 按规则限额阶段
+ * 规则配置了 maxPerFile / maxTotal 时，超出限额的部分以蓄水池抽样保留一个均匀随机样本：
+ * 先在每个文件内抽取至多 maxPerFile 个，再从各文件的结果中抽取至多 maxTotal 个。
+ * 随机数按 (种子, ruleId) 初始化，片段到达顺序相同时结果可复现；
+ * 未配置限额的规则和已有判定的片段直接透传，受限的片段在 close 时按到达顺序输出。
+ * 缓冲的片段数不超过限额（maxPerFile 按文件计）
+ */
+public class QuotaSnippetSink implements SnippetSink {
+
+    private final SnippetSink delegate;
+    private final long seed;
+    private final Map<String, RuleQuota> quotas = new LinkedHashMap<>();
+    private long sequence;
+
+    public QuotaSnippetSink(SnippetSink delegate, long seed) {
+        this.delegate = delegate;
+        this.seed = seed;
+    }
+
+    @Override
+    public void accept(Snippet snippet) throws IOException {
+        Rule rule = snippet.getRule();
+        if ((rule.getMaxPerFile() <= 0 && rule.getMaxTotal() <= 0) || snippet.getVerdict() != null) {
+            delegate.accept(snippet);
+            return;
+        }
+        synchronized (this) {
+            quotas.computeIfAbsent(rule.getId(), id -> new RuleQuota(rule, seed))
+                    .offer(new Entry(sequence++, snippet));
+        }
+    }
+
+    /**
+     * 各受限规则的统计，按首次出现顺序；保留和丢弃数在 close 之后才确定
+     */
+    public synchronized List<QuotaStats> getStats() {
+        List<QuotaStats> stats = new ArrayList<>(quotas.size());
+        for (RuleQuota quota : quotas.values()) {
+            stats.add(quota.stats());
+        }
+        return stats;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        delegate.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            List<Entry> kept = new ArrayList<>();
+            for (RuleQuota quota : quotas.values()) {
+                kept.addAll(quota.finish());
+            }
+            kept.sort(Comparator.comparingLong(Entry::sequence));
+            for (Entry entry : kept) {
+                delegate.accept(entry.snippet);
+            }
+        } finally {
+            delegate.close();
+        }
+        for (RuleQuota quota : quotas.values()) {
+            QuotaStats stats = quota.stats();
+            System.err.println("INFO: Quota " + stats.ruleId() + ": " + stats.received() + " snippets, "
+                    + stats.kept() + " kept, " + (stats.droppedPerFile() + stats.droppedTotal())
+                    + " dropped (per file " + stats.droppedPerFile() + ", total " + stats.droppedTotal() + ").");
+        }
+    }
+
+    /**
+     * 单条规则的限额统计
+     *
+     * @param droppedPerFile 因单文件限额丢弃的片段数
+     * @param droppedTotal   因全局限额丢弃的片段数
+     */
+    public record QuotaStats(String ruleId, long received, long kept, long droppedPerFile, long droppedTotal) {
+    }
+
+    private record Entry(long sequence, Snippet snippet) {
+    }
+
+    private static final class RuleQuota {
+        private final Rule rule;
+        private final Random random;
+        // 按文件的蓄水池，未配置 maxPerFile 时为 null
+        private final Map<Integer, Reservoir> files;
+        // 未配置 maxPerFile 时直接对全部片段抽样
+        private final Reservoir total;
+        private long received;
+        private long droppedPerFile;
+        private long droppedTotal;
+        private long kept = -1;
+
+        private RuleQuota(Rule rule, long seed) {
+            this.rule = rule;
+            this.random = new Random(seed * 31 + rule.getId().hashCode());
+            this.files = rule.getMaxPerFile() > 0 ? new LinkedHashMap<>() : null;
+            this.total = rule.getMaxPerFile() > 0 ? null : new Reservoir(rule.getMaxTotal());
+        }
+
+        private void offer(Entry entry) {
+            received++;
+            if (files != null) {
+                files.computeIfAbsent(entry.snippet.getPayload().getFileId(),
+                        id -> new Reservoir(rule.getMaxPerFile())).offer(entry, random);
+            } else {
+                total.offer(entry, random);
+            }
+        }
+
+        /**
+         * 结束抽样，返回保留的片段
+         */
+        private List<Entry> finish() {
+            List<Entry> result;
+            if (files != null) {
+                List<Entry> perFile = new ArrayList<>();
+                for (Reservoir reservoir : files.values()) {
+                    droppedPerFile += reservoir.dropped();
+                    perFile.addAll(reservoir.items);
+                }
+                if (rule.getMaxTotal() > 0) {
+                    perFile.sort(Comparator.comparingLong(Entry::sequence));
+                    Reservoir reservoir = new Reservoir(rule.getMaxTotal());
+                    for (Entry entry : perFile) {
+                        reservoir.offer(entry, random);
+                    }
+                    droppedTotal = reservoir.dropped();
+                    result = reservoir.items;
+                } else {
+                    result = perFile;
+                }
+            } else {
+                droppedTotal = total.dropped();
+                result = total.items;
+            }
+            kept = result.size();
+            return result;
+        }
+
+        private QuotaStats stats() {
+            return new QuotaStats(rule.getId(), received, kept < 0 ? received : kept, droppedPerFile, droppedTotal);
+        }
+    }
+
+    /**
+     * 蓄水池抽样（算法 R）：前 capacity 个直接保留，第 n 个以 capacity/n 的概率替换随机一个已保留的
+     */
+    private static final class Reservoir {
+        private final int capacity;
+        private final List<Entry> items = new ArrayList<>();
+        private long seen;
+
+        private Reservoir(int capacity) {
+            this.capacity = capacity;
+        }
+
+        private void offer(Entry entry, Random random) {
+            seen++;
+            if (items.size() < capacity) {
+                items.add(entry);
+                return;
+            }
+            long slot = random.nextLong(seen);
+            if (slot < capacity) {
+                items.set((int) slot, entry);
+            }
+        }
+
+        private long dropped() {
+            return seen - items.size();
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.sonar.ai.stage;
+
+import com.example.sonar.ai.io.SnippetSink;
+import com.example.sonar.ai.io.SourceSliceReader;
+import com.example.sonar.ai.model.Snippet;
+import com.example.sonar.ai.model.SnippetPayload;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 超长片段缩减阶段
+ * 代码长度超过规则的 maxChars（未配置时用全局上限）的片段交给 {@link CodeReducer} 处理，以触发行
+ * （片段的 line）为中心保留上下文，并在 reduction 中记录删除和省略的内容。
+ * 缩减后的代码不再对应原文范围，以新的 payload 输出代码文本，结构哈希沿用原代码的值，
+ * 判定缓存、基线比较等仍按原代码匹配。
+ * 按方法合并的组合片段由多段原文拼接而成，行号无法对应到源文件，不做缩减
+ */
+public class ReductionSnippetSink implements SnippetSink {
+
+    private final SnippetSink delegate;
+    private final int defaultLimit;
+    private final SourceSliceReader sources = new SourceSliceReader();
+    private final AtomicLong reduced = new AtomicLong();
+    private final AtomicLong charsBefore = new AtomicLong();
+    private final AtomicLong charsAfter = new AtomicLong();
+
+    /**
+     * @param defaultLimit 规则未配置 maxChars 时的长度上限，0 表示不限制
+     */
+    public ReductionSnippetSink(SnippetSink delegate, int defaultLimit) {
+        this.delegate = delegate;
+        this.defaultLimit = defaultLimit;
+    }
+
+    @Override
+    public void accept(Snippet snippet) throws IOException {
+        int limit = snippet.getRule().getMaxChars() > 0 ? snippet.getRule().getMaxChars() : defaultLimit;
+        CharSequence code = snippet.getPayload().getCode();
+        if (limit <= 0 || snippet.getMembers() != null || code != null && code.length() <= limit) {
+            delegate.accept(snippet);
+            return;
+        }
+        String text = sources.read(snippet);
+        if (text.length() <= limit) {
+            delegate.accept(snippet);
+            return;
+        }
+        int firstLine = snippet.hasRange() ? snippet.getBeginLine() : snippet.getLine();
+        int focus = Math.max(0, snippet.getLine() - firstLine);
+        CodeReducer.Result result = new CodeReducer(limit).reduce(text, focus, firstLine);
+        SnippetPayload payload = new SnippetPayload(snippet.getFile(), snippet.getLine(),
+                result.code(), snippet.getName(), snippet.getScope(), 0, 0, 0, 0, null, snippet.getStructuralHash());
+        payload.setEnclosing(snippet.getPayload().getEnclosing());
+        payload.setMetrics(snippet.getPayload().getMetrics());
+        Snippet shortened = snippet.withPayload(payload);
+        shortened.setReduction(result.reduction());
+        reduced.incrementAndGet();
+        charsBefore.addAndGet(text.length());
+        charsAfter.addAndGet(result.code().length());
+        delegate.accept(shortened);
+    }
+
+    /**
+     * 被缩减的片段数
+     */
+    public long getReduced() {
+        return reduced.get();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        delegate.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            delegate.close();
+        } finally {
+            sources.close();
+        }
+        if (getReduced() > 0) {
+            System.err.println("INFO: Reduced " + getReduced() + " oversized snippets, " + charsBefore.get()
+                    + " -> " + charsAfter.get() + " chars.");
+        }
+    }
+}
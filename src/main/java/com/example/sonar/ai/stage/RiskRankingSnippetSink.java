@@ -0,0 +1,102 @@
+package com.example.sonar.ai.stage;
+
+import com.example.sonar.ai.io.SnippetSink;
+import com.example.sonar.ai.model.Snippet;
+import com.example.sonar.ai.model.SnippetMetrics;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 风险排序阶段
+ * 按抽取时计算的静态指标（见 {@link SnippetMetrics}）给片段打分：得分为各指标值乘以权重之和，
+ * 权重优先取规则的 riskWeights，未配置的指标使用全局权重；组合片段的得分为各成员得分之和，
+ * 没有指标的片段（合成的签名/命名代码、基线中已删除的片段等）得分为 0。
+ * 得分在输出前才能比较，因此在 close 时按得分从高到低统一输出，得分相同的保持原顺序，
+ * 时间预算有限时下游按输出顺序处理即可先分析高风险片段
+ */
+public class RiskRankingSnippetSink implements SnippetSink {
+
+    /**
+     * 默认权重：循环嵌套和循环内调用对性能影响最大，语句数只作为规模的补充
+     */
+    public static final Map<String, Double> DEFAULT_WEIGHTS = defaultWeights();
+
+    private final SnippetSink delegate;
+    private final Map<String, Double> weights;
+    private final List<Snippet> buffered = new ArrayList<>();
+
+    /**
+     * @param weights 全局权重，为 null 时使用 {@link #DEFAULT_WEIGHTS}，未给出的指标同样取默认值
+     */
+    public RiskRankingSnippetSink(SnippetSink delegate, Map<String, Double> weights) {
+        this.delegate = delegate;
+        this.weights = new LinkedHashMap<>(DEFAULT_WEIGHTS);
+        if (weights != null) {
+            this.weights.putAll(weights);
+        }
+    }
+
+    @Override
+    public synchronized void accept(Snippet snippet) {
+        snippet.setRisk(score(snippet));
+        buffered.add(snippet);
+    }
+
+    /**
+     * 片段的风险得分，保留三位小数
+     */
+    double score(Snippet snippet) {
+        double score = 0;
+        if (snippet.getMembers() != null) {
+            for (Snippet member : snippet.getMembers()) {
+                score += score(member);
+            }
+        } else {
+            SnippetMetrics metrics = snippet.getPayload().getMetrics();
+            if (metrics != null) {
+                Map<String, Double> ruleWeights = snippet.getRule().getRiskWeights();
+                for (String name : SnippetMetrics.NAMES) {
+                    Double weight = ruleWeights == null ? null : ruleWeights.get(name);
+                    score += (weight != null ? weight : weights.get(name)) * metrics.get(name);
+                }
+            }
+        }
+        return Math.round(score * 1000) / 1000.0;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        delegate.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            // List.sort 是稳定排序，得分相同的片段保持到达顺序
+            buffered.sort(Comparator.comparingDouble((Snippet snippet) -> snippet.getRisk()).reversed());
+            for (Snippet snippet : buffered) {
+                delegate.accept(snippet);
+            }
+        } finally {
+            delegate.close();
+        }
+        System.err.println("INFO: Risk ranking: " + buffered.size() + " snippets, top score "
+                + (buffered.isEmpty() ? 0 : buffered.get(0).getRisk()) + ".");
+    }
+
+    private static Map<String, Double> defaultWeights() {
+        Map<String, Double> weights = new LinkedHashMap<>();
+        weights.put("loopDepth", 4.0);
+        weights.put("statements", 0.1);
+        weights.put("lockStatements", 1.0);
+        weights.put("callsInLoops", 2.0);
+        weights.put("fanOut", 0.5);
+        return Collections.unmodifiableMap(weights);
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.sonar.ai.stage;
+
+import com.example.sonar.ai.io.SnippetSink;
+import com.example.sonar.ai.model.Rule;
+import com.example.sonar.ai.model.Snippet;
+import com.example.sonar.ai.model.Verdict;
+import com.example.sonar.ai.store.VerdictStore;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 判定缓存阶段
+ * 按 (ruleId, 规则文本哈希, 代码结构哈希) 查找本地判定结果库，命中的片段附带历史判定输出，
+ * skipJudged 时直接丢弃，只把尚未判定的片段交给下游；规则文本哈希按 Rule 实例缓存
+ */
+public class VerdictCacheSnippetSink implements SnippetSink {
+
+    private final SnippetSink delegate;
+    private final VerdictStore store;
+    private final long ttlMillis;
+    private final boolean skipJudged;
+    private final Map<Rule, Long> ruleTextHashes = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * @param ttlMillis 判定有效期，0 表示不过期
+     */
+    public VerdictCacheSnippetSink(SnippetSink delegate, VerdictStore store, long ttlMillis, boolean skipJudged) {
+        this.delegate = delegate;
+        this.store = store;
+        this.ttlMillis = ttlMillis;
+        this.skipJudged = skipJudged;
+    }
+
+    @Override
+    public void accept(Snippet snippet) throws IOException {
+        long ruleTextHash = ruleTextHashes.computeIfAbsent(snippet.getRule(), VerdictStore::ruleTextHash);
+        Verdict verdict = store.get(snippet.getRuleId(), ruleTextHash, snippet.getStructuralHash(), ttlMillis);
+        if (verdict == null) {
+            misses.incrementAndGet();
+            delegate.accept(snippet);
+            return;
+        }
+        hits.incrementAndGet();
+        if (!skipJudged) {
+            snippet.setVerdict(verdict);
+            delegate.accept(snippet);
+        }
+    }
+
+    /**
+     * 命中缓存的片段数
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * 需要重新判定的片段数
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        delegate.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            delegate.close();
+        } finally {
+            store.close();
+        }
+        System.err.println("INFO: Verdict cache: " + getHits() + " judged" + (skipJudged ? " (skipped)" : "")
+                + ", " + getMisses() + " to judge.");
+    }
+}
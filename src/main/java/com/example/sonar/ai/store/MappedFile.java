@@ -0,0 +1,124 @@
+package com.example.sonar.ai.store;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 按固定大小窗口映射的文件
+ * 任意位置读写都落在某个窗口内，跨窗口的数据自动拆分；只缓存最近使用的少量窗口，
+ * 文件大小不受单次映射 2GB 的限制，映射占用的是页缓存而不是堆
+ */
+class MappedFile implements Closeable {
+
+    static final int WINDOW = 64 << 20;
+    private static final int CACHED_WINDOWS = 4;
+
+    private final FileChannel channel;
+    private final FileChannel.MapMode mode;
+    private final Map<Long, MappedByteBuffer> windows = new LinkedHashMap<>(8, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, MappedByteBuffer> eldest) {
+            return size() > CACHED_WINDOWS;
+        }
+    };
+
+    private MappedFile(FileChannel channel, FileChannel.MapMode mode) {
+        this.channel = channel;
+        this.mode = mode;
+    }
+
+    static MappedFile create(Path path) throws IOException {
+        return new MappedFile(FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE), FileChannel.MapMode.READ_WRITE);
+    }
+
+    static MappedFile openReadOnly(Path path) throws IOException {
+        return new MappedFile(FileChannel.open(path, StandardOpenOption.READ), FileChannel.MapMode.READ_ONLY);
+    }
+
+    long size() throws IOException {
+        return channel.size();
+    }
+
+    private MappedByteBuffer window(long index) throws IOException {
+        MappedByteBuffer window = windows.get(index);
+        if (window == null) {
+            long position = index * WINDOW;
+            long length = mode == FileChannel.MapMode.READ_ONLY
+                    ? Math.min(WINDOW, channel.size() - position)
+                    : WINDOW;
+            window = channel.map(mode, position, length);
+            windows.put(index, window);
+        }
+        return window;
+    }
+
+    void put(long position, byte[] src, int offset, int length) throws IOException {
+        while (length > 0) {
+            int inWindow = (int) (position % WINDOW);
+            int n = Math.min(length, WINDOW - inWindow);
+            window(position / WINDOW).put(inWindow, src, offset, n);
+            position += n;
+            offset += n;
+            length -= n;
+        }
+    }
+
+    void get(long position, byte[] dst, int offset, int length) throws IOException {
+        while (length > 0) {
+            int inWindow = (int) (position % WINDOW);
+            int n = Math.min(length, WINDOW - inWindow);
+            window(position / WINDOW).get(inWindow, dst, offset, n);
+            position += n;
+            offset += n;
+            length -= n;
+        }
+    }
+
+    /**
+     * 整数和长整数要求按自身宽度对齐写入，保证不会跨窗口
+     */
+    void putInt(long position, int value) throws IOException {
+        window(position / WINDOW).putInt((int) (position % WINDOW), value);
+    }
+
+    int getInt(long position) throws IOException {
+        return window(position / WINDOW).getInt((int) (position % WINDOW));
+    }
+
+    void putLong(long position, long value) throws IOException {
+        window(position / WINDOW).putLong((int) (position % WINDOW), value);
+    }
+
+    long getLong(long position) throws IOException {
+        return window(position / WINDOW).getLong((int) (position % WINDOW));
+    }
+
+    /**
+     * 写入模式下窗口会把文件扩展到整窗口大小，结束时截断到实际长度
+     */
+    void truncate(long length) throws IOException {
+        for (MappedByteBuffer window : windows.values()) {
+            window.force();
+        }
+        windows.clear();
+        try {
+            channel.truncate(length);
+        } catch (IOException e) {
+            // 部分平台不允许截断仍被映射的文件，尾部多出的零字节不影响按索引读取
+            System.err.println("WARN: Failed to truncate " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        windows.clear();
+        channel.close();
+    }
+}
@@ -0,0 +1,291 @@
+package com.example.sonar.ai.store;
+
+import com.example.sonar.ai.io.SnippetSink;
+import com.example.sonar.ai.model.Rule;
+import com.example.sonar.ai.model.Snippet;
+import com.example.sonar.ai.util.Hash64;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 长时间抽取的断点
+ * 目录结构：
+ * <ul>
+ *   <li>manifest.json：规则、源码目录和引用模式的指纹，续跑时必须一致</li>
+ *   <li>snippets.log：抽取出的原始片段（未经过处理阶段），按文件顺序追加；每条记录为 规则下标(int)、文件路径、
+ *       长度(int) 和与片段库相同的记录编码，外层方法和静态指标随片段保存</li>
+ *   <li>files.jsonl：断点记录，每行 {"offset","snippets","files"}，表示片段日志前 offset 字节已落盘，
+ *       files 中的文件已完整写入其中；读取时忽略不完整的最后一行</li>
+ * </ul>
+ * 每个文件的片段写完后记下日志位置，距上次断点超过间隔时落盘并追加断点记录。
+ * 续跑时把片段日志截断到最后一个断点，重放其中的片段并按下标引用本次加载的规则对象，已完成的文件不再解析，
+ * 因此按方法合并、限额、风险排序等阶段看到的片段与一次跑完相同；
+ * 中断时正在处理的文件和最后一个断点之后的文件会重新解析
+ */
+public class ScanCheckpoint implements Closeable {
+
+    static final String MANIFEST = "manifest.json";
+    static final String SNIPPETS = "snippets.log";
+    static final String FILES = "files.jsonl";
+    // 片段日志的格式版本，计入指纹，旧格式的断点不能续跑
+    private static final int FORMAT = 2;
+
+    private final Path dir;
+    private final List<Rule> rules;
+    private final Map<Rule, Integer> ruleIndex = new IdentityHashMap<>();
+    private final Map<String, Integer> ruleIdIndex = new HashMap<>();
+    private final long intervalMillis;
+    private final Set<String> completed;
+    private final List<String> pending = new ArrayList<>();
+    private final FileChannel log;
+    private final FileChannel files;
+    private final DataOutputStream out;
+    private final ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+    private final long replayable;
+    private long count;
+    private long fileEnd;
+    private long countAtFileEnd;
+    private long lastCheckpoint = System.currentTimeMillis();
+
+    private ScanCheckpoint(Path dir, List<Rule> rules, long intervalMillis, Set<String> completed, long offset,
+                           long count) throws IOException {
+        this.dir = dir;
+        this.rules = rules;
+        for (int i = 0; i < rules.size(); i++) {
+            ruleIndex.put(rules.get(i), i);
+            ruleIdIndex.putIfAbsent(rules.get(i).getId(), i);
+        }
+        this.intervalMillis = intervalMillis;
+        this.completed = completed;
+        this.replayable = count;
+        this.count = count;
+        this.countAtFileEnd = count;
+        this.fileEnd = offset;
+        this.log = FileChannel.open(dir.resolve(SNIPPETS), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        // 丢弃最后一个断点之后的片段，这些文件会重新解析
+        log.truncate(offset);
+        log.position(offset);
+        this.files = FileChannel.open(dir.resolve(FILES), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        this.out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(log), 1 << 16));
+    }
+
+    /**
+     * 打开断点目录
+     *
+     * @param rules          本次加载的规则，与计算指纹的规则相同；重放的片段引用其中的对象
+     * @param fingerprint    见 {@link #fingerprint}
+     * @param intervalMillis 两次落盘的最小间隔
+     * @param resume         为 true 时从已有断点继续，否则清空目录中的旧断点重新开始
+     * @throws IOException 续跑时目录中没有断点，或断点的指纹不同
+     */
+    public static ScanCheckpoint open(Path dir, List<Rule> rules, String fingerprint, long intervalMillis,
+                                      boolean resume) throws IOException {
+        Files.createDirectories(dir);
+        if (!resume) {
+            Files.deleteIfExists(dir.resolve(FILES));
+            Files.deleteIfExists(dir.resolve(SNIPPETS));
+            JsonObject manifest = new JsonObject();
+            manifest.addProperty("fingerprint", fingerprint);
+            manifest.addProperty("createdAt", System.currentTimeMillis());
+            Path tmp = dir.resolve(MANIFEST + ".tmp");
+            Files.writeString(tmp, manifest.toString(), StandardCharsets.UTF_8);
+            Files.move(tmp, dir.resolve(MANIFEST), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            return new ScanCheckpoint(dir, rules, intervalMillis, new HashSet<>(), 0, 0);
+        }
+
+        Path manifest = dir.resolve(MANIFEST);
+        if (!Files.exists(manifest)) {
+            throw new IOException("No checkpoint to resume in " + dir.toAbsolutePath());
+        }
+        String expected = JsonParser.parseString(Files.readString(manifest, StandardCharsets.UTF_8))
+                .getAsJsonObject().get("fingerprint").getAsString();
+        if (!expected.equals(fingerprint)) {
+            throw new IOException("Checkpoint in " + dir.toAbsolutePath()
+                    + " was written for different rules, sources or checkpoint format; "
+                    + "run without --resume to start over");
+        }
+        Set<String> completed = new HashSet<>();
+        long offset = 0;
+        long count = 0;
+        Path path = dir.resolve(FILES);
+        if (Files.exists(path)) {
+            try (BufferedReader in = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    JsonObject record;
+                    try {
+                        record = JsonParser.parseString(line).getAsJsonObject();
+                    } catch (RuntimeException e) {
+                        // 中断时正在追加的最后一行
+                        break;
+                    }
+                    offset = record.get("offset").getAsLong();
+                    count = record.get("snippets").getAsLong();
+                    for (JsonElement file : record.getAsJsonArray("files")) {
+                        completed.add(file.getAsString());
+                    }
+                }
+            }
+        }
+        // 合并为一条记录重写，去掉可能不完整的末行，之后继续追加
+        Path tmp = dir.resolve(FILES + ".tmp");
+        Files.writeString(tmp, record(offset, count, completed) + "\n", StandardCharsets.UTF_8);
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        System.err.println("INFO: Resuming from checkpoint: " + completed.size() + " files, " + count + " snippets.");
+        return new ScanCheckpoint(dir, rules, intervalMillis, completed, offset, count);
+    }
+
+    /**
+     * 断点指纹：规则内容、源码目录和引用模式，任一变化时旧断点中的片段不再有效
+     */
+    public static String fingerprint(List<Rule> rules, String sourceDir, boolean referenceOnly) {
+        long hash = Hash64.of(new Gson().toJson(rules));
+        hash = Hash64.combine(hash, Hash64.of(Paths.get(sourceDir).toAbsolutePath().normalize().toString()));
+        hash = Hash64.combine(hash, referenceOnly ? 1 : 0);
+        hash = Hash64.combine(hash, FORMAT);
+        return Hash64.toHex(hash);
+    }
+
+    /**
+     * 把断点中已有的片段按原顺序交给 sink
+     *
+     * @return 重放的片段数
+     */
+    public long replay(SnippetSink sink) throws IOException {
+        if (replayable == 0) {
+            return 0;
+        }
+        out.flush();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(dir.resolve(SNIPPETS)), 1 << 16))) {
+            for (long i = 0; i < replayable; i++) {
+                Rule rule = rules.get(in.readInt());
+                String file = in.readUTF();
+                byte[] bytes = new byte[in.readInt()];
+                in.readFully(bytes);
+                sink.accept(SnippetStoreFiles.decode(ByteBuffer.wrap(bytes), rule, file));
+            }
+        }
+        return replayable;
+    }
+
+    /**
+     * 文件是否已在断点中完成，完成的文件不需要再解析
+     */
+    public boolean isCompleted(File file) {
+        return completed.contains(file.getAbsolutePath());
+    }
+
+    /**
+     * 记录抽取出的片段，须在交给处理阶段之前调用（处理阶段可能修改片段）
+     */
+    public void record(Snippet snippet) throws IOException {
+        Integer index = ruleIndex.get(snippet.getRule());
+        if (index == null) {
+            index = ruleIdIndex.get(snippet.getRuleId());
+            if (index == null) {
+                throw new IOException("Snippet of unknown rule " + snippet.getRuleId() + " cannot be checkpointed");
+            }
+        }
+        encoded.reset();
+        SnippetStoreFiles.encode(snippet, encoded);
+        out.writeInt(index);
+        out.writeUTF(snippet.getFile());
+        out.writeInt(encoded.size());
+        encoded.writeTo(out);
+        count++;
+    }
+
+    /**
+     * 文件的片段已全部记录；距上次断点超过间隔时落盘
+     */
+    public void fileDone(File file) throws IOException {
+        // 写到文件系统以取得日志位置，位置之前的片段都属于已完成的文件
+        out.flush();
+        fileEnd = log.position();
+        countAtFileEnd = count;
+        pending.add(file.getAbsolutePath());
+        if (System.currentTimeMillis() - lastCheckpoint >= intervalMillis) {
+            checkpoint();
+        }
+    }
+
+    /**
+     * 片段日志落盘后追加断点记录，记录出现时其覆盖的片段一定已落盘
+     */
+    public void checkpoint() throws IOException {
+        lastCheckpoint = System.currentTimeMillis();
+        if (pending.isEmpty()) {
+            return;
+        }
+        out.flush();
+        log.force(false);
+        files.write(StandardCharsets.UTF_8.encode(record(fileEnd, countAtFileEnd, pending) + "\n"));
+        files.force(false);
+        completed.addAll(pending);
+        pending.clear();
+    }
+
+    /**
+     * 写出最后一个断点；出错退出时同样调用，已完成的文件仍可续跑
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            checkpoint();
+        } finally {
+            out.close();
+            files.close();
+        }
+    }
+
+    /**
+     * 抽取和输出都已完成，删除断点文件
+     */
+    public void discard() throws IOException {
+        Files.deleteIfExists(dir.resolve(FILES));
+        Files.deleteIfExists(dir.resolve(SNIPPETS));
+        Files.deleteIfExists(dir.resolve(MANIFEST));
+    }
+
+    private static String record(long offset, long count, Iterable<String> files) {
+        JsonArray list = new JsonArray();
+        files.forEach(list::add);
+        JsonObject record = new JsonObject();
+        record.addProperty("offset", offset);
+        record.addProperty("snippets", count);
+        record.add("files", list);
+        return record.toString();
+    }
+}
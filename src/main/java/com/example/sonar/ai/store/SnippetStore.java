@@ -0,0 +1,140 @@
+package com.example.sonar.ai.store;
+
+import com.example.sonar.ai.io.SnippetSink;
+import com.example.sonar.ai.model.Rule;
+import com.example.sonar.ai.model.Snippet;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * 磁盘片段库的读取端
+ * 日志、索引和二级索引都以只读方式映射，按记录号随机读取，或按规则/文件顺序流式输出到 SnippetSink
+ */
+public class SnippetStore implements Closeable {
+
+    private final List<Rule> rules;
+    private final List<String> files;
+    private final MappedFile log;
+    private final MappedFile index;
+    private final MappedFile byRule;
+    private final MappedFile byFile;
+    private final int count;
+
+    private SnippetStore(Path dir) throws IOException {
+        try (Reader in = Files.newBufferedReader(SnippetStoreFiles.resolve(dir, SnippetStoreFiles.RULES),
+                StandardCharsets.UTF_8)) {
+            this.rules = new Gson().fromJson(in, new TypeToken<List<Rule>>() { }.getType());
+        }
+        this.files = Files.readAllLines(SnippetStoreFiles.resolve(dir, SnippetStoreFiles.FILES), StandardCharsets.UTF_8);
+        this.log = MappedFile.openReadOnly(SnippetStoreFiles.resolve(dir, SnippetStoreFiles.LOG));
+        this.index = MappedFile.openReadOnly(SnippetStoreFiles.resolve(dir, SnippetStoreFiles.INDEX));
+        this.byRule = MappedFile.openReadOnly(SnippetStoreFiles.resolve(dir, SnippetStoreFiles.BY_RULE));
+        this.byFile = MappedFile.openReadOnly(SnippetStoreFiles.resolve(dir, SnippetStoreFiles.BY_FILE));
+        this.count = (int) (index.size() / SnippetStoreFiles.INDEX_RECORD);
+    }
+
+    /**
+     * 打开已由 {@link SnippetStoreWriter} 关闭的片段库
+     */
+    public static SnippetStore open(Path dir) throws IOException {
+        return new SnippetStore(dir);
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public List<Rule> getRules() {
+        return rules;
+    }
+
+    public List<String> getFiles() {
+        return files;
+    }
+
+    /**
+     * 按记录号读取片段
+     */
+    public Snippet get(int record) throws IOException {
+        if (record < 0 || record >= count) {
+            throw new IndexOutOfBoundsException(record);
+        }
+        long position = (long) record * SnippetStoreFiles.INDEX_RECORD;
+        long offset = index.getLong(position);
+        int length = index.getInt(position + 8);
+        int rule = index.getInt(position + 12);
+        int file = index.getInt(position + 16);
+        byte[] bytes = new byte[length];
+        log.get(offset, bytes, 0, length);
+        return SnippetStoreFiles.decode(ByteBuffer.wrap(bytes), rules.get(rule), files.get(file));
+    }
+
+    /**
+     * 按写入顺序输出所有片段
+     */
+    public void forEach(SnippetSink sink) throws IOException {
+        for (int record = 0; record < count; record++) {
+            sink.accept(get(record));
+        }
+    }
+
+    /**
+     * 按规则顺序输出所有片段，同一规则内保持写入顺序
+     */
+    public void forEachByRule(SnippetSink sink) throws IOException {
+        for (int rule = 0; rule < rules.size(); rule++) {
+            forKey(byRule, rule, sink);
+        }
+    }
+
+    /**
+     * 输出指定规则的片段
+     */
+    public void forRule(String ruleId, SnippetSink sink) throws IOException {
+        for (int rule = 0; rule < rules.size(); rule++) {
+            if (ruleId.equals(rules.get(rule).getId())) {
+                forKey(byRule, rule, sink);
+            }
+        }
+    }
+
+    /**
+     * 输出指定文件（绝对路径）的片段
+     */
+    public void forFile(String path, SnippetSink sink) throws IOException {
+        int file = files.indexOf(path);
+        if (file >= 0) {
+            forKey(byFile, file, sink);
+        }
+    }
+
+    private void forKey(MappedFile secondary, int key, SnippetSink sink) throws IOException {
+        int keys = secondary.getInt(0);
+        if (key >= keys) {
+            return;
+        }
+        int start = secondary.getInt(4 + 8L * key);
+        int size = secondary.getInt(8 + 8L * key);
+        long postings = 4 + 8L * keys;
+        for (int i = 0; i < size; i++) {
+            sink.accept(get(secondary.getInt(postings + 4L * (start + i))));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        log.close();
+        index.close();
+        byRule.close();
+        byFile.close();
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.sonar.ai.store;
+
+import com.example.sonar.ai.model.Rule;
+import com.example.sonar.ai.model.Snippet;
+import com.example.sonar.ai.model.SnippetMetrics;
+import com.example.sonar.ai.model.SnippetPayload;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+/**
+ * 片段库的文件布局和记录编码
+ * <ul>
+ *   <li>snippets.log：追加写的片段记录，只含片段自身字段和结构哈希</li>
+ *   <li>snippets.idx：定长 24 字节索引，offset(long) length(int) rule(int) file(int) line(int)</li>
+ *   <li>by-rule.idx / by-file.idx：二级索引，int 键数量，每个键 (start, count)，随后是记录号数组</li>
+ *   <li>rules.json / files.txt：规则表和文件路径表，索引中的 rule/file 是它们的下标</li>
+ * </ul>
+ */
+final class SnippetStoreFiles {
+
+    static final String LOG = "snippets.log";
+    static final String INDEX = "snippets.idx";
+    static final String BY_RULE = "by-rule.idx";
+    static final String BY_FILE = "by-file.idx";
+    static final String RULES = "rules.json";
+    static final String FILES = "files.txt";
+
+    static final int INDEX_RECORD = 24;
+
+    private SnippetStoreFiles() {
+    }
+
+    static Path resolve(Path dir, String name) {
+        return dir.resolve(name);
+    }
+
+    /**
+     * 编码片段自身字段：line、范围四元组、结构哈希、scope、name、code、hash、外层方法、静态指标
+     */
+    static void encode(Snippet snippet, ByteArrayOutputStream buffer) throws IOException {
+        SnippetPayload payload = snippet.getPayload();
+        DataOutputStream out = new DataOutputStream(buffer);
+        out.writeInt(payload.getLine());
+        boolean range = payload.hasRange();
+        out.writeInt(range ? payload.getBeginLine() : 0);
+        out.writeInt(range ? payload.getBeginColumn() : 0);
+        out.writeInt(range ? payload.getEndLine() : 0);
+        out.writeInt(range ? payload.getEndColumn() : 0);
+        out.writeLong(payload.getStructuralHash());
+        writeString(out, payload.getScope());
+        writeString(out, payload.getName());
+        writeString(out, payload.getCode());
+        writeString(out, payload.getHash());
+        writeString(out, payload.getEnclosing());
+        SnippetMetrics metrics = payload.getMetrics();
+        out.writeBoolean(metrics != null);
+        if (metrics != null) {
+            out.writeInt(metrics.loopDepth());
+            out.writeInt(metrics.statements());
+            out.writeInt(metrics.lockStatements());
+            out.writeInt(metrics.callsInLoops());
+            out.writeInt(metrics.fanOut());
+        }
+        out.flush();
+    }
+
+    static Snippet decode(ByteBuffer in, Rule rule, String file) {
+        int line = in.getInt();
+        int beginLine = in.getInt();
+        int beginColumn = in.getInt();
+        int endLine = in.getInt();
+        int endColumn = in.getInt();
+        long structuralHash = in.getLong();
+        String scope = readString(in);
+        String name = readString(in);
+        String code = readString(in);
+        String hash = readString(in);
+        SnippetPayload payload = new SnippetPayload(
+                file, line, code, name, scope, beginLine, beginColumn, endLine, endColumn, hash, structuralHash);
+        payload.setEnclosing(readString(in));
+        if (in.get() != 0) {
+            payload.setMetrics(new SnippetMetrics(in.getInt(), in.getInt(), in.getInt(), in.getInt(), in.getInt()));
+        }
+        return new Snippet(rule, payload);
+    }
+
+    private static void writeString(DataOutputStream out, CharSequence value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.toString().getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        String value = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+        in.position(in.position() + length);
+        return value;
+    }
+}
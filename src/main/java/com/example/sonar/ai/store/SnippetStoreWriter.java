@@ -0,0 +1,169 @@
+package com.example.sonar.ai.store;
+
+import com.example.sonar.ai.io.SnippetSink;
+import com.example.sonar.ai.model.Rule;
+import com.example.sonar.ai.model.Snippet;
+import com.google.gson.Gson;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 磁盘片段库的写入端
+ * 片段编码后追加到内存映射的日志中，并写一条定长索引；堆上只保留规则表、文件表和计数，
+ * 与片段数量无关。关闭时按规则和文件对索引做计数排序，生成二级索引
+ */
+public class SnippetStoreWriter implements SnippetSink {
+
+    private final Path dir;
+    private final List<Rule> rules;
+    private final Map<Rule, Integer> ruleOrdinals = new IdentityHashMap<>();
+    private final Map<String, Integer> ruleIds = new HashMap<>();
+    private final Map<Integer, Integer> fileOrdinals = new HashMap<>();
+    private final List<String> files = new ArrayList<>();
+    private final MappedFile log;
+    private final MappedFile index;
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(1024);
+    private final int[] ruleCounts;
+    private int[] fileCounts = new int[64];
+    private long logSize;
+    private int count;
+    private boolean closed;
+
+    public SnippetStoreWriter(Path dir, List<Rule> rules) throws IOException {
+        this.dir = Files.createDirectories(dir);
+        this.rules = rules;
+        for (int i = 0; i < rules.size(); i++) {
+            ruleOrdinals.putIfAbsent(rules.get(i), i);
+            ruleIds.putIfAbsent(rules.get(i).getId(), i);
+        }
+        this.ruleCounts = new int[rules.size()];
+        this.log = MappedFile.create(SnippetStoreFiles.resolve(dir, SnippetStoreFiles.LOG));
+        this.index = MappedFile.create(SnippetStoreFiles.resolve(dir, SnippetStoreFiles.INDEX));
+    }
+
+    @Override
+    public void accept(Snippet snippet) throws IOException {
+        if (count == Integer.MAX_VALUE) {
+            throw new IOException("Snippet store is full");
+        }
+        int rule = ruleOrdinal(snippet);
+        int file = fileOrdinal(snippet.getPayload().getFileId(), snippet.getFile());
+        buffer.reset();
+        SnippetStoreFiles.encode(snippet, buffer);
+        byte[] bytes = buffer.toByteArray();
+        log.put(logSize, bytes, 0, bytes.length);
+
+        long position = (long) count * SnippetStoreFiles.INDEX_RECORD;
+        index.putLong(position, logSize);
+        index.putInt(position + 8, bytes.length);
+        index.putInt(position + 12, rule);
+        index.putInt(position + 16, file);
+        index.putInt(position + 20, snippet.getLine());
+
+        logSize += bytes.length;
+        ruleCounts[rule]++;
+        fileCounts[file]++;
+        count++;
+    }
+
+    private int ruleOrdinal(Snippet snippet) throws IOException {
+        Integer ordinal = ruleOrdinals.get(snippet.getRule());
+        if (ordinal == null) {
+            ordinal = ruleIds.get(snippet.getRuleId());
+        }
+        if (ordinal == null) {
+            throw new IOException("Snippet references a rule missing from the store: " + snippet.getRuleId());
+        }
+        return ordinal;
+    }
+
+    private int fileOrdinal(int pathId, String path) {
+        Integer ordinal = fileOrdinals.get(pathId);
+        if (ordinal == null) {
+            ordinal = files.size();
+            fileOrdinals.put(pathId, ordinal);
+            files.add(path);
+            if (ordinal == fileCounts.length) {
+                fileCounts = Arrays.copyOf(fileCounts, ordinal * 2);
+            }
+        }
+        return ordinal;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * 映射写入即进入页缓存，这里无需额外动作
+     */
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            writeSecondary(SnippetStoreFiles.BY_RULE, 12, ruleCounts, ruleCounts.length);
+            writeSecondary(SnippetStoreFiles.BY_FILE, 16, fileCounts, files.size());
+            writeTables();
+            log.truncate(logSize);
+            index.truncate((long) count * SnippetStoreFiles.INDEX_RECORD);
+        } finally {
+            log.close();
+            index.close();
+        }
+    }
+
+    /**
+     * 按索引中 keyOffset 处的键做计数排序，记录号写入映射文件，不在堆上保留排序结果
+     */
+    private void writeSecondary(String name, int keyOffset, int[] counts, int keys) throws IOException {
+        long header = 4 + 8L * keys;
+        int[] cursors = new int[keys];
+        try (MappedFile out = MappedFile.create(SnippetStoreFiles.resolve(dir, name))) {
+            out.putInt(0, keys);
+            int start = 0;
+            for (int key = 0; key < keys; key++) {
+                out.putInt(4 + 8L * key, start);
+                out.putInt(8 + 8L * key, counts[key]);
+                cursors[key] = start;
+                start += counts[key];
+            }
+            for (int record = 0; record < count; record++) {
+                int key = index.getInt((long) record * SnippetStoreFiles.INDEX_RECORD + keyOffset);
+                out.putInt(header + 4L * cursors[key]++, record);
+            }
+            out.truncate(header + 4L * count);
+        }
+    }
+
+    private void writeTables() throws IOException {
+        try (Writer out = Files.newBufferedWriter(SnippetStoreFiles.resolve(dir, SnippetStoreFiles.RULES),
+                StandardCharsets.UTF_8)) {
+            new Gson().toJson(rules, out);
+        }
+        try (Writer out = Files.newBufferedWriter(SnippetStoreFiles.resolve(dir, SnippetStoreFiles.FILES),
+                StandardCharsets.UTF_8)) {
+            for (String file : files) {
+                out.write(file);
+                out.write('\n');
+            }
+        }
+    }
+}
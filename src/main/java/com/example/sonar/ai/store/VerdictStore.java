@@ -0,0 +1,536 @@
+package com.example.sonar.ai.store;
+
+import com.example.sonar.ai.model.Rule;
+import com.example.sonar.ai.model.SnippetJsonAdapter;
+import com.example.sonar.ai.model.Verdict;
+import com.example.sonar.ai.util.Hash64;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 本地判定结果库
+ * 以 (ruleId, 规则文本哈希, 代码结构哈希) 为键的磁盘哈希表，开放寻址、线性探测，索引文件内存映射后直接查找；
+ * 判定内容以 JSON 追加写入 verdicts.log。
+ * <ul>
+ *   <li>verdicts.idx：64 字节头（magic、version、capacity、count、logEnd、日志代数）+ capacity 个 40 字节槽位，
+ *       槽位为 ruleKey(long) codeHash(long) judgedAt(long) offset(long) length(int) check(int)</li>
+ *   <li>verdicts.&lt;代数&gt;.log：判定 JSON；扩容和压缩时写入下一代日志，索引文件的原子替换是唯一的提交点</li>
+ * </ul>
+ * 索引整体映射为一个缓冲区，查找只做绝对位置读取，同一进程内的查找持读锁并发进行，写入和扩容持写锁；
+ * 写入方先写日志和键，最后写 judgedAt 作为提交标记，其他进程的只读实例以 judgedAt 为 0 视为空槽；
+ * 覆盖已有判定时槽位原地更新，check 是 (offset, length, judgedAt) 的校验值，读取方校验不一致时重读，
+ * 仍不一致或记录无法解析时按未命中处理。写入方之间通过 verdicts.lock 文件锁互斥。
+ * 过期判定在查找时按 TTL 忽略，{@link #compact(long)} 重写索引和日志把它们真正清除
+ */
+public class VerdictStore implements Closeable {
+
+    static final String INDEX = "verdicts.idx";
+    static final String LOCK = "verdicts.lock";
+
+    private static final int MAGIC = 0x56455244;
+    // 版本 1 的槽位没有 check，可写打开时原地升级
+    private static final int VERSION = 2;
+    private static final int HEADER = 64;
+    private static final int SLOT = 40;
+    private static final int INITIAL_CAPACITY = 1 << 12;
+    private static final double MAX_LOAD = 0.7;
+
+    private final Path dir;
+    private final boolean writable;
+    private final Gson gson = new Gson();
+    private final ReadWriteLock rwLock = new ReentrantReadWriteLock();
+    private MappedByteBuffer index;
+    private FileChannel log;
+    private FileChannel lockChannel;
+    private FileLock lock;
+    private int capacity;
+    private boolean checked;
+
+    private VerdictStore(Path dir, boolean writable) {
+        this.dir = dir;
+        this.writable = writable;
+    }
+
+    /**
+     * 打开判定结果库；可写模式下不存在时创建，并独占写锁直到关闭；
+     * 只读模式下不存在时视为空库，查找全部未命中
+     */
+    public static VerdictStore open(Path dir, boolean writable) throws IOException {
+        VerdictStore store = new VerdictStore(dir, writable);
+        try {
+            store.init();
+        } catch (IOException e) {
+            store.close();
+            throw e;
+        }
+        return store;
+    }
+
+    private void init() throws IOException {
+        Path indexPath = dir.resolve(INDEX);
+        if (writable) {
+            Files.createDirectories(dir);
+            lockChannel = FileChannel.open(dir.resolve(LOCK), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            try {
+                lock = lockChannel.tryLock();
+            } catch (OverlappingFileLockException e) {
+                // 同一进程内已有写入方
+                lock = null;
+            }
+            if (lock == null) {
+                throw new IOException("Verdict store is locked by another writer: " + dir);
+            }
+            if (!Files.exists(indexPath)) {
+                createIndex(indexPath, INITIAL_CAPACITY, 0).force();
+            }
+        } else if (!Files.exists(indexPath)) {
+            // 首次导入或分析之前还没有索引，不中断抽取
+            System.err.println("WARN: Verdict store not found, treating as empty: " + dir);
+            return;
+        }
+        index = map(indexPath);
+        int version = index.getInt(4);
+        if (index.getInt(0) != MAGIC || version < 1 || version > VERSION) {
+            throw new IOException("Not a verdict store: " + indexPath);
+        }
+        capacity = index.getInt(8);
+        if (writable && version < VERSION) {
+            upgrade();
+        }
+        checked = index.getInt(4) >= 2;
+        log = writable
+                ? FileChannel.open(logPath(index.getInt(24)), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(logPath(index.getInt(24)), StandardOpenOption.READ);
+    }
+
+    /**
+     * 为版本 1 的槽位补写 check；调用方持有文件写锁
+     */
+    private void upgrade() {
+        for (int i = 0; i < capacity; i++) {
+            int slot = HEADER + i * SLOT;
+            long judgedAt = index.getLong(slot + 16);
+            if (judgedAt != 0) {
+                index.putInt(slot + 36, check(index.getLong(slot + 24), index.getInt(slot + 32), judgedAt));
+            }
+        }
+        index.putInt(4, VERSION);
+        index.force();
+    }
+
+    private Path logPath(int generation) {
+        return dir.resolve("verdicts." + generation + ".log");
+    }
+
+    private MappedByteBuffer map(Path path) throws IOException {
+        try (FileChannel channel = writable
+                ? FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : FileChannel.open(path, StandardOpenOption.READ)) {
+            return channel.map(writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY,
+                    0, channel.size());
+        }
+    }
+
+    private static MappedByteBuffer createIndex(Path path, int capacity, int generation) throws IOException {
+        long length = HEADER + (long) capacity * SLOT;
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Verdict store is full: " + path);
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putInt(8, capacity);
+            buffer.putInt(24, generation);
+            return buffer;
+        }
+    }
+
+    /**
+     * 规则文本哈希，规则描述、标准或上下文修改后旧的判定自动失效
+     */
+    public static long ruleTextHash(Rule rule) {
+        long h = Hash64.of(String.valueOf(rule.getDescription()));
+        h = Hash64.combine(h, Hash64.of(String.valueOf(rule.getCriteria())));
+        return Hash64.combine(h, Hash64.of(String.valueOf(rule.getContext())));
+    }
+
+    private static long ruleKey(String ruleId, long ruleTextHash) {
+        return Hash64.combine(Hash64.of(ruleId), ruleTextHash);
+    }
+
+    public int size() {
+        rwLock.readLock().lock();
+        try {
+            return index == null ? 0 : index.getInt(12);
+        } finally {
+            rwLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 查找未过期的判定
+     *
+     * @param ttlMillis 有效期，0 表示不过期
+     * @return 判定，不存在或已过期时返回 null
+     */
+    public Verdict get(String ruleId, long ruleTextHash, long codeHash, long ttlMillis) throws IOException {
+        long judgedAt;
+        long offset;
+        int length;
+        rwLock.readLock().lock();
+        try {
+            if (index == null) {
+                return null;
+            }
+            int slot = find(ruleKey(ruleId, ruleTextHash), codeHash);
+            if (slot < 0) {
+                return null;
+            }
+            int attempts = 0;
+            while (true) {
+                judgedAt = index.getLong(slot + 16);
+                offset = index.getLong(slot + 24);
+                length = index.getInt(slot + 32);
+                if (!checked || index.getInt(slot + 36) == check(offset, length, judgedAt)) {
+                    break;
+                }
+                // 其他进程正在原地覆盖该槽位
+                if (++attempts == 3) {
+                    return null;
+                }
+                Thread.onSpinWait();
+            }
+            if (ttlMillis > 0 && judgedAt < System.currentTimeMillis() - ttlMillis) {
+                return null;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(length);
+            while (buffer.hasRemaining()) {
+                if (log.read(buffer, offset + buffer.position()) < 0) {
+                    throw new IOException("Truncated verdict log: " + dir);
+                }
+            }
+            Verdict verdict;
+            try {
+                verdict = gson.fromJson(new String(buffer.array(), StandardCharsets.UTF_8), Verdict.class);
+            } catch (JsonParseException e) {
+                // 损坏的记录按未命中处理，不中断抽取
+                return null;
+            }
+            if (verdict == null) {
+                return null;
+            }
+            verdict.setJudgedAt(judgedAt);
+            return verdict;
+        } finally {
+            rwLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 写入或覆盖判定，judgedAt 为 0 时取当前时间
+     */
+    public void put(String ruleId, long ruleTextHash, long codeHash, Verdict verdict) throws IOException {
+        if (!writable) {
+            throw new IOException("Verdict store opened read-only");
+        }
+        long judgedAt = verdict.getJudgedAt() > 0 ? verdict.getJudgedAt() : System.currentTimeMillis();
+        byte[] bytes = gson.toJson(new Verdict(verdict.getViolation(), verdict.getReasoning(), verdict.getMessage(), 0))
+                .getBytes(StandardCharsets.UTF_8);
+        long key = ruleKey(ruleId, ruleTextHash);
+        rwLock.writeLock().lock();
+        try {
+            int slot = find(key, codeHash);
+            if (slot < 0) {
+                if (index.getInt(12) + 1 > capacity * MAX_LOAD) {
+                    rehash(capacity * 2, Long.MIN_VALUE);
+                }
+                slot = emptySlot(index, capacity, key, codeHash);
+                index.putInt(12, index.getInt(12) + 1);
+            }
+            long offset = index.getLong(16);
+            log.write(ByteBuffer.wrap(bytes), offset);
+            index.putLong(16, offset + bytes.length);
+            writeSlot(index, slot, key, codeHash, offset, bytes.length, judgedAt);
+        } finally {
+            rwLock.writeLock().unlock();
+        }
+    }
+
+    private static void writeSlot(ByteBuffer target, int slot, long key, long codeHash,
+                                  long offset, int length, long judgedAt) {
+        target.putLong(slot, key);
+        target.putLong(slot + 8, codeHash);
+        target.putLong(slot + 24, offset);
+        target.putInt(slot + 32, length);
+        // 新槽位以 judgedAt 非 0 作为提交标记；原地覆盖时读取方以 check 识别读到一半的槽位
+        target.putLong(slot + 16, judgedAt);
+        target.putInt(slot + 36, check(offset, length, judgedAt));
+    }
+
+    /**
+     * 槽位校验值，不为 0
+     */
+    private static int check(long offset, int length, long judgedAt) {
+        int check = (int) Hash64.mix(Hash64.combine(Hash64.combine(offset, length), judgedAt));
+        return check == 0 ? 1 : check;
+    }
+
+    private static int start(int capacity, long key, long codeHash) {
+        return (int) (Hash64.combine(key, codeHash) & (capacity - 1));
+    }
+
+    private int find(long key, long codeHash) {
+        for (int i = start(capacity, key, codeHash), probes = 0; probes < capacity;
+             i = (i + 1) & (capacity - 1), probes++) {
+            int slot = HEADER + i * SLOT;
+            if (index.getLong(slot + 16) == 0) {
+                return -1;
+            }
+            if (index.getLong(slot) == key && index.getLong(slot + 8) == codeHash) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    private static int emptySlot(ByteBuffer target, int capacity, long key, long codeHash) {
+        for (int i = start(capacity, key, codeHash); ; i = (i + 1) & (capacity - 1)) {
+            int slot = HEADER + i * SLOT;
+            if (target.getLong(slot + 16) == 0) {
+                return slot;
+            }
+        }
+    }
+
+    /**
+     * 清除过期判定，重写索引并压缩日志
+     *
+     * @return 清除的判定数
+     */
+    public int compact(long ttlMillis) throws IOException {
+        if (!writable) {
+            throw new IOException("Verdict store opened read-only");
+        }
+        rwLock.writeLock().lock();
+        try {
+            int before = index.getInt(12);
+            long cutoff = ttlMillis > 0 ? System.currentTimeMillis() - ttlMillis : Long.MIN_VALUE;
+            int live = 0;
+            for (int i = 0; i < capacity; i++) {
+                long judgedAt = index.getLong(HEADER + i * SLOT + 16);
+                if (judgedAt != 0 && judgedAt >= cutoff) {
+                    live++;
+                }
+            }
+            int newCapacity = INITIAL_CAPACITY;
+            while (live + 1 > newCapacity * MAX_LOAD) {
+                newCapacity *= 2;
+            }
+            rehash(newCapacity, cutoff);
+            return before - index.getInt(12);
+        } finally {
+            rwLock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 把 cutoff 之后的判定复制到新的索引和下一代日志，再原子替换索引；调用方持有写锁
+     */
+    private void rehash(int newCapacity, long cutoff) throws IOException {
+        Path indexTmp = dir.resolve(INDEX + ".tmp");
+        int generation = index.getInt(24) + 1;
+        Path logTmp = logPath(generation);
+        Files.deleteIfExists(indexTmp);
+        MappedByteBuffer target = createIndex(indexTmp, newCapacity, generation);
+        int count = 0;
+        long logEnd = 0;
+        try (FileChannel targetLog = FileChannel.open(logTmp, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            for (int i = 0; i < capacity; i++) {
+                int slot = HEADER + i * SLOT;
+                long judgedAt = index.getLong(slot + 16);
+                if (judgedAt == 0 || judgedAt < cutoff) {
+                    continue;
+                }
+                long key = index.getLong(slot);
+                long codeHash = index.getLong(slot + 8);
+                int length = index.getInt(slot + 32);
+                long offset = index.getLong(slot + 24);
+                while (targetLog.position() < logEnd + length) {
+                    long position = targetLog.position() - logEnd;
+                    log.transferTo(offset + position, length - position, targetLog);
+                }
+                writeSlot(target, emptySlot(target, newCapacity, key, codeHash), key, codeHash, logEnd, length, judgedAt);
+                logEnd += length;
+                count++;
+            }
+            target.putInt(12, count);
+            target.putLong(16, logEnd);
+            target.force();
+            targetLog.force(true);
+        }
+        replaceIndex(indexTmp);
+        log.close();
+        try {
+            Files.deleteIfExists(logPath(generation - 1));
+        } catch (IOException e) {
+            // Windows 上其他进程仍打开着旧日志，留待下次扩容或压缩时清理
+            System.err.println("WARN: Could not delete old verdict log: " + e.getMessage());
+        }
+        log = FileChannel.open(logTmp, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        index = target;
+        capacity = newCapacity;
+    }
+
+    /**
+     * 用新索引替换旧索引。Windows 上不能替换仍被映射的文件，原子替换失败时释放本进程的映射再非原子替换；
+     * MappedByteBuffer 没有显式解除映射的接口，只能丢弃引用后等待回收
+     */
+    private void replaceIndex(Path indexTmp) throws IOException {
+        Path indexPath = dir.resolve(INDEX);
+        try {
+            Files.move(indexTmp, indexPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return;
+        } catch (AccessDeniedException | AtomicMoveNotSupportedException e) {
+            index = null;
+        }
+        for (int attempt = 1; ; attempt++) {
+            System.gc();
+            try {
+                Files.move(indexTmp, indexPath, StandardCopyOption.REPLACE_EXISTING);
+                return;
+            } catch (AccessDeniedException e) {
+                if (attempt == 5) {
+                    // 旧索引仍有效，恢复映射后报告失败
+                    index = map(indexPath);
+                    Files.deleteIfExists(indexTmp);
+                    throw new IOException("Cannot replace " + indexPath
+                            + ", it may be in use by another process: " + e.getMessage(), e);
+                }
+                try {
+                    Thread.sleep(100L * attempt);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while replacing " + indexPath);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        rwLock.writeLock().lock();
+        try {
+            if (index != null && writable) {
+                index.force();
+            }
+            index = null;
+            if (log != null) {
+                log.close();
+            }
+            if (lock != null) {
+                lock.release();
+            }
+            if (lockChannel != null) {
+                lockChannel.close();
+            }
+        } finally {
+            rwLock.writeLock().unlock();
+        }
+    }
+    /**
+     * 维护入口
+     * <ul>
+     *   <li>import &lt;dir&gt; &lt;judged.json&gt;：导入已判定的片段数组，每项为带 codeHash 的片段，
+     *       判定放在 verdict 对象中或直接使用 violation/reasoning/message 字段（AIEngine 结果格式）</li>
+     *   <li>compact &lt;dir&gt; &lt;ttlDays&gt;：清除超过有效期的判定</li>
+     * </ul>
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3 || !("import".equals(args[0]) || "compact".equals(args[0]))) {
+            System.err.println("Usage: VerdictStore import <dir> <judged.json>\n"
+                    + "       VerdictStore compact <dir> <ttlDays>");
+            System.exit(1);
+        }
+        try (VerdictStore store = open(Paths.get(args[1]), true)) {
+            if ("import".equals(args[0])) {
+                try (Reader in = Files.newBufferedReader(Paths.get(args[2]), StandardCharsets.UTF_8)) {
+                    store.importJudged(in);
+                }
+            } else {
+                int removed = store.compact(TimeUnit.DAYS.toMillis(Long.parseLong(args[2])));
+                System.err.println("INFO: Removed " + removed + " expired verdicts, " + store.size() + " remaining.");
+            }
+        }
+    }
+
+    /**
+     * 导入已判定的片段数组
+     *
+     * @return 导入的判定数
+     */
+    public int importJudged(Reader in) throws IOException {
+        JsonReader json = new JsonReader(in);
+        int imported = 0;
+        int skipped = 0;
+        json.beginArray();
+        while (json.hasNext()) {
+            JsonObject item = JsonParser.parseReader(json).getAsJsonObject();
+            JsonObject judged = item.has("verdict") && item.get("verdict").isJsonObject()
+                    ? item.getAsJsonObject("verdict") : item;
+            if (!item.has("codeHash") || !item.has("ruleId") || !judged.has("violation")) {
+                skipped++;
+                continue;
+            }
+            Rule rule = new Rule();
+            rule.setId(item.get("ruleId").getAsString());
+            rule.setDescription(string(item, "ruleDesc"));
+            rule.setCriteria(string(item, "ruleCriteria"));
+            rule.setContext(string(item, "ruleContext"));
+            long judgedAt = judged.has("judgedAt") ? judged.get("judgedAt").getAsLong() : 0;
+            put(rule.getId(), ruleTextHash(rule), SnippetJsonAdapter.parseCodeHash(item.get("codeHash").getAsString()),
+                    new Verdict(judged.get("violation").getAsBoolean(), string(judged, "reasoning"),
+                            string(judged, "message"), judgedAt));
+            imported++;
+        }
+        json.endArray();
+        if (skipped > 0) {
+            System.err.println("WARN: Skipped " + skipped + " entries without ruleId, codeHash or violation.");
+        }
+        System.err.println("INFO: Imported " + imported + " verdicts, " + size() + " in store.");
+        return imported;
+    }
+
+    private static String string(JsonObject object, String field) {
+        JsonElement element = object.get(field);
+        return element == null || element.isJsonNull() ? null : element.getAsString();
+    }
+}
@@ -0,0 +1,286 @@
+package com.example.sonar.ai.store;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * 共享文件系统上的片段工作队列（消费端）
+ * 目录结构由 {@link WorkQueueWriter} 写出：
+ * <ul>
+ *   <li>segments/chunk-NNNNNN.jsonl：固定片段数的 JSON Lines 分段，写满后原子改名出现，之后不再修改</li>
+ *   <li>index.jsonl：追加写的索引，每个分段一行 {"chunk","snippets"}，抽取结束时追加 {"complete","chunks"}；
+ *       读取时忽略不完整的最后一行</li>
+ *   <li>leases/chunk-NNNNNN.G：第 G 代租约，内容为 {"owner","expiresAt"}。认领分段即创建下一代租约文件，
+ *       先写临时文件再用硬链接发布（link 在目标存在时失败，NFS 上同样原子），同一代只有一个消费者能创建成功；
+ *       当前代未过期时分段被占用，过期后任何消费者都可以创建下一代接管（崩溃恢复）</li>
+ *   <li>done/chunk-NNNNNN：分段处理完成的标记</li>
+ * </ul>
+ * 没有协调服务，过期判断依赖各机器时钟大致同步；租约过期后原持有者的结果可能与接管者重复，消费端需要保证处理幂等
+ */
+public class WorkQueue {
+
+    static final String SEGMENTS = "segments";
+    static final String LEASES = "leases";
+    static final String DONE = "done";
+    static final String INDEX = "index.jsonl";
+
+    private final Path dir;
+    private final String owner;
+    private final long leaseMillis;
+    // 编号小于 cursor 的分段都已完成；完成标记不会撤销，查找从这里开始，不再逐个检查已完成的分段
+    private int cursor;
+
+    /**
+     * @param owner       租约持有者标识，各消费者唯一，如 主机名-进程号
+     * @param leaseMillis 租约时长，处理一个分段期间需要在此时间内续约
+     */
+    public WorkQueue(Path dir, String owner, long leaseMillis) {
+        this.dir = dir;
+        this.owner = owner;
+        this.leaseMillis = leaseMillis;
+    }
+
+    /**
+     * 认领一个尚未完成且没有有效租约的分段，按分段编号顺序查找
+     *
+     * @return 租约，当前没有可认领的分段时返回 null（可能全部完成，或其余分段被占用、尚未写出）
+     */
+    public Lease claim() throws IOException {
+        Index index = readIndex();
+        for (int chunk = cursor; chunk < index.chunks(); chunk++) {
+            if (Files.exists(donePath(chunk))) {
+                if (chunk == cursor) {
+                    cursor++;
+                }
+                continue;
+            }
+            int generation = currentGeneration(chunk);
+            if (generation > 0) {
+                LeaseInfo current = readLease(chunk, generation);
+                if (current != null && current.expiresAt() > System.currentTimeMillis()) {
+                    continue;
+                }
+            }
+            Lease lease = tryCreate(chunk, generation + 1);
+            if (lease != null) {
+                if (generation > 0) {
+                    System.err.println("INFO: Queue: took over expired lease of chunk " + chunk + ".");
+                }
+                return lease;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 续约
+     *
+     * @return 租约已被其他消费者接管时返回 false，此时应放弃该分段
+     */
+    public boolean renew(Lease lease) throws IOException {
+        if (Files.exists(leasePath(lease.chunk(), lease.generation() + 1)) || Files.exists(donePath(lease.chunk()))) {
+            return false;
+        }
+        Path tmp = leaseTmp(lease.chunk());
+        Files.writeString(tmp, leaseJson(System.currentTimeMillis() + leaseMillis), StandardCharsets.UTF_8);
+        Files.move(tmp, leasePath(lease.chunk(), lease.generation()),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        // 续约与接管并发时以接管为准
+        return !Files.exists(leasePath(lease.chunk(), lease.generation() + 1));
+    }
+
+    /**
+     * 标记分段完成并删除其租约文件；重复完成（如租约被接管后双方都完成）无副作用
+     */
+    public void complete(Lease lease) throws IOException {
+        try {
+            Files.createFile(donePath(lease.chunk()));
+        } catch (FileAlreadyExistsException e) {
+            // 已由其他消费者完成
+        }
+        for (int generation = 1; ; generation++) {
+            if (!Files.deleteIfExists(leasePath(lease.chunk(), generation))) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * 队列统计
+     */
+    public Status status() throws IOException {
+        Index index = readIndex();
+        int done = cursor;
+        int leased = 0;
+        long now = System.currentTimeMillis();
+        for (int chunk = cursor; chunk < index.chunks(); chunk++) {
+            if (Files.exists(donePath(chunk))) {
+                done++;
+                continue;
+            }
+            int generation = currentGeneration(chunk);
+            LeaseInfo lease = generation > 0 ? readLease(chunk, generation) : null;
+            if (lease != null && lease.expiresAt() > now) {
+                leased++;
+            }
+        }
+        return new Status(index.chunks(), index.snippets(), index.complete(), done, leased);
+    }
+
+    /**
+     * 分段文件路径
+     */
+    public Path segment(int chunk) {
+        return segmentPath(dir, chunk);
+    }
+
+    public Path getDir() {
+        return dir;
+    }
+
+    static Path segmentPath(Path dir, int chunk) {
+        return dir.resolve(SEGMENTS).resolve(chunkName(chunk) + ".jsonl");
+    }
+
+    static String chunkName(int chunk) {
+        return String.format("chunk-%06d", chunk);
+    }
+
+    private Lease tryCreate(int chunk, int generation) throws IOException {
+        long expiresAt = System.currentTimeMillis() + leaseMillis;
+        Path tmp = leaseTmp(chunk);
+        Files.writeString(tmp, leaseJson(expiresAt), StandardCharsets.UTF_8);
+        try {
+            Files.createLink(leasePath(chunk, generation), tmp);
+            return new Lease(chunk, generation, segment(chunk));
+        } catch (FileAlreadyExistsException e) {
+            // 其他消费者先认领了这一代
+            return null;
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * 最新的租约代数，没有租约时为 0；代数从 1 开始连续递增
+     */
+    private int currentGeneration(int chunk) {
+        int generation = 0;
+        while (Files.exists(leasePath(chunk, generation + 1))) {
+            generation++;
+        }
+        return generation;
+    }
+
+    private LeaseInfo readLease(int chunk, int generation) throws IOException {
+        String text;
+        try {
+            text = Files.readString(leasePath(chunk, generation), StandardCharsets.UTF_8);
+        } catch (NoSuchFileException e) {
+            // 分段刚完成，租约已删除
+            return null;
+        }
+        JsonObject json = JsonParser.parseString(text).getAsJsonObject();
+        return new LeaseInfo(json.get("owner").getAsString(), json.get("expiresAt").getAsLong());
+    }
+
+    private String leaseJson(long expiresAt) {
+        JsonObject json = new JsonObject();
+        json.addProperty("owner", owner);
+        json.addProperty("expiresAt", expiresAt);
+        return json.toString();
+    }
+
+    private Index readIndex() throws IOException {
+        int chunks = 0;
+        long snippets = 0;
+        boolean complete = false;
+        Path path = dir.resolve(INDEX);
+        if (!Files.exists(path)) {
+            return new Index(0, 0, false);
+        }
+        try (BufferedReader in = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                JsonObject json;
+                try {
+                    json = JsonParser.parseString(line).getAsJsonObject();
+                } catch (RuntimeException e) {
+                    // 写出方正在追加的最后一行
+                    break;
+                }
+                if (json.has("complete")) {
+                    complete = true;
+                } else {
+                    chunks = Math.max(chunks, json.get("chunk").getAsInt() + 1);
+                    snippets += json.get("snippets").getAsLong();
+                }
+            }
+        }
+        return new Index(chunks, snippets, complete);
+    }
+
+    private Path leasePath(int chunk, int generation) {
+        return dir.resolve(LEASES).resolve(chunkName(chunk) + "." + generation);
+    }
+
+    private Path leaseTmp(int chunk) {
+        return dir.resolve(LEASES).resolve(chunkName(chunk) + "." + owner + ".tmp");
+    }
+
+    private Path donePath(int chunk) {
+        return dir.resolve(DONE).resolve(chunkName(chunk));
+    }
+
+    /**
+     * 队列状态维护入口：status &lt;dir&gt;
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2 || !"status".equals(args[0])) {
+            System.err.println("Usage: WorkQueue status <dir>");
+            System.exit(1);
+        }
+        Status status = new WorkQueue(Paths.get(args[1]), "status", 0).status();
+        System.err.println("INFO: Queue " + args[1] + ": " + status.chunks() + " chunks (" + status.snippets()
+                + " snippets" + (status.complete() ? "" : ", extraction running") + "), " + status.done()
+                + " done, " + status.leased() + " leased.");
+    }
+
+    /**
+     * 已认领的分段
+     *
+     * @param generation 租约代数
+     */
+    public record Lease(int chunk, int generation, Path segment) {
+    }
+
+    /**
+     * @param complete 抽取端是否已写完全部分段
+     * @param leased   持有未过期租约的分段数
+     */
+    public record Status(int chunks, long snippets, boolean complete, int done, int leased) {
+
+        /**
+         * 抽取已结束且全部分段已完成
+         */
+        public boolean drained() {
+            return complete && done == chunks;
+        }
+    }
+
+    private record Index(int chunks, long snippets, boolean complete) {
+    }
+
+    private record LeaseInfo(String owner, long expiresAt) {
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.sonar.ai.store;
+
+import com.example.sonar.ai.io.JsonLinesSnippetWriter;
+import com.example.sonar.ai.io.SnippetSink;
+import com.example.sonar.ai.model.Snippet;
+import com.google.gson.JsonObject;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 片段工作队列的写入端（抽取端）
+ * 片段按 JSON Lines 写入当前分段的临时文件，满 chunkSize 个后落盘、原子改名为正式分段并在索引中追加一行，
+ * 消费者只会看到完整的分段；关闭时写出最后一个不满的分段并追加结束标记。目录结构见 {@link WorkQueue}。
+ * 队列只追加，同一目录只允许写入一次
+ */
+public class WorkQueueWriter implements SnippetSink {
+
+    private final Path dir;
+    private final int chunkSize;
+    private final FileChannel index;
+    private FileChannel segment;
+    private JsonLinesSnippetWriter writer;
+    private int chunk;
+    private int count;
+    private long total;
+
+    /**
+     * @param chunkSize 每个分段的片段数
+     * @throws IOException 目录中已有队列
+     */
+    public WorkQueueWriter(Path dir, int chunkSize) throws IOException {
+        this.dir = dir;
+        this.chunkSize = chunkSize;
+        Files.createDirectories(dir.resolve(WorkQueue.SEGMENTS));
+        Files.createDirectories(dir.resolve(WorkQueue.LEASES));
+        Files.createDirectories(dir.resolve(WorkQueue.DONE));
+        // CREATE_NEW：已有索引说明目录里是另一次抽取的队列
+        this.index = FileChannel.open(dir.resolve(WorkQueue.INDEX), StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    @Override
+    public void accept(Snippet snippet) throws IOException {
+        if (writer == null) {
+            segment = FileChannel.open(tmpPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            writer = new JsonLinesSnippetWriter(new BufferedWriter(
+                    new OutputStreamWriter(Channels.newOutputStream(segment), StandardCharsets.UTF_8), 1 << 16));
+        }
+        writer.accept(snippet);
+        total++;
+        if (++count == chunkSize) {
+            seal();
+        }
+    }
+
+    /**
+     * 分段只在写满或关闭时发布，flush 不输出半个分段
+     */
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (writer != null) {
+                seal();
+            }
+            JsonObject end = new JsonObject();
+            end.addProperty("complete", true);
+            end.addProperty("chunks", chunk);
+            appendIndex(end);
+        } finally {
+            index.close();
+        }
+        System.err.println("INFO: Queue: " + total + " snippets in " + chunk + " chunks at " + dir.toAbsolutePath());
+    }
+
+    /**
+     * 发布当前分段：先落盘再改名，最后写索引，索引行出现时分段文件一定完整
+     */
+    private void seal() throws IOException {
+        writer.flush();
+        segment.force(true);
+        writer.close();
+        Files.move(tmpPath(), WorkQueue.segmentPath(dir, chunk), StandardCopyOption.ATOMIC_MOVE);
+        JsonObject entry = new JsonObject();
+        entry.addProperty("chunk", chunk);
+        entry.addProperty("snippets", count);
+        appendIndex(entry);
+        writer = null;
+        segment = null;
+        chunk++;
+        count = 0;
+    }
+
+    private void appendIndex(JsonObject entry) throws IOException {
+        // 一次 write 写出整行，读取方最多看到一个不完整的末行
+        index.write(StandardCharsets.UTF_8.encode(entry + "\n"));
+        index.force(false);
+    }
+
+    private Path tmpPath() {
+        return dir.resolve(WorkQueue.SEGMENTS).resolve(WorkQueue.chunkName(chunk) + ".jsonl.tmp");
+    }
+}
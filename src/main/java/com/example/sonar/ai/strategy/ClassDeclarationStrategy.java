@@ -3,6 +3,7 @@ package com.example.sonar.ai.strategy;
 import com.example.sonar.ai.handler.*;
 import com.example.sonar.ai.model.Rule;
 import com.example.sonar.ai.model.Snippet;
+import com.example.sonar.ai.parser.ExtractionContext;
 import com.github.javaparser.ast.Node;
 import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
 import com.github.javaparser.ast.body.EnumDeclaration;
@@ -11,7 +12,6 @@ import org.apache.commons.lang3.StringUtils;
 
 import java.util.stream.Stream;
 
-import java.io.File;
 import java.util.List;
 
 /**
@@ -40,11 +40,11 @@ public class ClassDeclarationStrategy implements ExtractionStrategy<TypeDeclarat
     }
 
     @Override
-    public void extract(TypeDeclaration<?> node, Rule rule, File file, List<Snippet> snippets) {
+    public void extract(TypeDeclaration<?> node, Rule rule, ExtractionContext context, List<Snippet> snippets) {
         // 遍历初始化中已添加的处理器
         ExtractionStrategy.handlerMap.forEach((ruleId, handler) -> {
             if (ruleId.contains(rule.getId())) {
-                handler.extract(node, rule, file, snippets);
+                context.dispatch(handler, rule, snippets, out -> handler.extract(node, rule, context, out));
             }
         });
     }
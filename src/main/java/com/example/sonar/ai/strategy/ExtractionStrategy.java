@@ -3,9 +3,9 @@ package com.example.sonar.ai.strategy;
 import com.example.sonar.ai.handler.Handler;
 import com.example.sonar.ai.model.Rule;
 import com.example.sonar.ai.model.Snippet;
+import com.example.sonar.ai.parser.ExtractionContext;
 import com.github.javaparser.ast.Node;
 
-import java.io.File;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -27,5 +27,5 @@ public interface ExtractionStrategy<T extends Node> {
     /**
      * 执行抽取逻辑
      */
-    void extract(T node, Rule rule, File file, List<Snippet> snippets);
+    void extract(T node, Rule rule, ExtractionContext context, List<Snippet> snippets);
 }
@@ -4,11 +4,11 @@ import com.example.sonar.ai.handler.ExtractConstantHandler;
 import com.example.sonar.ai.handler.ExtractFieldHandler;
 import com.example.sonar.ai.model.Rule;
 import com.example.sonar.ai.model.Snippet;
+import com.example.sonar.ai.parser.ExtractionContext;
 import com.github.javaparser.ast.Node;
 import com.github.javaparser.ast.body.FieldDeclaration;
 import org.apache.commons.lang3.StringUtils;
 
-import java.io.File;
 import java.util.List;
 
 public class FieldDeclarationStrategy implements ExtractionStrategy<FieldDeclaration> {
@@ -28,11 +28,11 @@ public class FieldDeclarationStrategy implements ExtractionStrategy<FieldDeclara
     }
 
     @Override
-    public void extract(FieldDeclaration node, Rule rule, File file, List<Snippet> snippets) {
+    public void extract(FieldDeclaration node, Rule rule, ExtractionContext context, List<Snippet> snippets) {
         //遍历初始化中已添加的处理器
         ExtractionStrategy.handlerMap.forEach((ruleId, handler) -> {
             if (ruleId.contains(rule.getId())) {
-                handler.extract(node, rule, file, snippets);
+                context.dispatch(handler, rule, snippets, out -> handler.extract(node, rule, context, out));
             }
         });
     }
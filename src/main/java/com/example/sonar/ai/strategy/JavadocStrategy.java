@@ -2,6 +2,7 @@ package com.example.sonar.ai.strategy;
 
 import com.example.sonar.ai.model.Rule;
 import com.example.sonar.ai.model.Snippet;
+import com.example.sonar.ai.parser.ExtractionContext;
 import com.github.javaparser.ast.Node;
 import com.github.javaparser.ast.body.BodyDeclaration;
 import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
@@ -10,7 +11,6 @@ import com.github.javaparser.ast.body.MethodDeclaration;
 import com.github.javaparser.ast.body.TypeDeclaration;
 import com.github.javaparser.javadoc.Javadoc;
 
-import java.io.File;
 import java.util.List;
 import java.util.Optional;
 
@@ -44,7 +44,7 @@ public class JavadocStrategy implements ExtractionStrategy<BodyDeclaration<?>> {
     }
 
     @Override
-    public void extract(BodyDeclaration<?> node, Rule rule, File file, List<Snippet> snippets) {
+    public void extract(BodyDeclaration<?> node, Rule rule, ExtractionContext context, List<Snippet> snippets) {
         // BodyDeclaration<?> might not expose getJavadoc() directly in all versions or
         // due to generics.
         // We cast to specific supported types to access getJavadoc() safely.
@@ -165,7 +165,7 @@ public class JavadocStrategy implements ExtractionStrategy<BodyDeclaration<?>> {
 
             // Use simple \n as per original code
             String content = summary + "\n" + signature;
-            snippets.add(new Snippet(rule, file, line, content, name, rule.getScope()));
+            snippets.add(new Snippet(rule, context.getFile(), line, content, name, rule.getScope()));
         });
     }
 }
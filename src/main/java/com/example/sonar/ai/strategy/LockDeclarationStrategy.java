@@ -3,10 +3,10 @@ package com.example.sonar.ai.strategy;
 import com.example.sonar.ai.handler.ExtractLockHandler;
 import com.example.sonar.ai.model.Rule;
 import com.example.sonar.ai.model.Snippet;
+import com.example.sonar.ai.parser.ExtractionContext;
 import com.github.javaparser.ast.Node;
 import org.apache.commons.lang3.StringUtils;
 
-import java.io.File;
 import java.util.List;
 
 public class LockDeclarationStrategy implements ExtractionStrategy<Node> {
@@ -24,10 +24,10 @@ public class LockDeclarationStrategy implements ExtractionStrategy<Node> {
     }
 
     @Override
-    public void extract(Node node, Rule rule, File file, List<Snippet> snippets) {
+    public void extract(Node node, Rule rule, ExtractionContext context, List<Snippet> snippets) {
         ExtractionStrategy.handlerMap.forEach((ruleId, handler) -> {
             if (ruleId.contains(rule.getId())) {
-                handler.extract(node, rule, file, snippets);
+                context.dispatch(handler, rule, snippets, out -> handler.extract(node, rule, context, out));
             }
         });
     }
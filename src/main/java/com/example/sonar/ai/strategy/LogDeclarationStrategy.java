@@ -3,11 +3,11 @@ package com.example.sonar.ai.strategy;
 import com.example.sonar.ai.handler.ExtractLogMessageHandler;
 import com.example.sonar.ai.model.Rule;
 import com.example.sonar.ai.model.Snippet;
+import com.example.sonar.ai.parser.ExtractionContext;
 import com.github.javaparser.ast.Node;
 import com.github.javaparser.ast.expr.MethodCallExpr;
 import org.apache.commons.lang3.StringUtils;
 
-import java.io.File;
 import java.util.List;
 
 public class LogDeclarationStrategy implements ExtractionStrategy<MethodCallExpr>{
@@ -25,10 +25,10 @@ public class LogDeclarationStrategy implements ExtractionStrategy<MethodCallExpr
     }
 
     @Override
-    public void extract(MethodCallExpr node, Rule rule, File file, List<Snippet> snippets) {
+    public void extract(MethodCallExpr node, Rule rule, ExtractionContext context, List<Snippet> snippets) {
         ExtractionStrategy.handlerMap.forEach((ruleId, handler) -> {
             if (ruleId.contains(rule.getId())) {
-                handler.extract(node, rule, file, snippets);
+                context.dispatch(handler, rule, snippets, out -> handler.extract(node, rule, context, out));
             }
         });
     }
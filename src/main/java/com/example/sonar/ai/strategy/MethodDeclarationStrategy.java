@@ -6,13 +6,13 @@ import com.example.sonar.ai.handler.ExtractLoopHander;
 import com.example.sonar.ai.handler.ExtractMethodAndJavaDocHandler;
 import com.example.sonar.ai.model.Rule;
 import com.example.sonar.ai.model.Snippet;
+import com.example.sonar.ai.parser.ExtractionContext;
 import com.github.javaparser.ast.Node;
 import com.github.javaparser.ast.body.MethodDeclaration;
 import org.apache.commons.lang3.StringUtils;
 
 import java.util.stream.Stream;
 
-import java.io.File;
 import java.util.List;
 
 /**
@@ -47,10 +47,10 @@ public class MethodDeclarationStrategy implements ExtractionStrategy<MethodDecla
     }
 
     @Override
-    public void extract(MethodDeclaration node, Rule rule, File file, List<Snippet> snippets) {
+    public void extract(MethodDeclaration node, Rule rule, ExtractionContext context, List<Snippet> snippets) {
         ExtractionStrategy.handlerMap.forEach((ruleId, handler) -> {
             if (ruleId.contains(rule.getId())) {
-                handler.extract(node, rule, file, snippets);
+                context.dispatch(handler, rule, snippets, out -> handler.extract(node, rule, context, out));
             }
         });
     }
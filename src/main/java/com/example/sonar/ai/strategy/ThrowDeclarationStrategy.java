@@ -3,11 +3,11 @@ package com.example.sonar.ai.strategy;
 import com.example.sonar.ai.handler.ExtractThrowHandler;
 import com.example.sonar.ai.model.Rule;
 import com.example.sonar.ai.model.Snippet;
+import com.example.sonar.ai.parser.ExtractionContext;
 import com.github.javaparser.ast.Node;
 import com.github.javaparser.ast.stmt.ThrowStmt;
 import org.apache.commons.lang3.StringUtils;
 
-import java.io.File;
 import java.util.List;
 
 public class ThrowDeclarationStrategy implements ExtractionStrategy<ThrowStmt>{
@@ -24,10 +24,10 @@ public class ThrowDeclarationStrategy implements ExtractionStrategy<ThrowStmt>{
     }
 
     @Override
-    public void extract(ThrowStmt node, Rule rule, File file, List<Snippet> snippets) {
+    public void extract(ThrowStmt node, Rule rule, ExtractionContext context, List<Snippet> snippets) {
         ExtractionStrategy.handlerMap.forEach((ruleId, handler) -> {
             if (ruleId.contains(rule.getId())) {
-                handler.extract(node, rule, file, snippets);
+                context.dispatch(handler, rule, snippets, out -> handler.extract(node, rule, context, out));
             }
         });
     }
@@ -4,6 +4,7 @@ import com.example.sonar.ai.handler.ExtractClassMethodVariableHandler;
 import com.example.sonar.ai.handler.Handler;
 import com.example.sonar.ai.model.Rule;
 import com.example.sonar.ai.model.Snippet;
+import com.example.sonar.ai.parser.ExtractionContext;
 import com.github.javaparser.ast.Node;
 import com.github.javaparser.ast.body.VariableDeclarator;
 import com.github.javaparser.ast.expr.Expression;
@@ -11,7 +12,6 @@ import org.apache.commons.lang3.StringUtils;
 
 import java.util.stream.Stream;
 
-import java.io.File;
 import java.util.List;
 import java.util.Set;
 
@@ -38,10 +38,10 @@ public class VariableDeclarationStrategy implements ExtractionStrategy<VariableD
     }
 
     @Override
-    public void extract(VariableDeclarator node, Rule rule, File file, List<Snippet> snippets) {
+    public void extract(VariableDeclarator node, Rule rule, ExtractionContext context, List<Snippet> snippets) {
         ExtractionStrategy.handlerMap.forEach((ruleId, handler) -> {
             if (ruleId.contains(rule.getId())) {
-                handler.extract(node, rule, file, snippets);
+                context.dispatch(handler, rule, snippets, out -> handler.extract(node, rule, context, out));
             }
         });
     }
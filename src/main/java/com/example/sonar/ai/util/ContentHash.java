@@ -0,0 +1,35 @@
+package com.example.sonar.ai.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * 代码内容摘要工具类
+ * 对 UTF-8 编码后的文本计算 SHA-256，取前 128 位转成十六进制，
+ * 下游可以用同样的算法校验按范围读回的代码是否与抽取时一致
+ */
+public class ContentHash {
+
+    private static final int HASH_BYTES = 16;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private ContentHash() {
+    }
+
+    public static String of(CharSequence text) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+        byte[] hash = digest.digest(text.toString().getBytes(StandardCharsets.UTF_8));
+        char[] out = new char[HASH_BYTES * 2];
+        for (int i = 0; i < HASH_BYTES; i++) {
+            out[i * 2] = HEX[(hash[i] >> 4) & 0xF];
+            out[i * 2 + 1] = HEX[hash[i] & 0xF];
+        }
+        return new String(out);
+    }
+}
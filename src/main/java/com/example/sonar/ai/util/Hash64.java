@@ -0,0 +1,76 @@
+package com.example.sonar.ai.util;
+
+/**
+ * 64 位非加密哈希工具类
+ * 用于结构哈希这类需要快速、稳定（跨进程一致）的标识，不用于校验内容是否被篡改
+ */
+public class Hash64 {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final long GOLDEN = 0x9e3779b97f4a7c15L;
+
+    private Hash64() {
+    }
+
+    /**
+     * 文本哈希（FNV-1a，按 char 计算）
+     */
+    public static long of(CharSequence text) {
+        long h = FNV_OFFSET;
+        for (int i = 0; i < text.length(); i++) {
+            h ^= text.charAt(i);
+            h *= FNV_PRIME;
+        }
+        return h;
+    }
+
+    /**
+     * 忽略空白差异的文本哈希：首尾空白去掉，中间连续空白视为一个空格
+     */
+    public static long ofNormalized(CharSequence text) {
+        long h = FNV_OFFSET;
+        boolean pendingSpace = false;
+        boolean started = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                pendingSpace = started;
+                continue;
+            }
+            if (pendingSpace) {
+                h ^= ' ';
+                h *= FNV_PRIME;
+                pendingSpace = false;
+            }
+            h ^= c;
+            h *= FNV_PRIME;
+            started = true;
+        }
+        return h;
+    }
+
+    /**
+     * 有序合并两个哈希值
+     */
+    public static long combine(long h, long value) {
+        return mix(h * GOLDEN + value);
+    }
+
+    /**
+     * MurmurHash3 的 64 位终结函数
+     */
+    public static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    public static String toHex(long h) {
+        String hex = Long.toHexString(h);
+        return "0000000000000000".substring(hex.length()) + hex;
+    }
+}
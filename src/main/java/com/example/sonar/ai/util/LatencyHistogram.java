@@ -0,0 +1,75 @@
+package com.example.sonar.ai.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 延迟直方图
+ * 按 2 的幂分段、每段再等分为 32 个子桶的对数分桶，分位数的相对误差不超过 1/32；
+ * 占用固定的 64 * 32 个计数，记录是无锁的原子加，可以在 HTTP 回调线程上并发调用
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BITS = 5;
+    private static final int SUB = 1 << SUB_BITS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(64 * SUB);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * 记录一个非负值（通常为纳秒），负值按 0 记录
+     */
+    public void record(long value) {
+        long v = Math.max(0, value);
+        counts.incrementAndGet(index(v));
+        count.incrementAndGet();
+        max.accumulateAndGet(v, Math::max);
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * 分位数，取所在桶的上界（不超过最大值）；没有记录时为 0
+     *
+     * @param quantile 0 到 1 之间，如 0.99
+     */
+    public long percentile(double quantile) {
+        long total = count.get();
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBound(i), max.get());
+            }
+        }
+        return max.get();
+    }
+
+    static int index(long value) {
+        if (value < SUB) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+        return (shift + 1) * SUB + (int) ((value >>> shift) - SUB);
+    }
+
+    static long upperBound(int index) {
+        int bucket = index / SUB;
+        int sub = index % SUB;
+        if (bucket == 0) {
+            return sub;
+        }
+        return ((long) (SUB + sub + 1) << (bucket - 1)) - 1;
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.sonar.ai.util;
+
+/**
+ * long 值的计数集合
+ * 开放寻址、线性探测，每个元素只占一个 long 和一个 int，用于在堆中保存大量指纹；
+ * 计数减到 0 的元素仍占用槽位，不做删除
+ */
+public class LongMultiset {
+
+    // 0 表示空槽，值为 0 的元素按 1 存储；指纹是 64 位哈希，两者冲突可以忽略
+    private long[] keys;
+    private int[] counts;
+    private int used;
+    private long total;
+
+    public LongMultiset() {
+        this(1 << 10);
+    }
+
+    public LongMultiset(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(16, expected * 2 - 1)) << 1;
+        keys = new long[capacity];
+        counts = new int[capacity];
+    }
+
+    /**
+     * 计数加一
+     */
+    public void add(long value) {
+        if ((used + 1) * 2 > keys.length) {
+            grow();
+        }
+        int slot = slot(keys, stored(value));
+        if (keys[slot] == 0) {
+            keys[slot] = stored(value);
+            used++;
+        }
+        counts[slot]++;
+        total++;
+    }
+
+    /**
+     * 计数大于 0 时减一
+     *
+     * @return 是否减少了计数
+     */
+    public boolean remove(long value) {
+        int slot = slot(keys, stored(value));
+        if (keys[slot] == 0 || counts[slot] == 0) {
+            return false;
+        }
+        counts[slot]--;
+        total--;
+        return true;
+    }
+
+    public int count(long value) {
+        int slot = slot(keys, stored(value));
+        return keys[slot] == 0 ? 0 : counts[slot];
+    }
+
+    /**
+     * 所有元素的计数之和
+     */
+    public long size() {
+        return total;
+    }
+
+    private static long stored(long value) {
+        return value == 0 ? 1 : value;
+    }
+
+    private static int slot(long[] keys, long key) {
+        int mask = keys.length - 1;
+        int i = (int) Hash64.mix(key) & mask;
+        while (keys[i] != 0 && keys[i] != key) {
+            i = (i + 1) & mask;
+        }
+        return i;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldCounts = counts;
+        keys = new long[oldKeys.length * 2];
+        counts = new int[oldKeys.length * 2];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int slot = slot(keys, oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.sonar.ai.util;
+
+/**
+ * 提示词 token 数估算工具类
+ * 不依赖具体模型的分词表，按常见 BPE 分词器的经验比例估算：
+ * 中日韩字符约 1 字符 1 token，其他非空白字符约 4 字符 1 token，连续空白算作一个字符。
+ * 只用于批次规划和预算控制，误差在 ±20% 左右
+ */
+public class TokenEstimator {
+
+    private TokenEstimator() {
+    }
+
+    public static int estimate(CharSequence text) {
+        if (text == null) {
+            return 0;
+        }
+        int cjk = 0;
+        int other = 0;
+        boolean space = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                if (!space) {
+                    other++;
+                    space = true;
+                }
+                continue;
+            }
+            space = false;
+            if (c >= 0x2E80 && c <= 0x9FFF || c >= 0xAC00 && c <= 0xD7AF || c >= 0xF900 && c <= 0xFAFF
+                    || c >= 0xFF00 && c <= 0xFFEF) {
+                cjk++;
+            } else {
+                other++;
+            }
+        }
+        return cjk + (other + 3) / 4;
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.sonar.ai.bench;
+
+import com.example.sonar.ai.client.AiClient;
+import com.example.sonar.ai.client.AimdLimiter;
+import com.example.sonar.ai.client.Backoff;
+import com.example.sonar.ai.client.VerdictParser;
+import com.example.sonar.ai.model.Verdict;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * StubLlmServer 单元测试
+ */
+public class StubLlmServerTest {
+
+    @Test
+    void testStreamingAndPlainResponses() throws Exception {
+        StubLlmServer.Profile profile = new StubLlmServer.Profile();
+        profile.apply("--latency-ms", "1");
+        profile.apply("--violation-rate", "1");
+        try (StubLlmServer server = new StubLlmServer(0, profile)) {
+            for (boolean stream : new boolean[]{true, false}) {
+                AiClient client = client(server, 0);
+                client.setStream(stream);
+                Verdict verdict = VerdictParser.parse(client.complete("system", "prompt").get(), "default", 1L);
+                assertTrue(verdict.getViolation(), "stream " + stream);
+                assertEquals("模拟违规", verdict.getMessage());
+            }
+            assertEquals(2, server.getRequests());
+        }
+    }
+
+    @Test
+    void testConcurrencyCapThrottles() throws Exception {
+        StubLlmServer.Profile profile = new StubLlmServer.Profile();
+        profile.apply("--latency-ms", "50");
+        profile.apply("--latency-sigma", "0");
+        profile.apply("--max-concurrent", "2");
+        try (StubLlmServer server = new StubLlmServer(0, profile)) {
+            AiClient client = client(server, 5);
+            List<CompletableFuture<String>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                results.add(client.complete("system", "prompt " + i));
+            }
+            for (CompletableFuture<String> result : results) {
+                assertNotNull(VerdictParser.parse(result.get(), "default", 1L));
+            }
+            // 初始并发 8 超过服务端上限 2，部分请求被限流后重试成功
+            assertTrue(server.getThrottled() > 0);
+            assertEquals(server.getThrottled(), client.getRetries());
+            assertTrue(client.getLimiter().getLimit() < 8);
+        }
+    }
+
+    @Test
+    void testGeneratedCorpus() throws Exception {
+        Path dir = Files.createTempDirectory("corpus");
+        PipelineBenchmark.generateCorpus(dir, 12, 2);
+        try (Stream<Path> files = Files.walk(dir)) {
+            assertEquals(12, files.filter(path -> path.toString().endsWith(".java")).count());
+        }
+        assertTrue(Files.readString(dir.resolve("bench/p1/Generated11.java")).contains("process11_1"));
+    }
+
+    private static AiClient client(StubLlmServer server, int retries) {
+        return new AiClient(server.getEndpoint(), null, "stub", Duration.ofSeconds(5), retries,
+                new AimdLimiter(8, 1, 8, 2.0), new Backoff(10, 50));
+    }
+}
@@ -0,0 +1,167 @@
+package com.example.sonar.ai.client;
+
+import com.example.sonar.ai.model.Verdict;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * AiClient 及其限流、解析组件的单元测试，使用本地 HttpServer 作为模型接口
+ */
+public class AiClientTest {
+
+    private static final String VERDICT = "{\"violation\": true, \"reasoning\": \"循环内调用 'query'\", \"message\": \"禁止循环内查询\"}";
+
+    private HttpServer server;
+    // 按顺序返回的状态码，用完后返回 200
+    private final Deque<Integer> statuses = new ArrayDeque<>();
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/v1/chat/completions", this::handle);
+        server.setExecutor(Executors.newFixedThreadPool(4));
+        server.start();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        exchange.getRequestBody().readAllBytes();
+        Integer status;
+        synchronized (statuses) {
+            status = statuses.poll();
+        }
+        if (status != null && status != 200) {
+            byte[] body = "busy".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+            return;
+        }
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream out = exchange.getResponseBody()) {
+            // 按几个字符一段分块推送，验证跨块拼接
+            for (int i = 0; i < VERDICT.length(); i += 7) {
+                String part = VERDICT.substring(i, Math.min(VERDICT.length(), i + 7))
+                        .replace("\\", "\\\\").replace("\"", "\\\"");
+                out.write(("data: {\"choices\":[{\"delta\":{\"content\":\"" + part + "\"}}]}\n\n")
+                        .getBytes(StandardCharsets.UTF_8));
+                out.flush();
+            }
+            out.write("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private AiClient client(int retries, AimdLimiter limiter) {
+        URI uri = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/v1/chat/completions");
+        return new AiClient(uri, "token", "stub", Duration.ofSeconds(5), retries, limiter, new Backoff(1, 5));
+    }
+
+    @Test
+    void testStreamedVerdict() throws Exception {
+        String content = client(0, new AimdLimiter(2, 1, 4, 3.0)).complete("system", "prompt").get();
+        assertEquals(VERDICT, content);
+        Verdict verdict = VerdictParser.parse(content, "default", 1L);
+        assertTrue(verdict.getViolation());
+        assertEquals("禁止循环内查询", verdict.getMessage());
+    }
+
+    @Test
+    void testRetriesThrottledRequests() throws Exception {
+        statuses.add(429);
+        statuses.add(503);
+        AimdLimiter limiter = new AimdLimiter(4, 1, 8, 3.0);
+        AiClient client = client(2, limiter);
+        assertEquals(VERDICT, client.complete("system", "prompt").get());
+        assertEquals(3, client.getRequests());
+        assertEquals(2, client.getRetries());
+        assertTrue(limiter.getLimit() < 4, "limit " + limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void testGivesUpAfterRetries() {
+        statuses.add(500);
+        statuses.add(500);
+        CompletableFuture<String> result = client(1, new AimdLimiter(1, 1, 1, 3.0)).complete("system", "prompt");
+        ExecutionException e = assertThrows(ExecutionException.class, result::get);
+        assertInstanceOf(IOException.class, e.getCause());
+        assertTrue(e.getCause().getMessage().contains("HTTP 500"));
+    }
+
+    @Test
+    void testLimiterQueuesAndAdapts() {
+        AimdLimiter limiter = new AimdLimiter(2, 1, 3, 1000.0);
+        long start = System.nanoTime();
+        CompletableFuture<Void> first = limiter.acquire();
+        CompletableFuture<Void> second = limiter.acquire();
+        CompletableFuture<Void> third = limiter.acquire();
+        assertTrue(first.isDone() && second.isDone());
+        assertFalse(third.isDone());
+
+        limiter.onSuccess(start);
+        assertTrue(third.isDone());
+        // 每个成功增长 1/limit：2 -> 2.5 -> 2.9 -> 3（上限）
+        assertEquals(2, limiter.getLimit());
+        limiter.onSuccess(start);
+        limiter.onSuccess(start);
+        assertEquals(3, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+
+        // 收缩前发出的请求再失败不重复收缩
+        long before = System.nanoTime();
+        limiter.acquire();
+        limiter.acquire();
+        limiter.onDropped(before);
+        assertEquals(1, limiter.getLimit());
+        limiter.onDropped(before);
+        assertEquals(1, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    void testParsers() {
+        SseParser plain = new SseParser();
+        plain.line("{\"choices\":[{\"message\":{\"content\":\" ok \"}}]}");
+        assertEquals("ok", plain.content());
+
+        SseParser sse = new SseParser();
+        sse.line("data: {\"choices\":[{\"delta\":{\"content\":\"a\"}}]}");
+        sse.line("");
+        sse.line("data: {\"choices\":[{\"delta\":{\"content\":\"b\"}}]}");
+        sse.line("data: [DONE]");
+        assertTrue(sse.isDone());
+        assertEquals("ab", sse.content());
+
+        Verdict quoted = VerdictParser.parse("结果：{\"violation\": false, \"reasoning\": '使用了 \"常量\"', \"message\": \"OK\"}",
+                "default", 1L);
+        assertFalse(quoted.getViolation());
+        assertEquals("使用了 '常量'", quoted.getReasoning());
+
+        Verdict broken = VerdictParser.parse("{\"violation\": true, \"reasoning\": \"未闭合, \"message\": }", "默认", 1L);
+        assertTrue(broken.getViolation());
+        assertEquals("默认", broken.getMessage());
+        assertNull(VerdictParser.parse("无法判定", "默认", 1L));
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.sonar.ai.evaluator;
+
+import com.example.sonar.ai.io.CollectingSink;
+import com.example.sonar.ai.model.Rule;
+import com.example.sonar.ai.model.Snippet;
+import com.example.sonar.ai.model.Verdict;
+import com.example.sonar.ai.stage.LocalVerdictSnippetSink;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.example.sonar.ai.model.TestRules.rule;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 本地判定器单元测试
+ */
+public class LocalEvaluatorTest {
+
+    private static final String MESSAGE = "违规报错信息";
+
+    @Test
+    void testInterfaceConstant() {
+        InterfaceConstantEvaluator evaluator = new InterfaceConstantEvaluator();
+        Snippet field = snippet(rule("RULE-007", "描述", MESSAGE), "env");
+        Verdict nonLiteral = evaluator.evaluate(field, "String env = System.getenv(\"ENV\");");
+        assertTrue(nonLiteral.getViolation());
+        // 与 AI 输出格式一致：违规时 message 为规则的固定报错信息，细节在 reasoning 中
+        assertEquals(MESSAGE, nonLiteral.getMessage());
+        assertTrue(nonLiteral.getReasoning().contains("env"));
+        assertTrue(evaluator.evaluate(field, "int timeout = 1000;").getReasoning().contains("命名"));
+        Verdict constant = evaluator.evaluate(field, "int MAX_SIZE = 10;");
+        assertFalse(constant.getViolation());
+        assertEquals("OK", constant.getMessage());
+        assertNull(evaluator.evaluate(field, "not java"));
+    }
+
+    @Test
+    void testNaming() {
+        NamingEvaluator evaluator = new NamingEvaluator();
+        Verdict single = evaluator.evaluate(snippet(rule("RULE-011", "描述", MESSAGE), "a"), null);
+        assertTrue(single.getViolation());
+        assertEquals(MESSAGE, single.getMessage());
+        assertTrue(single.getReasoning().contains("a"));
+        assertTrue(evaluator.evaluate(snippet(rule("RULE-011"), "a1"), null).getViolation());
+        // 单字母下标和有意义的名称无法词法判定
+        assertNull(evaluator.evaluate(snippet(rule("RULE-011"), "i"), null));
+        assertNull(evaluator.evaluate(snippet(rule("RULE-011"), "studentName"), null));
+    }
+
+    @Test
+    void testThrowMessageAndDeclarationOrder() {
+        Verdict empty = new ThrowMessageEvaluator().evaluate(snippet(rule("RULE-018", "描述", MESSAGE), ""), null);
+        assertTrue(empty.getViolation());
+        assertEquals(MESSAGE, empty.getMessage());
+        Verdict order = new DeclarationOrderEvaluator().evaluate(
+                snippet(rule("RULE-009", "描述", MESSAGE), "构造方法未连续出现"), null);
+        assertEquals(MESSAGE, order.getMessage());
+        assertTrue(order.getReasoning().startsWith("构造方法未连续出现"));
+    }
+
+    @Test
+    void testDecidedSnippetsCarryVerdictOrAreSkipped() throws IOException {
+        Rule naming = rule("RULE-011");
+        Rule disabled = rule("RULE-014");
+        disabled.setEvaluator("none");
+        List<Snippet> out = new ArrayList<>();
+        LocalVerdictSnippetSink sink = new LocalVerdictSnippetSink(new CollectingSink(out),
+                LocalEvaluators.forRules(List.of(naming, disabled)), false);
+        sink.accept(snippet(naming, "a"));
+        sink.accept(snippet(naming, "studentName"));
+        sink.accept(snippet(disabled, "public interface A"));
+        sink.close();
+        assertEquals(3, out.size());
+        assertTrue(out.get(0).getVerdict().getViolation());
+        assertTrue(out.get(0).getVerdict().getJudgedAt() > 0);
+        assertNull(out.get(1).getVerdict());
+        assertNull(out.get(2).getVerdict());
+
+        out.clear();
+        sink = new LocalVerdictSnippetSink(new CollectingSink(out), LocalEvaluators.forRules(List.of(naming)), true);
+        sink.accept(snippet(naming, "a"));
+        sink.accept(snippet(naming, "studentName"));
+        sink.close();
+        assertEquals(1, sink.getDecided());
+        assertEquals(1, out.size());
+        assertEquals("studentName", out.get(0).getName());
+    }
+
+    @Test
+    void testUnknownEvaluatorClassIsRejected() {
+        Rule rule = rule("RULE-011");
+        rule.setEvaluator("com.example.Missing");
+        assertThrows(IllegalArgumentException.class, () -> LocalEvaluators.forRules(List.of(rule)));
+    }
+
+    private static Snippet snippet(Rule rule, String name) {
+        return new Snippet(rule, new File("A.java"), 1, "int " + name + " = 0", name, "VARIABLE_DECLARATION");
+    }
+}
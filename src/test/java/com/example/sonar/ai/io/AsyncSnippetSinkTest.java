@@ -0,0 +1,117 @@
+package com.example.sonar.ai.io;
+
+import com.example.sonar.ai.model.Rule;
+import com.example.sonar.ai.model.Snippet;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * AsyncSnippetSink 与 JsonLinesSnippetWriter 单元测试
+ */
+public class AsyncSnippetSinkTest {
+
+    @Test
+    void testAsyncJsonLinesKeepsOrder() throws IOException {
+        Rule rule = new Rule();
+        rule.setId("RULE-031");
+        rule.setDescription("日志\n多行");
+        List<Snippet> snippets = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            snippets.add(new Snippet(rule, new File("A.java"), i, "log.info(\"" + i + "\")", "log.info", "LOG"));
+        }
+
+        StringWriter out = new StringWriter();
+        // 缓冲区远小于片段数，覆盖抽取线程被阻塞的情况
+        try (SnippetSink sink = new AsyncSnippetSink(new JsonLinesSnippetWriter(out), 8, new FlushPolicy(16, 0))) {
+            for (Snippet snippet : snippets) {
+                sink.accept(snippet);
+            }
+        }
+
+        Gson gson = new GsonBuilder().disableHtmlEscaping().create();
+        String[] lines = out.toString().split("\n");
+        assertEquals(snippets.size(), lines.length);
+        for (int i = 0; i < lines.length; i++) {
+            assertEquals(gson.toJson(snippets.get(i)), lines[i]);
+        }
+    }
+
+    @Test
+    void testWriterFailureSurfacesToCaller() {
+        Writer broken = new Writer() {
+            @Override
+            public void write(char[] cbuf, int off, int len) throws IOException {
+                throw new IOException("disk full");
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        Rule rule = new Rule();
+        rule.setId("RULE-031");
+        Snippet snippet = new Snippet(rule, new File("A.java"), 1, "x", null, "LOG");
+
+        IOException e = assertThrows(IOException.class, () -> {
+            try (SnippetSink sink = new AsyncSnippetSink(new JsonLinesSnippetWriter(broken), 4, FlushPolicy.onClose())) {
+                for (int i = 0; i < 100; i++) {
+                    sink.accept(snippet);
+                }
+            }
+        });
+        assertEquals("disk full", rootCause(e).getMessage());
+    }
+
+    @Test
+    void testRuntimeFailureDoesNotHangProducer() {
+        SnippetSink buggy = new SnippetSink() {
+            @Override
+            public void accept(Snippet snippet) {
+                throw new IllegalStateException("stage bug");
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        Rule rule = new Rule();
+        rule.setId("RULE-031");
+        Snippet snippet = new Snippet(rule, new File("A.java"), 1, "x", null, "LOG");
+
+        IOException e = assertTimeoutPreemptively(Duration.ofSeconds(10), () -> assertThrows(IOException.class, () -> {
+            // 片段数远大于缓冲区，写线程退出后抽取线程会阻塞在 put 上
+            try (SnippetSink sink = new AsyncSnippetSink(buggy, 4, FlushPolicy.onClose())) {
+                for (int i = 0; i < 100; i++) {
+                    sink.accept(snippet);
+                }
+            }
+        }));
+        assertEquals("stage bug", rootCause(e).getMessage());
+    }
+
+    private static Throwable rootCause(Throwable t) {
+        while (t.getCause() != null) {
+            t = t.getCause();
+        }
+        return t;
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.sonar.ai.io;
+
+import com.example.sonar.ai.model.Snippet;
+
+import java.util.List;
+
+/**
+ * 测试用输出端：把收到的片段依次加入列表
+ */
+public class CollectingSink implements SnippetSink {
+
+    private final List<Snippet> collected;
+
+    public CollectingSink(List<Snippet> collected) {
+        this.collected = collected;
+    }
+
+    @Override
+    public void accept(Snippet snippet) {
+        collected.add(snippet);
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+    }
+}
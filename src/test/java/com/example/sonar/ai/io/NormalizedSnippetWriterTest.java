@@ -0,0 +1,57 @@
+package com.example.sonar.ai.io;
+
+import com.example.sonar.ai.model.Rule;
+import com.example.sonar.ai.model.Snippet;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.List;
+
+import static com.example.sonar.ai.model.TestRules.rule;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * NormalizedSnippetWriter / NormalizedSnippetReader 单元测试
+ * 规范化输出还原后必须与旧版输出逐字段一致
+ */
+public class NormalizedSnippetWriterTest {
+
+    @Test
+    void testRoundTripMatchesLegacyOutput() throws IOException {
+        Rule log = rule("RULE-031", "日志规范");
+        log.setContext("很长的规则上下文");
+        Rule lock = rule("RULE-012", "锁规范");
+        List<Snippet> snippets = List.of(
+                new Snippet(log, new File("A.java"), 3, "log.warn(\"x\")", "log.warn", "LOG_DECLARATION"),
+                new Snippet(lock, new File("A.java"), 5, "synchronized (this) {}", null, "METHOD_DECLARATION"),
+                new Snippet(log, new File("B.java"), 7, "log.error(e)", null, "LOG_DECLARATION"),
+                new Snippet(lock, new File("B.java"), 9, "lock.lock()", null, "METHOD_DECLARATION"));
+
+        StringWriter out = new StringWriter();
+        try (NormalizedSnippetWriter writer = new NormalizedSnippetWriter(out, List.of(log, lock, log), false)) {
+            for (Snippet snippet : snippets) {
+                writer.accept(snippet);
+            }
+        }
+        String normalized = out.toString();
+        assertEquals(normalized.indexOf("很长的规则上下文"), normalized.lastIndexOf("很长的规则上下文"));
+        // 两个文件各只写出一次路径
+        assertEquals(3, normalized.split("\"path\":", -1).length);
+
+        List<Snippet> expanded = new NormalizedSnippetReader().readAll(new StringReader(normalized));
+        Gson gson = new GsonBuilder().disableHtmlEscaping().create();
+        assertEquals(gson.toJson(snippets), gson.toJson(expanded));
+    }
+
+    @Test
+    void testUnknownRuleIsRejected() throws IOException {
+        NormalizedSnippetWriter writer = new NormalizedSnippetWriter(new StringWriter(), List.of(), false);
+        Snippet snippet = new Snippet(rule("RULE-999", null), new File("A.java"), 1, "x", null, "LOG");
+        assertThrows(IOException.class, () -> writer.accept(snippet));
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.sonar.ai.io;
+
+import com.example.sonar.ai.model.Rule;
+import com.example.sonar.ai.model.Snippet;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SnippetJsonWriter 单元测试
+ * 流式写出的结果必须与原先 Gson 一次性序列化的格式一致
+ */
+public class SnippetJsonWriterTest {
+
+    @Test
+    void testStreamingOutputMatchesGson() throws IOException {
+        Rule rule = new Rule();
+        rule.setId("RULE-031");
+        rule.setDescription("日志 <warn> & \"error\"");
+        List<Snippet> snippets = List.of(
+                new Snippet(rule, new File("A.java"), 3, "log.warn(\"x\")", "log.warn", "LOG_DECLARATION"),
+                new Snippet(rule, new File("B.java"), 7, "log.error(e)", null, "LOG_DECLARATION"));
+
+        StringWriter pretty = new StringWriter();
+        StringWriter compact = new StringWriter();
+        try (SnippetJsonWriter writer = new SnippetJsonWriter(new TeeWriter(pretty), true);
+             SnippetJsonWriter compactWriter = new SnippetJsonWriter(compact, false)) {
+            for (Snippet snippet : snippets) {
+                writer.accept(snippet);
+                compactWriter.accept(snippet);
+            }
+            assertEquals(2, writer.getCount());
+        }
+
+        Gson gson = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
+        assertEquals(gson.toJson(snippets) + System.lineSeparator(), pretty.toString());
+        assertEquals(new GsonBuilder().disableHtmlEscaping().create().toJson(snippets) + System.lineSeparator(),
+                compact.toString());
+    }
+
+    @Test
+    void testEmptyOutput() throws IOException {
+        StringWriter out = new StringWriter();
+        new SnippetJsonWriter(out, true).close();
+        assertEquals("[]" + System.lineSeparator(), out.toString());
+    }
+}
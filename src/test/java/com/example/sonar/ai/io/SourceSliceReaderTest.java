@@ -0,0 +1,97 @@
+package com.example.sonar.ai.io;
+
+import com.example.sonar.ai.model.Rule;
+import com.example.sonar.ai.model.Snippet;
+import com.example.sonar.ai.service.CodeExtractorService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 引用模式 + SourceSliceReader 的往返测试：
+ * 按范围读回的代码必须与完整模式下的代码一致
+ */
+public class SourceSliceReaderTest {
+
+    private Path tempDir;
+    private List<Rule> rules;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        tempDir = Files.createTempDirectory("test-slice");
+        Rule loopRule = new Rule();
+        loopRule.setId("RULE-028");
+        loopRule.setScope("METHOD_DECLARATION");
+        rules = Collections.singletonList(loopRule);
+
+        String code = "package com.test;\r\n"
+                + "\r\n"
+                + "public class Loops {\r\n"
+                + "    public void run(java.util.List<String> names) {\r\n"
+                + "        for (String n : names) {\r\n"
+                + "            System.out.println(\"名字:\" + n);\r\n"
+                + "        }\r\n"
+                + "        while(true){ break; }\r\n"
+                + "    }\r\n"
+                + "}\r\n";
+        Files.writeString(tempDir.resolve("Loops.java"), code);
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        Files.walk(tempDir)
+                .sorted(Collections.reverseOrder())
+                .map(Path::toFile)
+                .forEach(File::delete);
+    }
+
+    @Test
+    void testReferenceSnippetsReadBackToOriginalCode() throws IOException {
+        List<Snippet> full = new CodeExtractorService(tempDir.toString(), rules).extractAllCandidates();
+
+        CodeExtractorService referenceService = new CodeExtractorService(tempDir.toString(), rules);
+        referenceService.setReferenceOnly(true);
+        List<Snippet> references = referenceService.extractAllCandidates();
+
+        full.sort(Comparator.comparingInt(Snippet::getLine));
+        references.sort(Comparator.comparingInt(Snippet::getLine));
+        assertEquals(2, references.size());
+
+        try (SourceSliceReader reader = new SourceSliceReader()) {
+            for (int i = 0; i < references.size(); i++) {
+                Snippet reference = references.get(i);
+                assertNull(reference.getCode(), "引用模式不应携带代码文本");
+                assertNotNull(reference.getHash());
+                assertEquals(full.get(i).getCode(), reader.read(reference));
+            }
+        }
+        assertEquals("for (String n : names) {\r\n"
+                + "            System.out.println(\"名字:\" + n);\r\n"
+                + "        }", full.get(0).getCode());
+    }
+
+    @Test
+    void testChangedSourceIsDetected() throws IOException {
+        CodeExtractorService referenceService = new CodeExtractorService(tempDir.toString(), rules);
+        referenceService.setReferenceOnly(true);
+        List<Snippet> references = referenceService.extractAllCandidates();
+        references.sort(Comparator.comparingInt(Snippet::getLine));
+
+        Path file = tempDir.resolve("Loops.java");
+        Files.writeString(file, Files.readString(file).replace("while(true)", "while(false)"));
+
+        try (SourceSliceReader reader = new SourceSliceReader()) {
+            assertThrows(IOException.class, () -> reader.read(references.get(1)));
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.sonar.ai.model;
+
+import com.github.javaparser.Position;
+import com.github.javaparser.Range;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SourceText 单元测试
+ * 验证行首偏移索引和按 Range 截取原文
+ */
+public class SourceTextTest {
+
+    @Test
+    void testLineIndexWithMixedLineEndings() {
+        SourceText source = new SourceText("a\r\nbc\rdef\n\ng");
+
+        assertEquals(5, source.getLineCount());
+        assertEquals(0, source.offsetOf(1, 1));
+        assertEquals(3, source.offsetOf(2, 1));
+        assertEquals(6, source.offsetOf(3, 1));
+        assertEquals(10, source.offsetOf(4, 1));
+        assertEquals(11, source.offsetOf(5, 1));
+        assertEquals(-1, source.offsetOf(6, 1));
+    }
+
+    @Test
+    void testSliceKeepsOriginalFormatting() {
+        String code = """
+                class A {
+                    void run() {
+                        int a=1;
+                    }
+                }
+                """;
+        SourceText source = new SourceText(code);
+
+        SourceSlice slice = source.slice(new Range(new Position(3, 9), new Position(3, 16)));
+        assertEquals("int a=1;", slice.toString());
+        assertEquals(8, slice.length());
+        assertEquals('a', slice.charAt(4));
+
+        SourceSlice body = source.slice(new Range(new Position(2, 16), new Position(4, 5)));
+        assertEquals("{\n        int a=1;\n    }", body.toString());
+    }
+}
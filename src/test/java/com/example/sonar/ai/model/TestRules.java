@@ -0,0 +1,46 @@
+package com.example.sonar.ai.model;
+
+/**
+ * 测试用规则
+ */
+public final class TestRules {
+
+    private TestRules() {
+    }
+
+    public static Rule rule(String id) {
+        return rule(id, "描述");
+    }
+
+    public static Rule rule(String id, String description) {
+        Rule rule = new Rule();
+        rule.setId(id);
+        rule.setDescription(description);
+        return rule;
+    }
+
+    public static Rule rule(String id, String description, String criteria) {
+        Rule rule = rule(id, description);
+        rule.setCriteria(criteria);
+        return rule;
+    }
+
+    /**
+     * 指定作用范围的规则
+     */
+    public static Rule scoped(String id, String scope) {
+        Rule rule = rule(id);
+        rule.setScope(scope);
+        return rule;
+    }
+
+    /**
+     * 指定单文件限额和总限额的规则，0 表示不限
+     */
+    public static Rule limited(String id, int maxPerFile, int maxTotal) {
+        Rule rule = rule(id);
+        rule.setMaxPerFile(maxPerFile);
+        rule.setMaxTotal(maxTotal);
+        return rule;
+    }
+}
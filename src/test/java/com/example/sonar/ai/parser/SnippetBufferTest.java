@@ -0,0 +1,48 @@
+package com.example.sonar.ai.parser;
+
+import com.example.sonar.ai.model.Rule;
+import com.example.sonar.ai.model.Snippet;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.example.sonar.ai.model.TestRules.rule;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SnippetBuffer 单元测试
+ */
+public class SnippetBufferTest {
+
+    @Test
+    void testGroupsByRuleOrdinalAndReuses() {
+        List<Rule> rules = List.of(rule("RULE-001"), rule("RULE-002"), rule("RULE-003"));
+        SnippetBuffer buffer = new SnippetBuffer(rules);
+        File file = new File("A.java");
+        // 交替追加并超过初始容量，验证扩容和按规则分组
+        for (int i = 0; i < 100; i++) {
+            buffer.forRule(i % 2 == 0 ? 2 : 0).add(new Snippet(rules.get(i % 2 == 0 ? 2 : 0), file, i, "x", null, "S"));
+        }
+        assertEquals(100, buffer.size());
+        assertEquals(50, buffer.forRule(0).size());
+        assertTrue(buffer.forRule(1).isEmpty());
+        assertEquals(4, buffer.forRule(2).get(2).getLine());
+
+        List<Snippet> drained = new ArrayList<>();
+        buffer.forEach(drained::add);
+        assertEquals("RULE-001", drained.get(0).getRuleId());
+        assertEquals(1, drained.get(0).getLine());
+        assertEquals("RULE-003", drained.get(99).getRuleId());
+        assertEquals(98, drained.get(99).getLine());
+
+        buffer.clear();
+        assertEquals(0, buffer.size());
+        buffer.forRule(1).add(new Snippet(rules.get(1), file, 7, "y", null, "S"));
+        drained.clear();
+        buffer.forEach(drained::add);
+        assertEquals(1, drained.size());
+        assertEquals(7, drained.get(0).getLine());
+    }
+}
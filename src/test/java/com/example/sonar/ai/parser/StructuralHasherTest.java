@@ -0,0 +1,84 @@
+package com.example.sonar.ai.parser;
+
+import com.example.sonar.ai.model.Rule;
+import com.example.sonar.ai.model.Snippet;
+import com.example.sonar.ai.model.SourceText;
+import com.github.javaparser.StaticJavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * StructuralHasher 单元测试
+ * 结构哈希忽略空白、注释和位置，但对标识符、字面量和运算符敏感
+ */
+public class StructuralHasherTest {
+
+    private static final String A = "class A {\n"
+            + "    int sum(int[] xs) {\n"
+            + "        int s = 0;\n"
+            + "        for (int x : xs) { s += x; }\n"
+            + "        return s;\n"
+            + "    }\n"
+            + "}\n";
+
+    private static final String B = "package p;\n\n"
+            + "/** 另一个文件 */\n"
+            + "class B {\n"
+            + "    int other() { return 1; }\n\n"
+            + "    // 注释和换行不同\n"
+            + "    int sum(int[] xs)\n"
+            + "    {\n"
+            + "        int s = 0; // 初始值\n"
+            + "        for (int x : xs) {\n"
+            + "            s += x;\n"
+            + "        }\n"
+            + "        return s;\n"
+            + "    }\n"
+            + "}\n";
+
+    @Test
+    void testSameStructureSameHashAcrossFiles() {
+        Snippet a = snippet(A, "A.java", "sum");
+        Snippet b = snippet(B, "B.java", "sum");
+        assertNotEquals(a.getLine(), b.getLine());
+        assertNotEquals(a.getCode(), b.getCode());
+        assertEquals(a.getStructuralHash(), b.getStructuralHash());
+
+        // 转为引用模式后哈希保持不变
+        long before = b.getStructuralHash();
+        b.toReference();
+        assertEquals(before, b.getStructuralHash());
+    }
+
+    @Test
+    void testStructuralChangesChangeHash() {
+        long base = hash(A);
+        assertNotEquals(base, hash(A.replace("s += x", "s -= x")));
+        assertNotEquals(base, hash(A.replace("int s = 0", "int s = 1")));
+        assertNotEquals(base, hash(A.replace("xs", "ys")));
+        assertEquals(base, hash(A.replace("        ", "\t")));
+    }
+
+    private static long hash(String source) {
+        CompilationUnit cu = StaticJavaParser.parse(source);
+        return new StructuralHasher().hash(method(cu, "sum"));
+    }
+
+    private static Snippet snippet(String source, String file, String method) {
+        CompilationUnit cu = StaticJavaParser.parse(source);
+        MethodDeclaration md = method(cu, method);
+        ExtractionContext context = new ExtractionContext(new File(file), new SourceText(source));
+        Rule rule = new Rule();
+        rule.setId("RULE-035");
+        return new Snippet(rule, context.getFile(), md.getBegin().get().line, context.slice(md), method, "METHOD_DECLARATION");
+    }
+
+    private static MethodDeclaration method(CompilationUnit cu, String name) {
+        return cu.findFirst(MethodDeclaration.class, m -> m.getNameAsString().equals(name)).orElseThrow();
+    }
+}
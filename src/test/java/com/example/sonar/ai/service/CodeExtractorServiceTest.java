@@ -107,6 +107,65 @@ public class CodeExtractorServiceTest {
         assertTrue(s1.getCode().startsWith("public List<String> getUserNames"));
     }
 
+    @Test
+    void testRuleIndependentHandlerSharesPayload() throws IOException {
+        // RULE-001 与 RULE-002 都由 ExtractClassMethodVariableHandler 处理，同一方法只应渲染一次
+        Rule secondRule = new Rule();
+        secondRule.setId("RULE-002");
+        secondRule.setScope("METHOD_DECLARATION");
+        testRules = List.of(methodRule, secondRule);
+
+        String code = """
+                package com.test;
+
+                public class OrderService {
+                    public void saveOrder(String orderId) {
+                    }
+                }
+                """;
+
+        createTestFile("OrderService.java", code);
+
+        CodeExtractorService service = new CodeExtractorService(tempDir.toString(), testRules);
+        List<Snippet> snippets = service.extractAllCandidates();
+
+        assertEquals(2, snippets.size(), "每条规则各输出一个片段");
+        Snippet first = snippets.get(0);
+        Snippet second = snippets.get(1);
+        assertNotEquals(first.getRuleId(), second.getRuleId());
+        assertSame(first.getPayload(), second.getPayload(), "两条规则应共享同一个 payload");
+        assertEquals("public void saveOrder(String orderId)\n[save, order]", first.getCode());
+    }
+
+    @Test
+    void testLongStatementThresholdUsesNormalizedLength() throws IOException {
+        Rule longRule = new Rule();
+        longRule.setId("RULE-023");
+        longRule.setScope("LONGSTATEMENT_DECLARATION");
+        testRules = Collections.singletonList(longRule);
+
+        // flagged: 原文 54 字符，pretty-print 后 86 字符；boundary: 原文和 pretty-print 后都是 80 字符
+        String code = """
+                package com.test;
+
+                public class LongStatement {
+                    public void check(int a, int b, int c, int d, int e, int f, int g, int h) {
+                        boolean flagged=a==0&&b==0&&c==0&&d==0&&e==0&&f==0&&g==0&&h==0;
+                        String boundary = "0123456789012345678901234567890123456789012345678901234567890123456";
+                    }
+                }
+                """;
+
+        createTestFile("LongStatement.java", code);
+
+        CodeExtractorService service = new CodeExtractorService(tempDir.toString(), testRules);
+        List<Snippet> snippets = service.extractAllCandidates();
+
+        assertEquals(1, snippets.size(), "只有超过 80 字符的语句被抽取");
+        assertEquals(5, snippets.get(0).getLine());
+        assertTrue(snippets.get(0).getCode().startsWith("flagged=a==0"), "片段保留原文");
+    }
+
     @Test
     void testClassDeclarationExtraction() throws IOException {
         // 改变规则，测试类提取
@@ -0,0 +1,121 @@
+package com.example.sonar.ai.stage;
+
+import com.example.sonar.ai.bench.StubLlmServer;
+import com.example.sonar.ai.client.AiClient;
+import com.example.sonar.ai.client.AimdLimiter;
+import com.example.sonar.ai.client.Backoff;
+import com.example.sonar.ai.io.CollectingSink;
+import com.example.sonar.ai.io.SnippetSink;
+import com.example.sonar.ai.model.Rule;
+import com.example.sonar.ai.model.Snippet;
+import com.example.sonar.ai.model.SnippetPayload;
+import com.example.sonar.ai.model.Verdict;
+import com.example.sonar.ai.store.VerdictStore;
+import com.example.sonar.ai.util.Hash64;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.example.sonar.ai.model.TestRules.rule;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * AiDispatchSnippetSink 单元测试
+ */
+public class AiDispatchSnippetSinkTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testDownstreamRuntimeFailureIsReported() throws Exception {
+        StubLlmServer.Profile profile = new StubLlmServer.Profile();
+        profile.apply("--latency-ms", "1");
+        Rule rule = new Rule();
+        rule.setId("RULE-031");
+        rule.setDescription("日志规范");
+        List<Snippet> out = new ArrayList<>();
+        try (StubLlmServer server = new StubLlmServer(0, profile)) {
+            AiClient client = new AiClient(server.getEndpoint(), null, "stub", Duration.ofSeconds(5), 0,
+                    new AimdLimiter(4, 1, 4, 2.0), new Backoff(10, 50));
+            AiDispatchSnippetSink sink = new AiDispatchSnippetSink(new SnippetSink() {
+                @Override
+                public void accept(Snippet snippet) {
+                    if (snippet.getLine() == 3) {
+                        throw new IllegalStateException("broken stage");
+                    }
+                    out.add(snippet);
+                }
+
+                @Override
+                public void flush() {
+                }
+
+                @Override
+                public void close() {
+                }
+            }, client, null, 4);
+            for (int line = 1; line <= 3; line++) {
+                sink.accept(new Snippet(rule, new File("A.java"), line, "log.warn(\"" + line + "\")", null,
+                        "LOG_DECLARATION"));
+            }
+            // 下游的运行时异常不能让片段悄悄丢失
+            IOException error = assertThrows(IOException.class, sink::close);
+            assertInstanceOf(IllegalStateException.class, error.getCause().getCause());
+            assertEquals(1, sink.getFailed());
+            assertEquals(2, sink.getJudged());
+            assertEquals(2, out.size());
+        }
+    }
+
+    @Test
+    void testCompositeGetsOneVerdictPerMemberRule() throws Exception {
+        StubLlmServer.Profile profile = new StubLlmServer.Profile();
+        profile.apply("--latency-ms", "1");
+        profile.apply("--violation-rate", "0.5");
+        Rule loop = rule("RULE-028", "描述", "循环内不要创建对象");
+        Rule log = rule("RULE-031", "描述", "日志级别不当");
+        List<Snippet> out = new ArrayList<>();
+        List<Snippet> members;
+        try (StubLlmServer server = new StubLlmServer(0, profile);
+             VerdictStore store = VerdictStore.open(dir, true)) {
+            AiClient client = new AiClient(server.getEndpoint(), null, "stub", Duration.ofSeconds(5), 0,
+                    new AimdLimiter(4, 1, 4, 2.0), new Backoff(10, 50));
+            AiDispatchSnippetSink dispatch = new AiDispatchSnippetSink(new CollectingSink(out), client, store, 4);
+            try (MethodGroupingSnippetSink sink = new MethodGroupingSnippetSink(dispatch)) {
+                sink.accept(member(loop, 3, "for (;;) { new A(); }"));
+                sink.accept(member(log, 5, "log.error(\"x\")"));
+            }
+            assertEquals(1, server.getRequests());
+            assertEquals(1, dispatch.getJudged());
+
+            members = out.get(0).getMembers();
+            assertEquals(2, members.size());
+            for (Snippet member : members) {
+                Verdict verdict = member.getVerdict();
+                assertNotNull(verdict, member.getRuleId());
+                assertEquals(Boolean.TRUE.equals(verdict.getViolation()) ? "模拟违规" : "OK", verdict.getMessage());
+                // 成员按自己的规则和代码写入判定库，下次运行可以直接命中
+                Verdict stored = store.get(member.getRuleId(), VerdictStore.ruleTextHash(member.getRule()),
+                        member.getStructuralHash(), 0);
+                assertEquals(verdict.getViolation(), stored.getViolation());
+            }
+            boolean anyViolation = members.stream().anyMatch(m -> m.getVerdict().getViolation());
+            assertEquals(anyViolation, out.get(0).getVerdict().getViolation());
+            assertTrue(out.get(0).getVerdict().getReasoning().contains("RULE-031: "));
+        }
+    }
+
+    private static Snippet member(Rule rule, int line, String code) {
+        SnippetPayload payload = new SnippetPayload("A.java", line, code, null, "METHOD_DECLARATION",
+                line, 1, line, code.length(), null, Hash64.of(code));
+        payload.setEnclosing("A#void run()");
+        return new Snippet(rule, payload);
+    }
+}
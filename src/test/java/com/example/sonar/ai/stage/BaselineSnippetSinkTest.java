@@ -0,0 +1,131 @@
+package com.example.sonar.ai.stage;
+
+import com.example.sonar.ai.io.CollectingSink;
+import com.example.sonar.ai.io.JsonLinesSnippetWriter;
+import com.example.sonar.ai.io.SnippetJsonWriter;
+import com.example.sonar.ai.model.BaselineStatus;
+import com.example.sonar.ai.model.Occurrences;
+import com.example.sonar.ai.model.Rule;
+import com.example.sonar.ai.model.Snippet;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static com.example.sonar.ai.model.TestRules.rule;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * BaselineSnippetSink 单元测试
+ */
+public class BaselineSnippetSinkTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testNewAndRemovedIgnoreLineShift() throws IOException {
+        Rule loop = rule("RULE-015");
+        Path baseline = dir.resolve("output.json");
+        try (SnippetJsonWriter writer = new SnippetJsonWriter(Files.newBufferedWriter(baseline), true)) {
+            writer.accept(new Snippet(loop, new File("A.java"), 10, "for (;;) { a(); }", "run", "LOOP"));
+            writer.accept(new Snippet(loop, new File("A.java"), 20, "for (;;) { a(); }", "run", "LOOP"));
+            writer.accept(new Snippet(loop, new File("A.java"), 30, "while (x) { b(); }", "stop", "LOOP"));
+            writer.accept(new Snippet(rule("RULE-999"), new File("A.java"), 40, "do {} while (y);", "old", "LOOP"));
+        }
+
+        Rule current = rule("RULE-015");
+        List<Snippet> out = new ArrayList<>();
+        BaselineSnippetSink sink = new BaselineSnippetSink(new CollectingSink(out), baseline, List.of(current), dir);
+        // 行号整体下移、格式变化不算新片段；同样的代码第三次出现是新片段
+        sink.accept(new Snippet(current, new File("A.java"), 12, "for (;;) {\n  a();\n}", "run", "LOOP"));
+        sink.accept(new Snippet(current, new File("A.java"), 22, "for (;;) { a(); }", "run", "LOOP"));
+        sink.accept(new Snippet(current, new File("A.java"), 50, "for (;;) { a(); }", "run", "LOOP"));
+        // 相同代码移到另一个方法
+        sink.accept(new Snippet(current, new File("A.java"), 60, "for (;;) { a(); }", "start", "LOOP"));
+        sink.close();
+
+        assertEquals(3, out.size());
+        assertEquals(BaselineStatus.NEW, out.get(0).getBaselineStatus());
+        assertEquals(50, out.get(0).getLine());
+        assertEquals("start", out.get(1).getName());
+        // removed 片段引用当前规则，已删除规则的片段不输出
+        Snippet removed = out.get(2);
+        assertEquals(BaselineStatus.REMOVED, removed.getBaselineStatus());
+        assertEquals("stop", removed.getName());
+        assertSame(current, removed.getRule());
+    }
+
+    @Test
+    void testGzipJsonLinesBaseline() throws IOException {
+        Rule rule = rule("RULE-001");
+        Path baseline = dir.resolve("output.jsonl.gz");
+        try (Writer out = new OutputStreamWriter(new GZIPOutputStream(Files.newOutputStream(baseline)),
+                StandardCharsets.UTF_8);
+             JsonLinesSnippetWriter writer = new JsonLinesSnippetWriter(out)) {
+            for (int i = 0; i < 100; i++) {
+                writer.accept(new Snippet(rule, new File("B.java"), i, "int v" + i + " = 0", "v" + i, "VAR"));
+            }
+        }
+        List<Snippet> out = new ArrayList<>();
+        BaselineSnippetSink sink = new BaselineSnippetSink(new CollectingSink(out), baseline, List.of(rule), dir);
+        for (int i = 1; i < 100; i++) {
+            sink.accept(new Snippet(rule, new File("B.java"), i + 5, "int v" + i + " = 0", "v" + i, "VAR"));
+        }
+        sink.close();
+        assertEquals(1, out.size());
+        assertEquals(BaselineStatus.REMOVED, out.get(0).getBaselineStatus());
+        assertEquals("v0", out.get(0).getName());
+    }
+
+    @Test
+    void testBaselineFromAnotherWorkspaceWithDuplicatesAndComposites() throws IOException {
+        Rule loop = rule("RULE-015");
+        Rule log = rule("RULE-001");
+        Path src = Files.createDirectories(dir.resolve("src"));
+        Files.writeString(src.resolve("A.java"), "class A {}");
+        Files.writeString(src.resolve("B.java"), "class B {}");
+        // 基线在另一个工作区生成，包含去重代表片段和组合片段
+        Path baseline = dir.resolve("output.jsonl");
+        try (JsonLinesSnippetWriter writer = new JsonLinesSnippetWriter(Files.newBufferedWriter(baseline))) {
+            writer.accept(new Snippet(loop, new File("/ci/ws/src/A.java"), 10, "for (;;) { a(); }", "run", "LOOP"));
+            Snippet duplicate = new Snippet(log, new File("/ci/ws/src/B.java"), 5, "log.warn(x)", "warn", "LOG");
+            duplicate.setOccurrences(occurrences("/ci/ws/src/B.java", "/ci/ws/src/A.java"));
+            writer.accept(duplicate);
+            writer.accept(new Snippet(Rule.composite(List.of(loop, log)), new File("/ci/ws/src/C.java"), 1,
+                    "void c() {}", "c", "METHOD_DECLARATION"));
+        }
+
+        List<Snippet> out = new ArrayList<>();
+        BaselineSnippetSink sink = new BaselineSnippetSink(new CollectingSink(out), baseline, List.of(loop, log), src);
+        sink.accept(new Snippet(loop, src.resolve("A.java").toFile(), 12, "for (;;) { a(); }", "run", "LOOP"));
+        // 本次由另一个位置充当代表
+        Snippet duplicate = new Snippet(log, src.resolve("A.java").toFile(), 41, "log.warn(x)", "warn", "LOG");
+        duplicate.setOccurrences(occurrences(src.resolve("A.java").toString(), src.resolve("B.java").toString()));
+        sink.accept(duplicate);
+        sink.close();
+
+        assertEquals(1, out.size());
+        Snippet removed = out.get(0);
+        assertEquals(BaselineStatus.REMOVED, removed.getBaselineStatus());
+        assertEquals("RULE-015+RULE-001", removed.getRuleId());
+        assertEquals(Rule.composite(List.of(loop, log)).getCriteria(), removed.getRule().getCriteria());
+    }
+
+    private static Occurrences occurrences(String... files) {
+        Occurrences occurrences = new Occurrences();
+        for (int i = 0; i < files.length; i++) {
+            occurrences.add(files[i], i + 1);
+        }
+        return occurrences;
+    }
+}
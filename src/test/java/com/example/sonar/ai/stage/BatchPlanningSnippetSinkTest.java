@@ -0,0 +1,71 @@
+package com.example.sonar.ai.stage;
+
+import com.example.sonar.ai.io.CollectingSink;
+import com.example.sonar.ai.model.Rule;
+import com.example.sonar.ai.model.Snippet;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.example.sonar.ai.model.TestRules.rule;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * BatchPlanningSnippetSink 单元测试
+ */
+public class BatchPlanningSnippetSinkTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testBatchesRespectLimitsAndPassThrough() throws IOException {
+        Rule loop = rule("RULE-015", "循环中禁止远程调用。".repeat(50), "标准");
+        Rule log = rule("RULE-031", "日志规范", "标准");
+        List<Snippet> passed = new ArrayList<>();
+        BatchPlanningSnippetSink sink = new BatchPlanningSnippetSink(new CollectingSink(passed), dir, 1000, 5);
+        for (int i = 0; i < 23; i++) {
+            sink.accept(new Snippet(loop, new File("A.java"), i, "for (Item item : items) { remote.call(item" + i + "); }",
+                    "run", "LOOP"));
+            sink.accept(new Snippet(log, new File("B.java"), i, "log.info(\"value \" + v" + i + ");", "log", "LOG"));
+        }
+        // 超过上限的片段单独成批
+        sink.accept(new Snippet(log, new File("B.java"), 99, "log.info(x);\n".repeat(1000), "big", "LOG"));
+        sink.close();
+
+        assertEquals(47, passed.size());
+        int snippets = 0;
+        int batches = 0;
+        for (Path file : Files.newDirectoryStream(dir, "batch-*.json")) {
+            JsonObject batch = JsonParser.parseString(Files.readString(file)).getAsJsonObject();
+            JsonArray items = batch.getAsJsonArray("snippets");
+            assertTrue(items.size() <= 5);
+            String prompt = batch.get("prompt").getAsString();
+            assertTrue(items.size() == 1 || batch.get("estimatedTokens").getAsInt() <= 1000);
+            // 规则说明只出现一次，代码按编号列出
+            String description = "RULE-015".equals(batch.get("ruleId").getAsString())
+                    ? loop.getDescription() : log.getDescription();
+            assertEquals(prompt.indexOf(description), prompt.lastIndexOf(description));
+            assertTrue(prompt.contains("[待分析代码 #" + items.size() + "]"));
+            assertEquals(1, items.get(0).getAsJsonObject().get("index").getAsInt());
+            snippets += items.size();
+            batches++;
+        }
+        assertEquals(47, snippets);
+
+        JsonObject plan = JsonParser.parseString(Files.readString(dir.resolve(BatchPlanningSnippetSink.PLAN)))
+                .getAsJsonObject();
+        assertEquals(47, plan.get("snippets").getAsInt());
+        assertEquals(batches, plan.get("batches").getAsInt());
+        assertTrue(plan.get("batchedTokens").getAsLong() < plan.get("singleTokens").getAsLong());
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.sonar.ai.stage;
+
+import com.example.sonar.ai.io.CollectingSink;
+import com.example.sonar.ai.model.Rule;
+import com.example.sonar.ai.model.Snippet;
+import com.example.sonar.ai.model.Verdict;
+import com.example.sonar.ai.service.PromptBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static com.example.sonar.ai.model.TestRules.limited;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * BudgetSnippetSink 与 CostEstimateSnippetSink 单元测试
+ */
+public class BudgetSnippetSinkTest {
+
+    @Test
+    void testBudgetCutsAfterFirstOverflow() throws IOException {
+        Rule loop = limited("RULE-028", 0, 0);
+        Rule log = limited("RULE-031", 0, 0);
+        Snippet first = snippet(loop, "A.java", 1);
+        int tokens = PromptBuilder.singleTokens(loop, first.getCode());
+        List<Snippet> out = new ArrayList<>();
+        BudgetSnippetSink sink = new BudgetSnippetSink(new CollectingSink(out), tokens * 2L + tokens / 2);
+        sink.accept(first);
+        sink.accept(snippet(loop, "A.java", 2));
+        sink.accept(snippet(log, "A.java", 3));
+        // 预算耗尽后即使更小的片段也不再放行，已有判定的片段照常输出
+        Snippet judged = snippet(log, "A.java", 4);
+        judged.setVerdict(new Verdict(false, "local", null, 0));
+        sink.accept(judged);
+        sink.accept(snippet(loop, "B.java", 5));
+        sink.close();
+
+        assertEquals(List.of(1, 2, 4), out.stream().map(Snippet::getLine).toList());
+        assertEquals(tokens * 2L, sink.getUsed());
+        assertEquals(Map.of("RULE-031", 1L, "RULE-028", 1L), sink.getCutSnippets());
+    }
+
+    @Test
+    void testCostEstimateExtrapolatesAndCaps() throws IOException {
+        Rule loop = limited("RULE-028", 2, 0);
+        Rule log = limited("RULE-031", 0, 5);
+        StringWriter report = new StringWriter();
+        CostEstimateSnippetSink sink = new CostEstimateSnippetSink(report, List.of(loop, log));
+        for (int line = 1; line <= 3; line++) {
+            sink.accept(snippet(loop, "A.java", line));
+            sink.accept(snippet(log, "A.java", line));
+        }
+        sink.setScale(10, 2);
+        sink.close();
+
+        String json = report.toString().replaceAll("\\s", "");
+        assertTrue(json.contains("\"filesFound\":10,\"filesSampled\":2"), json);
+        // 单文件限额在外推前生效：2 个 x 5 倍
+        assertTrue(json.contains("\"ruleId\":\"RULE-028\",\"sampledSnippets\":2,\"estimatedSnippets\":10"), json);
+        // 外推 15 个按 maxTotal 截断为 5
+        assertTrue(json.contains("\"ruleId\":\"RULE-031\",\"sampledSnippets\":3,\"estimatedSnippets\":5"), json);
+        assertTrue(json.contains("\"capped\":true"), json);
+    }
+
+    private static Snippet snippet(Rule rule, String file, int line) {
+        return new Snippet(rule, new File(file), line, "log.warn(\"" + line + "\")", null, "LOG_DECLARATION");
+    }
+}
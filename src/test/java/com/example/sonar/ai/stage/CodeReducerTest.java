@@ -0,0 +1,81 @@
+package com.example.sonar.ai.stage;
+
+import com.example.sonar.ai.model.Reduction;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * CodeReducer 单元测试
+ */
+public class CodeReducerTest {
+
+    @Test
+    void testStripCommentsKeepsLiterals() {
+        String code = "String url = \"http://a/*b*/\"; // 地址\n/* 多行\n注释 */ char c = '/';";
+        assertEquals("String url = \"http://a/*b*/\"; \n\n char c = '/';", CodeReducer.stripComments(code));
+    }
+
+    @Test
+    void testUnderLimitUntouched() {
+        CodeReducer.Result result = new CodeReducer(100).reduce("int a = 1; // 注释", 0, 10);
+        assertEquals("int a = 1; // 注释", result.code());
+        assertNull(result.reduction());
+    }
+
+    @Test
+    void testCollapseBlocksAroundFocus() {
+        StringBuilder code = new StringBuilder("public void run() {\n");
+        code.append("    // 初始化\n\n");
+        for (int i = 0; i < 3; i++) {
+            code.append("    for (int i = 0; i < n; i++) {\n");
+            for (int j = 0; j < 20; j++) {
+                code.append("        handle(").append(i).append(", ").append(j).append(");\n");
+            }
+            code.append("    }\n");
+        }
+        // 触发行位于第二个循环之后
+        int focus = code.toString().split("\n", -1).length - 1;
+        code.append("    ReentrantLock lock = new ReentrantLock();\n");
+        code.append("    lock.lock();\n");
+        code.append("}");
+
+        CodeReducer.Result result = new CodeReducer(400).reduce(code.toString(), focus, 100);
+        String reduced = result.code();
+        assertTrue(reduced.length() <= 400, reduced);
+        assertTrue(reduced.startsWith("public void run() {"));
+        assertTrue(reduced.contains("ReentrantLock lock = new ReentrantLock();"));
+        assertFalse(reduced.contains("初始化"));
+        assertTrue(reduced.contains("        // ... 20 lines elided"));
+
+        Reduction reduction = result.reduction();
+        assertEquals(code.length(), reduction.originalChars());
+        assertEquals(2, reduction.strippedLines());
+        assertFalse(reduction.elided().isEmpty());
+        // 第一个循环体是源码第 104-123 行
+        Reduction.Elision first = reduction.elided().get(0);
+        assertEquals(new Reduction.Elision(104, 123, "block"), first);
+    }
+
+    @Test
+    void testFocusWindow() {
+        StringBuilder code = new StringBuilder("class A {\n");
+        for (int i = 0; i < 200; i++) {
+            code.append("    int field").append(i).append(" = ").append(i).append(";\n");
+        }
+        code.append("}");
+
+        CodeReducer.Result result = new CodeReducer(300).reduce(code.toString(), 101, 1);
+        String reduced = result.code();
+        assertTrue(reduced.length() <= 300, reduced);
+        assertTrue(reduced.startsWith("class A {\n// ... "));
+        assertTrue(reduced.contains("int field100 = 100;"));
+        assertEquals(2, result.reduction().elided().size());
+        Reduction.Elision before = result.reduction().elided().get(0);
+        Reduction.Elision after = result.reduction().elided().get(1);
+        assertEquals("window", before.reason());
+        assertEquals(2, before.fromLine());
+        assertEquals(202, after.toLine());
+        assertTrue(before.toLine() < 102 && after.fromLine() > 102);
+    }
+}
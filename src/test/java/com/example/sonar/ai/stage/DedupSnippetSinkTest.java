@@ -0,0 +1,89 @@
+package com.example.sonar.ai.stage;
+
+import com.example.sonar.ai.io.CollectingSink;
+import com.example.sonar.ai.io.NormalizedSnippetReader;
+import com.example.sonar.ai.io.NormalizedSnippetWriter;
+import com.example.sonar.ai.model.Rule;
+import com.example.sonar.ai.model.Snippet;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.example.sonar.ai.model.TestRules.rule;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * DedupSnippetSink 单元测试
+ */
+public class DedupSnippetSinkTest {
+
+    @Test
+    void testConcurrentDedupKeepsAllOccurrences() throws Exception {
+        Rule loop = rule("RULE-015");
+        Rule naming = rule("RULE-001");
+        List<Snippet> collected = new ArrayList<>();
+        DedupSnippetSink dedup = new DedupSnippetSink(new CollectingSink(collected));
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int thread = t;
+            futures.add(pool.submit(() -> {
+                for (int i = 0; i < 250; i++) {
+                    File file = new File("T" + thread + ".java");
+                    // 同一规则下只有 5 种不同代码；合成代码 name 不同时不合并
+                    dedup.accept(new Snippet(loop, file, i, "for (;;) { work" + (i % 5) + "(); }", "run", "LOOP"));
+                    dedup.accept(new Snippet(naming, file, i, "无JavaDoc", "method" + (i % 2), "METHOD"));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        pool.shutdown();
+        dedup.close();
+
+        assertEquals(2000, dedup.getReceived());
+        assertEquals(7, dedup.getUnique());
+        assertEquals(1993, dedup.getSaved());
+        assertEquals(7, collected.size());
+        int occurrences = collected.stream().mapToInt(s -> s.getOccurrences().size()).sum();
+        assertEquals(2000, occurrences);
+    }
+
+    @Test
+    void testOccurrencesSurviveSerialization() throws IOException {
+        Rule rule = rule("RULE-015");
+        List<Snippet> collected = new ArrayList<>();
+        try (DedupSnippetSink dedup = new DedupSnippetSink(new CollectingSink(collected))) {
+            dedup.accept(new Snippet(rule, new File("A.java"), 3, "x", "n", "LOOP"));
+            dedup.accept(new Snippet(rule, new File("B.java"), 9, "x", "n", "LOOP"));
+            dedup.accept(new Snippet(rule, new File("C.java"), 1, "y", "n", "LOOP"));
+        }
+        assertEquals(2, collected.size());
+        assertNull(collected.get(1).getOccurrences());
+        assertEquals("B.java", new File(collected.get(0).getOccurrences().getFile(1)).getName());
+
+        Gson gson = new GsonBuilder().disableHtmlEscaping().create();
+        String json = gson.toJson(collected);
+        assertEquals(json, gson.toJson(gson.fromJson(json, Snippet[].class)));
+
+        StringWriter out = new StringWriter();
+        try (NormalizedSnippetWriter writer = new NormalizedSnippetWriter(out, List.of(rule), false)) {
+            for (Snippet snippet : collected) {
+                writer.accept(snippet);
+            }
+        }
+        assertEquals(json, gson.toJson(new NormalizedSnippetReader().readAll(new StringReader(out.toString()))));
+    }
+}
@@ -0,0 +1,155 @@
+package com.example.sonar.ai.stage;
+
+import com.example.sonar.ai.io.CollectingSink;
+import com.example.sonar.ai.io.NormalizedSnippetReader;
+import com.example.sonar.ai.io.NormalizedSnippetWriter;
+import com.example.sonar.ai.model.Rule;
+import com.example.sonar.ai.model.Snippet;
+import com.example.sonar.ai.model.SnippetPayload;
+import com.example.sonar.ai.model.SourceText;
+import com.github.javaparser.Range;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.example.sonar.ai.model.TestRules.rule;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * MethodGroupingSnippetSink 单元测试
+ */
+public class MethodGroupingSnippetSinkTest {
+
+    private static final String RUN = "A#public void run()";
+
+    @Test
+    void testHitsInSameMethodAreMerged() throws IOException {
+        Rule lock = rule("RULE-023");
+        Rule loop = rule("RULE-027");
+        Rule log = rule("RULE-031");
+        List<Snippet> out = new ArrayList<>();
+        MethodGroupingSnippetSink sink = new MethodGroupingSnippetSink(new CollectingSink(out));
+        sink.accept(snippet(lock, "A.java", 5, "synchronized (this) {\n  for (;;) {}\n}", RUN));
+        sink.accept(snippet(new Rule(), "A.java", 1, "class A {}", null));
+        // 被锁代码块包含的循环不再重复出现在组合代码中
+        sink.accept(snippet(loop, "A.java", 6, "for (;;) {}", RUN));
+        sink.accept(snippet(log, "A.java", 9, "log.warn(\"x\")", RUN));
+        sink.accept(snippet(log, "B.java", 9, "log.warn(\"x\")", RUN));
+        sink.close();
+
+        assertEquals(5, sink.getReceived());
+        assertEquals(3, sink.getEmitted());
+        assertEquals(1, sink.getMerged());
+        assertEquals(3, out.size());
+        // 不在方法内的片段直接透传
+        assertEquals(1, out.get(0).getLine());
+
+        Snippet composite = out.get(1);
+        assertEquals("RULE-023+RULE-027+RULE-031", composite.getRuleId());
+        assertTrue(composite.getRuleDesc().contains("RULE-027: 描述"));
+        assertEquals(5, composite.getLine());
+        assertEquals("public void run()", composite.getName());
+        assertEquals("synchronized (this) {\n  for (;;) {}\n}\n\nlog.warn(\"x\")", composite.getCode());
+        assertEquals(3, composite.getMembers().size());
+        assertSame(loop, composite.getMembers().get(1).getRule());
+
+        // 其它文件中同名方法的片段单独输出
+        assertSame(log, out.get(2).getRule());
+        assertNull(out.get(2).getMembers());
+    }
+
+    @Test
+    void testGroupsAreEmittedWhenFileChanges() throws IOException {
+        Rule lock = rule("RULE-023");
+        Rule log = rule("RULE-031");
+        List<Snippet> out = new ArrayList<>();
+        MethodGroupingSnippetSink sink = new MethodGroupingSnippetSink(new CollectingSink(out));
+        sink.accept(snippet(lock, "A.java", 5, "synchronized (this) {}", RUN));
+        sink.accept(snippet(log, "A.java", 9, "log.warn(\"x\")", RUN));
+        assertTrue(out.isEmpty());
+        sink.accept(snippet(log, "B.java", 9, "log.warn(\"x\")", RUN));
+        // 切换到下一个文件时上一文件的分组已经输出
+        assertEquals(1, out.size());
+        assertEquals("RULE-023+RULE-031", out.get(0).getRuleId());
+        sink.close();
+        assertEquals(2, out.size());
+    }
+
+    @Test
+    void testRuleOrderedReplayIsBufferedWithoutSourceText() throws IOException {
+        Rule lock = rule("RULE-023");
+        Rule log = rule("RULE-031");
+        SourceText source = new SourceText("class A {\n  void run() {\n    synchronized (this) {}\n"
+                + "    log.warn(\"x\");\n  }\n}\n");
+        SnippetPayload locked = new SnippetPayload("A.java", 3,
+                source.slice(Range.range(3, 5, 3, 26)), null, "SYNCHRONIZED", 0, 0, 0, 0, null, 0);
+        locked.setEnclosing(RUN);
+        List<Snippet> out = new ArrayList<>();
+        MethodGroupingSnippetSink sink = new MethodGroupingSnippetSink(new CollectingSink(out), false);
+        // 按规则顺序重放，各文件的片段交错到达
+        sink.accept(new Snippet(lock, locked));
+        sink.accept(snippet(lock, "B.java", 5, "synchronized (this) {}", RUN));
+        sink.accept(snippet(log, "A.java", 4, "log.warn(\"x\")", RUN));
+        // 缓存时切片已转为独立字符串，范围保留
+        assertInstanceOf(String.class, locked.getCode());
+        assertEquals(3, locked.getBeginLine());
+        assertEquals(26, locked.getEndColumn());
+        assertTrue(out.isEmpty());
+        sink.close();
+
+        assertEquals(2, out.size());
+        assertEquals("RULE-023+RULE-031", out.get(0).getRuleId());
+        assertEquals("synchronized (this) {}\n\nlog.warn(\"x\")", out.get(0).getCode());
+        assertSame(lock, out.get(1).getRule());
+    }
+
+    @Test
+    void testCompositeIsNotReduced() throws IOException {
+        Rule lock = rule("RULE-023");
+        Rule log = rule("RULE-031");
+        List<Snippet> out = new ArrayList<>();
+        MethodGroupingSnippetSink sink = new MethodGroupingSnippetSink(new ReductionSnippetSink(new CollectingSink(out), 20));
+        sink.accept(snippet(lock, "A.java", 5, "synchronized (this) {\n  work();\n  more();\n}", RUN));
+        sink.accept(snippet(log, "A.java", 12, "log.warn(\"x\")", RUN));
+        sink.close();
+
+        // 拼接后的代码行号不对应原文，缩减记录的省略范围会指错位置
+        assertEquals(1, out.size());
+        assertNull(out.get(0).getReduction());
+        assertTrue(out.get(0).getCode().endsWith("log.warn(\"x\")"));
+    }
+
+    @Test
+    void testCompositeSurvivesNormalizedRoundTrip() throws IOException {
+        Rule lock = rule("RULE-023");
+        Rule log = rule("RULE-031");
+        StringWriter written = new StringWriter();
+        MethodGroupingSnippetSink sink = new MethodGroupingSnippetSink(
+                new NormalizedSnippetWriter(written, List.of(lock, log), false));
+        sink.accept(snippet(lock, "A.java", 5, "synchronized (this) {}", RUN));
+        sink.accept(snippet(log, "A.java", 9, "log.warn(\"x\")", RUN));
+        sink.close();
+
+        List<Snippet> read = new NormalizedSnippetReader().readAll(new StringReader(written.toString()));
+        assertEquals(1, read.size());
+        Snippet composite = read.get(0);
+        assertEquals("RULE-023+RULE-031", composite.getRuleId());
+        assertEquals(2, composite.getMembers().size());
+        assertEquals("RULE-031", composite.getMembers().get(1).getRuleId());
+        assertEquals(9, composite.getMembers().get(1).getLine());
+        assertEquals(composite.getFile(), composite.getMembers().get(1).getFile());
+    }
+
+    private static Snippet snippet(Rule rule, String file, int line, String code, String enclosing) {
+        // 原文片段，范围按代码行数计算
+        int endLine = line + (int) code.chars().filter(c -> c == '\n').count();
+        SnippetPayload payload = new SnippetPayload(file, line, code, null, "METHOD_DECLARATION",
+                line, 1, endLine, 1, null, 0);
+        payload.setEnclosing(enclosing);
+        return new Snippet(rule, payload);
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.sonar.ai.stage;
+
+import com.example.sonar.ai.io.CollectingSink;
+import com.example.sonar.ai.model.Rule;
+import com.example.sonar.ai.model.Snippet;
+import com.example.sonar.ai.model.SourceText;
+import com.github.javaparser.Position;
+import com.github.javaparser.Range;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.example.sonar.ai.model.TestRules.rule;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * NearDuplicateSnippetSink 单元测试
+ */
+public class NearDuplicateSnippetSinkTest {
+
+    private static final String LOOP = "for (Order order : orders) {\n"
+            + "    if (order.getAmount() > 100) {\n"
+            + "        total += order.getAmount() * RATE;\n"
+            + "        log.info(\"big order {}\", order.getId());\n"
+            + "    }\n"
+            + "}";
+
+    @Test
+    void testRenamedClonesShareCluster() throws IOException {
+        Rule rule = rule("RULE-015");
+        List<Snippet> out = new ArrayList<>();
+        try (NearDuplicateSnippetSink sink = new NearDuplicateSnippetSink(new CollectingSink(out), 0.8,
+                NearDuplicateSnippetSink.DEFAULT_SCOPES)) {
+            sink.accept(sliced(rule, "A.java", LOOP, "METHOD_DECLARATION"));
+            sink.accept(sliced(rule, "B.java", LOOP.replace("order", "o").replace("100", "500")
+                    .replace("big order", "large"), "METHOD_DECLARATION"));
+            sink.accept(sliced(rule, "C.java", "while (it.hasNext()) { queue.offer(it.next()); }", "METHOD_DECLARATION"));
+            // 不在默认 scope 中的相同代码不聚类
+            sink.accept(sliced(rule, "D.java", LOOP, "FIELD_DECLARATION"));
+            // 合成代码不聚类
+            sink.accept(new Snippet(rule, new File("E.java"), 1, LOOP, "x", "METHOD_DECLARATION"));
+            assertEquals(5, sink.getReceived());
+            assertEquals(4, sink.getClusters());
+        }
+        Snippet representative = out.get(0);
+        assertEquals(2, representative.getOccurrences().size());
+        assertEquals("B.java", new File(representative.getOccurrences().getFile(1)).getName());
+        assertTrue(representative.getSimilarity() >= 0.8);
+        assertNull(out.get(1).getOccurrences());
+    }
+
+    @Test
+    void testTokensNormalizeNamesAndLiterals() {
+        assertEquals(List.of("for", "(", "int", "ID", "=", "LIT", ";", "ID", "<", "ID", ".", "size", "(", ")", ")"),
+                MinHash.tokens("for (int i = 0; i < items.size()) // 注释"));
+        assertEquals(MinHash.tokens("String s = \"a\\\"b\";"), MinHash.tokens("String t = 'c';"));
+    }
+
+    private static Snippet sliced(Rule rule, String file, String code, String scope) {
+        SourceText source = new SourceText(code);
+        String[] lines = code.split("\n", -1);
+        CharSequence slice = source.slice(new Range(new Position(1, 1),
+                new Position(lines.length, lines[lines.length - 1].length())));
+        return new Snippet(rule, new File(file), 1, slice, "run", scope);
+    }
+}
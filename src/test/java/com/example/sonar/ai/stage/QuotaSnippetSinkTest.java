@@ -0,0 +1,114 @@
+package com.example.sonar.ai.stage;
+
+import com.example.sonar.ai.io.CollectingSink;
+import com.example.sonar.ai.model.Rule;
+import com.example.sonar.ai.model.Snippet;
+import com.example.sonar.ai.model.SnippetPayload;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.example.sonar.ai.model.TestRules.limited;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * QuotaSnippetSink 单元测试
+ */
+public class QuotaSnippetSinkTest {
+
+    @Test
+    void testPerFileAndTotalCaps() throws IOException {
+        Rule loop = limited("RULE-028", 3, 5);
+        Rule free = limited("RULE-027", 0, 0);
+        List<Snippet> out = new ArrayList<>();
+        QuotaSnippetSink sink = new QuotaSnippetSink(new CollectingSink(out), 42);
+        for (int file = 0; file < 4; file++) {
+            for (int line = 1; line <= 10; line++) {
+                sink.accept(snippet(loop, "F" + file + ".java", line));
+            }
+            sink.accept(snippet(free, "F" + file + ".java", 99));
+        }
+        // 未配置限额的规则直接透传
+        assertEquals(4, out.size());
+        sink.close();
+
+        List<Snippet> kept = out.subList(4, out.size());
+        assertEquals(5, kept.size());
+        for (int file = 0; file < 4; file++) {
+            String name = "F" + file + ".java";
+            assertTrue(kept.stream().filter(s -> s.getFile().endsWith(name)).count() <= 3);
+        }
+        QuotaSnippetSink.QuotaStats stats = sink.getStats().get(0);
+        assertEquals(40, stats.received());
+        assertEquals(5, stats.kept());
+        assertEquals(28, stats.droppedPerFile());
+        assertEquals(7, stats.droppedTotal());
+    }
+
+    @Test
+    void testSampleIsReproducibleAndUniform() throws IOException {
+        Rule log = limited("RULE-031", 0, 10);
+        assertEquals(sample(log, 7), sample(log, 7));
+
+        int[] hits = new int[100];
+        for (int seed = 0; seed < 2000; seed++) {
+            for (int line : sample(log, seed)) {
+                hits[line - 1]++;
+            }
+        }
+        // 每个片段被保留的概率为 10/100，2000 次期望 200 次
+        for (int count : hits) {
+            assertTrue(count > 130 && count < 270, "count " + count);
+        }
+    }
+
+    @Test
+    void testGroupedCompositesKeepMemberQuotas() throws IOException {
+        Rule loop = limited("RULE-028", 1, 0);
+        Rule lock = limited("RULE-030", 2, 0);
+        Rule free = limited("RULE-031", 0, 0);
+        List<Snippet> out = new ArrayList<>();
+        MethodGroupingSnippetSink sink = new MethodGroupingSnippetSink(new QuotaSnippetSink(new CollectingSink(out), 7));
+        for (int method = 0; method < 5; method++) {
+            String enclosing = "A#void m" + method + "()";
+            int line = method * 10 + 1;
+            sink.accept(grouped(loop, line, enclosing));
+            sink.accept(grouped(lock, line + 2, enclosing));
+            if (method == 4) {
+                // 有不限额的成员时组合片段不受限额
+                sink.accept(grouped(free, line + 4, enclosing));
+            }
+        }
+        sink.close();
+
+        // 成员都受限的组合按成员中最大的单文件限额 2 抽样
+        List<Snippet> limited = out.stream().filter(s -> s.getRuleId().equals("RULE-028+RULE-030")).toList();
+        assertEquals(2, limited.size());
+        assertEquals(2, limited.get(0).getRule().getMaxPerFile());
+        assertEquals(1, out.stream().filter(s -> s.getRuleId().equals("RULE-028+RULE-030+RULE-031")).count());
+    }
+
+    private static Snippet grouped(Rule rule, int line, String enclosing) {
+        SnippetPayload payload = new SnippetPayload("A.java", line, "for (;;) {}", null, "METHOD_DECLARATION",
+                line, 1, line, 11, null, 0);
+        payload.setEnclosing(enclosing);
+        return new Snippet(rule, payload);
+    }
+
+    private static List<Integer> sample(Rule rule, long seed) throws IOException {
+        List<Snippet> out = new ArrayList<>();
+        QuotaSnippetSink sink = new QuotaSnippetSink(new CollectingSink(out), seed);
+        for (int line = 1; line <= 100; line++) {
+            sink.accept(snippet(rule, "A.java", line));
+        }
+        sink.close();
+        return out.stream().map(Snippet::getLine).toList();
+    }
+
+    private static Snippet snippet(Rule rule, String file, int line) {
+        return new Snippet(rule, new File(file), line, "log.warn(\"" + line + "\")", null, "LOG_DECLARATION");
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.sonar.ai.stage;
+
+import com.example.sonar.ai.io.CollectingSink;
+import com.example.sonar.ai.model.Rule;
+import com.example.sonar.ai.model.Snippet;
+import com.example.sonar.ai.model.SnippetMetrics;
+import com.example.sonar.ai.model.SnippetPayload;
+import com.example.sonar.ai.model.SourceText;
+import com.example.sonar.ai.parser.JavaCodeVisitor;
+import com.example.sonar.ai.parser.SnippetBuffer;
+import com.github.javaparser.StaticJavaParser;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.example.sonar.ai.model.TestRules.scoped;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * RiskRankingSnippetSink 单元测试
+ */
+public class RiskRankingSnippetSinkTest {
+
+    @Test
+    void testMetricsComputedDuringTraversal() {
+        String code = """
+                class A {
+                    void run(List<String> items) {
+                        synchronized (A.class) {
+                            for (String item : items) {
+                                while (item.isEmpty()) {
+                                    log(item);
+                                    item = next(item);
+                                }
+                            }
+                            done();
+                        }
+                    }
+                }
+                """;
+        Rule lock = scoped("RULE-030", "LOCK_DECLARATION");
+        SnippetBuffer buffer = new SnippetBuffer(List.of(lock));
+        StaticJavaParser.parse(code).accept(new JavaCodeVisitor(new File("A.java"), new SourceText(code)), buffer);
+        List<Snippet> snippets = new ArrayList<>();
+        buffer.forEach(snippets::add);
+
+        assertEquals(1, snippets.size());
+        // 语句：同步块 2 条、for 体 1 条、while 体 2 条；循环内调用 isEmpty/log/next，done 在循环外
+        assertEquals(new SnippetMetrics(2, 5, 5, 3, 4), snippets.get(0).getPayload().getMetrics());
+    }
+
+    @Test
+    void testLoopAndLockSnippetsUseMetricsOfTheirOwnCode() {
+        String code = """
+                class A {
+                    void run(List<String> items) {
+                        Lock lock = new ReentrantLock();
+                        for (String item : items) {
+                            while (item.isEmpty()) {
+                                item = next(item);
+                            }
+                        }
+                        for (int i = 0; i < 3; i++) {
+                            log(i);
+                        }
+                        done();
+                    }
+                }
+                """;
+        Rule loop = scoped("RULE-028", "METHOD_DECLARATION");
+        Rule lock = scoped("RULE-030", "LOCK_DECLARATION");
+        SnippetBuffer buffer = new SnippetBuffer(List.of(loop, lock));
+        StaticJavaParser.parse(code).accept(new JavaCodeVisitor(new File("A.java"), new SourceText(code)), buffer);
+        List<Snippet> snippets = new ArrayList<>();
+        buffer.forEach(snippets::add);
+
+        Map<Integer, SnippetMetrics> loops = new HashMap<>();
+        SnippetMetrics locked = null;
+        for (Snippet snippet : snippets) {
+            if (snippet.getRule() == loop) {
+                loops.put(snippet.getLine(), snippet.getPayload().getMetrics());
+            } else {
+                locked = snippet.getPayload().getMetrics();
+            }
+        }
+        // 每个循环片段只统计自己的循环：外层 for 含 while，while 的深度计入外层 for
+        assertEquals(new SnippetMetrics(2, 2, 0, 2, 2), loops.get(4));
+        assertEquals(new SnippetMetrics(2, 1, 0, 2, 2), loops.get(5));
+        assertEquals(new SnippetMetrics(1, 1, 0, 1, 1), loops.get(9));
+        // ReentrantLock 片段是整个方法体：语句 4+1+1+1，循环内调用 isEmpty/next/log，另有 done
+        assertEquals(new SnippetMetrics(2, 7, 0, 3, 4), locked);
+    }
+
+    @Test
+    void testOrderedByScoreWithRuleWeights() throws IOException {
+        Rule naming = scoped("RULE-001", "METHOD_DECLARATION");
+        // 命名规则不关心循环
+        naming.setRiskWeights(Map.of("loopDepth", 0.0, "callsInLoops", 0.0));
+        Rule loop = scoped("RULE-028", "METHOD_DECLARATION");
+        List<Snippet> out = new ArrayList<>();
+        RiskRankingSnippetSink sink = new RiskRankingSnippetSink(new CollectingSink(out), Map.of("statements", 1.0));
+        sink.accept(snippet(naming, 1, new SnippetMetrics(3, 10, 0, 5, 2)));
+        sink.accept(snippet(loop, 2, null));
+        sink.accept(snippet(loop, 3, new SnippetMetrics(1, 2, 0, 1, 1)));
+        sink.accept(snippet(loop, 4, new SnippetMetrics(3, 10, 0, 5, 2)));
+        sink.close();
+
+        assertEquals(List.of(4, 1, 3, 2), out.stream().map(Snippet::getLine).toList());
+        // 4*3 + 1*10 + 2*5 + 0.5*2
+        assertEquals(33.0, out.get(0).getRisk());
+        // 1*10 + 0.5*2
+        assertEquals(11.0, out.get(1).getRisk());
+        assertEquals(0.0, out.get(3).getRisk());
+    }
+
+    private static Snippet snippet(Rule rule, int line, SnippetMetrics metrics) {
+        SnippetPayload payload = new SnippetPayload(new File("A.java"), line, "void f() {}", "f", "METHOD_DECLARATION");
+        payload.setMetrics(metrics);
+        return new Snippet(rule, payload);
+    }
+}
@@ -0,0 +1,207 @@
+package com.example.sonar.ai.store;
+
+import com.example.sonar.ai.io.CollectingSink;
+import com.example.sonar.ai.io.SnippetSink;
+import com.example.sonar.ai.model.Rule;
+import com.example.sonar.ai.model.Snippet;
+import com.example.sonar.ai.service.CodeExtractorService;
+import com.example.sonar.ai.stage.MethodGroupingSnippetSink;
+import com.example.sonar.ai.stage.QuotaSnippetSink;
+import com.example.sonar.ai.stage.RiskRankingSnippetSink;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static com.example.sonar.ai.model.TestRules.rule;
+import static com.example.sonar.ai.model.TestRules.scoped;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * ScanCheckpoint 单元测试
+ */
+public class ScanCheckpointTest {
+
+    @TempDir
+    Path dir;
+
+    private final Rule rule = rule("RULE-031", "日志规范");
+    private final File a = new File("A.java");
+    private final File b = new File("B.java");
+
+    @Test
+    void testResumeReplaysCompletedFilesOnly() throws IOException {
+        String fingerprint = ScanCheckpoint.fingerprint(List.of(rule), "src", false);
+        try (ScanCheckpoint checkpoint = ScanCheckpoint.open(dir, List.of(rule), fingerprint, 0, false)) {
+            checkpoint.record(snippet(a, 1));
+            checkpoint.record(snippet(a, 2));
+            checkpoint.fileDone(a);
+            // 中断时 B 只写了一半
+            checkpoint.record(snippet(b, 1));
+        }
+
+        try (ScanCheckpoint checkpoint = ScanCheckpoint.open(dir, List.of(rule), fingerprint, 0, true)) {
+            assertTrue(checkpoint.isCompleted(a));
+            assertFalse(checkpoint.isCompleted(b));
+            List<Snippet> replayed = new ArrayList<>();
+            assertEquals(2, checkpoint.replay(new CollectingSink(replayed)));
+            assertEquals(List.of(1, 2), replayed.stream().map(Snippet::getLine).toList());
+            checkpoint.record(snippet(b, 1));
+            checkpoint.record(snippet(b, 5));
+            checkpoint.fileDone(b);
+        }
+
+        try (ScanCheckpoint checkpoint = ScanCheckpoint.open(dir, List.of(rule), fingerprint, 0, true)) {
+            assertTrue(checkpoint.isCompleted(b));
+            List<Snippet> replayed = new ArrayList<>();
+            assertEquals(4, checkpoint.replay(new CollectingSink(replayed)));
+            assertEquals(List.of(1, 2, 1, 5), replayed.stream().map(Snippet::getLine).toList());
+            checkpoint.discard();
+        }
+        assertFalse(Files.exists(dir.resolve(ScanCheckpoint.MANIFEST)));
+    }
+
+    @Test
+    void testIntervalDefersCheckpointUntilClose() throws IOException {
+        String fingerprint = ScanCheckpoint.fingerprint(List.of(rule), "src", false);
+        try (ScanCheckpoint checkpoint = ScanCheckpoint.open(dir, List.of(rule), fingerprint, 3_600_000, false)) {
+            checkpoint.record(snippet(a, 1));
+            checkpoint.fileDone(a);
+            assertEquals(0, Files.size(dir.resolve(ScanCheckpoint.FILES)));
+        }
+        assertTrue(Files.size(dir.resolve(ScanCheckpoint.FILES)) > 0);
+    }
+
+    @Test
+    void testFingerprintMismatchIsRejected() throws IOException {
+        String fingerprint = ScanCheckpoint.fingerprint(List.of(rule), "src", false);
+        ScanCheckpoint.open(dir, List.of(rule), fingerprint, 0, false).close();
+
+        assertNotEquals(fingerprint, ScanCheckpoint.fingerprint(List.of(rule), "src", true));
+        String changed = ScanCheckpoint.fingerprint(List.of(rule("RULE-031", "锁规范")), "src", false);
+        assertThrows(IOException.class, () -> ScanCheckpoint.open(dir, List.of(rule), changed, 0, true));
+        assertThrows(IOException.class, () -> ScanCheckpoint.open(dir.resolve("empty"), List.of(rule), fingerprint, 0, true));
+    }
+
+    @Test
+    void testResumeMatchesUninterruptedRunWithGroupingQuotaAndRank() throws IOException {
+        Path src = Files.createDirectories(dir.resolve("src"));
+        for (int i = 0; i < 4; i++) {
+            Files.writeString(src.resolve("C" + i + ".java"), """
+                    class C%d {
+                        private final Lock lock = null;
+                        void run(List<String> items) {
+                            Lock lock = new ReentrantLock();
+                            for (String item : items) {
+                                while (item.isEmpty()) {
+                                    item = next(item);
+                                }
+                            }
+                            for (int j = 0; j < %d; j++) {
+                                log(j);
+                            }
+                        }
+                        void stop() {
+                            for (int j = 0; j < 3; j++) {
+                                done(j);
+                            }
+                        }
+                    }
+                    """.formatted(i, i));
+        }
+        Rule loop = scoped("RULE-028", "METHOD_DECLARATION");
+        loop.setMaxPerFile(1);
+        loop.setRiskWeights(Map.of("loopDepth", 5.0));
+        Rule lock = scoped("RULE-030", "LOCK_DECLARATION");
+        lock.setMaxTotal(3);
+        List<Rule> rules = List.of(loop, lock);
+        String fingerprint = ScanCheckpoint.fingerprint(rules, src.toString(), false);
+
+        List<String> expected = new ArrayList<>();
+        try (SnippetSink sink = pipeline(expected)) {
+            CodeExtractorService service = new CodeExtractorService(src.toString(), rules);
+            service.extractAllCandidates(snippet -> accept(sink, snippet));
+        }
+
+        // 第二个文件完成后中断，处理阶段的状态随进程丢失
+        Path checkpointDir = dir.resolve("checkpoint");
+        try (ScanCheckpoint checkpoint = ScanCheckpoint.open(checkpointDir, rules, fingerprint, 0, false)) {
+            SnippetSink lost = pipeline(new ArrayList<>());
+            int[] done = new int[1];
+            CodeExtractorService service = new CodeExtractorService(src.toString(), rules);
+            service.setFileDone(file -> {
+                try {
+                    checkpoint.fileDone(file);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                if (++done[0] == 2) {
+                    throw new IllegalStateException("killed");
+                }
+            });
+            assertThrows(IllegalStateException.class, () -> service.extractAllCandidates(snippet -> {
+                try {
+                    checkpoint.record(snippet);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                accept(lost, snippet);
+            }));
+        }
+
+        List<String> resumed = new ArrayList<>();
+        try (ScanCheckpoint checkpoint = ScanCheckpoint.open(checkpointDir, rules, fingerprint, 0, true);
+             SnippetSink sink = pipeline(resumed)) {
+            assertTrue(checkpoint.replay(sink) > 0);
+            CodeExtractorService service = new CodeExtractorService(src.toString(), rules);
+            service.setSkipFile(checkpoint::isCompleted);
+            service.extractAllCandidates(snippet -> accept(sink, snippet));
+            assertEquals(2, service.getFilesFound() - service.getFilesParsed());
+        }
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, resumed);
+    }
+
+    /**
+     * 与 CodeAnalysisEngine 相同顺序的按方法合并 -> 规则限额 -> 风险排序
+     */
+    private static SnippetSink pipeline(List<String> out) {
+        SnippetSink collector = new SnippetSink() {
+            @Override
+            public void accept(Snippet snippet) {
+                out.add(snippet.getRuleId() + " " + snippet.getFile() + ":" + snippet.getLine() + " "
+                        + snippet.getRule().getMaxPerFile() + " " + snippet.getPayload().getMetrics()
+                        + " " + snippet.getCode());
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        return new MethodGroupingSnippetSink(new QuotaSnippetSink(
+                new RiskRankingSnippetSink(collector, Map.of("statements", 1.0)), 11));
+    }
+
+    private static void accept(SnippetSink sink, Snippet snippet) {
+        try {
+            sink.accept(snippet);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Snippet snippet(File file, int line) {
+        return new Snippet(rule, file, line, "log.warn(\"" + line + "\")", null, "LOG_DECLARATION");
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.sonar.ai.store;
+
+import com.example.sonar.ai.io.CollectingSink;
+import com.example.sonar.ai.io.SnippetSink;
+import com.example.sonar.ai.model.Rule;
+import com.example.sonar.ai.model.Snippet;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.example.sonar.ai.model.TestRules.rule;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SnippetStoreWriter / SnippetStore 单元测试
+ */
+public class SnippetStoreTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testRoundTripAndSecondaryIndexes() throws IOException {
+        Rule log = rule("RULE-031", "日志规范");
+        Rule lock = rule("RULE-012", "锁规范");
+        List<Snippet> written = new ArrayList<>();
+        try (SnippetStoreWriter writer = new SnippetStoreWriter(dir, List.of(log, lock))) {
+            for (int i = 0; i < 500; i++) {
+                Rule rule = i % 3 == 0 ? lock : log;
+                File file = new File("Class" + (i % 7) + ".java");
+                Snippet snippet = new Snippet(rule, file, i, "代码 " + i, i % 2 == 0 ? null : "name" + i, "LOG");
+                writer.accept(snippet);
+                written.add(snippet);
+            }
+            assertEquals(500, writer.getCount());
+        }
+
+        Gson gson = new GsonBuilder().disableHtmlEscaping().create();
+        try (SnippetStore store = SnippetStore.open(dir)) {
+            assertEquals(500, store.size());
+            assertEquals(gson.toJson(written.get(123)), gson.toJson(store.get(123)));
+
+            List<Snippet> all = collect(store::forEach);
+            assertEquals(gson.toJson(written), gson.toJson(all));
+
+            List<Snippet> locks = collect(sink -> store.forRule("RULE-012", sink));
+            assertEquals(167, locks.size());
+            assertTrue(locks.stream().allMatch(s -> s.getRuleId().equals("RULE-012")));
+            assertEquals(3, locks.get(1).getLine());
+
+            String path = new File("Class3.java").getAbsolutePath();
+            List<Snippet> byFile = collect(sink -> store.forFile(path, sink));
+            assertEquals(written.stream().filter(s -> s.getFile().equals(path)).count(), byFile.size());
+            assertTrue(byFile.stream().allMatch(s -> s.getFile().equals(path)));
+
+            List<Snippet> grouped = collect(store::forEachByRule);
+            assertEquals("RULE-031", grouped.get(0).getRuleId());
+            assertEquals("RULE-012", grouped.get(499).getRuleId());
+        }
+    }
+
+    private interface Source {
+        void into(SnippetSink sink) throws IOException;
+    }
+
+    private static List<Snippet> collect(Source source) throws IOException {
+        List<Snippet> snippets = new ArrayList<>();
+        source.into(new CollectingSink(snippets));
+        return snippets;
+    }
+}
@@ -0,0 +1,274 @@
+package com.example.sonar.ai.store;
+
+import com.example.sonar.ai.io.CollectingSink;
+import com.example.sonar.ai.model.Rule;
+import com.example.sonar.ai.model.Snippet;
+import com.example.sonar.ai.model.Verdict;
+import com.example.sonar.ai.stage.VerdictCacheSnippetSink;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static com.example.sonar.ai.model.TestRules.rule;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * VerdictStore / VerdictCacheSnippetSink 单元测试
+ */
+public class VerdictStoreTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testPutGetAcrossGrowthAndReopen() throws Exception {
+        Rule rule = rule("RULE-012", "锁规范", "标准");
+        long ruleText = VerdictStore.ruleTextHash(rule);
+        try (VerdictStore store = VerdictStore.open(dir, true)) {
+            // 超过初始容量的负载上限，触发多次扩容
+            for (int i = 0; i < 10000; i++) {
+                store.put(rule.getId(), ruleText, i, new Verdict(i % 2 == 0, "理由" + i, "OK", 0));
+            }
+            store.put(rule.getId(), ruleText, 7, new Verdict(true, "覆盖", "未释放锁", 0));
+            assertEquals(10000, store.size());
+            assertEquals("覆盖", store.get(rule.getId(), ruleText, 7, 0).getReasoning());
+        }
+        try (VerdictStore reader = VerdictStore.open(dir, false)) {
+            assertEquals(10000, reader.size());
+            Verdict verdict = reader.get(rule.getId(), ruleText, 42, 0);
+            assertTrue(verdict.getViolation());
+            assertEquals("理由42", verdict.getReasoning());
+            assertTrue(verdict.getJudgedAt() > 0);
+            assertNull(reader.get(rule.getId(), ruleText, 10000, 0));
+            assertNull(reader.get("RULE-013", ruleText, 42, 0));
+            // 规则文本变化后旧判定失效
+            Rule changed = rule("RULE-012", "锁规范（修订）", "标准");
+            assertNull(reader.get(changed.getId(), VerdictStore.ruleTextHash(changed), 42, 0));
+            assertThrows(IOException.class, () -> reader.put(rule.getId(), ruleText, 1, new Verdict()));
+        }
+    }
+
+    @Test
+    void testTtlAndCompact() throws IOException {
+        long now = System.currentTimeMillis();
+        long day = TimeUnit.DAYS.toMillis(1);
+        try (VerdictStore store = VerdictStore.open(dir, true)) {
+            for (int i = 0; i < 100; i++) {
+                long judgedAt = i < 30 ? now - 10 * day : now;
+                store.put("RULE-001", 1, i, new Verdict(false, "r" + i, "OK", judgedAt));
+            }
+            assertNotNull(store.get("RULE-001", 1, 0, 0));
+            assertNull(store.get("RULE-001", 1, 0, 5 * day));
+            assertNotNull(store.get("RULE-001", 1, 50, 5 * day));
+
+            assertEquals(30, store.compact(5 * day));
+            assertEquals(70, store.size());
+            assertNull(store.get("RULE-001", 1, 0, 0));
+            assertEquals("r99", store.get("RULE-001", 1, 99, 0).getReasoning());
+        }
+        try (VerdictStore reader = VerdictStore.open(dir, false)) {
+            assertEquals(70, reader.size());
+            assertEquals("r30", reader.get("RULE-001", 1, 30, 0).getReasoning());
+        }
+    }
+
+    @Test
+    void testConcurrentReadersDuringWrites() throws Exception {
+        try (VerdictStore store = VerdictStore.open(dir, true)) {
+            for (int i = 0; i < 1000; i++) {
+                store.put("RULE-001", 1, i, new Verdict(true, "r" + i, "msg", 0));
+            }
+            ExecutorService pool = Executors.newFixedThreadPool(4);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 3; t++) {
+                futures.add(pool.submit(() -> {
+                    for (int round = 0; round < 20; round++) {
+                        for (int i = 0; i < 1000; i++) {
+                            assertEquals("r" + i, store.get("RULE-001", 1, i, 0).getReasoning());
+                        }
+                    }
+                    return null;
+                }));
+            }
+            // 写入同时触发扩容
+            futures.add(pool.submit(() -> {
+                for (int i = 1000; i < 5000; i++) {
+                    store.put("RULE-001", 1, i, new Verdict(false, "r" + i, "OK", 0));
+                }
+                return null;
+            }));
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            pool.shutdown();
+            assertEquals(5000, store.size());
+        }
+    }
+
+    @Test
+    void testTornOrCorruptSlotIsAMiss() throws IOException {
+        try (VerdictStore store = VerdictStore.open(dir, true)) {
+            store.put("RULE-001", 1, 42, new Verdict(true, "旧理由", "msg", 0));
+            store.put("RULE-001", 1, 43, new Verdict(false, "r", "OK", 0));
+        }
+        // 模拟另一个进程原地覆盖时只写了 offset：新 offset 配旧 length
+        try (FileChannel channel = FileChannel.open(dir.resolve(VerdictStore.INDEX),
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer index = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            int slot = slotOf(index, 42);
+            index.putLong(slot + 24, index.getLong(slot + 24) + 5);
+            index.force();
+        }
+        try (VerdictStore reader = VerdictStore.open(dir, false)) {
+            assertNull(reader.get("RULE-001", 1, 42, 0));
+            assertEquals("r", reader.get("RULE-001", 1, 43, 0).getReasoning());
+        }
+
+        // 日志内容损坏而槽位完整时同样按未命中处理
+        Path log = dir.resolve("verdicts.0.log");
+        byte[] bytes = Files.readAllBytes(log);
+        bytes[bytes.length - 1] = 'x';
+        Files.write(log, bytes);
+        try (VerdictStore reader = VerdictStore.open(dir, false)) {
+            assertNull(reader.get("RULE-001", 1, 43, 0));
+        }
+    }
+
+    @Test
+    void testVersion1StoreIsUpgraded() throws IOException {
+        try (VerdictStore store = VerdictStore.open(dir, true)) {
+            store.put("RULE-001", 1, 42, new Verdict(true, "理由", "msg", 0));
+        }
+        // 还原为版本 1：没有 check
+        try (FileChannel channel = FileChannel.open(dir.resolve(VerdictStore.INDEX),
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer index = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            index.putInt(4, 1);
+            index.putInt(slotOf(index, 42) + 36, 0);
+            index.force();
+        }
+        try (VerdictStore reader = VerdictStore.open(dir, false)) {
+            assertEquals("理由", reader.get("RULE-001", 1, 42, 0).getReasoning());
+        }
+        try (VerdictStore store = VerdictStore.open(dir, true)) {
+            assertEquals("理由", store.get("RULE-001", 1, 42, 0).getReasoning());
+        }
+        try (VerdictStore reader = VerdictStore.open(dir, false)) {
+            assertEquals("理由", reader.get("RULE-001", 1, 42, 0).getReasoning());
+        }
+    }
+
+    @Test
+    void testSingleWriter() throws IOException {
+        try (VerdictStore ignored = VerdictStore.open(dir, true)) {
+            assertThrows(IOException.class, () -> VerdictStore.open(dir, true));
+            try (VerdictStore reader = VerdictStore.open(dir, false)) {
+                assertEquals(0, reader.size());
+            }
+        }
+    }
+
+    @Test
+    void testImportAndCacheStage() throws IOException {
+        Rule rule = rule("RULE-015", "循环规范", "标准");
+        Snippet judged = new Snippet(rule, new File("A.java"), 3, "for (;;) { work(); }", "run", "LOOP");
+        Snippet fresh = new Snippet(rule, new File("B.java"), 8, "while (true) { sleep(); }", "run", "LOOP");
+        Gson gson = new GsonBuilder().create();
+        // 导出的片段附带 AIEngine 格式的判定结果
+        String exported = gson.toJson(judged);
+        String input = "[" + exported.substring(0, exported.length() - 1)
+                + ",\"violation\":true,\"reasoning\":\"死循环\",\"message\":\"禁止死循环\"},"
+                + "{\"ruleId\":\"RULE-015\",\"violation\":false}]";
+        try (VerdictStore store = VerdictStore.open(dir, true)) {
+            assertEquals(1, store.importJudged(new StringReader(input)));
+        }
+
+        List<Snippet> annotated = new ArrayList<>();
+        VerdictCacheSnippetSink cache = new VerdictCacheSnippetSink(
+                new CollectingSink(annotated), VerdictStore.open(dir, false), 0, false);
+        // 代码格式不同但结构相同，同样命中
+        cache.accept(new Snippet(rule, new File("C.java"), 1, "for (;;) {\n    work();\n}", "run", "LOOP"));
+        cache.accept(fresh);
+        cache.close();
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(2, annotated.size());
+        assertEquals("禁止死循环", annotated.get(0).getVerdict().getMessage());
+        assertNull(annotated.get(1).getVerdict());
+        Snippet roundTrip = gson.fromJson(gson.toJson(annotated.get(0)), Snippet.class);
+        assertTrue(roundTrip.getVerdict().getViolation());
+        assertEquals(annotated.get(0).getStructuralHash(), roundTrip.getStructuralHash());
+
+        List<Snippet> remaining = new ArrayList<>();
+        VerdictCacheSnippetSink skip = new VerdictCacheSnippetSink(
+                new CollectingSink(remaining), VerdictStore.open(dir, false), 0, true);
+        skip.accept(judged);
+        skip.accept(fresh);
+        skip.close();
+        assertEquals(1, remaining.size());
+        assertSame(fresh, remaining.get(0));
+    }
+
+    @Test
+    void testMissingStoreIsEmptyWhenReadOnly() throws IOException {
+        Rule rule = rule("RULE-012", "锁规范", "标准");
+        Path missing = dir.resolve("none");
+        List<Snippet> annotated = new ArrayList<>();
+        VerdictCacheSnippetSink cache = new VerdictCacheSnippetSink(
+                new CollectingSink(annotated), VerdictStore.open(missing, false), 0, false);
+        cache.accept(new Snippet(rule, new File("A.java"), 1, "lock.lock();", "run", "LOCK"));
+        cache.close();
+        assertEquals(0, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertNull(annotated.get(0).getVerdict());
+        assertFalse(Files.exists(missing), "只读打开不创建目录");
+    }
+
+    @Test
+    void testSynthesizedCodeIsKeyedByName() throws IOException {
+        Rule javadoc = rule("RULE-004", "注释规范", "标准");
+        // 合成的代码没有原文范围，不同方法生成相同文本
+        Snippet run = new Snippet(javadoc, new File("A.java"), 3, "无JavaDoc", "run", "METHOD_DECLARATION");
+        Snippet stop = new Snippet(javadoc, new File("A.java"), 9, "无JavaDoc", "stop", "METHOD_DECLARATION");
+        assertNotEquals(run.getStructuralHash(), stop.getStructuralHash());
+        try (VerdictStore store = VerdictStore.open(dir, true)) {
+            store.put(javadoc.getId(), VerdictStore.ruleTextHash(javadoc), run.getStructuralHash(),
+                    new Verdict(true, "缺少注释", "方法必须有注释", 1L));
+        }
+
+        List<Snippet> annotated = new ArrayList<>();
+        VerdictCacheSnippetSink cache = new VerdictCacheSnippetSink(
+                new CollectingSink(annotated), VerdictStore.open(dir, false), 0, false);
+        cache.accept(new Snippet(javadoc, new File("A.java"), 4, "无JavaDoc", "run", "METHOD_DECLARATION"));
+        cache.accept(stop);
+        cache.close();
+        assertEquals(1, cache.getHits());
+        assertTrue(annotated.get(0).getVerdict().getViolation());
+        assertNull(annotated.get(1).getVerdict(), "其它方法的判定不能套用");
+    }
+
+    private static int slotOf(MappedByteBuffer index, long codeHash) {
+        for (int slot = 64; slot < index.capacity(); slot += 40) {
+            if (index.getLong(slot + 16) != 0 && index.getLong(slot + 8) == codeHash) {
+                return slot;
+            }
+        }
+        throw new AssertionError("slot not found: " + codeHash);
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.sonar.ai.store;
+
+import com.example.sonar.ai.io.CollectingSink;
+import com.example.sonar.ai.io.SnippetFileReader;
+import com.example.sonar.ai.io.SnippetSink;
+import com.example.sonar.ai.model.Rule;
+import com.example.sonar.ai.model.Snippet;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * WorkQueueWriter / WorkQueue 单元测试
+ */
+public class WorkQueueTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void testWriterSealsChunksAndIndex() throws IOException {
+        WorkQueueWriter writer = new WorkQueueWriter(dir, 4);
+        write(writer, 3);
+        WorkQueue queue = new WorkQueue(dir, "a", 60_000);
+        assertEquals(0, queue.status().chunks(), "不满的分段不发布");
+        write(writer, 7);
+        WorkQueue.Status running = queue.status();
+        assertEquals(2, running.chunks());
+        assertEquals(8, running.snippets());
+        assertFalse(running.complete());
+        writer.close();
+
+        WorkQueue.Status status = queue.status();
+        assertEquals(3, status.chunks());
+        assertEquals(10, status.snippets());
+        assertTrue(status.complete());
+        assertFalse(status.drained());
+        assertEquals(2, read(queue.segment(2)).size());
+        assertEquals("Class1.java", new File(read(queue.segment(1)).get(0).getFile()).getName());
+        assertThrows(IOException.class, () -> new WorkQueueWriter(dir, 4), "同一目录只能写入一次");
+    }
+
+    @Test
+    void testConsumersClaimDistinctChunksUntilDrained() throws IOException {
+        try (WorkQueueWriter writer = new WorkQueueWriter(dir, 2)) {
+            write(writer, 5);
+        }
+        WorkQueue a = new WorkQueue(dir, "a", 60_000);
+        WorkQueue b = new WorkQueue(dir, "b", 60_000);
+        WorkQueue.Lease first = a.claim();
+        WorkQueue.Lease second = b.claim();
+        WorkQueue.Lease third = a.claim();
+        assertEquals(0, first.chunk());
+        assertEquals(1, second.chunk());
+        assertEquals(2, third.chunk());
+        assertNull(b.claim());
+        assertEquals(3, a.status().leased());
+
+        assertTrue(a.renew(first));
+        a.complete(first);
+        b.complete(second);
+        a.complete(third);
+        assertNull(b.claim());
+        assertTrue(b.status().drained());
+        try (var leases = Files.list(dir.resolve(WorkQueue.LEASES))) {
+            assertEquals(0, leases.count());
+        }
+    }
+
+    @Test
+    void testClaimStartsAfterChunksKnownDone() throws IOException {
+        try (WorkQueueWriter writer = new WorkQueueWriter(dir, 2)) {
+            write(writer, 5);
+        }
+        WorkQueue a = new WorkQueue(dir, "a", 60_000);
+        a.complete(a.claim());
+        a.complete(a.claim());
+        assertEquals(2, a.claim().chunk());
+        // 已越过的分段不再检查：即使完成标记丢失，a 也不会回头认领
+        Files.delete(dir.resolve(WorkQueue.DONE).resolve("chunk-000000"));
+        assertNull(a.claim());
+        assertEquals(2, a.status().done());
+        assertEquals(0, new WorkQueue(dir, "c", 60_000).claim().chunk());
+    }
+
+    @Test
+    void testExpiredLeaseIsTakenOver() throws IOException, InterruptedException {
+        try (WorkQueueWriter writer = new WorkQueueWriter(dir, 10)) {
+            write(writer, 3);
+        }
+        WorkQueue crashed = new WorkQueue(dir, "crashed", 1);
+        WorkQueue.Lease stale = crashed.claim();
+        Thread.sleep(5);
+
+        WorkQueue survivor = new WorkQueue(dir, "survivor", 60_000);
+        WorkQueue.Lease lease = survivor.claim();
+        assertEquals(0, lease.chunk());
+        assertEquals(2, lease.generation());
+        assertFalse(crashed.renew(stale), "被接管的租约不能续约");
+        assertNull(new WorkQueue(dir, "third", 60_000).claim());
+
+        survivor.complete(lease);
+        crashed.complete(stale);
+        assertTrue(survivor.status().drained());
+    }
+
+    private static void write(SnippetSink sink, int count) throws IOException {
+        Rule rule = new Rule();
+        rule.setId("RULE-031");
+        rule.setDescription("日志规范");
+        for (int i = 0; i < count; i++) {
+            sink.accept(new Snippet(rule, new File("Class" + i + ".java"), i + 1, "log.warn(\"" + i + "\")",
+                    null, "LOG_DECLARATION"));
+        }
+    }
+
+    private static List<Snippet> read(Path segment) throws IOException {
+        List<Snippet> snippets = new ArrayList<>();
+        SnippetFileReader.read(segment, new CollectingSink(snippets));
+        return snippets;
+    }
+}
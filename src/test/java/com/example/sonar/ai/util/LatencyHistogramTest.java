@@ -0,0 +1,37 @@
+package com.example.sonar.ai.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * LatencyHistogram 单元测试
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    void testBucketsAreContiguous() {
+        long previous = -1;
+        for (int i = 0; i < 40 * 32; i++) {
+            long upper = LatencyHistogram.upperBound(i);
+            assertEquals(i, LatencyHistogram.index(previous + 1));
+            assertEquals(i, LatencyHistogram.index(upper));
+            previous = upper;
+        }
+    }
+
+    @Test
+    void testPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        assertEquals(0, histogram.percentile(0.5));
+        for (long ms = 1; ms <= 1000; ms++) {
+            histogram.record(ms * 1_000_000);
+        }
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1_000_000_000L, histogram.getMax());
+        // 相对误差不超过 1/32
+        assertEquals(500, histogram.percentile(0.5) / 1e6, 500 / 32.0);
+        assertEquals(990, histogram.percentile(0.99) / 1e6, 990 / 32.0);
+        assertEquals(1_000_000_000L, histogram.percentile(1));
+    }
+}